@@ -58,6 +58,7 @@ import com.marklogic.client.impl.HandleFactoryRegistryImpl;
 import com.marklogic.client.impl.OkHttpServices;
 import com.marklogic.client.io.marker.ContentHandle;
 import com.marklogic.client.io.marker.ContentHandleFactory;
+import com.marklogic.client.metrics.MetricsRegistry;
 
 /**
  * A Database Client Factory configures a database client for making
@@ -691,6 +692,219 @@ public class DatabaseClientFactory {
 
   }
 
+  /**
+   * A Connection Config specifies how a client manages its HTTP connections
+   * to the REST server.  By default, all clients share a single connection
+   * pool that keeps up to 5 idle connections for 5 minutes and reads and
+   * writes never time out.
+   *
+   * <p>Configuring the size of the connection pool gives the client its own
+   * dedicated pool, which lets jobs with many threads across many hosts (such
+   * as a WriteBatcher) keep a warm connection to every host.  The dedicated
+   * pool is evicted when the client is released.</p>
+   *
+   * <p>Responses are requested with gzip compression and decompressed while
+   * they are read.  Request bodies can also be compressed, which reduces the
+   * bytes sent over slow links at the cost of CPU on the client and server.</p>
+   *
+   * <p>A metrics registry receives the duration of each phase of every
+   * request (connecting, the TLS handshake, writing the request, waiting for
+   * the response headers and reading the response body) by REST endpoint.</p>
+   *
+   * <p>All durations are in milliseconds.  A timeout of zero means no timeout.</p>
+   */
+  public static class ConnectionConfig implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int  maxIdleConnections = -1;
+    private long keepAliveDuration  = -1;
+    private long connectTimeout     = -1;
+    private long readTimeout        = 0;
+    private long writeTimeout       = 0;
+    private int  maxRequests        = -1;
+    private int  maxRequestsPerHost = -1;
+    private boolean requestCompression = false;
+    // policies hold live state, so they aren't serialized with the config
+    private transient RetryPolicy retryPolicy;
+    private transient MetricsRegistry metricsRegistry;
+
+    public ConnectionConfig() {
+    }
+
+    /**
+     * Specifies the policy for retrying requests when the server is
+     * temporarily unavailable.  Clients created with the same config
+     * (including the forest clients of a DataMovementManager) share the
+     * policy.  By default, each client has its own
+     * ExponentialBackoffRetryPolicy.
+     * @param retryPolicy	the retry policy
+     * @return	this config object for chaining
+     */
+    public ConnectionConfig withRetryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Returns the configured retry policy or null if the default policy applies.
+     * @return	the retry policy
+     */
+    public RetryPolicy getRetryPolicy() {
+      return retryPolicy;
+    }
+
+    /**
+     * Specifies a registry to receive timings of the phases of every HTTP
+     * call made by the client, tagged by host, REST endpoint and method.
+     * The meters are listed on
+     * {@link com.marklogic.client.impl.HTTPMetricsEventListener}.  Forest
+     * clients created by a DataMovementManager report to the same registry.
+     * By default, calls aren't timed.
+     * @param metricsRegistry	the registry for the HTTP call timings
+     * @return	this config object for chaining
+     */
+    public ConnectionConfig withMetricsRegistry(MetricsRegistry metricsRegistry) {
+      this.metricsRegistry = metricsRegistry;
+      return this;
+    }
+
+    /**
+     * Returns the registry for HTTP call timings or null if calls aren't timed.
+     * @return	the metrics registry
+     */
+    public MetricsRegistry getMetricsRegistry() {
+      return metricsRegistry;
+    }
+
+    /**
+     * Specifies whether to compress request bodies with gzip.  The REST server
+     * must accept gzip content encoding for requests.  Small bodies are sent
+     * uncompressed.
+     * @param requestCompression	true to compress request bodies
+     * @return	this config object for chaining
+     */
+    public ConnectionConfig withRequestCompression(boolean requestCompression) {
+      this.requestCompression = requestCompression;
+      return this;
+    }
+
+    public boolean isRequestCompression() {
+      return requestCompression;
+    }
+
+    /**
+     * Gives the client a dedicated connection pool instead of the pool
+     * shared by all clients.
+     * @param maxIdleConnections	the maximum number of idle connections to keep in the pool
+     * @param keepAliveDuration	how long in milliseconds to keep an idle connection
+     * @return	this config object for chaining
+     */
+    public ConnectionConfig withConnectionPool(int maxIdleConnections, long keepAliveDuration) {
+      if (maxIdleConnections < 0) throw new IllegalArgumentException("maxIdleConnections must not be negative");
+      if (keepAliveDuration <= 0) throw new IllegalArgumentException("keepAliveDuration must be positive");
+      this.maxIdleConnections = maxIdleConnections;
+      this.keepAliveDuration  = keepAliveDuration;
+      return this;
+    }
+
+    /**
+     * Returns whether the client has a dedicated connection pool.
+     * @return	true if a dedicated pool has been configured
+     */
+    public boolean isDedicatedConnectionPool() {
+      return maxIdleConnections != -1;
+    }
+
+    public int getMaxIdleConnections() {
+      return maxIdleConnections;
+    }
+
+    public long getKeepAliveDuration() {
+      return keepAliveDuration;
+    }
+
+    /**
+     * Specifies how long to wait in milliseconds to establish a connection.
+     * @param connectTimeout	the timeout or zero for no timeout
+     * @return	this config object for chaining
+     */
+    public ConnectionConfig withConnectTimeout(long connectTimeout) {
+      if (connectTimeout < 0) throw new IllegalArgumentException("connectTimeout must not be negative");
+      this.connectTimeout = connectTimeout;
+      return this;
+    }
+
+    /**
+     * Returns the connect timeout in milliseconds or -1 if the
+     * communication library default applies.
+     * @return	the connect timeout
+     */
+    public long getConnectTimeout() {
+      return connectTimeout;
+    }
+
+    /**
+     * Specifies how long to wait in milliseconds between reads from the connection.
+     * Some reads (for instance, a large export) can take a long time, so the
+     * default is no timeout.
+     * @param readTimeout	the timeout or zero for no timeout
+     * @return	this config object for chaining
+     */
+    public ConnectionConfig withReadTimeout(long readTimeout) {
+      if (readTimeout < 0) throw new IllegalArgumentException("readTimeout must not be negative");
+      this.readTimeout = readTimeout;
+      return this;
+    }
+
+    public long getReadTimeout() {
+      return readTimeout;
+    }
+
+    /**
+     * Specifies how long to wait in milliseconds between writes to the connection.
+     * Some writes can be massive, so the default is no timeout.
+     * @param writeTimeout	the timeout or zero for no timeout
+     * @return	this config object for chaining
+     */
+    public ConnectionConfig withWriteTimeout(long writeTimeout) {
+      if (writeTimeout < 0) throw new IllegalArgumentException("writeTimeout must not be negative");
+      this.writeTimeout = writeTimeout;
+      return this;
+    }
+
+    public long getWriteTimeout() {
+      return writeTimeout;
+    }
+
+    /**
+     * Specifies how many asynchronous requests the client runs at once,
+     * in total and for each host.
+     * @param maxRequests	the maximum number of concurrent requests
+     * @param maxRequestsPerHost	the maximum number of concurrent requests to one host
+     * @return	this config object for chaining
+     */
+    public ConnectionConfig withMaxRequests(int maxRequests, int maxRequestsPerHost) {
+      if (maxRequests < 1) throw new IllegalArgumentException("maxRequests must be at least 1");
+      if (maxRequestsPerHost < 1) throw new IllegalArgumentException("maxRequestsPerHost must be at least 1");
+      this.maxRequests        = maxRequests;
+      this.maxRequestsPerHost = maxRequestsPerHost;
+      return this;
+    }
+
+    /**
+     * Returns the maximum number of concurrent asynchronous requests or -1 if
+     * the communication library default applies.
+     * @return	the maximum number of requests
+     */
+    public int getMaxRequests() {
+      return maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+      return maxRequestsPerHost;
+    }
+  }
+
   public static class CertificateAuthContext extends AuthContext {
     String certFile;
     String certPassword;
@@ -1014,6 +1228,30 @@ public class DatabaseClientFactory {
   static public DatabaseClient newClient(String host, int port, String database,
                                          SecurityContext securityContext,
                                          DatabaseClient.ConnectionType connectionType)
+  {
+    return newClient(host, port, database, securityContext, connectionType, null);
+  }
+
+  /**
+   * Creates a client to access the database by means of a REST server.
+   *
+   * @param host the host with the REST server
+   * @param port the port for the REST server
+   * @param database the database to access (default: configured database for
+   *            the REST server)
+   * @param securityContext the security context created depending upon the
+   *            authentication type - BasicAuthContext, DigestAuthContext or KerberosAuthContext
+   *            and communication channel type (SSL)
+   * @param connectionType whether the client connects directly to the MarkLogic host
+   *            or using a gateway such as a load balancer
+   * @param connectionConfig the connection pool and timeouts for the client
+   *            (default: the pool shared by all clients and no read or write timeouts)
+   * @return a new client for making database requests
+   */
+  static public DatabaseClient newClient(String host, int port, String database,
+                                         SecurityContext securityContext,
+                                         DatabaseClient.ConnectionType connectionType,
+                                         ConnectionConfig connectionConfig)
   {
     String user = null;
     Map<String,String> kerberosOptions = null;
@@ -1079,7 +1317,8 @@ public class DatabaseClientFactory {
     }
 
     OkHttpServices services = new OkHttpServices();
-    services.connect(host, port, database, user, password, kerberosOptions, type, sslContext, trustManager, sslVerifier);
+    services.connect(host, port, database, user, password, kerberosOptions, type, sslContext, trustManager, sslVerifier,
+      connectionConfig);
 
     if (clientConfigurator != null) {
       if ( clientConfigurator instanceof OkHttpClientConfigurator ) {
@@ -1100,6 +1339,7 @@ public class DatabaseClientFactory {
           services, host, port, database, securityContext, connectionType
     );
     client.setHandleRegistry(getHandleRegistry().copy());
+    client.setConnectionConfig(connectionConfig);
     return client;
   }
 
@@ -1294,6 +1534,7 @@ public class DatabaseClientFactory {
     private           String                externalName;
     private           SecurityContext       securityContext;
     private           DatabaseClient.ConnectionType connectionType;
+    private           ConnectionConfig      connectionConfig;
     private           HandleFactoryRegistry handleRegistry =
       HandleFactoryRegistryImpl.newDefault();
 
@@ -1522,6 +1763,22 @@ public class DatabaseClientFactory {
     public void setConnectionType(DatabaseClient.ConnectionType connectionType) {
       this.connectionType = connectionType;
     }
+    /**
+     * Returns the connection pool and timeouts for clients created with a
+     * DatabaseClientFactory.Bean object.
+     * @return	the connection config
+     */
+    public ConnectionConfig getConnectionConfig() {
+      return connectionConfig;
+    }
+    /**
+     * Specifies the connection pool and timeouts for clients created with a
+     * DatabaseClientFactory.Bean object.
+     * @param connectionConfig	the connection config
+     */
+    public void setConnectionConfig(ConnectionConfig connectionConfig) {
+      this.connectionConfig = connectionConfig;
+    }
 
     /**
      * Returns the registry for associating
@@ -1558,7 +1815,7 @@ public class DatabaseClientFactory {
 	public DatabaseClient newClient() {
       DatabaseClientImpl client = (DatabaseClientImpl) DatabaseClientFactory.newClient(
             host, port, database, (securityContext!=null? securityContext:makeSecurityContext(user, password, authentication, context, verifier)),
-            connectionType);
+            connectionType, connectionConfig);
       client.setHandleRegistry(getHandleRegistry().copy());
       return client;
     }
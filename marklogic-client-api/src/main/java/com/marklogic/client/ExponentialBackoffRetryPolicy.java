@@ -0,0 +1,305 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The default RetryPolicy, which waits an exponentially increasing delay with
+ * random jitter between retries.  Optionally, the policy can also
+ * <ul>
+ * <li>limit retries to a budget that is replenished by requests that succeed,
+ *   so that a cluster-wide outage doesn't multiply the load with retries</li>
+ * <li>open a circuit for a host after consecutive unavailable responses so
+ *   that requests to the host fail immediately instead of waiting out the
+ *   retry period, while requests to other hosts proceed</li>
+ * </ul>
+ *
+ * Unless {@link #withBackoff withBackoff} is called, the delays follow the
+ * schedule of earlier releases: about 125 milliseconds before the first
+ * retry, growing to about 2 seconds by the seventh retry.  When the server
+ * sends a Retry-After header, the policy waits the requested delay instead.
+ *
+ * The retry budget, circuit states and counters belong to the policy object,
+ * so only clients configured with the same policy share them.  A client
+ * that isn't configured with a policy gets its own instance of this policy.
+ *
+ * Example:
+ * <pre>{@code
+ *ConnectionConfig config = new ConnectionConfig()
+ *    .withRetryPolicy(new ExponentialBackoffRetryPolicy()
+ *        .withRetryBudget(100, 0.1)
+ *        .withCircuitBreaker(20, 5000));
+ *}</pre>
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+  // the schedule of delays used by default
+  private static final int DELAY_FLOOR      =  125;
+  private static final int DELAY_CEILING    = 2000;
+  private static final int DELAY_MULTIPLIER =   20;
+
+  private final Map<String, HostState> hostStates = new ConcurrentHashMap<>();
+
+  private long baseDelay  = 0;
+  private long maxBackoff = 0;
+
+  private int    maxBudget   = 0;
+  private double budgetRatio = 0;
+  private double budget      = 0;
+
+  private int  failureThreshold = 0;
+  private long openDuration     = 0;
+
+  public ExponentialBackoffRetryPolicy() {
+  }
+
+  /**
+   * Specifies the delay before the first retry and the maximum delay between
+   * retries.  The delay doubles with each retry up to the maximum, and the
+   * actual delay is a random value between half the delay and the delay.
+   * @param baseDelay	the delay in milliseconds before the first retry
+   * @param maxBackoff	the maximum delay in milliseconds between retries
+   * @return	this policy object for chaining
+   */
+  public ExponentialBackoffRetryPolicy withBackoff(long baseDelay, long maxBackoff) {
+    if (baseDelay < 1) throw new IllegalArgumentException("baseDelay must be positive");
+    if (maxBackoff < baseDelay) throw new IllegalArgumentException("maxBackoff must not be less than baseDelay");
+    this.baseDelay  = baseDelay;
+    this.maxBackoff = maxBackoff;
+    return this;
+  }
+
+  /**
+   * Limits the number of retries.  Each retry spends one token from a budget
+   * that starts full; each request that succeeds adds the token ratio back to
+   * the budget.  When the budget is empty, requests fail without retrying.
+   * @param maxBudget	the maximum number of tokens in the budget
+   * @param budgetRatio	the fraction of a token earned by each successful request
+   * @return	this policy object for chaining
+   */
+  public ExponentialBackoffRetryPolicy withRetryBudget(int maxBudget, double budgetRatio) {
+    if (maxBudget < 1) throw new IllegalArgumentException("maxBudget must be positive");
+    if (budgetRatio <= 0) throw new IllegalArgumentException("budgetRatio must be positive");
+    synchronized(this) {
+      this.maxBudget   = maxBudget;
+      this.budgetRatio = budgetRatio;
+      this.budget      = maxBudget;
+    }
+    return this;
+  }
+
+  /**
+   * Opens the circuit for a host after the host has responded as
+   * unavailable the specified number of times in a row.  While the circuit
+   * is open, requests to the host fail with a FailedRetryException.  After
+   * the open duration, one trial request is sent to the host and the circuit
+   * closes if the trial succeeds.
+   * @param failureThreshold	the number of consecutive unavailable responses that open the circuit
+   * @param openDuration	how long in milliseconds the circuit stays open
+   * @return	this policy object for chaining
+   */
+  public ExponentialBackoffRetryPolicy withCircuitBreaker(int failureThreshold, long openDuration) {
+    if (failureThreshold < 1) throw new IllegalArgumentException("failureThreshold must be positive");
+    if (openDuration < 1) throw new IllegalArgumentException("openDuration must be positive");
+    this.failureThreshold = failureThreshold;
+    this.openDuration     = openDuration;
+    return this;
+  }
+
+  /**
+   * Returns the delay before the first retry set by withBackoff().
+   * @return	the delay in milliseconds or 0 if the default schedule applies
+   */
+  public long getBaseDelay() {
+    return baseDelay;
+  }
+  /**
+   * Returns the maximum delay between retries set by withBackoff().
+   * @return	the delay in milliseconds or 0 if the default schedule applies
+   */
+  public long getMaxBackoff() {
+    return maxBackoff;
+  }
+  public int getMaxBudget() {
+    return maxBudget;
+  }
+  public double getBudgetRatio() {
+    return budgetRatio;
+  }
+  /**
+   * Returns the number of retries currently available in the budget.
+   * @return	the remaining budget or -1 if retries are not limited
+   */
+  public synchronized double getRemainingBudget() {
+    return (maxBudget == 0) ? -1 : budget;
+  }
+  public int getFailureThreshold() {
+    return failureThreshold;
+  }
+  public long getOpenDuration() {
+    return openDuration;
+  }
+
+  @Override
+  public boolean allowRequest(String host) {
+    HostState state = getHostState(host);
+    if (failureThreshold > 0 && !state.allowRequest(System.currentTimeMillis(), openDuration)) {
+      state.rejected.incrementAndGet();
+      return false;
+    }
+    state.attempts.incrementAndGet();
+    return true;
+  }
+
+  @Override
+  public void requestUnavailable(String host) {
+    HostState state = getHostState(host);
+    state.unavailable.incrementAndGet();
+    state.recordUnavailable(System.currentTimeMillis(), failureThreshold, openDuration);
+  }
+
+  @Override
+  public void requestSucceeded(String host) {
+    getHostState(host).recordSuccess();
+    if (maxBudget > 0) {
+      synchronized(this) {
+        budget = Math.min(maxBudget, budget + budgetRatio);
+      }
+    }
+  }
+
+  @Override
+  public long retryDelay(String host, int retry, long retryAfter) {
+    HostState state = getHostState(host);
+    if (maxBudget > 0) {
+      synchronized(this) {
+        if (budget < 1) {
+          state.budgetExhausted.incrementAndGet();
+          return -1;
+        }
+        budget--;
+      }
+    }
+    state.retries.incrementAndGet();
+
+    // the server knows best when it will be available again
+    if (retryAfter >= 0) return retryAfter;
+
+    if (baseDelay == 0) return defaultDelay(retry);
+
+    long backoff = Math.min(maxBackoff, baseDelay << Math.min(retry, 30));
+    if (backoff <= 0) backoff = maxBackoff;
+    long half  = backoff / 2;
+    return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+  }
+
+  private static long defaultDelay(int retry) {
+    int min   =
+      (retry  > 6) ? DELAY_CEILING :
+        (retry == 0) ? DELAY_FLOOR   :
+          DELAY_FLOOR + (1 << retry) * DELAY_MULTIPLIER;
+    int range =
+      (retry >  6) ? DELAY_FLOOR          :
+        (retry == 0) ? 2 * DELAY_MULTIPLIER :
+          (retry == 6) ? DELAY_CEILING - min  :
+            (1 << retry) * DELAY_MULTIPLIER;
+    return min + ThreadLocalRandom.current().nextInt(range);
+  }
+
+  @Override
+  public Map<String, HostStats> getHostStats() {
+    return Collections.unmodifiableMap(hostStates);
+  }
+
+  private HostState getHostState(String host) {
+    return hostStates.computeIfAbsent(host, key -> new HostState());
+  }
+
+  static class HostState implements HostStats {
+    final AtomicLong attempts        = new AtomicLong();
+    final AtomicLong retries         = new AtomicLong();
+    final AtomicLong unavailable     = new AtomicLong();
+    final AtomicLong rejected        = new AtomicLong();
+    final AtomicLong budgetExhausted = new AtomicLong();
+
+    private CircuitState circuitState = CircuitState.CLOSED;
+    private int  consecutiveUnavailable = 0;
+    private long openedAt     = 0;
+    private long trialStarted = 0;
+
+    synchronized boolean allowRequest(long now, long openDuration) {
+      switch (circuitState) {
+        case CLOSED:
+          return true;
+        case OPEN:
+          if (now - openedAt < openDuration) return false;
+          circuitState = CircuitState.HALF_OPEN;
+          trialStarted = now;
+          return true;
+        default:
+          // a trial that never reported back (for instance, because of an
+          // I/O error) doesn't hold the circuit half open forever
+          if (now - trialStarted < openDuration) return false;
+          trialStarted = now;
+          return true;
+      }
+    }
+
+    synchronized void recordUnavailable(long now, int failureThreshold, long openDuration) {
+      consecutiveUnavailable++;
+      if (failureThreshold <= 0) return;
+      if (circuitState == CircuitState.HALF_OPEN ||
+          (circuitState == CircuitState.CLOSED && consecutiveUnavailable >= failureThreshold)) {
+        circuitState = CircuitState.OPEN;
+        openedAt     = now;
+      }
+    }
+
+    synchronized void recordSuccess() {
+      consecutiveUnavailable = 0;
+      circuitState = CircuitState.CLOSED;
+    }
+
+    @Override
+    public long getAttempts() {
+      return attempts.get();
+    }
+    @Override
+    public long getRetries() {
+      return retries.get();
+    }
+    @Override
+    public long getUnavailable() {
+      return unavailable.get();
+    }
+    @Override
+    public long getRejected() {
+      return rejected.get();
+    }
+    @Override
+    public long getBudgetExhausted() {
+      return budgetExhausted.get();
+    }
+    @Override
+    public synchronized CircuitState getCircuitState() {
+      return circuitState;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client;
+
+import java.util.Map;
+
+/**
+ * A RetryPolicy decides whether and when a client retries a request that
+ * failed because the server was temporarily unavailable (for instance, during
+ * a restart).  The client still gives up when the retry period configured
+ * by the com.marklogic.client.maximumRetrySeconds and
+ * com.marklogic.client.minimumRetries properties has elapsed.
+ *
+ * Hosts are identified as host:port.  A policy may be shared by many
+ * DatabaseClients and must be thread safe.
+ *
+ * @see ExponentialBackoffRetryPolicy
+ */
+public interface RetryPolicy {
+  /**
+   * The retryAfter passed to {@link #retryDelay retryDelay} when the server
+   * didn't request a delay.
+   */
+  long NO_RETRY_AFTER = -1;
+
+  /**
+   * The state of the circuit breaker for a host.
+   */
+  enum CircuitState {
+    /** requests are sent to the host */
+    CLOSED,
+    /** requests fail immediately without being sent to the host */
+    OPEN,
+    /** a trial request is sent to find out whether the host has recovered */
+    HALF_OPEN
+  }
+
+  /**
+   * Called before each attempt to send a request to the host.
+   * @param host	the host:port that will receive the request
+   * @return	false if the request should fail without being sent
+   */
+  boolean allowRequest(String host);
+
+  /**
+   * Called when the host responded with a status that indicates that
+   * the host is temporarily unavailable.
+   * @param host	the host:port that responded
+   */
+  void requestUnavailable(String host);
+
+  /**
+   * Called when the host responded with any other status.
+   * @param host	the host:port that responded
+   */
+  void requestSucceeded(String host);
+
+  /**
+   * Returns how long to wait before retrying a request that the host
+   * reported as unavailable.  Called only when the retry period leaves room
+   * for another attempt, so a policy can count each call as a retry.
+   * @param host	the host:port that responded
+   * @param retry	the number of retries already made for the request
+   * @param retryAfter	the delay requested by the server with the Retry-After header in
+   *   milliseconds, which may be 0 to retry at once, or NO_RETRY_AFTER if the server didn't
+   *   request a delay
+   * @return	the delay in milliseconds or -1 if the request should not be retried
+   */
+  long retryDelay(String host, int retry, long retryAfter);
+
+  /**
+   * Returns the retry counters for each host that has received requests
+   * from the clients configured with this policy.
+   * @return	the counters keyed by host:port
+   */
+  Map<String, HostStats> getHostStats();
+
+  /**
+   * The retry counters for a host.
+   */
+  interface HostStats {
+    /**
+     * Returns the number of attempts sent to the host, including retries.
+     * @return	the count of attempts
+     */
+    long getAttempts();
+    /**
+     * Returns the number of retries sent to the host.
+     * @return	the count of retries
+     */
+    long getRetries();
+    /**
+     * Returns the number of responses reporting that the host was unavailable.
+     * @return	the count of unavailable responses
+     */
+    long getUnavailable();
+    /**
+     * Returns the number of requests that failed without being sent
+     * because the circuit for the host was open.
+     * @return	the count of rejected requests
+     */
+    long getRejected();
+    /**
+     * Returns the number of retries that were refused because the
+     * retry budget was exhausted.
+     * @return	the count of refused retries
+     */
+    long getBudgetExhausted();
+    /**
+     * Returns the current state of the circuit breaker for the host.
+     * @return	the circuit state
+     */
+    CircuitState getCircuitState();
+  }
+}
@@ -18,9 +18,10 @@ package com.marklogic.client.datamovement;
 import com.marklogic.client.impl.DatabaseClientImpl;
 import com.marklogic.client.document.ServerTransform;
 import com.marklogic.client.impl.RESTServices;
+import com.marklogic.client.io.BytesHandle;
 import com.marklogic.client.io.ReaderHandle;
-import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.util.RequestParameters;
+import com.marklogic.client.datamovement.impl.BatchMeters;
 import com.marklogic.client.datamovement.impl.QueryBatchImpl;
 
 import org.slf4j.Logger;
@@ -106,6 +107,8 @@ public class ApplyTransformListener implements QueryBatchListener {
   private List<QueryBatchListener> skippedListeners = new ArrayList<>();
   private List<BatchFailureListener<Batch<String>>> failureListeners = new ArrayList<>();
   private List<BatchFailureListener<QueryBatch>> queryBatchFailureListeners = new ArrayList<>();
+  private BatchMeters.ListenerMeters transformMeters =
+    new BatchMeters.ListenerMeters("marklogic.dmsdk.transform", "documents", "bytes.sent");
 
   public ApplyTransformListener() {
     logger.debug("new ApplyTransformListener - this should print once/job; " +
@@ -133,9 +136,11 @@ public class ApplyTransformListener implements QueryBatchListener {
     if ( ! (batch.getClient() instanceof DatabaseClientImpl) ) {
       throw new IllegalStateException("DatabaseClient must be instanceof DatabaseClientImpl");
     }
-    StringHandle uris = new StringHandle(String.join("\n", batch.getItems()))
-      .withMimetype("text/uri-list");
+    BytesHandle uris = batch.getUriList();
     RESTServices services = ((DatabaseClientImpl) batch.getClient()).getServices();
+    BatchMeters meters = transformMeters.forBatch(batch);
+    long startNanos = System.nanoTime();
+    boolean transformed = false;
     try {
       RequestParameters params = new RequestParameters();
       if ( transform != null ) transform.merge(params);
@@ -143,6 +148,8 @@ public class ApplyTransformListener implements QueryBatchListener {
       List<String> responseUris = new BufferedReader(
         services.postResource(null, "internal/apply-transform", null, params, uris, new ReaderHandle()).get()
       ).lines().collect(Collectors.toList());
+      transformed = true;
+      meters.batchFinished(System.nanoTime() - startNanos, responseUris.size(), uris.get().length, null);
       QueryBatchImpl processedBatch = new QueryBatchImpl()
         .withClient( batch.getClient() )
         .withItems( responseUris.toArray(new String[responseUris.size()]) )
@@ -176,6 +183,7 @@ public class ApplyTransformListener implements QueryBatchListener {
         }
       }
     } catch (Throwable t) {
+      if ( transformed == false ) meters.batchFinished(System.nanoTime() - startNanos, 0, -1, t);
       for ( BatchFailureListener<Batch<String>> listener : failureListeners ) {
         try {
           listener.processFailure(batch, t);
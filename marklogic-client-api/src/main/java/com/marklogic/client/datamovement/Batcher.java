@@ -16,6 +16,7 @@
 package com.marklogic.client.datamovement;
 
 import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.metrics.MetricsRegistry;
 
 import java.util.Calendar;
 
@@ -83,10 +84,86 @@ public interface Batcher {
   Batcher withThreadCount(int threadCount);
 
   /**
-   * @return the thread count
+   * @return the thread count (which changes while the job runs if
+   * {@link #withAdaptiveThreadCount withAdaptiveThreadCount} was called)
    */
   int getThreadCount();
 
+  /**
+   * <p>Lets the job resize its thread pool while it runs, based on the
+   * latency, throughput and failures of finished batches.  The job starts
+   * with the thread count from {@link #withThreadCount withThreadCount}
+   * (kept within the bounds) and, after each window of batches, adds one
+   * thread while batches finish without sign of overload.  It halves the
+   * thread count when batches fail because the server responded as
+   * unavailable (503 or 504) or requests timed out, and cuts it by a
+   * quarter when the average batch latency rises to more than twice the
+   * best observed latency.  A thread that was added is kept only if it
+   * raised the throughput.</p>
+   *
+   * <p>This method cannot be called after the job has started.</p>
+   *
+   * @param minThreadCount the fewest threads to use -- must be 1 or greater
+   * @param maxThreadCount the most threads to use -- must not be less than minThreadCount
+   *
+   * @return this instance (for method chaining)
+   */
+  Batcher withAdaptiveThreadCount(int minThreadCount, int maxThreadCount);
+
+  /**
+   * @return the fewest threads used by an adaptive job or 0 if the thread count is fixed
+   */
+  int getMinThreadCount();
+
+  /**
+   * @return the most threads used by an adaptive job or 0 if the thread count is fixed
+   */
+  int getMaxThreadCount();
+
+  /**
+   * Adds a listener which is notified each time an adaptive job resizes its
+   * thread pool.
+   *
+   * @param listener the code to run when the thread count changes
+   *
+   * @return this instance (for method chaining)
+   *
+   * @see #withAdaptiveThreadCount withAdaptiveThreadCount
+   */
+  Batcher onThreadCountChange(ThreadCountChangeListener listener);
+
+  /**
+   * @return the listeners notified when the thread count changes
+   */
+  ThreadCountChangeListener[] getThreadCountChangeListeners();
+
+  /**
+   * Sends measurements of this job to the registry: the latency, size and
+   * outcome of each batch per host (for writes) or per forest (for
+   * queries), retries, the depth of the queue of batches waiting for a
+   * thread and, from the stock listeners, the documents they process and
+   * the hosts they blacklist.  Every meter is tagged with the job name, so
+   * name the job before starting it to tell jobs apart.  The meter names
+   * start with "marklogic.dmsdk."; the write and query meters are
+   * documented on {@link WriteBatcher#withMetricsRegistry} and {@link
+   * QueryBatcher#withMetricsRegistry}.  Without a registry, measurements are
+   * discarded.
+   *
+   * <p>This method cannot be called after the job has started.</p>
+   *
+   * @param metricsRegistry the registry to receive the measurements
+   *
+   * @return this instance (for method chaining)
+   *
+   * @see com.marklogic.client.metrics.DefaultMetricsRegistry
+   */
+  Batcher withMetricsRegistry(MetricsRegistry metricsRegistry);
+
+  /**
+   * @return the registry receiving the measurements of this job
+   */
+  MetricsRegistry getMetricsRegistry();
+
   /**
    * @return the forest configuration in use by this job
    */
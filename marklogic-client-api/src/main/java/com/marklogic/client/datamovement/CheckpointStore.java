@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * Keeps the progress of a QueryBatcher job so that a job which dies part
+ * way through can be restarted where it left off.  The QueryBatcher saves a
+ * new checkpoint as batches are processed (at most once a second) and when
+ * the job completes or is stopped.
+ *
+ * Sample Usage:
+ *
+ * <pre>{@code
+ *     CheckpointStore store = new FileCheckpointStore(Paths.get("export-checkpoint.json"));
+ *     QueryBatcher batcher = dataMovementManager.newQueryBatcher(query)
+ *         .withConsistentSnapshot()
+ *         .withCheckpointStore(store)
+ *         .onUrisReady(exportListener);
+ *     QueryCheckpoint checkpoint = store.load();
+ *     if ( checkpoint != null ) batcher.resumeFrom(checkpoint);
+ *}</pre>
+ *
+ * @see QueryBatcher#withCheckpointStore
+ * @see FileCheckpointStore
+ */
+public interface CheckpointStore {
+  /**
+   * Replaces the saved checkpoint.  The QueryBatcher calls this from one
+   * thread at a time.
+   *
+   * @param checkpoint the progress of the job
+   */
+  void save(QueryCheckpoint checkpoint);
+
+  /**
+   * @return the saved checkpoint or null if none was saved
+   */
+  QueryCheckpoint load();
+}
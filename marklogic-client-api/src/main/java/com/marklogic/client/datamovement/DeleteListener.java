@@ -15,11 +15,16 @@
  */
 package com.marklogic.client.datamovement;
 
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.impl.BatchMeters;
+import com.marklogic.client.document.GenericDocumentManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>Sends a Java API bulk {@link com.marklogic.client.document.DocumentManager#delete(String...) delete}
@@ -66,6 +71,9 @@ public class DeleteListener implements QueryBatchListener {
   private static Logger logger = LoggerFactory.getLogger(DeleteListener.class);
   private List<BatchFailureListener<Batch<String>>> failureListeners = new ArrayList<>();
   private List<BatchFailureListener<QueryBatch>> queryBatchFailureListeners = new ArrayList<>();
+  private Map<DatabaseClient,GenericDocumentManager> docMgrs = new ConcurrentHashMap<>();
+  private BatchMeters.ListenerMeters deleteMeters =
+    new BatchMeters.ListenerMeters("marklogic.dmsdk.delete", "documents", null);
 
   public DeleteListener() {
     logger.debug("new DeleteListener - this should print once/job; " +
@@ -96,9 +104,13 @@ public class DeleteListener implements QueryBatchListener {
    */
   @Override
   public void processEvent(QueryBatch batch) {
+    BatchMeters meters = deleteMeters.forBatch(batch);
+    long startNanos = System.nanoTime();
     try {
-      batch.getClient().newDocumentManager().delete( batch.getItems() );
+      docMgrs.computeIfAbsent(batch.getClient(), DatabaseClient::newDocumentManager).delete( batch.getItems() );
+      meters.batchFinished(System.nanoTime() - startNanos, batch.getItems().length, -1, null);
     } catch (Throwable t) {
+      meters.batchFinished(System.nanoTime() - startNanos, 0, -1, t);
       for ( BatchFailureListener<Batch<String>> listener : failureListeners ) {
         try {
           listener.processFailure(batch, t);
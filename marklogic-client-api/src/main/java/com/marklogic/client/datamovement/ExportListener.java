@@ -15,23 +15,35 @@
  */
 package com.marklogic.client.datamovement;
 
+import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.document.DocumentManager;
 import com.marklogic.client.document.DocumentPage;
 import com.marklogic.client.document.DocumentRecord;
 import com.marklogic.client.document.GenericDocumentManager;
+import com.marklogic.client.datamovement.impl.BatchMeters;
 import com.marklogic.client.impl.GenericDocumentImpl;
 import com.marklogic.client.document.ServerTransform;
 import com.marklogic.client.io.Format;
+import com.marklogic.client.io.InputStreamHandle;
 import com.marklogic.client.query.QueryManager;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.function.Consumer;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>Reads document contents (and optionally metadata) for each batch, then sends
@@ -80,6 +92,14 @@ public class ExportListener implements QueryBatchListener {
   private boolean consistentSnapshot = false;
   private List<BatchFailureListener<Batch<String>>> failureListeners = new ArrayList<>();
   private List<BatchFailureListener<QueryBatch>> queryBatchFailureListeners = new ArrayList<>();
+  // a configured DocumentManager is thread safe, so each host's client needs only one
+  private Map<DatabaseClient,GenericDocumentManager> docMgrs = new ConcurrentHashMap<>();
+  // each thread copies content through the same buffer
+  private static ThreadLocal<byte[]> copyBuffers = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+  private BatchMeters.ListenerMeters exportMeters =
+    new BatchMeters.ListenerMeters("marklogic.dmsdk.export", "documents", null);
+  private BatchMeters.ListenerMeters writeMeters =
+    new BatchMeters.ListenerMeters("marklogic.dmsdk.export", "documents", "bytes.written");
 
   public ExportListener() {
     logger.debug("new ExportListener - this should print once/job; " +
@@ -87,10 +107,7 @@ public class ExportListener implements QueryBatchListener {
   }
 
   protected DocumentPage getDocs(QueryBatch batch) {
-    GenericDocumentManager docMgr = batch.getClient().newDocumentManager();
-    if ( view              != null ) docMgr.setSearchView(view);
-    if ( categories        != null ) docMgr.setMetadataCategories(categories);
-    if ( nonDocumentFormat != null ) docMgr.setNonDocumentFormat(nonDocumentFormat);
+    GenericDocumentManager docMgr = docMgrs.computeIfAbsent(batch.getClient(), this::newDocumentManager);
     if ( consistentSnapshot == true ) {
       return ((GenericDocumentImpl) docMgr).read( batch.getServerTimestamp(), transform, batch.getItems() );
     } else {
@@ -98,6 +115,70 @@ public class ExportListener implements QueryBatchListener {
     }
   }
 
+  /**
+   * Records an exported batch in the metrics registry of the job:
+   * marklogic.dmsdk.export.batch.duration, marklogic.dmsdk.export.documents,
+   * marklogic.dmsdk.export.batch.failures and, for listeners that write the
+   * documents, marklogic.dmsdk.export.bytes.written, tagged with the job and
+   * the host of the batch.
+   */
+  void batchExported(QueryBatch batch, long startNanos, long documents, long bytes, Throwable failure) {
+    (bytes >= 0 ? writeMeters : exportMeters).forBatch(batch)
+      .batchFinished(System.nanoTime() - startNanos, documents, bytes, failure);
+  }
+
+  /**
+   * Copies the content of a document to the channel as the bytes sent by
+   * the server.  The content is streamed from the response without being
+   * decoded to a String or held in memory, so binary documents can be
+   * copied too.  When the channel is a FileChannel, the content is
+   * transferred with {@link FileChannel#transferFrom FileChannel.transferFrom}
+   * at the channel's position, and the position is moved past it.  The
+   * content of a DocumentRecord can only be read once.
+   *
+   * @param doc the document whose content to copy
+   * @param channel where to write the content
+   * @return the number of bytes written
+   * @throws IOException if the content couldn't be read or written
+   */
+  protected static long writeContent(DocumentRecord doc, WritableByteChannel channel) throws IOException {
+    try ( InputStream content = doc.getContent(new InputStreamHandle()).get() ) {
+      if ( content == null ) return 0;
+      long written = 0;
+      if ( channel instanceof FileChannel ) {
+        FileChannel file = (FileChannel) channel;
+        ReadableByteChannel source = Channels.newChannel(content);
+        long transferred;
+        while ( (transferred = file.transferFrom(source, file.position(), 1024 * 1024)) > 0 ) {
+          file.position(file.position() + transferred);
+          written += transferred;
+        }
+      }
+      // transferFrom stops at the end of the content, but also if a read returns nothing
+      return written + copy(content, channel);
+    }
+  }
+
+  private static long copy(InputStream content, WritableByteChannel channel) throws IOException {
+    byte[] buffer = copyBuffers.get();
+    long written = 0;
+    int read;
+    while ( (read = content.read(buffer)) != -1 ) {
+      ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+      while ( bytes.hasRemaining() ) channel.write(bytes);
+      written += read;
+    }
+    return written;
+  }
+
+  private GenericDocumentManager newDocumentManager(DatabaseClient client) {
+    GenericDocumentManager docMgr = client.newDocumentManager();
+    if ( view              != null ) docMgr.setSearchView(view);
+    if ( categories        != null ) docMgr.setMetadataCategories(categories);
+    if ( nonDocumentFormat != null ) docMgr.setNonDocumentFormat(nonDocumentFormat);
+    return docMgr;
+  }
+
   /**
    * This implementation of initializeListener adds this instance of
    * ExportListener to the two RetryListener's in this QueryBatcher so they
@@ -125,17 +206,23 @@ public class ExportListener implements QueryBatchListener {
    */
   @Override
   public void processEvent(QueryBatch batch) {
+    long startNanos = System.nanoTime();
+    long documents = 0;
     try ( DocumentPage docs = getDocs(batch) ) {
       while ( docs.hasNext() ) {
+        DocumentRecord doc = docs.next();
+        documents++;
         for ( Consumer<DocumentRecord> listener : exportListeners ) {
           try {
-            listener.accept(docs.next());
+            listener.accept(doc);
           } catch (Throwable t) {
             logger.error("Exception thrown by an onDocumentReady listener", t);
           }
         }
       }
+      batchExported(batch, startNanos, documents, -1, null);
     } catch (Throwable t) {
+      batchExported(batch, startNanos, documents, -1, t);
       for ( BatchFailureListener<Batch<String>> listener : failureListeners ) {
         try {
           listener.processFailure(batch, t);
@@ -185,6 +272,7 @@ public class ExportListener implements QueryBatchListener {
    */
   public ExportListener withMetadataCategory(DocumentManager.Metadata category) {
     this.categories.add(category);
+    docMgrs.clear();
     return this;
   }
 
@@ -203,6 +291,7 @@ public class ExportListener implements QueryBatchListener {
    */
   public ExportListener withNonDocumentFormat(Format nonDocumentFormat) {
     this.nonDocumentFormat = nonDocumentFormat;
+    docMgrs.clear();
     return this;
   }
 
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.marklogic.client.document.DocumentManager;
+import com.marklogic.client.document.DocumentPage;
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.document.ServerTransform;
+import com.marklogic.client.io.Format;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>An extension of ExportListener which writes the contents of all
+ * documents to a single channel or OutputStream as the bytes sent by the
+ * server.  Unlike {@link ExportToWriterListener}, the contents are never
+ * decoded to Strings but streamed from the response to the channel (see
+ * {@link ExportListener#writeContent writeContent}), so binary documents
+ * can be exported and each document takes little memory however large it
+ * is.</p>
+ *
+ * <p>Each batch is streamed to the channel while holding the channel's
+ * lock, so batches aren't interleaved but the threads of the job take turns
+ * writing.  To let the threads write at the same time, use {@link
+ * ExportToFilesListener} instead.</p>
+ *
+ * <pre>{@code
+ *     try ( FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE) ) {
+ *       QueryBatcher exportJob = dataMovementManager.newQueryBatcher(query)
+ *         .onUrisReady(new ExportToChannelListener(channel).withRecordSuffix("\n"));
+ *       dataMovementManager.startJob(exportJob);
+ *       exportJob.awaitCompletion();
+ *       dataMovementManager.stopJob(exportJob);
+ *     }
+ *}</pre>
+ *
+ * <p>As with all the provided listeners, this listener will not meet the needs
+ * of all applications but the
+ * <a target="_blank" href="https://github.com/marklogic/java-client-api/blob/develop/src/main/java/com/marklogic/client/datamovement/ExportToChannelListener.java">source code</a>
+ * for it should serve as helpful sample code so you can write your own custom
+ * listeners.</p>
+ */
+public class ExportToChannelListener extends ExportListener {
+  private static Logger logger = LoggerFactory.getLogger(ExportToChannelListener.class);
+  private WritableByteChannel channel;
+  private byte[] prefix;
+  private byte[] suffix;
+
+  public ExportToChannelListener(WritableByteChannel channel) {
+    if ( channel == null ) throw new IllegalArgumentException("channel must not be null");
+    this.channel = channel;
+    logger.debug("new ExportToChannelListener - this should print once/job; " +
+      "if you see this once/batch, fix your job configuration");
+  }
+
+  /**
+   * Writes to the OutputStream through a channel.  The OutputStream is not
+   * closed by this listener.
+   *
+   * @param out where to write the contents
+   */
+  public ExportToChannelListener(OutputStream out) {
+    this(Channels.newChannel(out));
+  }
+
+  @Override
+  public void processEvent(QueryBatch batch) {
+    long startNanos = System.nanoTime();
+    long documents = 0;
+    long bytes = 0;
+    try ( DocumentPage docs = getDocs(batch) ) {
+      synchronized(channel) {
+        for ( DocumentRecord doc : docs ) {
+          try {
+            if ( prefix != null ) bytes += write(prefix);
+            bytes += writeContent(doc, channel);
+            if ( suffix != null ) bytes += write(suffix);
+            documents++;
+          } catch (IOException e) {
+            throw new DataMovementException("Failed to write document \"" + doc.getUri() + "\"", e);
+          }
+        }
+      }
+      batchExported(batch, startNanos, documents, bytes, null);
+    } catch (Throwable t) {
+      batchExported(batch, startNanos, documents, bytes, t);
+      for ( BatchFailureListener<Batch<String>> listener : getFailureListeners() ) {
+        try {
+          listener.processFailure(batch, t);
+        } catch (Throwable t2) {
+          logger.error("Exception thrown by an onBatchFailure listener", t2);
+        }
+      }
+      for ( BatchFailureListener<QueryBatch> queryBatchFailureListener : getBatchFailureListeners() ) {
+        try {
+          queryBatchFailureListener.processFailure(batch, t);
+        } catch (Throwable t2) {
+          logger.error("Exception thrown by an onFailure listener", t2);
+        }
+      }
+    }
+  }
+
+  private int write(byte[] bytes) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    while ( buffer.hasRemaining() ) channel.write(buffer);
+    return bytes.length;
+  }
+
+  /**
+   * Sets the string to write before each record, encoded as UTF-8.
+   *
+   * @param prefix the string prefix
+   * @return this instance (for method chaining)
+   */
+  public ExportToChannelListener withRecordPrefix(String prefix) {
+    this.prefix = (prefix == null) ? null : prefix.getBytes(StandardCharsets.UTF_8);
+    return this;
+  }
+
+  /**
+   * Sets the string to write after each record, encoded as UTF-8.
+   *
+   * @param suffix the string suffix
+   * @return this instance (for method chaining)
+   */
+  public ExportToChannelListener withRecordSuffix(String suffix) {
+    this.suffix = (suffix == null) ? null : suffix.getBytes(StandardCharsets.UTF_8);
+    return this;
+  }
+
+  // override the following just to narrow the return type
+  @Override
+  public ExportToChannelListener withTransform(ServerTransform transform) {
+    super.withTransform(transform);
+    return this;
+  }
+
+  @Override
+  public ExportToChannelListener withMetadataCategory(DocumentManager.Metadata category) {
+    super.withMetadataCategory(category);
+    return this;
+  }
+
+  @Override
+  public ExportToChannelListener withNonDocumentFormat(Format nonDocumentFormat) {
+    super.withNonDocumentFormat(nonDocumentFormat);
+    return this;
+  }
+
+  @Override
+  public ExportToChannelListener withConsistentSnapshot() {
+    super.withConsistentSnapshot();
+    return this;
+  }
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.marklogic.client.document.DocumentManager;
+import com.marklogic.client.document.DocumentPage;
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.document.ServerTransform;
+import com.marklogic.client.io.Format;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>An extension of ExportListener which writes the contents of the
+ * documents to files in a directory, spread over several shards so the
+ * threads of the job don't share one file.  Each shard writes to one file at
+ * a time and starts a new file when the current one reaches {@link
+ * #withMaxBytesPerFile withMaxBytesPerFile} or {@link #withMaxRecordsPerFile
+ * withMaxRecordsPerFile}.  The contents are streamed from the response to
+ * the files as the bytes sent by the server (see {@link
+ * ExportListener#writeContent writeContent}), so binary documents can be
+ * exported too, and each shard can be compressed with {@link #withGzip
+ * withGzip}.</p>
+ *
+ * <p>By default there is a shard per thread of the job.  The files are
+ * named {@code <prefix>-<shard>-<file number><suffix>} (for example
+ * export-002-00007.json.gz).  Existing files are never overwritten; a batch
+ * that would replace a file fails instead.</p>
+ *
+ * <p>Each batch is read into a buffer of the thread before it's appended to
+ * its shard, so the threads sharing a shard don't wait for each other's
+ * reads, and a batch that fails while it's read leaves nothing in the
+ * files.  A retry of the batch then writes it only once.  The buffer holds
+ * the contents of a whole batch, so choose the batch size with the size of
+ * the documents in mind.</p>
+ *
+ * <p>The files are closed by {@link #close close}, which stopJob calls once
+ * the job has stopped.  Batches processed after that fail instead of
+ * starting new files.</p>
+ *
+ * <pre>{@code
+ *     ExportToFilesListener exportListener = new ExportToFilesListener(Paths.get("/data/export"))
+ *       .withFileNameSuffix(".json")
+ *       .withRecordSuffix("\n")
+ *       .withMaxBytesPerFile(1024 * 1024 * 1024)
+ *       .withGzip();
+ *     QueryBatcher exportJob = dataMovementManager.newQueryBatcher(query)
+ *       .withThreadCount(8)
+ *       .onUrisReady(exportListener);
+ *     dataMovementManager.startJob(exportJob);
+ *     exportJob.awaitCompletion();
+ *     dataMovementManager.stopJob(exportJob);
+ *}</pre>
+ *
+ * <p>As with all the provided listeners, this listener will not meet the needs
+ * of all applications but the
+ * <a target="_blank" href="https://github.com/marklogic/java-client-api/blob/develop/src/main/java/com/marklogic/client/datamovement/ExportToFilesListener.java">source code</a>
+ * for it should serve as helpful sample code so you can write your own custom
+ * listeners.</p>
+ */
+public class ExportToFilesListener extends ExportListener implements AutoCloseable {
+  private static Logger logger = LoggerFactory.getLogger(ExportToFilesListener.class);
+  private Path directory;
+  private String fileNamePrefix = "export";
+  private String fileNameSuffix = ".txt";
+  private byte[] prefix;
+  private byte[] suffix;
+  private long maxBytesPerFile = Long.MAX_VALUE;
+  private long maxRecordsPerFile = Long.MAX_VALUE;
+  private boolean gzip = false;
+  private int shardCount = 0;
+  private boolean shardPerForest = false;
+  private Map<String,Shard> shards = new ConcurrentHashMap<>();
+  private AtomicInteger nextShard = new AtomicInteger(0);
+  private ThreadLocal<Integer> threadShards = ThreadLocal.withInitial(nextShard::getAndIncrement);
+  private List<Path> files = Collections.synchronizedList(new ArrayList<>());
+  // each thread reads its batches into the same buffer
+  private ThreadLocal<BatchBuffer> batchBuffers = ThreadLocal.withInitial(BatchBuffer::new);
+  private volatile boolean closed = false;
+
+  public ExportToFilesListener(Path directory) {
+    if ( directory == null ) throw new IllegalArgumentException("directory must not be null");
+    this.directory = directory;
+    logger.debug("new ExportToFilesListener - this should print once/job; " +
+      "if you see this once/batch, fix your job configuration");
+  }
+
+  /**
+   * This implementation of initializeListener adds this instance of
+   * ExportToFilesListener to the two RetryListener's in this QueryBatcher so
+   * they will retry any batches that fail during the read request.  It also
+   * defaults the shard count to the most threads the job can use.
+   */
+  @Override
+  public void initializeListener(QueryBatcher queryBatcher) {
+    super.initializeListener(queryBatcher);
+    if ( shardCount <= 0 ) {
+      shardCount = Math.max(1, Math.max(queryBatcher.getThreadCount(), queryBatcher.getMaxThreadCount()));
+    }
+  }
+
+  @Override
+  public void processEvent(QueryBatch batch) {
+    long startNanos = System.nanoTime();
+    long documents = 0;
+    long bytes = 0;
+    BatchBuffer buffer = batchBuffers.get();
+    buffer.clear();
+    try {
+      try ( DocumentPage docs = getDocs(batch) ) {
+        for ( DocumentRecord doc : docs ) {
+          buffer.addRecord(doc);
+        }
+      }
+      Shard shard = getShard(batch);
+      // threads only share a shard when there are more threads than shards
+      synchronized ( shard ) {
+        if ( closed ) {
+          throw new IllegalStateException("ExportToFilesListener is closed, so batch " +
+            batch.getJobBatchNumber() + " can't be written");
+        }
+        shard.write(buffer);
+      }
+      documents = buffer.getRecordCount();
+      bytes = buffer.size();
+      buffer.clear();
+      batchExported(batch, startNanos, documents, bytes, null);
+    } catch (Throwable t) {
+      buffer.clear();
+      batchExported(batch, startNanos, documents, bytes, t);
+      for ( BatchFailureListener<Batch<String>> listener : getFailureListeners() ) {
+        try {
+          listener.processFailure(batch, t);
+        } catch (Throwable t2) {
+          logger.error("Exception thrown by an onBatchFailure listener", t2);
+        }
+      }
+      for ( BatchFailureListener<QueryBatch> queryBatchFailureListener : getBatchFailureListeners() ) {
+        try {
+          queryBatchFailureListener.processFailure(batch, t);
+        } catch (Throwable t2) {
+          logger.error("Exception thrown by an onFailure listener", t2);
+        }
+      }
+    }
+  }
+
+  private Shard getShard(QueryBatch batch) {
+    String name;
+    if ( shardPerForest && batch.getForest() != null ) {
+      name = batch.getForest().getForestName();
+    } else {
+      int count = shardCount > 0 ? shardCount : 1;
+      name = String.format("%03d", threadShards.get() % count);
+    }
+    return shards.computeIfAbsent(name, Shard::new);
+  }
+
+  /**
+   * Closes the current file of each shard.  Batches processed after this
+   * fail instead of starting new files.  QueryBatcher calls this when the
+   * job is stopped.
+   *
+   * @throws DataMovementException if a file couldn't be closed
+   */
+  @Override
+  public void close() {
+    closed = true;
+    IOException failure = null;
+    for ( Shard shard : shards.values() ) {
+      synchronized ( shard ) {
+        try {
+          shard.closeFile();
+        } catch (IOException e) {
+          if ( failure == null ) failure = e;
+        }
+      }
+    }
+    if ( failure != null ) throw new DataMovementException("Failed to close export file", failure);
+  }
+
+  /**
+   * @return the files written so far in the order they were started
+   */
+  public List<Path> getFiles() {
+    synchronized ( files ) {
+      return new ArrayList<>(files);
+    }
+  }
+
+  /**
+   * Sets the start of the name of each file (by default "export").
+   *
+   * @param fileNamePrefix the start of the file names
+   * @return this instance (for method chaining)
+   */
+  public ExportToFilesListener withFileNamePrefix(String fileNamePrefix) {
+    if ( fileNamePrefix == null ) throw new IllegalArgumentException("fileNamePrefix must not be null");
+    this.fileNamePrefix = fileNamePrefix;
+    return this;
+  }
+
+  /**
+   * Sets the end of the name of each file (by default ".txt").  When the
+   * files are compressed, ".gz" is added after the suffix.
+   *
+   * @param fileNameSuffix the end of the file names
+   * @return this instance (for method chaining)
+   */
+  public ExportToFilesListener withFileNameSuffix(String fileNameSuffix) {
+    if ( fileNameSuffix == null ) throw new IllegalArgumentException("fileNameSuffix must not be null");
+    this.fileNameSuffix = fileNameSuffix;
+    return this;
+  }
+
+  /**
+   * Sets the string to write before each record, encoded as UTF-8.
+   *
+   * @param prefix the string prefix
+   * @return this instance (for method chaining)
+   */
+  public ExportToFilesListener withRecordPrefix(String prefix) {
+    this.prefix = (prefix == null) ? null : prefix.getBytes(StandardCharsets.UTF_8);
+    return this;
+  }
+
+  /**
+   * Sets the string to write after each record, encoded as UTF-8.
+   *
+   * @param suffix the string suffix
+   * @return this instance (for method chaining)
+   */
+  public ExportToFilesListener withRecordSuffix(String suffix) {
+    this.suffix = (suffix == null) ? null : suffix.getBytes(StandardCharsets.UTF_8);
+    return this;
+  }
+
+  /**
+   * Starts a new file for a shard once its current file has at least this
+   * many bytes (counted before compression).  Records aren't split across
+   * files, so a file can end up larger by the size of its last record.
+   *
+   * @param maxBytesPerFile the size at which to start a new file
+   * @return this instance (for method chaining)
+   */
+  public ExportToFilesListener withMaxBytesPerFile(long maxBytesPerFile) {
+    if ( maxBytesPerFile <= 0 ) throw new IllegalArgumentException("maxBytesPerFile must be 1 or greater");
+    this.maxBytesPerFile = maxBytesPerFile;
+    return this;
+  }
+
+  /**
+   * Starts a new file for a shard once its current file has this many records.
+   *
+   * @param maxRecordsPerFile the most records in each file
+   * @return this instance (for method chaining)
+   */
+  public ExportToFilesListener withMaxRecordsPerFile(long maxRecordsPerFile) {
+    if ( maxRecordsPerFile <= 0 ) throw new IllegalArgumentException("maxRecordsPerFile must be 1 or greater");
+    this.maxRecordsPerFile = maxRecordsPerFile;
+    return this;
+  }
+
+  /**
+   * Compresses each file as a gzip stream while it's written.
+   *
+   * @return this instance (for method chaining)
+   */
+  public ExportToFilesListener withGzip() {
+    this.gzip = true;
+    return this;
+  }
+
+  /**
+   * Sets the number of shards.  Threads are assigned to the shards in turn,
+   * so with fewer shards than threads some threads take turns writing to a
+   * shard.  By default there is a shard for each thread the job can use.
+   *
+   * @param shardCount the number of shards
+   * @return this instance (for method chaining)
+   */
+  public ExportToFilesListener withShardCount(int shardCount) {
+    if ( shardCount <= 0 ) throw new IllegalArgumentException("shardCount must be 1 or greater");
+    this.shardCount = shardCount;
+    return this;
+  }
+
+  /**
+   * Writes the documents from each forest to their own shard, named for the
+   * forest, instead of a shard per thread.  The threads paging the same
+   * forest take turns writing to its shard.
+   *
+   * @return this instance (for method chaining)
+   */
+  public ExportToFilesListener withShardPerForest() {
+    this.shardPerForest = true;
+    return this;
+  }
+
+  // override the following just to narrow the return type
+  @Override
+  public ExportToFilesListener withTransform(ServerTransform transform) {
+    super.withTransform(transform);
+    return this;
+  }
+
+  @Override
+  public ExportToFilesListener withMetadataCategory(DocumentManager.Metadata category) {
+    super.withMetadataCategory(category);
+    return this;
+  }
+
+  @Override
+  public ExportToFilesListener withNonDocumentFormat(Format nonDocumentFormat) {
+    super.withNonDocumentFormat(nonDocumentFormat);
+    return this;
+  }
+
+  @Override
+  public ExportToFilesListener withConsistentSnapshot() {
+    super.withConsistentSnapshot();
+    return this;
+  }
+
+  /* The records of one batch, with the prefix and suffix of each record,
+   * and the offset where each record ends so a shard can start a new file
+   * between records.
+   */
+  private class BatchBuffer extends ByteArrayOutputStream {
+    private final WritableByteChannel channel = Channels.newChannel(this);
+    private int[] recordEnds = new int[64];
+    private int recordCount = 0;
+
+    void addRecord(DocumentRecord doc) throws IOException {
+      if ( prefix != null ) write(prefix);
+      writeContent(doc, channel);
+      if ( suffix != null ) write(suffix);
+      if ( recordCount == recordEnds.length ) {
+        recordEnds = Arrays.copyOf(recordEnds, recordCount * 2);
+      }
+      recordEnds[recordCount++] = count;
+    }
+
+    int getRecordCount() {
+      return recordCount;
+    }
+
+    // returns the bytes of a record, which stay valid until the buffer is cleared
+    ByteBuffer getRecord(int record) {
+      int start = (record == 0) ? 0 : recordEnds[record - 1];
+      return ByteBuffer.wrap(buf, start, recordEnds[record] - start);
+    }
+
+    void clear() {
+      reset();
+      recordCount = 0;
+    }
+  }
+
+  /* The files of one shard.  All methods must be called while holding the
+   * shard's lock.  A file is opened when its first record is written, so
+   * there are no empty files.
+   */
+  private class Shard {
+    private final String name;
+    private int fileNumber = 0;
+    private WritableByteChannel channel;
+    private long bytes = 0;
+    private long records = 0;
+
+    Shard(String name) {
+      this.name = name;
+    }
+
+    void write(BatchBuffer batch) {
+      try {
+        for ( int i=0; i < batch.getRecordCount(); i++ ) {
+          if ( channel != null && (bytes >= maxBytesPerFile || records >= maxRecordsPerFile) ) closeFile();
+          if ( channel == null ) openFile();
+          ByteBuffer record = batch.getRecord(i);
+          bytes += record.remaining();
+          while ( record.hasRemaining() ) channel.write(record);
+          records++;
+        }
+      } catch (IOException e) {
+        throw new DataMovementException("Failed to write to export shard \"" + name + "\"", e);
+      }
+    }
+
+    private void openFile() throws IOException {
+      fileNumber++;
+      String fileName = String.format("%s-%s-%05d%s%s", fileNamePrefix, name, fileNumber,
+        fileNameSuffix, gzip ? ".gz" : "");
+      Path path = directory.resolve(fileName);
+      Files.createDirectories(directory);
+      FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      if ( gzip ) {
+        try {
+          channel = Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(file), 64 * 1024));
+        } catch (IOException e) {
+          file.close();
+          throw e;
+        }
+      } else {
+        channel = file;
+      }
+      bytes = 0;
+      records = 0;
+      files.add(path);
+      logger.debug("Started export file {}", path);
+    }
+
+    void closeFile() throws IOException {
+      if ( channel == null ) return;
+      try {
+        channel.close();
+      } finally {
+        channel = null;
+      }
+    }
+  }
+}
@@ -20,6 +20,8 @@ import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.marklogic.client.document.DocumentManager;
 import com.marklogic.client.document.DocumentPage;
@@ -43,6 +45,14 @@ import org.slf4j.LoggerFactory;
  * metadata, make sure to call {@link #withMetadataCategory withMetadataCategory}
  * to configure which categories of metadata you desire.</p>
  *
+ * <p>By default each batch is written while holding the Writer's lock, so the
+ * threads of the job take turns retrieving the contents of their documents
+ * as Strings.  To let the threads do that at the same time, call {@link
+ * #withParallelRendering withParallelRendering} or {@link
+ * #withBatchOrderPreserved withBatchOrderPreserved}.  To export binary
+ * documents, or to write the contents without decoding them to Strings,
+ * use {@link ExportToChannelListener} or {@link ExportToFilesListener}.</p>
+ *
  * <p>As with all the provided listeners, this listener will not meet the needs
  * of all applications but the
  * <a target="_blank" href="https://github.com/marklogic/java-client-api/blob/develop/src/main/java/com/marklogic/client/datamovement/ExportToWriterListener.java">source code</a>
@@ -55,6 +65,14 @@ public class ExportToWriterListener extends ExportListener {
   private String suffix;
   private String prefix;
   private List<OutputListener> outputListeners = new ArrayList<>();
+  private boolean parallelRendering = false;
+  private boolean batchOrderPreserved = false;
+  // each thread renders its batches into the same buffer
+  private ThreadLocal<StringBuilder> renderBuffers = ThreadLocal.withInitial(StringBuilder::new);
+  // the turns to write, in the order the batches arrived (guarded by the writer's lock)
+  private AtomicLong turns = new AtomicLong(0);
+  private long nextTurn = 0;
+  private Set<Long> skippedTurns = new HashSet<>();
 
   public ExportToWriterListener(Writer writer) {
     this.writer = writer;
@@ -83,56 +101,165 @@ public class ExportToWriterListener extends ExportListener {
 
   @Override
   public void processEvent(QueryBatch batch) {
+    if ( parallelRendering == true ) {
+      processEventInParallel(batch);
+      return;
+    }
+    long startNanos = System.nanoTime();
+    long documents = 0;
     try ( DocumentPage docs = getDocs(batch) ) {
       synchronized(writer) {
         for ( DocumentRecord doc : docs ) {
-          Format format = doc.getFormat();
-          if ( Format.BINARY.equals(format) ) {
-            throw new IllegalStateException("Document " + doc.getUri() +
-              " is binary and cannot be written.  Change your query to not select any binary documents.");
-          } else {
-            try {
-              if ( prefix != null ) writer.write( prefix );
-              if ( outputListeners.size() > 0 ) {
-                for ( OutputListener listener : outputListeners ) {
-                  String output = null;
-                  try {
-                    output = listener.generateOutput(doc);
-                  } catch (Throwable t) {
-                    logger.error("Exception thrown by an onGenerateOutput listener", t);
-                  }
-                  if ( output != null ) {
-                    writer.write( output );
-                  }
-                }
-              } else {
-                writer.write( doc.getContent(new StringHandle()).get() );
-              }
-              if ( suffix != null ) writer.write( suffix );
-            } catch (IOException e) {
-              throw new DataMovementException("Failed to write document \"" + doc.getUri() + "\"", e);
-            }
-          }
+          writeRecord(writer, doc);
+          documents++;
         }
       }
+      batchExported(batch, startNanos, documents, -1, null);
     } catch (Throwable t) {
-      for ( BatchFailureListener<Batch<String>> listener : getFailureListeners() ) {
-        try {
-          listener.processFailure(batch, t);
-        } catch (Throwable t2) {
-          logger.error("Exception thrown by an onBatchFailure listener", t2);
+      batchExported(batch, startNanos, documents, -1, t);
+      processFailure(batch, t);
+    }
+  }
+
+  /* Renders the batch into this thread's buffer without holding the lock,
+   * then writes the buffer while holding it.  To preserve the batch order,
+   * each batch takes a turn when it arrives and waits for the batches that
+   * arrived before it to be written.  A batch that fails gives up its turn
+   * before the failure listeners run, so a retry doesn't wait for itself,
+   * and empties the buffer, since a retry on this thread renders into it.
+   */
+  private void processEventInParallel(QueryBatch batch) {
+    long turn = batchOrderPreserved ? turns.getAndIncrement() : -1;
+    boolean written = false;
+    StringBuilder buffer = renderBuffers.get();
+    buffer.setLength(0);
+    long startNanos = System.nanoTime();
+    long documents = 0;
+    try {
+      try ( DocumentPage docs = getDocs(batch) ) {
+        for ( DocumentRecord doc : docs ) {
+          writeRecord(buffer, doc);
+          documents++;
         }
       }
-      for ( BatchFailureListener<QueryBatch> queryBatchFailureListener : getBatchFailureListeners() ) {
+      synchronized(writer) {
+        if ( batchOrderPreserved ) {
+          while ( nextTurn != turn ) writer.wait();
+        }
         try {
-          queryBatchFailureListener.processFailure(batch, t);
-        } catch (Throwable t2) {
-          logger.error("Exception thrown by an onFailure listener", t2);
+          writer.append(buffer);
+        } catch (IOException e) {
+          throw new DataMovementException("Failed to write batch " + batch.getJobBatchNumber(), e);
+        } finally {
+          written = true;
+          if ( batchOrderPreserved ) endTurn(turn);
+        }
+      }
+      batchExported(batch, startNanos, documents, -1, null);
+    } catch (Throwable t) {
+      if ( batchOrderPreserved && written == false ) {
+        synchronized(writer) {
+          endTurn(turn);
+        }
+      }
+      if ( t instanceof InterruptedException ) Thread.currentThread().interrupt();
+      buffer.setLength(0);
+      batchExported(batch, startNanos, documents, -1, t);
+      processFailure(batch, t);
+    }
+  }
+
+  // must be called while holding the writer's lock
+  private void endTurn(long turn) {
+    if ( turn != nextTurn ) {
+      // the batches before this one will skip it when they're written
+      skippedTurns.add(turn);
+      return;
+    }
+    nextTurn++;
+    while ( skippedTurns.remove(nextTurn) ) nextTurn++;
+    writer.notifyAll();
+  }
+
+  private void writeRecord(Appendable out, DocumentRecord doc) {
+    Format format = doc.getFormat();
+    if ( Format.BINARY.equals(format) ) {
+      throw new IllegalStateException("Document " + doc.getUri() +
+        " is binary and cannot be written.  Change your query to not select any binary documents.");
+    } else {
+      try {
+        if ( prefix != null ) out.append( prefix );
+        if ( outputListeners.size() > 0 ) {
+          for ( OutputListener listener : outputListeners ) {
+            String output = null;
+            try {
+              output = listener.generateOutput(doc);
+            } catch (Throwable t) {
+              logger.error("Exception thrown by an onGenerateOutput listener", t);
+            }
+            if ( output != null ) {
+              out.append( output );
+            }
+          }
+        } else {
+          out.append( doc.getContent(new StringHandle()).get() );
         }
+        if ( suffix != null ) out.append( suffix );
+      } catch (IOException e) {
+        throw new DataMovementException("Failed to write document \"" + doc.getUri() + "\"", e);
+      }
+    }
+  }
+
+  private void processFailure(QueryBatch batch, Throwable t) {
+    for ( BatchFailureListener<Batch<String>> listener : getFailureListeners() ) {
+      try {
+        listener.processFailure(batch, t);
+      } catch (Throwable t2) {
+        logger.error("Exception thrown by an onBatchFailure listener", t2);
+      }
+    }
+    for ( BatchFailureListener<QueryBatch> queryBatchFailureListener : getBatchFailureListeners() ) {
+      try {
+        queryBatchFailureListener.processFailure(batch, t);
+      } catch (Throwable t2) {
+        logger.error("Exception thrown by an onFailure listener", t2);
       }
     }
   }
 
+  /**
+   * Retrieves and renders the documents of each batch (including calling
+   * the OutputListeners registered with onGenerateOutput) without holding
+   * the Writer's lock, then writes the output of the whole batch while
+   * holding it, so the threads of the job render batches at the same time.
+   * Each thread keeps a buffer as large as the largest batch it rendered.
+   * If any document of a batch fails to render, nothing from the batch is
+   * written.  Batches are written in the order they finish rendering.
+   *
+   * @return this instance (for method chaining)
+   */
+  public ExportToWriterListener withParallelRendering() {
+    this.parallelRendering = true;
+    return this;
+  }
+
+  /**
+   * Like {@link #withParallelRendering withParallelRendering}, but writes
+   * the batches in the order they were passed to this listener.  A batch
+   * that finishes rendering early waits for the batches before it to be
+   * written, so one slow batch holds up the threads behind it.  A batch
+   * that fails is skipped, and if it's retried it's written in the order
+   * of the retry.
+   *
+   * @return this instance (for method chaining)
+   */
+  public ExportToWriterListener withBatchOrderPreserved() {
+    this.parallelRendering = true;
+    this.batchOrderPreserved = true;
+    return this;
+  }
+
   /**
    * Sets the string suffix to append to the writer after each record.
    *
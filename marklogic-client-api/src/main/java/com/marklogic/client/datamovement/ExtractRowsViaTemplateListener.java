@@ -30,8 +30,8 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.marklogic.client.MarkLogicIOException;
 import com.marklogic.client.expression.PlanBuilder;
+import com.marklogic.client.io.BytesHandle;
 import com.marklogic.client.io.JacksonParserHandle;
-import com.marklogic.client.io.StringHandle;
 
 import com.marklogic.client.impl.RESTServices;
 import com.marklogic.client.impl.DatabaseClientImpl;
@@ -185,8 +185,7 @@ public class ExtractRowsViaTemplateListener implements QueryBatchListener, AutoC
    * create an iterator out of it.
    */
   private Iterable<TypedRow> getTypedRows(QueryBatch batch) throws IOException {
-    StringHandle uris = new StringHandle(String.join("\n", batch.getItems()))
-      .withMimetype("text/uri-list");
+    BytesHandle uris = batch.getUriList();
     RESTServices services = ((DatabaseClientImpl) batch.getClient()).getServices();
     RequestParameters params = new RequestParameters();
     for ( String templateUri : templateUris ) params.add("template", templateUri);
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.marklogic.client.MarkLogicIOException;
+
+/**
+ * Saves QueryBatcher checkpoints as JSON in a local file.  Each checkpoint
+ * is written to a temporary file in the same directory which then replaces
+ * the file, so the file always holds a complete checkpoint even if the
+ * process dies while saving.
+ *
+ * @see QueryBatcher#withCheckpointStore
+ */
+public class FileCheckpointStore implements CheckpointStore {
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private final Path file;
+
+  /**
+   * @param file the file holding the checkpoint (it need not exist yet)
+   */
+  public FileCheckpointStore(Path file) {
+    if ( file == null ) throw new IllegalArgumentException("file must not be null");
+    this.file = file.toAbsolutePath();
+  }
+
+  /**
+   * @return the file holding the checkpoint
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  @Override
+  public void save(QueryCheckpoint checkpoint) {
+    ObjectNode json = mapper.createObjectNode();
+    json.put("serverTimestamp", checkpoint.getServerTimestamp());
+    ArrayNode forests = json.putArray("forests");
+    for ( QueryCheckpoint.ForestProgress progress : checkpoint.getForests().values() ) {
+      ObjectNode forest = forests.addObject();
+      forest.put("forestId", progress.getForestId());
+      forest.put("forestName", progress.getForestName());
+      forest.put("batchesProcessed", progress.getBatchesProcessed());
+      forest.put("resultsProcessed", progress.getResultsProcessed());
+      if ( progress.getLastUri() != null ) forest.put("lastUri", progress.getLastUri());
+      forest.put("done", progress.isDone());
+    }
+    try {
+      Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try {
+        mapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), json);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      throw new MarkLogicIOException("Failed to save checkpoint to " + file, e);
+    }
+  }
+
+  @Override
+  public QueryCheckpoint load() {
+    if ( Files.exists(file) == false ) return null;
+    try {
+      JsonNode json = mapper.readTree(file.toFile());
+      List<QueryCheckpoint.ForestProgress> forests = new ArrayList<>();
+      for ( JsonNode forest : json.path("forests") ) {
+        forests.add(new QueryCheckpoint.ForestProgress(
+          forest.path("forestId").asText(),
+          forest.path("forestName").asText(null),
+          forest.path("batchesProcessed").asLong(),
+          forest.path("resultsProcessed").asLong(),
+          forest.hasNonNull("lastUri") ? forest.get("lastUri").asText() : null,
+          forest.path("done").asBoolean()));
+      }
+      return new QueryCheckpoint(json.path("serverTimestamp").asLong(-1), forests);
+    } catch (IOException e) {
+      throw new MarkLogicIOException("Failed to load checkpoint from " + file, e);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * Predicts the forest where the database will place a document so that
+ * WriteBatcher can send the document to the host that manages the forest.
+ * The database still decides where each document is placed, so a
+ * prediction that doesn't match the database costs only the forwarding of
+ * the document between hosts.
+ *
+ * <p>The client doesn't include a selector for the database assignment
+ * policies.  The bucket, legacy and segment policies place a document by a
+ * hash of its uri that the server doesn't publish, so a client-side
+ * approximation would mostly predict the wrong forest.  Routing is useful
+ * when the application knows the placement, for instance with the range or
+ * query policies when the partition follows from the uri, or with forests
+ * that the application assigns itself.  Without a selector, WriteBatcher
+ * sends batches round-robin.</p>
+ *
+ * Sample Usage:
+ *
+ * <pre>{@code
+ *     WriteBatcher batcher = dataMovementManager.newWriteBatcher()
+ *         .withForestSelector((uri, forests) -> forests[myPolicy.placementIndex(uri, forests.length)]);
+ *}</pre>
+ *
+ * @see WriteBatcher#withForestSelector
+ */
+public interface ForestSelector {
+  /**
+   * Returns the forest expected to receive the document.  This method is
+   * called by the threads that add documents and must be thread safe.
+   *
+   * @param uri the uri of the document
+   * @param forests the updateable forests of the database in the order
+   *   returned by the ForestConfiguration
+   * @return the forest or null to send the document round-robin
+   */
+  Forest selectForest(String uri, Forest[] forests);
+}
@@ -62,6 +62,10 @@ import java.util.concurrent.TimeUnit;
  * {@link WriteBatcher#getBatchFailureListeners()} or {@link
  * QueryBatcher#getQueryFailureListeners()}.</p>
  *
+ * <p>Each time a host is blacklisted, the marklogic.dmsdk.host.blacklisted
+ * counter (tagged with the job and host) is incremented in the batcher's
+ * {@link Batcher#withMetricsRegistry metrics registry}.</p>
+ *
  */
 public class HostAvailabilityListener implements QueryFailureListener, WriteFailureListener {
   private static Logger logger = LoggerFactory.getLogger(HostAvailabilityListener.class);
@@ -276,6 +280,8 @@ public class HostAvailabilityListener implements QueryFailureListener, WriteFail
           filteredForestConfig = filteredForestConfig.withRenamedHost(host, randomAvailableHost);
         }
         batcher.withForestConfig(filteredForestConfig);
+        String jobName = (batcher.getJobName() == null) ? "" : batcher.getJobName();
+        batcher.getMetricsRegistry().counter("marklogic.dmsdk.host.blacklisted", "job", jobName, "host", host).increment();
         scheduleForestResynch(batcher, host);
       } else {
         // by black-listing this host we'd move below minHosts, so it's time to
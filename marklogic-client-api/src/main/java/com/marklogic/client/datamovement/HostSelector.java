@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * Chooses the host that receives each batch written by a WriteBatcher.
+ * Without a HostSelector, batches go round-robin to the hosts, so a host
+ * that is busy (for example, merging) gets the same share as an idle host
+ * and the slowest host decides how long the job takes.  A HostSelector can
+ * instead favor hosts with fewer batches in flight or faster responses.
+ *
+ * Sample Usage:
+ *
+ * <pre>{@code
+ *     WriteBatcher batcher = dataMovementManager.newWriteBatcher()
+ *         .withHostSelector(new LeastLoadedHostSelector());
+ *}</pre>
+ *
+ * Batches for documents routed by a {@link ForestSelector} always go to the
+ * host of the forest and don't consult the HostSelector.
+ *
+ * @see WriteBatcher#withHostSelector
+ * @see LeastLoadedHostSelector
+ */
+public interface HostSelector {
+  /**
+   * Returns the host to receive the next batch.  This method is called by
+   * the threads that add documents and write batches, so it must be thread
+   * safe and should return quickly.
+   *
+   * @param hosts the hosts available to the job with their current load
+   * @param batchNumber the job batch number of the batch
+   * @return one of the hosts or null to choose the host round-robin
+   */
+  HostLoad selectHost(HostLoad[] hosts, long batchNumber);
+
+  /**
+   * The load observed by the WriteBatcher on one host.
+   */
+  interface HostLoad {
+    /**
+     * @return the name of the host
+     */
+    String getHostName();
+
+    /**
+     * @return the number of batches sent to the host (or queued for it) that
+     *   haven't finished
+     */
+    int getInFlightBatches();
+
+    /**
+     * @return the moving average of the time in milliseconds to write a
+     *   batch to the host, or 0 if no batch has been written successfully yet
+     */
+    double getAverageLatency();
+
+    /**
+     * @return the number of batches the host has finished
+     */
+    long getFinishedBatches();
+  }
+}
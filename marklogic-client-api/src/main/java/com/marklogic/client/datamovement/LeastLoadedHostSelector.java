@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A HostSelector that sends each batch to the less loaded of two randomly
+ * chosen hosts ("power of two choices").  The load of a host is its average
+ * batch latency multiplied by the number of batches it would have in flight
+ * with the new batch, which estimates how long the new batch would wait.
+ * Comparing two random hosts instead of all hosts keeps the selectors of
+ * many concurrent jobs from all piling onto the same idle host.
+ *
+ * A host that hasn't written a batch successfully yet has no latency to
+ * compare, so when either of the two hosts is unmeasured the host with fewer
+ * batches in flight wins.  Each host is still measured early in the job but
+ * an unmeasured host doesn't draw every batch until its first one finishes.
+ */
+public class LeastLoadedHostSelector implements HostSelector {
+  public LeastLoadedHostSelector() {
+  }
+
+  @Override
+  public HostLoad selectHost(HostLoad[] hosts, long batchNumber) {
+    if ( hosts == null || hosts.length == 0 ) return null;
+    if ( hosts.length == 1 ) return hosts[0];
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first  = random.nextInt(hosts.length);
+    int second = random.nextInt(hosts.length - 1);
+    if ( second >= first ) second++;
+    HostLoad firstHost  = hosts[first];
+    HostLoad secondHost = hosts[second];
+    if ( firstHost.getAverageLatency() <= 0 || secondHost.getAverageLatency() <= 0 ) {
+      return (secondHost.getInFlightBatches() < firstHost.getInFlightBatches()) ? secondHost : firstHost;
+    }
+    return (load(secondHost) < load(firstHost)) ? secondHost : firstHost;
+  }
+
+  /**
+   * Estimates the time a new batch would take on a host that has an average
+   * latency.  Subclasses can override this to weigh hosts differently.
+   *
+   * @param host the host with its current load
+   * @return the load of the host -- lower values are preferred
+   */
+  protected double load(HostLoad host) {
+    return (host.getInFlightBatches() + 1) * host.getAverageLatency();
+  }
+
+  @Override
+  public String toString() {
+    return "LeastLoadedHostSelector";
+  }
+}
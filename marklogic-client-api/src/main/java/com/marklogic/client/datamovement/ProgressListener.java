@@ -98,12 +98,17 @@ public class ProgressListener implements QueryBatchListener {
 
 	/**
 	 * Initializes the start time so that each ProgressUpdate knows how long it occurred after the job was started.
+	 * If the total results weren't given and the QueryBatcher estimated them (see
+	 * {@link QueryBatcher#withCountFirst()}), the estimate is used as the total.
 	 *
 	 * @param queryBatcher
 	 */
 	@Override
 	public void initializeListener(QueryBatcher queryBatcher) {
 		startTime = System.currentTimeMillis();
+		if (totalResults <= 0 && queryBatcher.getEstimatedTotalResults() > 0) {
+			totalResults = queryBatcher.getEstimatedTotalResults();
+		}
 	}
 
 	/**
@@ -15,7 +15,10 @@
  */
 package com.marklogic.client.datamovement;
 
-import java.util.Calendar;
+import java.nio.charset.StandardCharsets;
+
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.Format;
 
 /** A group of uris retrieved from the Iterator or matches to the
  * QueryDefinition for this QueryBatcher job.
@@ -27,4 +30,29 @@ public interface QueryBatch extends QueryEvent, Batch<String> {
    * @return the numeric timestamp at which this query was run
    */
   long getServerTimestamp();
+
+  /** The time spent retrieving this batch of uris from the forest (if this
+   * job is based on a QueryDefinition).  Comparing the retrieval times of
+   * early and late batches in a forest shows whether deep pages are getting
+   * slower (see {@link QueryBatcher#withCursorPaging}).
+   *
+   * @return the milliseconds taken to retrieve the uris, or 0 if this job is based on an Iterator
+   */
+  default long getRetrievalTime() {
+    return 0;
+  }
+
+  /** The uris of this batch as a text/uri-list (one uri per line) ready to
+   * send as the body of a request, as done by listeners which process the
+   * uris on the server such as {@link ApplyTransformListener}.  Batches
+   * retrieved by a query keep the uri list as the server sent it, so this
+   * avoids decoding the uris and joining them again.
+   *
+   * @return a new handle on the uri list of this batch (the bytes must not be modified)
+   */
+  default BytesHandle getUriList() {
+    return new BytesHandle(String.join("\n", getItems()).getBytes(StandardCharsets.UTF_8))
+      .withFormat(Format.TEXT)
+      .withMimetype("text/uri-list");
+  }
 }
@@ -15,9 +15,11 @@
  */
 package com.marklogic.client.datamovement;
 
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.metrics.MetricsRegistry;
 
 /**
  * <p>To facilitate long-running read, update, and delete use cases, coordinates
@@ -241,6 +243,258 @@ public interface QueryBatcher extends Batcher {
    */
   QueryBatcher withConsistentSnapshot();
 
+  /**
+   * Specifies that each page of uris from a forest should be requested as
+   * the uris that sort after the last uri of the previous page, instead of
+   * by its start position.  With start positions, the server must skip all
+   * the preceding matches to reach a page, so deep pages in a large forest
+   * take much longer than the first pages.  With the last uri as a cursor,
+   * each page costs about the same regardless of depth (see {@link
+   * QueryBatch#getRetrievalTime}).  Also, deleting matches of earlier pages
+   * doesn't shift later pages, though modifications that make documents
+   * newly match the query can still be missed unless {@link
+   * #withConsistentSnapshot} is used.  Requires a server whose
+   * /v1/internal/uris endpoint supports the "after" parameter.  This should
+   * only be used when the QueryBatcher is constructed with a query, not
+   * with an Iterator.
+   *
+   * @return this instance for method chaining
+   */
+  QueryBatcher withCursorPaging();
+
+  /**
+   * @return true if pages are requested after the last uri of the previous page
+   *
+   * @see #withCursorPaging
+   */
+  boolean isCursorPaging();
+
+  /**
+   * Splits the matches in each forest into up to the specified number of
+   * ranges of uris which are paged concurrently.  Otherwise the pages of a
+   * forest are retrieved one after another, so the job takes at least as long
+   * as paging through the largest forest regardless of the thread count.
+   * Before paging a forest, the QueryBatcher samples the uris at a few
+   * positions to estimate the number of matches and choose the boundaries of
+   * the ranges; a forest with fewer than two batches of matches isn't split.
+   * The ranges are paged by cursor (see {@link #withCursorPaging}), which
+   * requires a server whose /v1/internal/uris endpoint supports the "after"
+   * parameter.  Batches from the ranges of a forest are numbered in the order
+   * they're requested, so getForestBatchNumber and getForestResultsSoFar no
+   * longer follow the order of the uris.  If threadCount is not set, it
+   * defaults to the number of forests times splitsPerForest.  This should
+   * only be used when the QueryBatcher is constructed with a query, not with
+   * an Iterator.
+   *
+   * @param splitsPerForest the most ranges per forest -- must be 1 or greater
+   *
+   * @return this instance for method chaining
+   */
+  QueryBatcher withSplitsPerForest(int splitsPerForest);
+
+  /**
+   * @return the most ranges each forest is split into
+   *
+   * @see #withSplitsPerForest
+   */
+  int getSplitsPerForest();
+
+  /**
+   * Retrieves up to the specified number of pages of uris from each forest
+   * ahead of the onUrisReady listeners.  Otherwise each page is passed to
+   * the listeners on the thread that retrieved it, so slow listeners (such
+   * as exports or transforms) hold up the retrieval of the following pages.
+   * With a prefetch depth, the listeners run on a separate pool of
+   * threadCount threads, and the thread that retrieved a page queues the
+   * request for the next page and hands the page off to the listener pool.
+   * Retrieval of a forest waits once prefetchDepth of its pages are waiting
+   * for or running listeners, so the memory used by pages in flight is
+   * bounded.  Batches retried with {@link #retry retry} still run the
+   * listeners on the calling thread.  This should only be used when the
+   * QueryBatcher is constructed with a query, not with an Iterator.
+   *
+   * @param prefetchDepth the most pages of a forest handed off to the
+   *   listeners and not yet processed -- must be 1 or greater
+   *
+   * @return this instance for method chaining
+   */
+  QueryBatcher withPrefetchDepth(int prefetchDepth);
+
+  /**
+   * @return the prefetch depth or 0 if listeners run on the retrieving threads
+   *
+   * @see #withPrefetchDepth
+   */
+  int getPrefetchDepth();
+
+  /**
+   * Sets the most batches read from the Iterator which can wait for a
+   * thread to run the onUrisReady listeners.  A dedicated thread reads the
+   * Iterator into batches and waits once the queue is full, while the
+   * threadCount threads take batches from the queue.  The default is 25
+   * batches per thread.  This only applies when the QueryBatcher is
+   * constructed with an Iterator.
+   *
+   * @param iteratorQueueDepth the most batches waiting for the listeners -- must be 1 or greater
+   *
+   * @return this instance for method chaining
+   */
+  QueryBatcher withIteratorQueueDepth(int iteratorQueueDepth);
+
+  /**
+   * @return the most batches read from the Iterator waiting for the
+   *   listeners, or 0 if the default is used
+   *
+   * @see #withIteratorQueueDepth
+   */
+  int getIteratorQueueDepth();
+
+  /**
+   * The total time the thread reading the Iterator waited because the queue
+   * of batches was full.  A large value means the listeners can't keep up
+   * with the Iterator, so more threads could help.
+   *
+   * @return the milliseconds the Iterator thread waited for the listeners
+   *
+   * @see #withIteratorQueueDepth
+   */
+  long getIteratorWaitTime();
+
+  /**
+   * The total time, summed over all threads, that threads waited for
+   * batches because the queue of batches from the Iterator was empty.  A
+   * large value means the Iterator can't keep up with the listeners, so
+   * fewer threads would do.
+   *
+   * @return the milliseconds the listener threads waited for the Iterator
+   *
+   * @see #withIteratorQueueDepth
+   */
+  long getListenerWaitTime();
+
+  /**
+   * Saves the progress of this job to the store as batches are processed
+   * (at most once a second) and when the job completes or is stopped, so a
+   * job that dies part way through can be restarted with {@link #resumeFrom
+   * resumeFrom}.  This should only be used when the QueryBatcher is
+   * constructed with a query, not with an Iterator, and can't be combined
+   * with {@link #withSplitsPerForest withSplitsPerForest}.
+   *
+   * @param checkpointStore where to save the progress of this job
+   *
+   * @return this instance for method chaining
+   */
+  QueryBatcher withCheckpointStore(CheckpointStore checkpointStore);
+
+  /**
+   * @return the store where the progress of this job is saved or null
+   *
+   * @see #withCheckpointStore
+   */
+  CheckpointStore getCheckpointStore();
+
+  /**
+   * Starts each forest after the batches that the checkpoint records as
+   * processed and skips the forests that were finished.  Batch numbers and
+   * results so far continue from the checkpoint.  Unless the job uses
+   * {@link #withConsistentSnapshot withConsistentSnapshot} (the server
+   * timestamp is taken from the checkpoint) or {@link #withCursorPaging
+   * withCursorPaging}, documents added or deleted since the checkpoint shift
+   * the positions of the remaining matches.  The query must be the same as
+   * the query of the job that saved the checkpoint.
+   *
+   * <p>This method cannot be called after the job has started.</p>
+   *
+   * @param checkpoint the progress of an earlier run of this job
+   *
+   * @return this instance for method chaining
+   */
+  QueryBatcher resumeFrom(QueryCheckpoint checkpoint);
+
+  /**
+   * @return the current progress of this job, or null if the job is based on
+   *   an Iterator or splits forests into ranges
+   *
+   * @see #withCheckpointStore
+   */
+  QueryCheckpoint getCheckpoint();
+
+  /**
+   * Before querying, asks each forest for an estimate of its matches (one
+   * search request per forest that returns only the total).  The estimates
+   * are used to:
+   * <ul>
+   *   <li>start the largest forests first, since the pages of a forest are
+   *     retrieved one after another and the largest forest takes longest</li>
+   *   <li>split forests into ranges in proportion to their size when used
+   *     with {@link #withSplitsPerForest withSplitsPerForest}, so the total
+   *     of forests times splitsPerForest ranges is spread over the forests
+   *     with the most matches, and the sampling for the split starts from
+   *     the estimate</li>
+   *   <li>report the expected total (see {@link #getEstimatedTotalResults}),
+   *     which {@link ProgressListener} uses when it wasn't given one</li>
+   * </ul>
+   * The estimates are unfiltered like the uris retrieved, but documents
+   * can change before they're retrieved unless the job uses {@link
+   * #withConsistentSnapshot withConsistentSnapshot}.  This should only be
+   * used when the QueryBatcher is constructed with a query, not with an
+   * Iterator.
+   *
+   * @return this instance for method chaining
+   */
+  QueryBatcher withCountFirst();
+
+  /**
+   * @return true if the matches of each forest are estimated before querying
+   *
+   * @see #withCountFirst
+   */
+  boolean isCountFirst();
+
+  /**
+   * @return the estimated matches of each forest, or an empty map if the
+   *   forests weren't estimated (see {@link #withCountFirst})
+   */
+  Map<Forest,Long> getForestEstimates();
+
+  /**
+   * @return the estimated matches in all forests, or -1 if any forest wasn't
+   *   estimated (see {@link #withCountFirst})
+   */
+  long getEstimatedTotalResults();
+
+  /**
+   * Lets threads that run out of work take over part of the work of forests
+   * that still have many matches left, so a database with forests of mixed
+   * sizes doesn't finish with one thread paging the largest forest while
+   * the others are idle.  Each forest is paged as one or more ranges of uris
+   * (see {@link #withSplitsPerForest withSplitsPerForest}).  When a range is
+   * finished and no other task is waiting for a thread, the thread samples
+   * the uri halfway through the rest of the range with the most matches
+   * left, and from then on pages the upper half of that range while the
+   * thread that was paging the range stops at the sampled uri.  The
+   * positions of the ranges come from the estimates of {@link #withCountFirst
+   * withCountFirst} when available and otherwise from sampling each forest
+   * before paging it.  Like withSplitsPerForest, ranges are paged by cursor,
+   * batches of a forest are numbered in the order they're requested, and
+   * this can't be combined with {@link #withCheckpointStore
+   * withCheckpointStore}.  This should only be used when the QueryBatcher is
+   * constructed with a query, not with an Iterator.
+   *
+   * <p>This method cannot be called after the job has started.</p>
+   *
+   * @return this instance for method chaining
+   */
+  QueryBatcher withWorkStealing();
+
+  /**
+   * @return true if threads that run out of work take over part of the
+   *   ranges of other forests
+   *
+   * @see #withWorkStealing
+   */
+  boolean isWorkStealing();
+
   /**
    * If the server forest configuration changes mid-job, it can be re-fetched
    * with {@link DataMovementManager#readForestConfig} then set via
@@ -303,6 +557,54 @@ public interface QueryBatcher extends Batcher {
   @Override
   public QueryBatcher withThreadCount(int threadCount);
 
+  /**
+   * Lets the thread pool grow and shrink between the bounds while the job
+   * runs.  For queries, the time to retrieve each batch of uris is measured;
+   * for Iterators, the time to run the onUrisReady listeners on each batch.
+   * For Iterators, minThreadCount is raised to 2 if lower.
+   *
+   * @return this instance for method chaining
+   *
+   * @see Batcher#withAdaptiveThreadCount
+   */
+  @Override
+  public QueryBatcher withAdaptiveThreadCount(int minThreadCount, int maxThreadCount);
+
+  @Override
+  public QueryBatcher onThreadCountChange(ThreadCountChangeListener listener);
+
+  /**
+   * Sends measurements of the batches of uris retrieved by this job to the
+   * registry.  Each meter is tagged with "job" (the job name) and, except
+   * for the retries and queue depth, "host" and "forest" (the host and
+   * forest that returned the batch; for Iterators, the host of the client
+   * given to the listeners and an empty forest).  The queue depth is also
+   * tagged with "jobId" (the job id), so jobs that share a name, such as
+   * the default name, have their own gauges:
+   *
+   * <ul>
+   *   <li>marklogic.dmsdk.query.batch.duration (timer) -- the time to retrieve
+   *     each batch of uris or, for Iterators, to run the listeners on it</li>
+   *   <li>marklogic.dmsdk.query.uris (counter) -- the uris in batches retrieved without error</li>
+   *   <li>marklogic.dmsdk.query.bytes.received (summary) -- the bytes of each batch of uris
+   *     (not for Iterators)</li>
+   *   <li>marklogic.dmsdk.query.batch.failures (counter) -- the batches that failed</li>
+   *   <li>marklogic.dmsdk.query.batch.retries (counter) -- the calls to {@link #retry retry},
+   *     {@link #retryWithFailureListeners retryWithFailureListeners} and
+   *     {@link #retryListener retryListener}</li>
+   *   <li>marklogic.dmsdk.query.queue.depth (gauge) -- the batches waiting for a thread</li>
+   * </ul>
+   *
+   * The stock listeners add their own meters, such as the documents exported
+   * by {@link ExportListener}.
+   *
+   * @return this instance for method chaining
+   *
+   * @see Batcher#withMetricsRegistry
+   */
+  @Override
+  public QueryBatcher withMetricsRegistry(MetricsRegistry metricsRegistry);
+
   /**
    * Blocks until the job is complete.
    *
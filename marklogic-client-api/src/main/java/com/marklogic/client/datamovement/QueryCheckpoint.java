@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The progress of a QueryBatcher job: for each forest, how many of its
+ * batches were processed by the onUrisReady listeners without a gap, and
+ * where the next batch starts.  A batch counts as processed once all the
+ * listeners have been called for it, so a job resumed from a checkpoint
+ * retrieves again any batch that failed or was still in process.
+ *
+ * @see QueryBatcher#resumeFrom
+ */
+public class QueryCheckpoint {
+  private final long serverTimestamp;
+  private final Map<String,ForestProgress> forests = new LinkedHashMap<>();
+
+  /**
+   * @param serverTimestamp the timestamp of the consistent snapshot or -1
+   * @param forests the progress of each forest
+   */
+  public QueryCheckpoint(long serverTimestamp, Collection<ForestProgress> forests) {
+    this.serverTimestamp = serverTimestamp;
+    for ( ForestProgress forest : forests ) {
+      this.forests.put(forest.getForestId(), forest);
+    }
+  }
+
+  /**
+   * @return the server timestamp of the job if it ran withConsistentSnapshot(), otherwise -1
+   */
+  public long getServerTimestamp() {
+    return serverTimestamp;
+  }
+
+  /**
+   * @return the progress of each forest by forest id
+   */
+  public Map<String,ForestProgress> getForests() {
+    return Collections.unmodifiableMap(forests);
+  }
+
+  /**
+   * @return the number of batches processed in all forests
+   */
+  public long getBatchesProcessed() {
+    return forests.values().stream().mapToLong(ForestProgress::getBatchesProcessed).sum();
+  }
+
+  /**
+   * @return the number of uris processed in all forests
+   */
+  public long getResultsProcessed() {
+    return forests.values().stream().mapToLong(ForestProgress::getResultsProcessed).sum();
+  }
+
+  /**
+   * The batches processed from one forest.
+   */
+  public static class ForestProgress {
+    private final String forestId;
+    private final String forestName;
+    private final long batchesProcessed;
+    private final long resultsProcessed;
+    private final String lastUri;
+    private final boolean done;
+
+    /**
+     * @param forestId the id of the forest
+     * @param forestName the name of the forest
+     * @param batchesProcessed the number of batches processed from the start of the forest
+     * @param resultsProcessed the number of uris in those batches
+     * @param lastUri the last uri of the last of those batches or null if none
+     * @param done true if the last batch of the forest was processed
+     */
+    public ForestProgress(String forestId, String forestName, long batchesProcessed, long resultsProcessed,
+      String lastUri, boolean done)
+    {
+      if ( forestId == null ) throw new IllegalArgumentException("forestId must not be null");
+      this.forestId = forestId;
+      this.forestName = forestName;
+      this.batchesProcessed = batchesProcessed;
+      this.resultsProcessed = resultsProcessed;
+      this.lastUri = lastUri;
+      this.done = done;
+    }
+
+    public String getForestId() {
+      return forestId;
+    }
+
+    public String getForestName() {
+      return forestName;
+    }
+
+    /**
+     * @return the number of batches processed from the start of the forest
+     */
+    public long getBatchesProcessed() {
+      return batchesProcessed;
+    }
+
+    /**
+     * @return the number of uris in the processed batches, so a resumed job
+     *   starts the forest at the next position
+     */
+    public long getResultsProcessed() {
+      return resultsProcessed;
+    }
+
+    /**
+     * @return the last uri of the processed batches, so a resumed job with
+     *   cursor paging starts the forest after it
+     */
+    public String getLastUri() {
+      return lastUri;
+    }
+
+    /**
+     * @return true if all batches of the forest were processed
+     */
+    public boolean isDone() {
+      return done;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * Reports a change to the number of threads used by a Batcher configured
+ * with {@link Batcher#withAdaptiveThreadCount withAdaptiveThreadCount}.
+ * The statistics describe the batches finished since the previous
+ * evaluation, which led to the change.
+ */
+public interface ThreadCountChangeEvent {
+  /**
+   * Why the thread count changed.
+   */
+  enum Reason {
+    /** no overload was observed, so a thread was added to look for more throughput */
+    PROBE,
+    /** the average batch latency rose well above the best observed latency */
+    LATENCY,
+    /** batches failed because the server was unavailable or requests timed out */
+    OVERLOAD
+  }
+
+  /**
+   * @return the Batcher whose thread count changed
+   */
+  Batcher getBatcher();
+
+  /**
+   * @return the thread count before the change
+   */
+  int getPreviousThreadCount();
+
+  /**
+   * @return the thread count after the change
+   */
+  int getThreadCount();
+
+  /**
+   * @return why the thread count changed
+   */
+  Reason getReason();
+
+  /**
+   * @return the average time in milliseconds to process a batch
+   */
+  double getAverageLatency();
+
+  /**
+   * @return the number of batches finished per second
+   */
+  double getThroughput();
+
+  /**
+   * @return the fraction of batches that failed because of overload
+   */
+  double getFailureRate();
+}
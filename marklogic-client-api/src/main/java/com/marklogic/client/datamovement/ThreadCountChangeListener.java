@@ -0,0 +1,34 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * Runs processEvent each time a Batcher configured with {@link
+ * Batcher#withAdaptiveThreadCount withAdaptiveThreadCount} resizes its
+ * thread pool.
+ *
+ * @see Batcher#onThreadCountChange onThreadCountChange
+ */
+public interface ThreadCountChangeListener {
+  /**
+   * The method called after the thread pool is resized.  It runs in the
+   * thread that finished the batch which triggered the change, so it
+   * should return quickly.
+   *
+   * @param event the old and new thread counts and the statistics that led to the change
+   */
+  void processEvent(ThreadCountChangeEvent event);
+}
@@ -21,6 +21,7 @@ import com.marklogic.client.document.DocumentWriteOperation;
 import com.marklogic.client.document.ServerTransform;
 import com.marklogic.client.io.marker.AbstractWriteHandle;
 import com.marklogic.client.io.marker.DocumentMetadataWriteHandle;
+import com.marklogic.client.metrics.MetricsRegistry;
 
 /**
  * <p>To facilitate long-running write jobs, batches documents added by many
@@ -301,6 +302,217 @@ public interface WriteBatcher extends Batcher {
   @Override
   WriteBatcher withThreadCount(int threadCount);
 
+  /**
+   * Lets the thread pool grow and shrink between the bounds while the job
+   * runs, based on the time taken by each batch write and on writes that
+   * fail because the server is unavailable or times out.
+   *
+   * @return this instance for method chaining
+   *
+   * @see Batcher#withAdaptiveThreadCount
+   */
+  @Override
+  WriteBatcher withAdaptiveThreadCount(int minThreadCount, int maxThreadCount);
+
+  @Override
+  WriteBatcher onThreadCountChange(ThreadCountChangeListener listener);
+
+  /**
+   * Sends measurements of the batches written by this job to the registry.
+   * Each meter is tagged with "job" (the job name) and, except for the
+   * retries and queue depth, "host" (the host that received the batch).
+   * The queue depth is also tagged with "jobId" (the job id), so jobs that
+   * share a name, such as the default name, have their own gauges:
+   *
+   * <ul>
+   *   <li>marklogic.dmsdk.write.batch.duration (timer) -- the time to write each batch</li>
+   *   <li>marklogic.dmsdk.write.documents (counter) -- the documents in batches written without error</li>
+   *   <li>marklogic.dmsdk.write.bytes.sent (summary) -- the content bytes of each batch
+   *     written without error, for batches where the length of every document
+   *     is known without reading it (not for streams)</li>
+   *   <li>marklogic.dmsdk.write.batch.failures (counter) -- the batches that failed</li>
+   *   <li>marklogic.dmsdk.write.batch.retries (counter) -- the batches passed to
+   *     {@link #retry retry} or {@link #retryWithFailureListeners retryWithFailureListeners}</li>
+   *   <li>marklogic.dmsdk.write.queue.depth (gauge) -- the batches waiting for a thread</li>
+   * </ul>
+   *
+   * @return this instance for method chaining
+   *
+   * @see Batcher#withMetricsRegistry
+   */
+  @Override
+  WriteBatcher withMetricsRegistry(MetricsRegistry metricsRegistry);
+
+  /**
+   * Routes each document to the host that manages the forest predicted by
+   * the ForestSelector instead of sending batches round-robin to all hosts.
+   * Documents are batched separately for each host, so the host that
+   * receives a batch can insert the documents into its own forests without
+   * forwarding them to other hosts.  Documents for which the selector returns
+   * null are batched round-robin as usual.  Since the documents are spread
+   * over one batch per host, consider a flush interval (see {@link
+   * #withFlushInterval withFlushInterval}) so slow-filling batches are still
+   * written promptly.  The client doesn't predict placement for the
+   * database assignment policies, so routing is off unless the application
+   * supplies a selector (see {@link ForestSelector}).
+   *
+   * @param forestSelector the predictor of the forest for each uri or null to send batches round-robin
+   *
+   * @return this instance for method chaining
+   */
+  WriteBatcher withForestSelector(ForestSelector forestSelector);
+
+  /**
+   * The ForestSelector used to route documents to hosts or null if batches
+   * are sent round-robin.
+   *
+   * @return the ForestSelector
+   */
+  ForestSelector getForestSelector();
+
+  /**
+   * Chooses the host for each batch with the HostSelector instead of sending
+   * batches round-robin to all hosts.  The WriteBatcher tracks the batches
+   * in flight and the average write latency of each host and passes them to
+   * the HostSelector, so batches can be steered away from a busy host.
+   *
+   * @param hostSelector the chooser of the host for each batch or null to send batches round-robin
+   *
+   * @return this instance for method chaining
+   *
+   * @see LeastLoadedHostSelector
+   */
+  WriteBatcher withHostSelector(HostSelector hostSelector);
+
+  /**
+   * The HostSelector used to choose the host for each batch or null if
+   * batches are sent round-robin.
+   *
+   * @return the HostSelector
+   */
+  HostSelector getHostSelector();
+
+  /**
+   * Sets the amount of content to send per batch.  A batch is written when
+   * it reaches either the batch size in documents or this many bytes of
+   * content, whichever comes first, so a batch of large documents doesn't
+   * make a request too large to finish in time.  The batch that reaches the
+   * limit includes the document that crossed it, so a document larger than
+   * the limit is still written.  The size of the content is known for byte
+   * array, string, and file handles; other content such as streams counts as
+   * zero bytes.  By default, batches are limited only by the batch size.
+   *
+   * @param batchSizeBytes the maximum content bytes per batch or 0 for no limit
+   *
+   * @return this instance for method chaining
+   */
+  WriteBatcher withBatchSizeBytes(long batchSizeBytes);
+
+  /**
+   * The maximum content bytes per batch or 0 if batches are limited only by
+   * the batch size.
+   *
+   * @return the maximum content bytes per batch
+   */
+  long getBatchSizeBytes();
+
+  /**
+   * Sets the longest time a document should wait for its batch to fill.
+   * When the oldest added document has waited this long, the documents
+   * waiting so far are written as a partial batch, so a trickle of documents
+   * is written without calling {@link #flushAsync}.  The check runs at half
+   * the interval, so a document may wait up to one and a half times the
+   * interval.  By default, documents wait until a batch is full or the job
+   * is flushed.
+   *
+   * @param interval the maximum wait or 0 to wait until a batch is full
+   * @param unit the time unit of the interval argument
+   *
+   * @return this instance for method chaining
+   */
+  WriteBatcher withFlushInterval(long interval, TimeUnit unit);
+
+  /**
+   * The maximum wait in milliseconds before a partial batch is written or 0
+   * if documents wait until a batch is full.
+   *
+   * @return the flush interval in milliseconds
+   */
+  long getFlushInterval();
+
+  /**
+   * Limits the number of documents held by this instance, counting both the
+   * documents waiting to fill a batch and the documents in batches that are
+   * waiting for or in the middle of a write.  When the limit is reached,
+   * {@link #add add} and {@link #addAs addAs} block until a batch finishes
+   * writing (or until the timeout set by {@link #withAddTimeout
+   * withAddTimeout} expires).  This keeps memory use predictable when
+   * documents are added faster than they can be written.  By default, the
+   * number of queued documents is not limited.
+   *
+   * @param maxQueuedDocuments the maximum number of queued documents or 0 for no limit
+   *
+   * @return this instance for method chaining
+   */
+  WriteBatcher withMaxQueuedDocuments(int maxQueuedDocuments);
+
+  /**
+   * The maximum number of queued documents or 0 if the number is not limited.
+   *
+   * @return the maximum number of queued documents
+   */
+  int getMaxQueuedDocuments();
+
+  /**
+   * Limits the estimated content bytes held by this instance in the same way
+   * as {@link #withMaxQueuedDocuments withMaxQueuedDocuments}.  The size of
+   * the content is known for byte array, string, and file handles.  The size
+   * of other content such as streams isn't known until the content is sent,
+   * so that content doesn't count against this limit.  A document larger
+   * than the limit is accepted when no other documents are queued.
+   *
+   * @param maxQueuedBytes the maximum number of queued content bytes or 0 for no limit
+   *
+   * @return this instance for method chaining
+   */
+  WriteBatcher withMaxQueuedBytes(long maxQueuedBytes);
+
+  /**
+   * The maximum number of queued content bytes or 0 if the bytes are not limited.
+   *
+   * @return the maximum number of queued content bytes
+   */
+  long getMaxQueuedBytes();
+
+  /**
+   * Sets how long {@link #add add} and {@link #addAs addAs} wait for space
+   * when the limit on queued documents or bytes has been reached.  If the
+   * time expires, the add throws a DataMovementException.  By default, the
+   * add waits without a time limit.
+   *
+   * @param timeout the maximum time to wait or a negative value to wait without a limit
+   * @param unit the time unit of the timeout argument
+   *
+   * @return this instance for method chaining
+   */
+  WriteBatcher withAddTimeout(long timeout, TimeUnit unit);
+
+  /**
+   * The number of documents that have been added but not yet written,
+   * including documents in batches that are being written.
+   *
+   * @return the number of queued documents
+   */
+  long getQueuedDocuments();
+
+  /**
+   * The estimated content bytes of the documents that have been added but
+   * not yet written.
+   *
+   * @return the number of queued content bytes
+   */
+  long getQueuedBytes();
+
   /** Create a batch from any unbatched documents and write that batch
    * asynchronously.
    */
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.metrics.MetricsRegistry;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The meters of the batches a job sends to one host (for writes) or one
+ * forest (for queries), looked up once so each batch only records.  The
+ * stock listeners keep their meters in a {@link ListenerMeters} by job and
+ * host.
+ */
+public class BatchMeters {
+  private final MetricsRegistry.Timer duration;
+  private final MetricsRegistry.Counter items;
+  private final MetricsRegistry.Summary bytes;
+  private final MetricsRegistry.Counter failures;
+
+  /**
+   * @param registry	the registry of the job
+   * @param prefix	the start of the meter names, such as "marklogic.dmsdk.write"
+   * @param itemsName	the last part of the name of the counter of items, such as "documents"
+   * @param bytesName	the last part of the name of the summary of bytes, such as "bytes.sent",
+   *                  or null if no bytes are recorded
+   * @param tags	the tags of the job and the host or forest
+   */
+  BatchMeters(MetricsRegistry registry, String prefix, String itemsName, String bytesName, String[] tags) {
+    duration = registry.timer(prefix + ".batch.duration", tags);
+    items    = registry.counter(prefix + "." + itemsName, tags);
+    bytes    = (bytesName == null) ? null : registry.summary(prefix + "." + bytesName, tags);
+    failures = registry.counter(prefix + ".batch.failures", tags);
+  }
+
+  /**
+   * @param nanos	how long the request for the batch took
+   * @param itemCount	the documents or uris in the batch, counted only if the batch succeeded
+   * @param byteCount	the bytes sent or received, or -1 if not known
+   * @param failure	the failure or null if the batch succeeded
+   */
+  public void batchFinished(long nanos, long itemCount, long byteCount, Throwable failure) {
+    duration.record(nanos);
+    if ( failure != null ) {
+      failures.increment();
+      return;
+    }
+    items.increment(itemCount);
+    if ( bytes != null && byteCount >= 0 ) bytes.record(byteCount);
+  }
+
+  /**
+   * The meters of a stock listener, looked up the first time the listener
+   * processes a batch from a host for a job and reused after that.  A
+   * listener can be shared by jobs, so the jobs are held weakly.
+   */
+  public static class ListenerMeters {
+    private final String prefix;
+    private final String itemsName;
+    private final String bytesName;
+    private final Map<QueryBatcher,Map<String,BatchMeters>> jobMeters =
+      Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<String,BatchMeters> unbatchedMeters = new ConcurrentHashMap<>();
+
+    /**
+     * @param prefix	the start of the meter names, such as "marklogic.dmsdk.delete"
+     * @param itemsName	the last part of the name of the counter of items
+     * @param bytesName	the last part of the name of the summary of bytes or null
+     */
+    public ListenerMeters(String prefix, String itemsName, String bytesName) {
+      this.prefix = prefix;
+      this.itemsName = itemsName;
+      this.bytesName = bytesName;
+    }
+
+    /**
+     * Looks up the meters for the job and host of a batch, tagged with the
+     * job and host.
+     *
+     * @param batch	the batch processed by the listener
+     * @return	the meters
+     */
+    public BatchMeters forBatch(QueryBatch batch) {
+      QueryBatcher batcher = batch.getBatcher();
+      String host = (batch.getClient() == null) ? "" : batch.getClient().getHost();
+      Map<String,BatchMeters> hostMeters = (batcher == null) ? unbatchedMeters :
+        jobMeters.computeIfAbsent(batcher, key -> new ConcurrentHashMap<>());
+      return hostMeters.computeIfAbsent(host, key -> newMeters(batcher, host));
+    }
+
+    private BatchMeters newMeters(QueryBatcher batcher, String host) {
+      MetricsRegistry registry = (batcher == null) ? MetricsRegistry.NONE : batcher.getMetricsRegistry();
+      String jobName = (batcher == null || batcher.getJobName() == null) ? "" : batcher.getJobName();
+      return new BatchMeters(registry, prefix, itemsName, bytesName, new String[] {"job", jobName, "host", host});
+    }
+  }
+}
@@ -37,6 +37,10 @@ public class BatchWriteSet {
   private Runnable onSuccess;
   private Consumer<Throwable> onFailure;
   private Runnable onBeforeWrite;
+  private Consumer<Throwable> onWritten;
+  private long writeNanos;
+  private long queuedDocuments;
+  private long queuedBytes;
 
   public BatchWriteSet(WriteBatcher batcher, DocumentWriteSet writeSet, DatabaseClient client,
     ServerTransform transform, String temporalCollection)
@@ -124,6 +128,39 @@ public class BatchWriteSet {
     this.onBeforeWrite = onBeforeWrite;
   }
 
+  public Consumer<Throwable> getOnWritten() {
+    return onWritten;
+  }
+
+  /**
+   * @param onWritten runs after the write finishes with the error, or
+   *   null if the write succeeded
+   */
+  public void onWritten(Consumer<Throwable> onWritten) {
+    this.onWritten = onWritten;
+  }
+
+  public long getWriteNanos() {
+    return writeNanos;
+  }
+
+  public void setWriteNanos(long writeNanos) {
+    this.writeNanos = writeNanos;
+  }
+
+  public long getQueuedDocuments() {
+    return queuedDocuments;
+  }
+
+  public long getQueuedBytes() {
+    return queuedBytes;
+  }
+
+  public void setQueued(long queuedDocuments, long queuedBytes) {
+    this.queuedDocuments = queuedDocuments;
+    this.queuedBytes     = queuedBytes;
+  }
+
   public WriteBatch getBatchOfWriteEvents() {
     WriteBatchImpl batch = new WriteBatchImpl()
       .withBatcher(batcher)
@@ -15,19 +15,30 @@
  */
 package com.marklogic.client.datamovement.impl;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.datamovement.Batcher;
 import com.marklogic.client.datamovement.DataMovementManager;
 import com.marklogic.client.datamovement.ForestConfiguration;
+import com.marklogic.client.datamovement.JobTicket;
+import com.marklogic.client.datamovement.ThreadCountChangeListener;
+import com.marklogic.client.metrics.MetricsRegistry;
 
 public abstract class BatcherImpl implements Batcher {
   private String jobName = "unnamed";
   private String jobId = null;
   private int batchSize = 100;
-  private int threadCount = 1;
+  private volatile int threadCount = 1;
+  private int minThreadCount = 0;
+  private int maxThreadCount = 0;
+  private List<ThreadCountChangeListener> threadCountChangeListeners = new CopyOnWriteArrayList<>();
   private ForestConfiguration forestConfig;
   private DatabaseClient client;
   private DataMovementManagerImpl moveMgr;
+  private MetricsRegistry metricsRegistry = MetricsRegistry.NONE;
 
   protected BatcherImpl(DataMovementManager moveMgr){
     if (moveMgr == null)
@@ -87,6 +98,102 @@ public abstract class BatcherImpl implements Batcher {
     return threadCount;
   }
 
+  @Override
+  public Batcher withAdaptiveThreadCount(int minThreadCount, int maxThreadCount) {
+    if ( minThreadCount <= 0 ) {
+      throw new IllegalArgumentException("minThreadCount must be 1 or greater");
+    }
+    if ( maxThreadCount < minThreadCount ) {
+      throw new IllegalArgumentException("maxThreadCount must not be less than minThreadCount");
+    }
+    this.minThreadCount = minThreadCount;
+    this.maxThreadCount = maxThreadCount;
+    return this;
+  }
+
+  @Override
+  public int getMinThreadCount() {
+    return minThreadCount;
+  }
+
+  @Override
+  public int getMaxThreadCount() {
+    return maxThreadCount;
+  }
+
+  boolean isAdaptiveThreadCount() {
+    return maxThreadCount > 0;
+  }
+
+  @Override
+  public Batcher onThreadCountChange(ThreadCountChangeListener listener) {
+    if ( listener == null ) throw new IllegalArgumentException("listener must not be null");
+    threadCountChangeListeners.add(listener);
+    return this;
+  }
+
+  @Override
+  public ThreadCountChangeListener[] getThreadCountChangeListeners() {
+    return threadCountChangeListeners.toArray(new ThreadCountChangeListener[threadCountChangeListeners.size()]);
+  }
+
+  /**
+   * Keeps threadCount within the adaptive bounds (if any) when the job starts.
+   * @return	the number of threads the job starts with
+   */
+  int initialThreadCount() {
+    if ( isAdaptiveThreadCount() ) {
+      threadCount = Math.max(minThreadCount, Math.min(maxThreadCount, threadCount));
+    }
+    return threadCount;
+  }
+
+  /**
+   * Creates the adjuster that resizes the thread pool of an adaptive job.
+   * @param threadPool	the thread pool to resize
+   * @return	the adjuster or null if the thread count is fixed
+   */
+  ThreadCountAdjuster newThreadCountAdjuster(ThreadPoolExecutor threadPool) {
+    if ( ! isAdaptiveThreadCount() ) return null;
+    return new ThreadCountAdjuster(this, threadPool, minThreadCount, maxThreadCount,
+      threadCountChangeListeners, newThreadCount -> threadCount = newThreadCount);
+  }
+
+  @Override
+  public Batcher withMetricsRegistry(MetricsRegistry metricsRegistry) {
+    if ( metricsRegistry == null ) throw new IllegalArgumentException("metricsRegistry must not be null");
+    this.metricsRegistry = metricsRegistry;
+    return this;
+  }
+
+  @Override
+  public MetricsRegistry getMetricsRegistry() {
+    return metricsRegistry;
+  }
+
+  /**
+   * @param tags	alternating keys and values of the tags after the job tag
+   * @return	the tags for a meter of this job
+   */
+  String[] metricTags(String... tags) {
+    String[] jobTags = new String[tags.length + 2];
+    jobTags[0] = "job";
+    jobTags[1] = (jobName == null) ? "" : jobName;
+    System.arraycopy(tags, 0, jobTags, 2, tags.length);
+    return jobTags;
+  }
+
+  /**
+   * A gauge samples the state of one job, so it's also tagged with the job
+   * id to keep jobs that share a name (such as the default name) apart.
+   *
+   * @param ticket	the ticket of the started job
+   * @return	the tags for a gauge of this job
+   */
+  String[] gaugeTags(JobTicket ticket) {
+    return metricTags("jobId", ticket.getJobId());
+  }
+
   @Override
   public ForestConfiguration getForestConfig() {
     return forestConfig;
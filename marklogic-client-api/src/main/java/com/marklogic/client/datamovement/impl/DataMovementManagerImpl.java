@@ -33,6 +33,7 @@ import com.marklogic.client.datamovement.NoResponseListener;
 import com.marklogic.client.datamovement.QueryBatcher;
 import com.marklogic.client.datamovement.WriteBatcher;
 import com.marklogic.client.datamovement.JobReport;
+import com.marklogic.client.impl.DatabaseClientImpl;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -181,11 +182,16 @@ public class DataMovementManagerImpl implements DataMovementManager {
       // another thread just barely inserted an instance that matches
       client = clientMap.get(key);
       if ( client != null ) return client;
+      // forest clients share the connection config (such as the metrics registry) of the primary client
+      DatabaseClientFactory.ConnectionConfig connectionConfig = (primaryClient instanceof DatabaseClientImpl) ?
+        ((DatabaseClientImpl) primaryClient).getConnectionConfig() : null;
       client = DatabaseClientFactory.newClient(
         hostName,
         primaryClient.getPort(),
         forest.getDatabaseName(),
-        primaryClient.getSecurityContext()
+        primaryClient.getSecurityContext(),
+        DatabaseClient.ConnectionType.DIRECT,
+        connectionConfig
       );
       clientMap.put(key, client);
     }
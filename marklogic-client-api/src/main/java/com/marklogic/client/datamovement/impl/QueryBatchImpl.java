@@ -23,7 +23,8 @@ import com.marklogic.client.datamovement.Forest;
 import com.marklogic.client.datamovement.JobTicket;
 import com.marklogic.client.datamovement.QueryBatch;
 import com.marklogic.client.datamovement.QueryBatcher;
-import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.Format;
 
 public class QueryBatchImpl extends BatchImpl<String> implements QueryBatch {
   private QueryBatcher batcher;
@@ -32,6 +33,9 @@ public class QueryBatchImpl extends BatchImpl<String> implements QueryBatch {
   private long forestResultsSoFar;
   private Forest forest;
   private long serverTimestamp;
+  private long retrievalTime;
+  private UriList uriList;
+  private volatile String[] decodedItems;
 
   @Override
   public QueryBatcher getBatcher() {
@@ -46,9 +50,50 @@ public class QueryBatchImpl extends BatchImpl<String> implements QueryBatch {
   @Override
   public QueryBatchImpl withItems(String[] items) {
     super.withItems(items);
+    this.uriList = null;
+    this.decodedItems = null;
     return this;
   }
 
+  /** Keeps the uris as received from the server and decodes them only if getItems() is called. */
+  QueryBatchImpl withUriList(UriList uriList) {
+    super.withItems(null);
+    this.uriList = uriList;
+    this.decodedItems = null;
+    return this;
+  }
+
+  @Override
+  public String[] getItems() {
+    if ( uriList == null ) return super.getItems();
+    String[] items = decodedItems;
+    if ( items == null ) {
+      synchronized(this) {
+        items = decodedItems;
+        if ( items == null ) {
+          items = uriList.toArray();
+          decodedItems = items;
+        }
+      }
+    }
+    return items;
+  }
+
+  /** @return the number of uris in this batch without decoding them */
+  public int getItemCount() {
+    if ( uriList != null ) return uriList.size();
+    String[] items = super.getItems();
+    return items == null ? 0 : items.length;
+  }
+
+  @Override
+  public BytesHandle getUriList() {
+    if ( uriList == null ) return QueryBatch.super.getUriList();
+    return new BytesHandle(uriList.getBytes())
+      .withFormat(Format.TEXT)
+      .withMimetype("text/uri-list");
+  }
+
   @Override
   public QueryBatchImpl withClient(DatabaseClient client) {
     super.withClient(client);
@@ -122,4 +167,14 @@ public class QueryBatchImpl extends BatchImpl<String> implements QueryBatch {
     this.serverTimestamp = serverTimestamp;
     return this;
   }
+
+  @Override
+  public long getRetrievalTime() {
+    return retrievalTime;
+  }
+
+  public QueryBatchImpl withRetrievalTime(long retrievalTime) {
+    this.retrievalTime = retrievalTime;
+    return this;
+  }
 }
@@ -15,6 +15,7 @@
  */
 package com.marklogic.client.datamovement.impl;
 
+import com.marklogic.client.datamovement.CheckpointStore;
 import com.marklogic.client.datamovement.QueryBatch;
 import com.marklogic.client.datamovement.QueryBatchListener;
 import com.marklogic.client.datamovement.DataMovementManager;
@@ -27,26 +28,46 @@ import com.marklogic.client.datamovement.QueryBatcher;
 import com.marklogic.client.datamovement.QueryBatchException;
 import com.marklogic.client.datamovement.QueryEvent;
 import com.marklogic.client.datamovement.QueryBatcherListener;
+import com.marklogic.client.datamovement.QueryCheckpoint;
+import com.marklogic.client.datamovement.ThreadCountChangeListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.ResourceNotFoundException;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.SearchHandle;
 import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.client.query.QueryManager;
+import com.marklogic.client.query.RawCombinedQueryDefinition;
+import com.marklogic.client.query.StructuredQueryDefinition;
+import com.marklogic.client.impl.CombinedQueryBuilderImpl;
+import com.marklogic.client.impl.CombinedQueryDefinition;
 import com.marklogic.client.impl.QueryManagerImpl;
 import com.marklogic.client.impl.UrisHandle;
+import com.marklogic.client.metrics.MetricsRegistry;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -67,20 +88,59 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
   private List<QueryFailureListener> failureListeners = new ArrayList<>();
   private List<QueryBatcherListener> jobCompletionListeners = new ArrayList<>();
   private QueryThreadPoolExecutor threadPool;
+  // runs the onUrisReady listeners when pages are prefetched
+  private ThreadPoolExecutor listenerPool;
+  private ThreadCountAdjuster threadCountAdjuster;
   private boolean consistentSnapshot = false;
+  private boolean cursorPaging = false;
+  private int splitsPerForest = 1;
+  private boolean workStealing = false;
+  // the ranges being paged, which threads that run out of work can split
+  private final Set<ForestRange> activeRanges = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean stealing = new AtomicBoolean(false);
+  private int prefetchDepth = 0;
+  private Map<Forest,Semaphore> prefetchPermits = new ConcurrentHashMap<>();
+  private final AtomicInteger pendingListenerBatches = new AtomicInteger(0);
+  // the cursor and range of each page that failed, so a retry can request the same page
+  private Map<String, FailedPage> failedPages = new ConcurrentHashMap<>();
   private final AtomicLong batchNumber = new AtomicLong(0);
   private final AtomicLong resultsSoFar = new AtomicLong(0);
   private final AtomicLong serverTimestamp = new AtomicLong(-1);
   private final AtomicReference<List<DatabaseClient>> clientList = new AtomicReference<>();
   private Map<Forest,AtomicLong> forestResults = new HashMap<>();
   private Map<Forest,AtomicBoolean> forestIsDone = new HashMap<>();
+  private Map<Forest,AtomicInteger> forestRangesLeft = new HashMap<>();
+  private Map<Forest,AtomicLong> forestBatchCounters = new HashMap<>();
   private Map<Forest, AtomicInteger> retryForestMap = new HashMap<>();
   private AtomicBoolean runJobCompletionListeners = new AtomicBoolean(false);
   private final AtomicBoolean stopped = new AtomicBoolean(false);
   private final AtomicBoolean started = new AtomicBoolean(false);
   private final Object lock = new Object();
   private final Map<Forest,List<QueryTask>> blackListedTasks = new HashMap<>();
-  private boolean isSingleThreaded = false;
+  // a QueryManager is only read once configured, so each client needs only one; the
+  // handles receive a new response each time so each thread needs its own
+  private final Map<DatabaseClient,QueryManagerImpl> queryManagers = new ConcurrentHashMap<>();
+  private final ThreadLocal<UrisHandle> urisHandles = ThreadLocal.withInitial(UrisHandle::new);
+  // the batches read from the Iterator waiting for a thread to run the listeners
+  private BlockingQueue<String[]> iteratorBatches;
+  private int iteratorQueueDepth = 0;
+  private Thread iteratorThread;
+  private final AtomicBoolean iteratorDone = new AtomicBoolean(false);
+  private final AtomicInteger iteratorConsumers = new AtomicInteger(0);
+  private final AtomicLong iteratorWaitNanos = new AtomicLong(0);
+  private final AtomicLong listenerWaitNanos = new AtomicLong(0);
+  private CheckpointStore checkpointStore;
+  private QueryCheckpoint resumeCheckpoint;
+  private final Map<Forest,ForestProgressTracker> forestProgress = new ConcurrentHashMap<>();
+  private final AtomicLong lastCheckpointMillis = new AtomicLong(0);
+  private final Object checkpointLock = new Object();
+  private boolean countFirst = false;
+  private final Map<Forest,Long> forestEstimates = new ConcurrentHashMap<>();
+  private volatile long estimatedTotalResults = -1;
+  // keyed by host and forest (or host alone while iterating) since a forest can move to another host
+  private final Map<String,BatchMeters> batchMeters = new ConcurrentHashMap<>();
+  private MetricsRegistry.Counter retries;
+  private MetricsRegistry.Gauge queueDepth;
   private JobTicket jobTicket;
   private Calendar jobStartTime;
   private Calendar jobEndTime;
@@ -157,14 +217,29 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
       throw new IllegalStateException("Forest for queryEvent (" + queryEvent.getForest().getForestName() +
         ") is not in current getForestConfig()");
     }
+    retries.increment();
     // we're obviously not done with this forest
     forestIsDone.get(retryForest).set(false);
     retryForestMap.get(retryForest).incrementAndGet();
     long start = queryEvent.getForestResultsSoFar() + 1;
-    logger.trace("retryForest {} on retryHost {} at start {}",
-      retryForest.getForestName(), retryForest.getPreferredHost(), start);
+    // without the cursor of the failed page, fall back to its start position
+    FailedPage failedPage = failedPages.remove(pageKey(retryForest, queryEvent.getForestBatchNumber()));
+    String afterUri = (failedPage == null) ? null : failedPage.afterUri;
+    ForestRange range = (failedPage == null) ? null : failedPage.range;
+    if ( range != null && afterUri == null ) {
+      // only the first page of a range that starts the forest has no cursor, and the
+      // forest's results so far count the pages of its other ranges, so start over
+      afterUri = range.lowerBound;
+      start = 1;
+    }
+    if ( range != null && range.isDone.compareAndSet(true, false) ) {
+      // the range was given up on, but now it's being retried
+      forestRangesLeft.get(retryForest).incrementAndGet();
+    }
+    logger.trace("retryForest {} on retryHost {} at start {} after {}",
+      retryForest.getForestName(), retryForest.getPreferredHost(), start, afterUri);
     QueryTask runnable = new QueryTask(getMoveMgr(), this, retryForest, query,
-      queryEvent.getForestBatchNumber(), start, queryEvent.getJobBatchNumber(), callFailListeners);
+      queryEvent.getForestBatchNumber(), start, afterUri, range, queryEvent.getJobBatchNumber(), callFailListeners);
     runnable.run();
   }
   /*
@@ -174,6 +249,7 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
    */
   @Override
   public void retryListener(QueryBatch batch, QueryBatchListener queryBatchListener) {
+    retries.increment();
     // We get the batch and modify the client alone in order to make use
     // of the new forest client in case if the original host is unavailable.
     DatabaseClient client = null;
@@ -267,6 +343,26 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
     return this;
   }
 
+  @Override
+  public QueryBatcher withAdaptiveThreadCount(int minThreadCount, int maxThreadCount) {
+    requireNotStarted();
+    super.withAdaptiveThreadCount(minThreadCount, maxThreadCount);
+    return this;
+  }
+
+  @Override
+  public QueryBatcher onThreadCountChange(ThreadCountChangeListener listener) {
+    super.onThreadCountChange(listener);
+    return this;
+  }
+
+  @Override
+  public QueryBatcher withMetricsRegistry(MetricsRegistry metricsRegistry) {
+    requireNotStarted();
+    super.withMetricsRegistry(metricsRegistry);
+    return this;
+  }
+
   @Override
   public QueryBatcher withConsistentSnapshot() {
     requireNotStarted();
@@ -274,6 +370,136 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
     return this;
   }
 
+  @Override
+  public QueryBatcher withCursorPaging() {
+    requireNotStarted();
+    cursorPaging = true;
+    return this;
+  }
+
+  @Override
+  public boolean isCursorPaging() {
+    return cursorPaging;
+  }
+
+  @Override
+  public QueryBatcher withSplitsPerForest(int splitsPerForest) {
+    requireNotStarted();
+    if ( splitsPerForest <= 0 ) {
+      throw new IllegalArgumentException("splitsPerForest must be 1 or greater");
+    }
+    this.splitsPerForest = splitsPerForest;
+    return this;
+  }
+
+  @Override
+  public int getSplitsPerForest() {
+    return splitsPerForest;
+  }
+
+  @Override
+  public QueryBatcher withIteratorQueueDepth(int iteratorQueueDepth) {
+    requireNotStarted();
+    if ( iteratorQueueDepth <= 0 ) {
+      throw new IllegalArgumentException("iteratorQueueDepth must be 1 or greater");
+    }
+    this.iteratorQueueDepth = iteratorQueueDepth;
+    return this;
+  }
+
+  @Override
+  public int getIteratorQueueDepth() {
+    return iteratorQueueDepth;
+  }
+
+  @Override
+  public long getIteratorWaitTime() {
+    return TimeUnit.NANOSECONDS.toMillis(iteratorWaitNanos.get());
+  }
+
+  @Override
+  public long getListenerWaitTime() {
+    return TimeUnit.NANOSECONDS.toMillis(listenerWaitNanos.get());
+  }
+
+  @Override
+  public QueryBatcher withCheckpointStore(CheckpointStore checkpointStore) {
+    requireNotStarted();
+    this.checkpointStore = checkpointStore;
+    return this;
+  }
+
+  @Override
+  public CheckpointStore getCheckpointStore() {
+    return checkpointStore;
+  }
+
+  @Override
+  public QueryBatcher resumeFrom(QueryCheckpoint checkpoint) {
+    requireNotStarted();
+    this.resumeCheckpoint = checkpoint;
+    return this;
+  }
+
+  @Override
+  public QueryCheckpoint getCheckpoint() {
+    if ( query == null || splitsPerForest > 1 || workStealing ) return null;
+    List<QueryCheckpoint.ForestProgress> forests = new ArrayList<>();
+    for ( Forest forest : getForestConfig().listForests() ) {
+      forests.add(progressTracker(forest).getProgress(forest));
+    }
+    return new QueryCheckpoint(serverTimestamp.get(), forests);
+  }
+
+  @Override
+  public QueryBatcher withCountFirst() {
+    requireNotStarted();
+    countFirst = true;
+    return this;
+  }
+
+  @Override
+  public boolean isCountFirst() {
+    return countFirst;
+  }
+
+  @Override
+  public Map<Forest,Long> getForestEstimates() {
+    return Collections.unmodifiableMap(forestEstimates);
+  }
+
+  @Override
+  public long getEstimatedTotalResults() {
+    return estimatedTotalResults;
+  }
+
+  @Override
+  public QueryBatcher withWorkStealing() {
+    requireNotStarted();
+    workStealing = true;
+    return this;
+  }
+
+  @Override
+  public boolean isWorkStealing() {
+    return workStealing;
+  }
+
+  @Override
+  public QueryBatcher withPrefetchDepth(int prefetchDepth) {
+    requireNotStarted();
+    if ( prefetchDepth <= 0 ) {
+      throw new IllegalArgumentException("prefetchDepth must be 1 or greater");
+    }
+    this.prefetchDepth = prefetchDepth;
+    return this;
+  }
+
+  @Override
+  public int getPrefetchDepth() {
+    return prefetchDepth;
+  }
+
   @Override
   public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
     requireJobStarted();
@@ -326,8 +552,24 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
       withBatchSize(1);
       logger.warn("batchSize should be 1 or greater--setting batchSize to 1");
     }
+    if ( splitsPerForest > 1 && (checkpointStore != null || resumeCheckpoint != null) ) {
+      throw new IllegalStateException("Checkpoints can't be used with splitsPerForest greater than 1");
+    }
+    if ( workStealing && (checkpointStore != null || resumeCheckpoint != null) ) {
+      throw new IllegalStateException("Checkpoints can't be used with work stealing");
+    }
+    if ( query == null && (checkpointStore != null || resumeCheckpoint != null) ) {
+      logger.warn("Checkpoints only apply to jobs with a query--ignoring them while iterating");
+    }
     jobTicket = ticket;
     initialize();
+    if ( query != null ) {
+      query = serializeQuery(query);
+      // estimate before initializing listeners so they can see the estimates
+      if ( countFirst ) estimateForests();
+    } else if ( countFirst ) {
+      logger.warn("countFirst only applies to jobs with a query--ignoring it while iterating");
+    }
     for (QueryBatchListener urisReadyListener : urisReadyListeners) {
       urisReadyListener.initializeListener(this);
     }
@@ -340,12 +582,69 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
     }
   }
 
+  /* The planning phase of withCountFirst: sends one search per forest, all
+   * at once, asking only for the estimated number of matches (the metadata
+   * view returns no results).  A forest that can't be estimated is still
+   * queried, it just isn't ordered or split by size.
+   */
+  private void estimateForests() {
+    Map<Forest,CompletableFuture<SearchHandle>> estimates = new LinkedHashMap<>();
+    for ( Forest forest : getForestConfig().listForests() ) {
+      QueryManagerImpl queryMgr = (QueryManagerImpl) getMoveMgr().getForestClient(forest).newQueryManager();
+      queryMgr.setPageLength(1);
+      queryMgr.setView(QueryManager.QueryView.METADATA);
+      estimates.put(forest, queryMgr.searchAsync(query, new SearchHandle(), forest.getForestName()));
+    }
+    long total = 0;
+    for ( Map.Entry<Forest,CompletableFuture<SearchHandle>> estimate : estimates.entrySet() ) {
+      Forest forest = estimate.getKey();
+      try {
+        long forestTotal = estimate.getValue().join().getTotalResults();
+        forestEstimates.put(forest, forestTotal);
+        if ( total >= 0 ) total += forestTotal;
+      } catch (Throwable t) {
+        logger.warn("Unable to estimate matches in forest '{}': {}", forest.getForestName(), t.toString());
+        total = -1;
+      }
+    }
+    estimatedTotalResults = total;
+    logger.info("Estimated {} matches in {} forests", total, forestEstimates.size());
+  }
+
+  /* Serializes a structured or combined query once for the job.  Otherwise
+   * each request for a page of uris serializes the query again and sends it
+   * url-encoded in the structuredQuery parameter.  The serialized query is
+   * sent as the body of a POST like a raw query, and the bytes are shared by
+   * every request in the job.
+   */
+  private QueryDefinition serializeQuery(QueryDefinition query) {
+    CombinedQueryDefinition combinedQuery = null;
+    if ( query instanceof StructuredQueryDefinition ) {
+      StructuredQueryDefinition structuredQuery = (StructuredQueryDefinition) query;
+      combinedQuery = new CombinedQueryBuilderImpl().combine(structuredQuery, structuredQuery.getCriteria());
+    } else if ( query instanceof CombinedQueryDefinition ) {
+      combinedQuery = (CombinedQueryDefinition) query;
+    } else {
+      return query;
+    }
+    String serialized = combinedQuery.serialize();
+    if ( serialized == null ) return query;
+    BytesHandle handle = new BytesHandle(serialized.getBytes(StandardCharsets.UTF_8))
+      .withFormat(combinedQuery.getFormat());
+    RawCombinedQueryDefinition rawQuery = getPrimaryClient().newQueryManager()
+      .newRawCombinedQueryDefinition(handle, query.getOptionsName());
+    rawQuery.setCollections(query.getCollections());
+    rawQuery.setDirectory(query.getDirectory());
+    logger.debug("Serialized query once for the job: {}", serialized);
+    return rawQuery;
+  }
+
   private synchronized void initialize() {
     if ( threadCountSet == false ) {
       if ( query != null ) {
         Forest[] forests = getForestConfig().listForests();
-        logger.warn("threadCount not set--defaulting to number of forests ({})", forests.length);
-        withThreadCount(forests.length);
+        logger.warn("threadCount not set--defaulting to number of forest ranges ({})", forests.length * splitsPerForest);
+        withThreadCount(forests.length * splitsPerForest);
       } else {
         int hostCount = clientList.get().size();
         logger.warn("threadCount not set--defaulting to number of hosts ({})", hostCount);
@@ -354,15 +653,31 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
       // now we've set the threadCount
       threadCountSet = true;
     }
-    // If we are iterating and if we have the thread count to 1, we have a single thread acting as both
-    // consumer and producer of the ThreadPoolExecutor queue. Hence, we produce till the maximum and start
-    // consuming and produce again. Since the thread count is 1, there is no worry about thread utilization.
-    if(getThreadCount() == 1) {
-      isSingleThreaded = true;
-    }
+    int threadCount = initialThreadCount();
     logger.info("Starting job batchSize={}, threadCount={}, onUrisReady listeners={}, failure listeners={}",
-      getBatchSize(), getThreadCount(), urisReadyListeners.size(), failureListeners.size());
-    threadPool = new QueryThreadPoolExecutor(getThreadCount(), this);
+      getBatchSize(), threadCount, urisReadyListeners.size(), failureListeners.size());
+    if ( isAdaptiveThreadCount() ) {
+      logger.info("adaptive threadCount between {} and {}", getMinThreadCount(), getMaxThreadCount());
+    }
+    int queueThreadCount = isAdaptiveThreadCount() ? getMaxThreadCount() : threadCount;
+    threadPool = new QueryThreadPoolExecutor(threadCount, queueThreadCount, this);
+    threadCountAdjuster = newThreadCountAdjuster(threadPool);
+    retries = getMetricsRegistry().counter("marklogic.dmsdk.query.batch.retries", metricTags());
+    // while iterating, the batches wait in their own queue rather than as tasks
+    BlockingQueue<Runnable> queue = threadPool.getQueue();
+    queueDepth = getMetricsRegistry().gauge("marklogic.dmsdk.query.queue.depth",
+      () -> iteratorBatches != null ? iteratorBatches.size() : queue.size(), gaugeTags(jobTicket));
+    if ( prefetchDepth > 0 ) {
+      if ( query == null ) {
+        logger.warn("prefetchDepth only applies to jobs with a query--ignoring it while iterating");
+      } else {
+        logger.info("prefetching up to {} batches per forest for a listener pool of {} threads", prefetchDepth, threadCount);
+        // the permits held by handed off batches bound this queue, and batches
+        // handed off after the job is stopped are dropped
+        listenerPool = new ThreadPoolExecutor(threadCount, threadCount, 0, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(), new ThreadPoolExecutor.DiscardPolicy());
+      }
+    }
   }
 
   /* When withForestConfig is called before the job starts, it just provides
@@ -406,6 +721,8 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
       hosts.put(forest.getPreferredHost(), forest);
       if ( forestResults.get(forest) == null ) forestResults.put(forest, new AtomicLong());
       if ( forestIsDone.get(forest) == null  ) forestIsDone.put(forest, new AtomicBoolean(false));
+      if ( forestRangesLeft.get(forest) == null ) forestRangesLeft.put(forest, new AtomicInteger(1));
+      if ( forestBatchCounters.get(forest) == null ) forestBatchCounters.put(forest, new AtomicLong());
       if ( retryForestMap.get(forest) == null ) retryForestMap.put(forest, new AtomicInteger(0));
     }
     logger.info("(withForestConfig) Using forests on {} hosts for \"{}\"", hosts.keySet(), forests[0].getDatabaseName());
@@ -524,8 +841,29 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
    */
   private synchronized void startQuerying() {
     boolean consistentSnapshotFirstQueryHasRun = false;
-    for ( Forest forest : getForestConfig().listForests() ) {
-      QueryTask runnable = new QueryTask(getMoveMgr(), this, forest, query, 1, 1);
+    if ( resumeCheckpoint != null ) resumeCheckpoint();
+    Forest[] forests = getForestConfig().listForests();
+    if ( forestEstimates.size() > 0 ) {
+      // start the largest forests first since the pages of a forest are retrieved one after another
+      forests = forests.clone();
+      Arrays.sort(forests, (forest1, forest2) ->
+        Long.compare(forestEstimates.getOrDefault(forest2, 0L), forestEstimates.getOrDefault(forest1, 0L)));
+    }
+    for ( Forest forest : forests ) {
+      QueryCheckpoint.ForestProgress progress = (resumeCheckpoint == null) ? null :
+        resumeCheckpoint.getForests().get(forest.getForestId());
+      if ( progress != null && progress.isDone() ) continue;
+      Runnable runnable;
+      if ( splitsPerForest > 1 || workStealing ) {
+        runnable = new ForestSplitTask(forest);
+      } else if ( progress != null ) {
+        // start after the batches processed before the checkpoint, by cursor if we have one
+        String afterUri = cursorPaging ? progress.getLastUri() : null;
+        runnable = new QueryTask(getMoveMgr(), this, forest, query, progress.getBatchesProcessed() + 1,
+          progress.getResultsProcessed() + 1, afterUri, null, -1, true);
+      } else {
+        runnable = new QueryTask(getMoveMgr(), this, forest, query, 1, 1);
+      }
       if ( consistentSnapshot == true && consistentSnapshotFirstQueryHasRun == false ) {
         // let's run this first time in-line so we'll have the serverTimestamp set
         // before we launch all the parallel threads
@@ -535,6 +873,58 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
         threadPool.execute(runnable);
       }
     }
+    // every forest may have been finished before the checkpoint
+    if ( resumeCheckpoint != null ) shutdownIfAllForestsAreDone();
+  }
+
+  /* Restores the progress recorded by the checkpoint before any forest is
+   * queried.  The counters continue from the checkpoint so batch numbers
+   * aren't repeated, and finished forests are marked as done.
+   */
+  private void resumeCheckpoint() {
+    Map<String,QueryCheckpoint.ForestProgress> forests = resumeCheckpoint.getForests();
+    Set<String> unknownForests = new HashSet<>(forests.keySet());
+    for ( Forest forest : getForestConfig().listForests() ) {
+      QueryCheckpoint.ForestProgress progress = forests.get(forest.getForestId());
+      unknownForests.remove(forest.getForestId());
+      if ( progress == null ) continue;
+      progressTracker(forest).resume(progress);
+      forestResults.get(forest).set(progress.getResultsProcessed());
+      resultsSoFar.addAndGet(progress.getResultsProcessed());
+      batchNumber.addAndGet(progress.getBatchesProcessed());
+      if ( progress.isDone() ) forestIsDone.get(forest).set(true);
+    }
+    if ( unknownForests.size() > 0 ) {
+      logger.warn("Ignoring checkpoint progress for forests {} which are not in the forest configuration", unknownForests);
+    }
+    if ( consistentSnapshot == true && resumeCheckpoint.getServerTimestamp() > -1 ) {
+      serverTimestamp.set(resumeCheckpoint.getServerTimestamp());
+    }
+    logger.info("Resuming from checkpoint with {} batches and {} results processed",
+      batchNumber.get(), resultsSoFar.get());
+  }
+
+  private ForestProgressTracker progressTracker(Forest forest) {
+    return forestProgress.computeIfAbsent(forest, f -> new ForestProgressTracker());
+  }
+
+  /* Saves a checkpoint if one wasn't saved in the last second. */
+  private void checkpointIfDue() {
+    if ( checkpointStore == null ) return;
+    long now = System.currentTimeMillis();
+    long last = lastCheckpointMillis.get();
+    if ( now - last >= 1000 && lastCheckpointMillis.compareAndSet(last, now) ) saveCheckpoint();
+  }
+
+  private void saveCheckpoint() {
+    if ( checkpointStore == null || query == null ) return;
+    synchronized ( checkpointLock ) {
+      try {
+        checkpointStore.save(getCheckpoint());
+      } catch (Throwable t) {
+        logger.error("Exception thrown by the checkpoint store", t);
+      }
+    }
   }
 
   private class QueryTask implements Runnable {
@@ -544,17 +934,20 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
     private QueryDefinition query;
     private long forestBatchNum;
     private long start;
+    private String afterUri;
+    private ForestRange range;
     private long retryBatchNumber;
     private boolean callFailListeners;
 
     QueryTask(DataMovementManager moveMgr, QueryBatcher batcher, Forest forest,
       QueryDefinition query, long forestBatchNum, long start)
     {
-      this(moveMgr, batcher, forest, query, forestBatchNum, start, -1, true);
+      this(moveMgr, batcher, forest, query, forestBatchNum, start, null, null, -1, true);
     }
 
     QueryTask(DataMovementManager moveMgr, QueryBatcher batcher, Forest forest,
-      QueryDefinition query, long forestBatchNum, long start, long retryBatchNumber, boolean callFailListeners)
+      QueryDefinition query, long forestBatchNum, long start, String afterUri, ForestRange range,
+      long retryBatchNumber, boolean callFailListeners)
     {
       this.moveMgr = moveMgr;
       this.batcher = batcher;
@@ -562,6 +955,8 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
       this.query = query;
       this.forestBatchNum = forestBatchNum;
       this.start = start;
+      this.afterUri = afterUri;
+      this.range = range;
       this.retryBatchNumber = retryBatchNumber;
       this.callFailListeners = callFailListeners;
     }
@@ -569,7 +964,7 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
     public void run() {
       // don't proceed if this forest is marked as done (because we already got the last batch)
       AtomicBoolean isDone = forestIsDone.get(forest);
-      if ( isDone.get() == true ) {
+      if ( isDone.get() == true || (range != null && range.isDone.get() == true) ) {
         logger.error("Attempt to query forest '{}' forestBatchNum {} with start {} after the last batch " +
           "for that forest has already been retrieved", forest.getForestName(), forestBatchNum, start);
         return;
@@ -594,59 +989,126 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
       } else {
         batch = batch.withJobBatchNumber(batchNumber.incrementAndGet());
       }
+      BatchMeters meters = batchMeters(client.getHost(), forest.getForestName());
+      long startNanos = System.nanoTime();
       try {
-        QueryManagerImpl queryMgr = (QueryManagerImpl) client.newQueryManager();
-        queryMgr.setPageLength(getBatchSize());
-        UrisHandle handle = new UrisHandle();
-        if ( consistentSnapshot == true && serverTimestamp.get() > -1 ) {
-          handle.setPointInTimeQueryTimestamp(serverTimestamp.get());
-        }
+        QueryManagerImpl queryMgr = queryManagers.computeIfAbsent(client, c -> {
+          QueryManagerImpl mgr = (QueryManagerImpl) c.newQueryManager();
+          mgr.setPageLength(getBatchSize());
+          return mgr;
+        });
+        UrisHandle handle = urisHandles.get();
+        // the handle holds the timestamp of its last response, so always reset it
+        handle.setPointInTimeQueryTimestamp(consistentSnapshot == true ? serverTimestamp.get() : -1);
         // this try-with-resources block will call results.close() once the block is done
         // here we call the /v1/internal/uris endpoint to get the text/uri-list of documents
         // matching this structured or string query
-        try ( UrisHandle results = queryMgr.uris(query, handle, start, null, forest.getForestName()) ) {
+        try ( UrisHandle results = (afterUri != null) ?
+                queryMgr.uris(query, handle, afterUri, null, forest.getForestName()) :
+                queryMgr.uris(query, handle, start, null, forest.getForestName()) ) {
           // if we're doing consistentSnapshot and this is the first result set, let's capture the
           // serverTimestamp so we can use it for all future queries
           if ( consistentSnapshot == true && serverTimestamp.get() == -1 ) {
             serverTimestamp.set(results.getServerTimestamp());
             logger.info("Consistent snapshot timestamp=[{}]", serverTimestamp);
           }
-          List<String> uris = new ArrayList<>();
-          for ( String uri : results ) {
-            uris.add( uri );
+          // keep the uris as the bytes sent by the server, decoding them only when needed
+          UriList uris = UriList.read(results.getInputStream());
+          // release the connection (and the handle, for retries run by this thread) before the listeners
+          results.close();
+          batchFinished(startNanos, null, meters, uris.size(), uris.getBytes().length);
+          long retrievalTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+          boolean lastPage = uris.size() != getBatchSize();
+          if ( range != null ) {
+            // the upper bound can be lowered by a thread stealing the rest of this range,
+            // which checks the cursor under the same lock
+            synchronized ( range ) {
+              if ( range.upperBound != null ) {
+                // the uris after the upper bound belong to the next range
+                byte[] upperBound = range.upperBound.getBytes(StandardCharsets.UTF_8);
+                int inRange = 0;
+                while ( inRange < uris.size() && uris.compareTo(inRange, upperBound) <= 0 ) inRange++;
+                if ( inRange < uris.size() || (inRange > 0 && uris.compareTo(inRange - 1, upperBound) == 0) ) {
+                  uris = uris.head(inRange);
+                  lastPage = true;
+                }
+              }
+              if ( uris.size() > 0 ) range.cursor = uris.get(uris.size() - 1);
+              range.results += uris.size();
+            }
+          }
+          // a range can end with no uris when its upper bound was the last uri of a page
+          boolean hasListenerBatch = uris.size() > 0 || range == null;
+          // retries run the listeners in-line, since the caller waits for them
+          boolean handOff = listenerPool != null && retryBatchNumber == -1 && hasListenerBatch;
+          Semaphore permits = handOff ? prefetchPermits.computeIfAbsent(forest, f -> new Semaphore(prefetchDepth)) : null;
+          if ( handOff ) {
+            // wait while prefetchDepth batches of this forest are waiting for the listeners
+            try {
+              permits.acquire();
+            } catch (InterruptedException e) {
+              logger.warn("Interrupted handing off batch {} of forest '{}' because the job is stopping",
+                forestBatchNum, forest.getForestName());
+              Thread.currentThread().interrupt();
+              return;
+            }
           }
-          if ( uris.size() == getBatchSize() ) {
+          if ( lastPage == false ) {
             // this is a full batch
-            launchNextTask();
+            launchNextTask(uris.get(uris.size() - 1));
+            if ( workStealing && range != null ) stealIfIdle();
           }
           batch = batch
-            .withItems(uris.toArray(new String[uris.size()]))
+            .withRetrievalTime(retrievalTime)
+            .withUriList(uris)
             .withServerTimestamp(serverTimestamp.get())
             .withJobResultsSoFar(resultsSoFar.addAndGet(uris.size()))
             .withForestResultsSoFar(forestResults.get(forest).addAndGet(uris.size()));
 
-          logger.trace("batch size={}, jobBatchNumber={}, jobResultsSoFar={}, forest={}", uris.size(),
-            batch.getJobBatchNumber(), batch.getJobResultsSoFar(), forest.getForestName());
+          logger.trace("batch size={}, jobBatchNumber={}, jobResultsSoFar={}, forest={}, retrievalTime={}ms", uris.size(),
+            batch.getJobBatchNumber(), batch.getJobResultsSoFar(), forest.getForestName(), retrievalTime);
+          // the checkpoint needs the cursor to resume after this batch
+          String batchLastUri = (cursorPaging && uris.size() > 0) ? uris.get(uris.size() - 1) : null;
+          boolean batchIsLast = lastPage;
           // now that we have the QueryBatch, let's send it to each onUrisReady listener
-          for (QueryBatchListener listener : urisReadyListeners) {
-            try {
-              listener.processEvent(batch);
-            } catch (Throwable t) {
-              logger.error("Exception thrown by an onUrisReady listener", t);
-            }
+          if ( handOff ) {
+            QueryBatch listenerBatch = batch;
+            pendingListenerBatches.incrementAndGet();
+            listenerPool.execute(() -> {
+              try {
+                runUrisReadyListeners(listenerBatch);
+                batchProcessed(listenerBatch, batchLastUri, batchIsLast);
+              } finally {
+                permits.release();
+                pendingListenerBatches.decrementAndGet();
+                shutdownIfAllForestsAreDone();
+              }
+            });
+          } else if ( hasListenerBatch ) {
+            runUrisReadyListeners(batch);
+            batchProcessed(batch, batchLastUri, batchIsLast);
           }
-          if ( uris.size() != getBatchSize() ) {
+          if ( lastPage == true ) {
             // we're done if we get a partial batch (always the last)
-            isDone.set(true);
+            markDone(isDone);
           }
         }
       } catch (ResourceNotFoundException e) {
         // we're done if we get a 404 NOT FOUND which throws ResourceNotFoundException
         // this should only happen if the last query retrieved a full batch so it thought
         // there would be more and queued this task which retrieved 0 results
-        isDone.set(true);
+        batchFinished(startNanos, null, meters, 0, 0);
+        if ( range == null ) {
+          progressTracker(forest).lastBatch(forestBatchNum - 1);
+          checkpointIfDue();
+        }
+        markDone(isDone);
       } catch (Throwable t) {
+        batchFinished(startNanos, t, meters, 0, 0);
         // any error outside listeners is grounds for stopping queries to this forest
+        if ( afterUri != null || range != null ) {
+          failedPages.put(pageKey(forest, forestBatchNum), new FailedPage(afterUri, range));
+        }
         if ( callFailListeners == true ) {
           batch = batch
             .withJobResultsSoFar(resultsSoFar.get())
@@ -659,7 +1121,7 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
             }
           }
           if(retryForestMap.get(forest).get() == 0) {
-            isDone.set(true);
+            markDone(isDone);
           } else {
             retryForestMap.get(forest).decrementAndGet();
           }
@@ -674,7 +1136,7 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
       }
     }
 
-    private void launchNextTask() {
+    private void launchNextTask(String lastUri) {
       if ( stopped.get() == true ) {
         // we're stopping, so don't do anything more
         return;
@@ -683,18 +1145,349 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
       // we made it to the end, so don't launch anymore tasks
       if ( isDone.get() == true ) return;
       long nextStart = start + getBatchSize();
-      threadPool.execute(new QueryTask(moveMgr, batcher, forest, query, forestBatchNum + 1, nextStart));
+      // the pages of a range can only be found by cursor
+      String nextAfterUri = (cursorPaging || range != null) ? lastUri : null;
+      // the batches of all ranges of a forest are numbered in one sequence
+      long nextForestBatchNum = (range == null) ? forestBatchNum + 1 : forestBatchCounters.get(forest).incrementAndGet();
+      threadPool.execute(new QueryTask(moveMgr, batcher, forest, query, nextForestBatchNum, nextStart,
+        nextAfterUri, range, -1, true));
+    }
+
+    private void batchProcessed(QueryBatch batch, String lastUri, boolean lastPage) {
+      // the ranges of a split forest aren't checkpointed
+      if ( range != null ) return;
+      ForestProgressTracker tracker = progressTracker(forest);
+      tracker.batchProcessed(batch.getForestBatchNumber(), batch.getForestResultsSoFar(), lastUri);
+      if ( lastPage ) tracker.lastBatch(batch.getForestBatchNumber());
+      checkpointIfDue();
+    }
+
+    private void markDone(AtomicBoolean isDone) {
+      if ( range == null ) {
+        isDone.set(true);
+      } else if ( range.isDone.compareAndSet(false, true) ) {
+        activeRanges.remove(range);
+        // the forest is done when its last range is done
+        if ( forestRangesLeft.get(forest).decrementAndGet() <= 0 ) isDone.set(true);
+        if ( workStealing ) stealIfIdle();
+      }
     }
   };
 
+  /* Tracks how many batches of a forest were processed without a gap.  The
+   * listeners of a forest's batches can finish out of order (with several
+   * threads or a prefetch depth), so batches processed after a gap wait in
+   * processedAhead until the gap is filled.
+   */
+  private static class ForestProgressTracker {
+    private long batchesProcessed = 0;
+    private long resultsProcessed = 0;
+    private String lastUri;
+    // the forest batch number of the last batch, once we know it
+    private long lastBatch = -1;
+    private final TreeMap<Long,BatchEnd> processedAhead = new TreeMap<>();
+
+    private static class BatchEnd {
+      private final long forestResultsSoFar;
+      private final String lastUri;
+
+      BatchEnd(long forestResultsSoFar, String lastUri) {
+        this.forestResultsSoFar = forestResultsSoFar;
+        this.lastUri = lastUri;
+      }
+    }
+
+    synchronized void resume(QueryCheckpoint.ForestProgress progress) {
+      batchesProcessed = progress.getBatchesProcessed();
+      resultsProcessed = progress.getResultsProcessed();
+      lastUri = progress.getLastUri();
+      if ( progress.isDone() ) lastBatch = batchesProcessed;
+    }
+
+    synchronized void batchProcessed(long forestBatchNum, long forestResultsSoFar, String batchLastUri) {
+      // a retried batch may already be counted
+      if ( forestBatchNum <= batchesProcessed ) return;
+      processedAhead.put(forestBatchNum, new BatchEnd(forestResultsSoFar, batchLastUri));
+      while ( processedAhead.isEmpty() == false && processedAhead.firstKey() == batchesProcessed + 1 ) {
+        BatchEnd batchEnd = processedAhead.pollFirstEntry().getValue();
+        batchesProcessed++;
+        resultsProcessed = batchEnd.forestResultsSoFar;
+        if ( batchEnd.lastUri != null ) lastUri = batchEnd.lastUri;
+      }
+    }
+
+    synchronized void lastBatch(long forestBatchNum) {
+      lastBatch = forestBatchNum;
+    }
+
+    synchronized QueryCheckpoint.ForestProgress getProgress(Forest forest) {
+      boolean done = lastBatch >= 0 && batchesProcessed >= lastBatch;
+      return new QueryCheckpoint.ForestProgress(forest.getForestId(), forest.getForestName(),
+        batchesProcessed, resultsProcessed, lastUri, done);
+    }
+  }
+
+  /* Samples the uris of a forest to split it into up to splitsPerForest
+   * ranges, then queues a QueryTask for each range so the ranges are paged
+   * concurrently.  Each range pages by cursor from its lower bound and stops
+   * at its upper bound.  If the forest can't be sampled or is too small to
+   * split, it's queried as one range like any other forest.
+   */
+  private class ForestSplitTask implements Runnable {
+    private Forest forest;
+
+    ForestSplitTask(Forest forest) {
+      this.forest = forest;
+    }
+
+    public void run() {
+      if ( stopped.get() == true ) return;
+      List<ForestRange> ranges = null;
+      try {
+        ranges = splitForest(forest);
+      } catch (Throwable t) {
+        logger.warn("Unable to split forest '{}', querying it as one range: {}", forest.getForestName(), t.toString());
+      }
+      // with work stealing, even a forest paged as one range can be split later
+      if ( ranges == null || (ranges.size() <= 1 && workStealing == false) ) {
+        threadPool.execute(new QueryTask(getMoveMgr(), QueryBatcherImpl.this, forest, query, 1, 1));
+        return;
+      }
+      forestRangesLeft.get(forest).set(ranges.size());
+      activeRanges.addAll(ranges);
+      for ( ForestRange range : ranges ) {
+        threadPool.execute(new QueryTask(getMoveMgr(), QueryBatcherImpl.this, forest, query,
+          forestBatchCounters.get(forest).incrementAndGet(), 1, range.lowerBound, range, -1, true));
+      }
+    }
+  }
+
+  private List<ForestRange> splitForest(Forest forest) {
+    DatabaseClient client = getMoveMgr().getForestClient(forest);
+    QueryManagerImpl queryMgr = (QueryManagerImpl) client.newQueryManager();
+    queryMgr.setPageLength(1);
+    Long estimate = forestEstimates.get(forest);
+    long found = 0;
+    int maxRanges = splitsPerForest;
+    if ( estimate != null ) {
+      // with countFirst, the forests share all the ranges in proportion to their size
+      found = estimate;
+      if ( estimatedTotalResults > 0 ) {
+        long allRanges = (long) getForestConfig().listForests().length * splitsPerForest;
+        maxRanges = (int) Math.max(1, Math.round((double) allRanges * estimate / estimatedTotalResults));
+      }
+    } else {
+      // estimate how many uris match in the forest: double the position until
+      // it's past the last match, then narrow the gap to within a batch
+      long past = 1;
+      while ( uriAt(queryMgr, forest, past) != null ) {
+        found = past;
+        past *= 2;
+      }
+      while ( past - found > getBatchSize() ) {
+        long middle = (found + past) / 2;
+        if ( uriAt(queryMgr, forest, middle) != null ) found = middle;
+        else past = middle;
+      }
+    }
+    // don't make ranges smaller than a batch
+    int rangeCount = (int) Math.min(maxRanges, Math.max(1, found / getBatchSize()));
+    List<ForestRange> ranges = new ArrayList<>();
+    String lowerBound = null;
+    long lowerPosition = 0;
+    for ( int i = 1; i < rangeCount; i++ ) {
+      long upperPosition = i * found / rangeCount;
+      String upperBound = uriAt(queryMgr, forest, upperPosition);
+      // matches can be deleted while sampling unless using a consistent snapshot
+      if ( upperBound == null ) break;
+      if ( lowerBound != null && compareUris(upperBound, lowerBound) <= 0 ) continue;
+      ranges.add(new ForestRange(forest, lowerBound, upperBound, lowerPosition, upperPosition));
+      lowerBound = upperBound;
+      lowerPosition = upperPosition;
+    }
+    ranges.add(new ForestRange(forest, lowerBound, null, lowerPosition, found));
+    logger.info("Split forest '{}' with about {} matches into {} ranges", forest.getForestName(), found, ranges.size());
+    return ranges;
+  }
+
+  private String uriAt(QueryManagerImpl queryMgr, Forest forest, long position) {
+    UrisHandle handle = new UrisHandle();
+    if ( consistentSnapshot == true && serverTimestamp.get() > -1 ) {
+      handle.setPointInTimeQueryTimestamp(serverTimestamp.get());
+    }
+    try ( UrisHandle results = queryMgr.uris(query, handle, position, null, forest.getForestName()) ) {
+      if ( consistentSnapshot == true && serverTimestamp.compareAndSet(-1, results.getServerTimestamp()) ) {
+        logger.info("Consistent snapshot timestamp=[{}]", serverTimestamp);
+      }
+      Iterator<String> uris = results.iterator();
+      return uris.hasNext() ? uris.next() : null;
+    } catch (ResourceNotFoundException e) {
+      return null;
+    }
+  }
+
+  // compares uris by codepoint like the server's uri lexicon
+  private static int compareUris(String uri1, String uri2) {
+    int i = 0;
+    int j = 0;
+    while ( i < uri1.length() && j < uri2.length() ) {
+      int codepoint1 = uri1.codePointAt(i);
+      int codepoint2 = uri2.codePointAt(j);
+      if ( codepoint1 != codepoint2 ) return codepoint1 < codepoint2 ? -1 : 1;
+      i += Character.charCount(codepoint1);
+      j += Character.charCount(codepoint2);
+    }
+    return (uri1.length() - i) - (uri2.length() - j);
+  }
+
+  /* Checked as ranges are paged and finished.  If a thread is idle and no
+   * task is waiting for a thread, queues a task (one at a time) for the idle
+   * thread to steal part of a range.
+   */
+  private void stealIfIdle() {
+    if ( stopped.get() == true || threadPool.getQueue().isEmpty() == false ) return;
+    if ( threadPool.getActiveCount() >= threadPool.getCorePoolSize() ) return;
+    if ( stealing.compareAndSet(false, true) == false ) return;
+    try {
+      threadPool.execute(() -> {
+        try {
+          stealRange();
+        } finally {
+          stealing.set(false);
+        }
+      });
+    } catch (Throwable t) {
+      stealing.set(false);
+      throw t;
+    }
+  }
+
+  /* Samples the uri halfway through the rest of the range with the most
+   * matches left and pages the uris after it as a new range.  The sampled uri
+   * only becomes the upper bound of the old range if the thread paging the
+   * old range hasn't passed it (the cursor is checked under the range's lock,
+   * which is also held while trimming each page).
+   */
+  private void stealRange() {
+    if ( stopped.get() == true ) return;
+    ForestRange victim = null;
+    long mostLeft = 0;
+    for ( ForestRange range : activeRanges ) {
+      long left = range.estimatedLeft();
+      if ( left > mostLeft ) {
+        victim = range;
+        mostLeft = left;
+      }
+    }
+    // don't split off less than a batch
+    if ( victim == null || mostLeft < 2 * getBatchSize() ) return;
+    Forest forest = victim.forest;
+    long splitPosition = victim.upperPosition - mostLeft / 2;
+    String splitUri;
+    try {
+      QueryManagerImpl queryMgr = (QueryManagerImpl) getMoveMgr().getForestClient(forest).newQueryManager();
+      queryMgr.setPageLength(1);
+      splitUri = uriAt(queryMgr, forest, splitPosition);
+    } catch (Throwable t) {
+      logger.warn("Unable to sample forest '{}' to steal work: {}", forest.getForestName(), t.toString());
+      return;
+    }
+    if ( splitUri == null ) return;
+    ForestRange stolen;
+    synchronized ( victim ) {
+      if ( victim.isDone.get() == true ) return;
+      if ( victim.cursor != null && compareUris(splitUri, victim.cursor) <= 0 ) return;
+      if ( victim.lowerBound != null && compareUris(splitUri, victim.lowerBound) <= 0 ) return;
+      if ( victim.upperBound != null && compareUris(splitUri, victim.upperBound) >= 0 ) return;
+      stolen = new ForestRange(forest, splitUri, victim.upperBound, splitPosition, victim.upperPosition);
+      // count the new range before the old one can finish
+      forestRangesLeft.get(forest).incrementAndGet();
+      victim.upperBound = splitUri;
+      victim.upperPosition = splitPosition;
+    }
+    activeRanges.add(stolen);
+    logger.debug("Stealing about {} matches of forest '{}' after uri {}", mostLeft / 2, forest.getForestName(), splitUri);
+    threadPool.execute(new QueryTask(getMoveMgr(), this, forest, query,
+      forestBatchCounters.get(forest).incrementAndGet(), 1, splitUri, stolen, -1, true));
+  }
+
+  // the uris after lowerBound (or from the start if null) through upperBound
+  // (or to the end if null), with the estimated positions of the bounds among
+  // the matches of the forest
+  private static class ForestRange {
+    private final Forest forest;
+    private final String lowerBound;
+    private final long lowerPosition;
+    private final AtomicBoolean isDone = new AtomicBoolean(false);
+    // the fields below are guarded by this range's lock
+    private String upperBound;
+    private long upperPosition;
+    // the last uri paged in this range and how many were paged
+    private String cursor;
+    private long results = 0;
+
+    ForestRange(Forest forest, String lowerBound, String upperBound, long lowerPosition, long upperPosition) {
+      this.forest = forest;
+      this.lowerBound = lowerBound;
+      this.upperBound = upperBound;
+      this.lowerPosition = lowerPosition;
+      this.upperPosition = upperPosition;
+    }
+
+    synchronized long estimatedLeft() {
+      return upperPosition - lowerPosition - results;
+    }
+  }
+
+  private static class FailedPage {
+    private final String afterUri;
+    private final ForestRange range;
+
+    FailedPage(String afterUri, ForestRange range) {
+      this.afterUri = afterUri;
+      this.range = range;
+    }
+  }
+
+  private void batchFinished(long startNanos, Throwable failure, BatchMeters meters, int uris, long bytes) {
+    long nanos = System.nanoTime() - startNanos;
+    if ( threadCountAdjuster != null ) {
+      threadCountAdjuster.batchFinished(nanos, failure);
+    }
+    meters.batchFinished(nanos, uris, bytes, failure);
+  }
+
+  private BatchMeters batchMeters(String host, String forestName) {
+    return batchMeters.computeIfAbsent(host + "/" + forestName, key -> new BatchMeters(getMetricsRegistry(),
+      "marklogic.dmsdk.query", "uris", "bytes.received", metricTags("host", host, "forest", forestName)));
+  }
+
+  private static String pageKey(Forest forest, long forestBatchNum) {
+    return forest.getForestId() + ":" + forestBatchNum;
+  }
+
+  private void runUrisReadyListeners(QueryBatch batch) {
+    for (QueryBatchListener listener : urisReadyListeners) {
+      try {
+        listener.processEvent(batch);
+      } catch (Throwable t) {
+        logger.error("Exception thrown by an onUrisReady listener", t);
+      }
+    }
+  }
+
   private void shutdownIfAllForestsAreDone() {
     for ( AtomicBoolean isDone : forestIsDone.values() ) {
       // if even one isn't done, short-circuit out of this method and don't shutdown
       if ( isDone.get() == false ) return;
     }
+    // the last batch handed off to the listener pool checks again when it's processed
+    if ( pendingListenerBatches.get() > 0 ) return;
     // if we made it this far, all forests are done. let's run the Job
     // completion listeners and shutdown.
+    saveCheckpoint();
     if(runJobCompletionListeners.compareAndSet(false, true)) runJobCompletionListeners();
+    if ( listenerPool != null ) listenerPool.shutdown();
     threadPool.shutdown();
   }
 
@@ -709,82 +1502,36 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
     if(jobEndTime == null) jobEndTime = Calendar.getInstance();
   }
 
-  private class IteratorTask implements Runnable {
-
-    private QueryBatcher batcher;
-
-    IteratorTask(QueryBatcher batcher) {
-      this.batcher = batcher;
-    }
-
+  /* Reads the Iterator on its own thread, batching uris of batchSize into
+   * iteratorBatches.  When the queue is full, this thread waits for a
+   * listener thread to take a batch (the time waited is reported by
+   * getIteratorWaitTime).  It also starts more IteratorConsumer tasks when
+   * an adaptive job grows its thread pool.
+   */
+  private class IteratorProducer implements Runnable {
     @Override
     public void run() {
       try {
-        boolean lastBatch = false;
-        List<String> uriQueue = new ArrayList<>(getBatchSize());
-        while (iterator.hasNext()) {
-          uriQueue.add(iterator.next());
-          if(!iterator.hasNext()) lastBatch = true;
-          // if we've hit batchSize or the end of the iterator
-          if (uriQueue.size() == getBatchSize() || !iterator.hasNext()) {
-            final List<String> uris = uriQueue;
-            final boolean finalLastBatch = lastBatch;
-            uriQueue = new ArrayList<>(getBatchSize());
-            Runnable processBatch = new Runnable() {
-              public void run() {
-                QueryBatchImpl batch = new QueryBatchImpl()
-                    .withBatcher(batcher)
-                    .withTimestamp(Calendar.getInstance())
-                    .withJobTicket(getJobTicket());
-                try {
-                  long currentBatchNumber = batchNumber.incrementAndGet();
-                  // round-robin from client 0 to (clientList.size() - 1);
-                  List<DatabaseClient> currentClientList = clientList.get();
-                  int clientIndex = (int) (currentBatchNumber % currentClientList.size());
-                  DatabaseClient client = currentClientList.get(clientIndex);
-                  batch = batch.withJobBatchNumber(currentBatchNumber)
-                      .withClient(client)
-                      .withJobResultsSoFar(resultsSoFar.addAndGet(uris.size()))
-                      .withItems(uris.toArray(new String[uris.size()]));
-                  logger.trace("batch size={}, jobBatchNumber={}, jobResultsSoFar={}", uris.size(),
-                      batch.getJobBatchNumber(), batch.getJobResultsSoFar());
-                  for (QueryBatchListener listener : urisReadyListeners) {
-                    try {
-                      listener.processEvent(batch);
-                    } catch (Throwable e) {
-                      logger.error("Exception thrown by an onUrisReady listener", e);
-                    }
-                  }
-                } catch (Throwable t) {
-                  batch = batch.withItems(uris.toArray(new String[uris.size()]));
-                  for (QueryFailureListener listener : failureListeners) {
-                    try {
-                      listener.processFailure(new QueryBatchException(batch, t));
-                    } catch (Throwable e) {
-                      logger.error("Exception thrown by an onQueryFailure listener", e);
-                    }
-                  }
-                  logger.warn("Error iterating to queue uris: {}", t.toString());
-                }
-                if(finalLastBatch) {
-                  runJobCompletionListeners();
-                }
-              }
-            };
-            threadPool.execute(processBatch);
-            // If the queue is almost full, stop producing and add a task to continue later
-            if (isSingleThreaded && threadPool.getQueue().remainingCapacity() <= 2 && iterator.hasNext()) {
-              threadPool.execute(new IteratorTask(batcher));
-              return;
-            }
+        String[] uris = new String[getBatchSize()];
+        int count = 0;
+        while ( stopped.get() == false && iterator.hasNext() ) {
+          uris[count++] = iterator.next();
+          if ( count == uris.length ) {
+            handOff(uris);
+            uris = new String[getBatchSize()];
+            count = 0;
           }
         }
+        if ( count > 0 ) handOff(Arrays.copyOf(uris, count));
+      } catch (InterruptedException e) {
+        // the job was stopped
+        Thread.currentThread().interrupt();
       } catch (Throwable t) {
         for (QueryFailureListener listener : failureListeners) {
           QueryBatchImpl batch = new QueryBatchImpl()
               .withItems(new String[0])
               .withClient(clientList.get().get(0))
-              .withBatcher(batcher)
+              .withBatcher(QueryBatcherImpl.this)
               .withTimestamp(Calendar.getInstance())
               .withJobResultsSoFar(0);
 
@@ -795,15 +1542,123 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
           }
         }
         logger.warn("Error iterating to queue uris: {}", t.toString());
+      } finally {
+        iteratorDone.set(true);
+        // the empty batch tells each listener thread that no more batches are coming
+        if ( stopped.get() == false ) {
+          try {
+            iteratorBatches.put(new String[0]);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    }
+
+    private void handOff(String[] uris) throws InterruptedException {
+      if ( iteratorBatches.offer(uris) == false ) {
+        long waitStart = System.nanoTime();
+        iteratorBatches.put(uris);
+        iteratorWaitNanos.addAndGet(System.nanoTime() - waitStart);
+      }
+      // an adaptive job may have grown the thread pool
+      while ( iteratorConsumers.get() < threadPool.getCorePoolSize() && threadPool.isShutdown() == false ) {
+        iteratorConsumers.incrementAndGet();
+        threadPool.execute(new IteratorConsumer());
       }
-      threadPool.shutdown();
     }
   }
 
-  /* startIterating launches in a separate thread (actually a task handled by
-   * threadPool) and just loops through the Iterator<String>, batching uris of
-   * batchSize, and queueing tasks to process each batch via onUrisReady
-   * listeners.  Therefore, this method doesn't talk directly to MarkLogic
+  /* Runs on the threads of threadPool, taking batches from iteratorBatches
+   * and passing them to the onUrisReady listeners until the Iterator is
+   * exhausted (the time spent waiting for batches is reported by
+   * getListenerWaitTime).  A consumer exits early when an adaptive job has
+   * shrunk its thread pool.  The last consumer to exit completes the job.
+   */
+  private class IteratorConsumer implements Runnable {
+    @Override
+    public void run() {
+      boolean counted = true;
+      try {
+        // a listener may have swallowed the interrupt from stopJob
+        while ( stopped.get() == false ) {
+          int consumers = iteratorConsumers.get();
+          if ( consumers > threadPool.getCorePoolSize() && iteratorConsumers.compareAndSet(consumers, consumers - 1) ) {
+            counted = false;
+            return;
+          }
+          String[] uris = iteratorBatches.poll();
+          if ( uris == null ) {
+            long waitStart = System.nanoTime();
+            uris = iteratorBatches.take();
+            listenerWaitNanos.addAndGet(System.nanoTime() - waitStart);
+          }
+          if ( uris.length == 0 ) {
+            // put back the end of the batches for the other consumers
+            iteratorBatches.put(uris);
+            return;
+          }
+          processIteratorBatch(uris);
+        }
+      } catch (InterruptedException e) {
+        // the job was stopped
+        Thread.currentThread().interrupt();
+      } finally {
+        if ( counted && iteratorConsumers.decrementAndGet() == 0 && iteratorDone.get() && stopped.get() == false ) {
+          logger.info("Iterator waited {}ms for listeners, listeners waited {}ms for the Iterator",
+            getIteratorWaitTime(), getListenerWaitTime());
+          if(runJobCompletionListeners.compareAndSet(false, true)) runJobCompletionListeners();
+          threadPool.shutdown();
+        }
+      }
+    }
+
+    private void processIteratorBatch(String[] uris) {
+      QueryBatchImpl batch = new QueryBatchImpl()
+          .withBatcher(QueryBatcherImpl.this)
+          .withTimestamp(Calendar.getInstance())
+          .withJobTicket(getJobTicket());
+      long startNanos = System.nanoTime();
+      Throwable failure = null;
+      DatabaseClient client = null;
+      try {
+        long currentBatchNumber = batchNumber.incrementAndGet();
+        // round-robin from client 0 to (clientList.size() - 1);
+        List<DatabaseClient> currentClientList = clientList.get();
+        int clientIndex = (int) (currentBatchNumber % currentClientList.size());
+        client = currentClientList.get(clientIndex);
+        batch = batch.withJobBatchNumber(currentBatchNumber)
+            .withClient(client)
+            .withJobResultsSoFar(resultsSoFar.addAndGet(uris.length))
+            .withItems(uris);
+        logger.trace("batch size={}, jobBatchNumber={}, jobResultsSoFar={}", uris.length,
+            batch.getJobBatchNumber(), batch.getJobResultsSoFar());
+        runUrisReadyListeners(batch);
+      } catch (Throwable t) {
+        failure = t;
+        batch = batch.withItems(uris);
+        for (QueryFailureListener listener : failureListeners) {
+          try {
+            listener.processFailure(new QueryBatchException(batch, t));
+          } catch (Throwable e) {
+            logger.error("Exception thrown by an onQueryFailure listener", e);
+          }
+        }
+        logger.warn("Error iterating to queue uris: {}", t.toString());
+      }
+      // the uris weren't received from the server, so there are no bytes to record
+      BatchMeters meters = batchMeters(client == null ? "" : client.getHost(), "");
+      batchFinished(startNanos, failure, meters, uris.length, -1);
+    }
+  }
+
+  /* startIterating launches a dedicated thread which just loops through the
+   * Iterator<String>, batching uris of batchSize into a queue of at most
+   * iteratorQueueDepth batches.  Each thread of threadPool takes batches
+   * from the queue and processes them via onUrisReady listeners.  The
+   * bounded queue replaces queueing a task per batch, where the Iterator
+   * thread waited on a shared lock each time the executor's queue filled up.
+   * Therefore, this method doesn't talk directly to MarkLogic
    * Server.  Only the registered onUrisReady listeners can talk to the server,
    * using the DatabaseClient provided by QueryBatch.getClient().  In order to
    * fully utilize the cluster, we provide DatabaseClient instances to batches
@@ -815,12 +1670,26 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
    * their listeners handled, they should use try-catch and handle them.
    */
   private void startIterating() {
-    threadPool.execute(new IteratorTask(this));
+    int depth = iteratorQueueDepth > 0 ? iteratorQueueDepth :
+      25 * (isAdaptiveThreadCount() ? getMaxThreadCount() : getThreadCount());
+    iteratorBatches = new ArrayBlockingQueue<>(depth);
+    int consumers = threadPool.getCorePoolSize();
+    iteratorConsumers.set(consumers);
+    for ( int i = 0; i < consumers; i++ ) {
+      threadPool.execute(new IteratorConsumer());
+    }
+    iteratorThread = new Thread(new IteratorProducer(), "QueryBatcher-iterator-" + getJobId());
+    iteratorThread.setDaemon(true);
+    iteratorThread.start();
   }
 
   public void stop() {
     stopped.set(true);
     if ( threadPool != null ) threadPool.shutdownNow();
+    if ( listenerPool != null ) listenerPool.shutdownNow();
+    if ( iteratorThread != null ) iteratorThread.interrupt();
+    if ( queueDepth != null ) queueDepth.remove();
+    if ( started.get() ) saveCheckpoint();
     if(jobEndTime == null) jobEndTime = Calendar.getInstance();
     if ( query != null ) {
       for ( AtomicBoolean isDone : forestIsDone.values() ) {
@@ -899,9 +1768,9 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
   private class QueryThreadPoolExecutor extends ThreadPoolExecutor {
     private Object objectToNotifyFrom;
 
-    QueryThreadPoolExecutor(int threadCount, Object objectToNotifyFrom) {
+    QueryThreadPoolExecutor(int threadCount, int queueThreadCount, Object objectToNotifyFrom) {
       super(threadCount, threadCount, 0, TimeUnit.MILLISECONDS,
-        new LinkedBlockingQueue<Runnable>(threadCount * 25), new BlockingRunsPolicy());
+        new LinkedBlockingQueue<Runnable>(queueThreadCount * 25), new BlockingRunsPolicy());
       this.objectToNotifyFrom = objectToNotifyFrom;
     }
 
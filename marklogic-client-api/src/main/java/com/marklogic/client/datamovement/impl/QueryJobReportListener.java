@@ -34,7 +34,9 @@ public class QueryJobReportListener extends JobReportListener implements  QueryB
     successBatchesCount.incrementAndGet();
 
     // Get the number of documents that have been read successfully
-    successEventsCount.addAndGet(batch.getItems().length);
+    // (without decoding the uris of batches that kept the uri list from the server)
+    successEventsCount.addAndGet(batch instanceof QueryBatchImpl ?
+      ((QueryBatchImpl) batch).getItemCount() : batch.getItems().length);
   }
 
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.IntConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.marklogic.client.FailedRequestException;
+import com.marklogic.client.FailedRetryException;
+import com.marklogic.client.datamovement.Batcher;
+import com.marklogic.client.datamovement.ThreadCountChangeEvent;
+import com.marklogic.client.datamovement.ThreadCountChangeEvent.Reason;
+import com.marklogic.client.datamovement.ThreadCountChangeListener;
+
+/**
+ * Resizes a Batcher's thread pool with additive-increase, multiplicative-decrease.
+ * After each window of finished batches:
+ *   - if any batch failed because the server was unavailable or the request
+ *     timed out, halve the thread count
+ *   - else if the average latency is more than twice the best average latency
+ *     seen so far, cut the thread count by a quarter
+ *   - else if the last increase didn't improve throughput, hold for a few
+ *     windows, twice as many after each unhelpful increase in a row
+ *   - else add one thread
+ * The best latency drifts up slowly so the baseline follows a cluster whose
+ * load changes over a long job.
+ */
+class ThreadCountAdjuster {
+  private static Logger logger = LoggerFactory.getLogger(ThreadCountAdjuster.class);
+
+  private static final int    MIN_WINDOW        = 8;
+  private static final double LATENCY_FACTOR    = 2.0;
+  private static final double BASELINE_DRIFT    = 1.02;
+  private static final double MIN_IMPROVEMENT   = 1.05;
+  private static final int    MIN_HOLD_WINDOWS  = 4;
+  private static final int    MAX_HOLD_WINDOWS  = 64;
+
+  private final Batcher batcher;
+  private final ThreadPoolExecutor threadPool;
+  private final int minThreadCount;
+  private final int maxThreadCount;
+  private final List<ThreadCountChangeListener> listeners;
+  private final IntConsumer threadCountSetter;
+
+  private int    threadCount;
+  private long   windowStart    = System.nanoTime();
+  private int    windowBatches  = 0;
+  private int    windowFailures = 0;
+  private long   windowNanos    = 0;
+  private double bestLatency    = Double.MAX_VALUE;
+  private double lastThroughput = 0;
+  private boolean lastIncreased = false;
+  private int    holdLength     = MIN_HOLD_WINDOWS;
+  private int    holdWindows    = 0;
+
+  ThreadCountAdjuster(Batcher batcher, ThreadPoolExecutor threadPool, int minThreadCount, int maxThreadCount,
+    List<ThreadCountChangeListener> listeners, IntConsumer threadCountSetter)
+  {
+    this.batcher = batcher;
+    this.threadPool = threadPool;
+    this.minThreadCount = minThreadCount;
+    this.maxThreadCount = maxThreadCount;
+    this.listeners = listeners;
+    this.threadCountSetter = threadCountSetter;
+    this.threadCount = threadPool.getMaximumPoolSize();
+  }
+
+  /**
+   * Records a finished batch and resizes the thread pool at the end of a window.
+   * @param nanos	the time spent processing the batch
+   * @param failure	the error processing the batch or null
+   */
+  void batchFinished(long nanos, Throwable failure) {
+    ThreadCountChangeEvent event = null;
+    synchronized(this) {
+      windowBatches++;
+      windowNanos += nanos;
+      if ( isOverloaded(failure) ) windowFailures++;
+      if ( windowBatches >= Math.max(MIN_WINDOW, threadCount * 2) ) {
+        event = evaluate();
+      }
+    }
+    if ( event != null ) {
+      logger.info("Adjusted {}", event);
+      for ( ThreadCountChangeListener listener : listeners ) {
+        try {
+          listener.processEvent(event);
+        } catch (Throwable t) {
+          logger.error("Exception thrown by an onThreadCountChange listener", t);
+        }
+      }
+    }
+  }
+
+  int getThreadCount() {
+    return threadCount;
+  }
+
+  private ThreadCountChangeEvent evaluate() {
+    long now = System.nanoTime();
+    double elapsedSeconds = Math.max(1, now - windowStart) / 1e9;
+    double averageLatency = windowNanos / 1e6 / windowBatches;
+    double throughput     = windowBatches / elapsedSeconds;
+    double failureRate    = (double) windowFailures / windowBatches;
+    boolean hadFailures   = windowFailures > 0;
+    windowStart    = now;
+    windowBatches  = 0;
+    windowFailures = 0;
+    windowNanos    = 0;
+
+    int newThreadCount = threadCount;
+    Reason reason = null;
+    if ( hadFailures ) {
+      newThreadCount = Math.max(minThreadCount, threadCount / 2);
+      reason = Reason.OVERLOAD;
+    } else if ( averageLatency > bestLatency * LATENCY_FACTOR ) {
+      newThreadCount = Math.max(minThreadCount, threadCount - Math.max(1, threadCount / 4));
+      reason = Reason.LATENCY;
+    } else if ( lastIncreased == true && throughput < lastThroughput * MIN_IMPROVEMENT ) {
+      // the added thread didn't pay off, so back off before probing again
+      holdWindows = holdLength;
+      holdLength  = Math.min(MAX_HOLD_WINDOWS, holdLength * 2);
+    } else if ( holdWindows > 0 ) {
+      holdWindows--;
+    } else {
+      if ( lastIncreased == true ) holdLength = MIN_HOLD_WINDOWS;
+      newThreadCount = Math.min(maxThreadCount, threadCount + 1);
+      reason = Reason.PROBE;
+    }
+    if ( hadFailures == false ) {
+      bestLatency = Math.min(averageLatency, bestLatency * BASELINE_DRIFT);
+    }
+    lastThroughput = throughput;
+    lastIncreased  = newThreadCount > threadCount;
+    if ( newThreadCount == threadCount ) return null;
+
+    int previousThreadCount = threadCount;
+    resize(newThreadCount);
+    return new ThreadCountChangeEventImpl(batcher, previousThreadCount, newThreadCount, reason,
+      averageLatency, throughput, failureRate);
+  }
+
+  private void resize(int newThreadCount) {
+    // the core size must never exceed the maximum size, so the order depends on the direction
+    if ( newThreadCount > threadCount ) {
+      threadPool.setMaximumPoolSize(newThreadCount);
+      threadPool.setCorePoolSize(newThreadCount);
+    } else {
+      threadPool.setCorePoolSize(newThreadCount);
+      threadPool.setMaximumPoolSize(newThreadCount);
+    }
+    threadCount = newThreadCount;
+    threadCountSetter.accept(newThreadCount);
+  }
+
+  static boolean isOverloaded(Throwable failure) {
+    for ( Throwable t = failure; t != null; t = (t.getCause() == t) ? null : t.getCause() ) {
+      if ( t instanceof FailedRetryException ) return true;
+      if ( t instanceof InterruptedIOException ) return true;
+      if ( t instanceof FailedRequestException ) {
+        FailedRequestException e = (FailedRequestException) t;
+        int status = (e.getFailedRequest() == null) ? 0 : e.getFailedRequest().getStatusCode();
+        if ( status == 503 || status == 504 ) return true;
+      }
+    }
+    return false;
+  }
+}
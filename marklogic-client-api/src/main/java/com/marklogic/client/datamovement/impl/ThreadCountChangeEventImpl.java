@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import com.marklogic.client.datamovement.Batcher;
+import com.marklogic.client.datamovement.ThreadCountChangeEvent;
+
+public class ThreadCountChangeEventImpl implements ThreadCountChangeEvent {
+  private Batcher batcher;
+  private int previousThreadCount;
+  private int threadCount;
+  private Reason reason;
+  private double averageLatency;
+  private double throughput;
+  private double failureRate;
+
+  public ThreadCountChangeEventImpl(Batcher batcher, int previousThreadCount, int threadCount, Reason reason,
+    double averageLatency, double throughput, double failureRate)
+  {
+    this.batcher = batcher;
+    this.previousThreadCount = previousThreadCount;
+    this.threadCount = threadCount;
+    this.reason = reason;
+    this.averageLatency = averageLatency;
+    this.throughput = throughput;
+    this.failureRate = failureRate;
+  }
+
+  @Override
+  public Batcher getBatcher() {
+    return batcher;
+  }
+
+  @Override
+  public int getPreviousThreadCount() {
+    return previousThreadCount;
+  }
+
+  @Override
+  public int getThreadCount() {
+    return threadCount;
+  }
+
+  @Override
+  public Reason getReason() {
+    return reason;
+  }
+
+  @Override
+  public double getAverageLatency() {
+    return averageLatency;
+  }
+
+  @Override
+  public double getThroughput() {
+    return throughput;
+  }
+
+  @Override
+  public double getFailureRate() {
+    return failureRate;
+  }
+
+  @Override
+  public String toString() {
+    return "threadCount " + previousThreadCount + " -> " + threadCount + " (" + reason + ", averageLatency=" +
+      String.format("%.1f", averageLatency) + "ms, throughput=" + String.format("%.1f", throughput) +
+      " batches/s, failureRate=" + String.format("%.3f", failureRate) + ")";
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The uris of one page from /v1/internal/uris kept as the UTF-8 bytes sent by
+ * the server (one uri per line) with the offsets of each uri.  Strings are
+ * decoded only for the uris that are asked for so that a batch handed to a
+ * server-side listener can go back to the server without being decoded and
+ * joined again.  Because the bytes are UTF-8, comparing them unsigned orders
+ * the uris by codepoint.
+ */
+class UriList {
+  private static final String[] NO_URIS = new String[0];
+  // each thread reads its pages into the same buffer so only the exact copy is allocated per page
+  private static final ThreadLocal<byte[]> readBuffer = ThreadLocal.withInitial(() -> new byte[8192]);
+
+  private final byte[] bytes;
+  private final int[] starts;
+  private final int[] ends;
+  private final int size;
+
+  private UriList(byte[] bytes, int[] starts, int[] ends, int size) {
+    this.bytes = bytes;
+    this.starts = starts;
+    this.ends = ends;
+    this.size = size;
+  }
+
+  /**
+   * Reads a text/uri-list body, skipping blank lines and carriage returns.
+   * The stream is read to the end but not closed.
+   */
+  static UriList read(InputStream in) throws IOException {
+    byte[] buffer = readBuffer.get();
+    int length = 0;
+    int read;
+    while ( (read = in.read(buffer, length, buffer.length - length)) != -1 ) {
+      length += read;
+      if ( length == buffer.length ) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        readBuffer.set(buffer);
+      }
+    }
+    // drop the trailing newline so the bytes can be sent as a uri list as-is
+    while ( length > 0 && (buffer[length - 1] == '\n' || buffer[length - 1] == '\r') ) length--;
+    byte[] bytes = Arrays.copyOf(buffer, length);
+
+    int[] starts = new int[16];
+    int[] ends = new int[16];
+    int size = 0;
+    int lineStart = 0;
+    for ( int i = 0; i <= length; i++ ) {
+      if ( i < length && bytes[i] != '\n' ) continue;
+      int lineEnd = (i > lineStart && bytes[i - 1] == '\r') ? i - 1 : i;
+      if ( lineEnd > lineStart ) {
+        if ( size == starts.length ) {
+          starts = Arrays.copyOf(starts, size * 2);
+          ends = Arrays.copyOf(ends, size * 2);
+        }
+        starts[size] = lineStart;
+        ends[size] = lineEnd;
+        size++;
+      }
+      lineStart = i + 1;
+    }
+    return new UriList(bytes, starts, ends, size);
+  }
+
+  int size() {
+    return size;
+  }
+
+  String get(int index) {
+    if ( index < 0 || index >= size ) throw new IndexOutOfBoundsException("index " + index + " size " + size);
+    return new String(bytes, starts[index], ends[index] - starts[index], StandardCharsets.UTF_8);
+  }
+
+  String[] toArray() {
+    if ( size == 0 ) return NO_URIS;
+    String[] uris = new String[size];
+    for ( int i = 0; i < size; i++ ) uris[i] = get(i);
+    return uris;
+  }
+
+  /** Compares the uri at index with the uri by codepoint without decoding the uri at index. */
+  int compareTo(int index, byte[] uri) {
+    int length = ends[index] - starts[index];
+    int common = Math.min(length, uri.length);
+    for ( int i = 0; i < common; i++ ) {
+      int diff = (bytes[starts[index] + i] & 0xff) - (uri[i] & 0xff);
+      if ( diff != 0 ) return diff;
+    }
+    return length - uri.length;
+  }
+
+  /** Returns the first count uris, sharing the offsets of this list. */
+  UriList head(int count) {
+    if ( count == size ) return this;
+    if ( count < 0 || count > size ) throw new IndexOutOfBoundsException("count " + count + " size " + size);
+    int length = count == 0 ? 0 : ends[count - 1];
+    return new UriList(Arrays.copyOf(bytes, length), starts, ends, count);
+  }
+
+  /** @return the uris separated by newlines as UTF-8 bytes (the caller must not modify them) */
+  byte[] getBytes() {
+    return bytes;
+  }
+}
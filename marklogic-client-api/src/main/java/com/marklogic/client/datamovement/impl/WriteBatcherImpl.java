@@ -28,7 +28,9 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -36,6 +38,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,16 +53,20 @@ import com.marklogic.client.document.XMLDocumentManager;
 import com.marklogic.client.document.DocumentWriteOperation.OperationType;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.impl.DocumentWriteOperationImpl;
+import com.marklogic.client.impl.HandleAccessor;
 import com.marklogic.client.impl.Utilities;
 import com.marklogic.client.io.marker.AbstractWriteHandle;
 import com.marklogic.client.io.marker.ContentHandle;
 import com.marklogic.client.io.marker.DocumentMetadataWriteHandle;
 import com.marklogic.client.io.marker.StructureReadHandle;
+import com.marklogic.client.metrics.MetricsRegistry;
 
 import com.marklogic.client.datamovement.DataMovementException;
 import com.marklogic.client.datamovement.DataMovementManager;
 import com.marklogic.client.datamovement.Forest;
 import com.marklogic.client.datamovement.ForestConfiguration;
+import com.marklogic.client.datamovement.ForestSelector;
+import com.marklogic.client.datamovement.HostSelector;
 import com.marklogic.client.datamovement.JobTicket;
 import com.marklogic.client.datamovement.WriteBatch;
 import com.marklogic.client.datamovement.WriteBatchListener;
@@ -67,6 +74,7 @@ import com.marklogic.client.datamovement.WriteEvent;
 import com.marklogic.client.datamovement.WriteFailureListener;
 import com.marklogic.client.datamovement.Forest.HostType;
 import com.marklogic.client.datamovement.WriteBatcher;
+import com.marklogic.client.datamovement.ThreadCountChangeListener;
 
 /**
  * The implementation of WriteBatcher.
@@ -76,11 +84,19 @@ import com.marklogic.client.datamovement.WriteBatcher;
  *     - no synchronization or unnecessary delays while queueing
  *     - won't launch extra threads until a batch is ready to write
  *     - (warning) we don't proactively read streams, so don't leave them in the queue too long
+ *     - unless maxQueuedDocuments or maxQueuedBytes is set, in which case add/addAs block
+ *       while the queued documents (including those in batches not yet written) are at the limit
  *   - topology-aware by calling /v1/forestinfo
  *     - get list of hosts which have writeable forests
  *     - each write hits the next writeable host for round-robin network calls
+ *     - unless a ForestSelector is set, in which case documents are queued by the host of the
+ *       forest selected for each uri and each batch is written to that host
+ *     - or, if a HostSelector is set, each unrouted batch goes to the host it chooses
+ *       based on the batches in flight and the average write latency of each host
  *   - manage an internal threadPool of size threadCount for network calls
  *   - when batchSize reached, writes a batch
+ *     - or when batchSizeBytes of content is queued (if set)
+ *     - or when the oldest queued document has waited flushInterval (if set)
  *     - using a thread from threadPool
  *     - no synchronization or unnecessary delays while emptying queue
  *     - and calls each successListener (if not using transactions)
@@ -139,6 +155,9 @@ import com.marklogic.client.datamovement.WriteBatcher;
  *       - we use a blocking queue for the DocumentWriteOperation main queue just so we can have
  *         the atomic drainTo method used by flush.  But LinkedBlockingQueue is unbounded so
  *         nothing should block on put() and we use poll() to get things so we don't block there either.
+ *       - the exception is the bounded mode, where add/addAs deliberately wait on queueSpace
+ *         until a batch finishes writing, which gives producers back-pressure instead of running
+ *         batches in the calling thread
  *       - we only use one synchronized block inside initialize() to ensure it only runs once
  *         - after the first call is complete, calls to initialize() won't hit the synchronized block
  *   - try to do what's expected
@@ -156,8 +175,9 @@ import com.marklogic.client.datamovement.WriteBatcher;
  *       - for more on the design of awaitCompletion, see comments above CompletableThreadPoolExecutor
  *         and CompletableRejectedExecutionHandler
  *   - track
- *     - one queue of DocumentWriteOperation
- *     - batchCounter to decide if it's time to write a batch
+ *     - one queue of DocumentWriteOperation (PendingDocuments)
+ *       - or with a ForestSelector, one queue per host plus one for uris without a host
+ *     - batchCounter to decide if it's time to write a batch (one per queue)
  *       - flush resets this so after flush batch sizes will be normal
  *     - batchNumber to decide which host to use next (round-robin)
  *     - initialized to ensure configuration doesn't change after add/addAs are called
@@ -167,6 +187,7 @@ import com.marklogic.client.datamovement.WriteBatcher;
  *       - host name
  *       - client (contains http connection pool)
  *         - auth challenge once per client
+ *       - batches in flight and moving average write latency (for the HostSelector)
  *       - number of batches
  *         - used to kick off a transaction each time we hit transactionSize
  *       - current transactions (transactionInfos object)
@@ -207,21 +228,39 @@ public class WriteBatcherImpl
   private String temporalCollection;
   private ServerTransform transform;
   private ForestConfiguration forestConfig;
-  private LinkedBlockingQueue<DocumentWriteOperation> queue = new LinkedBlockingQueue<>();
+  private final PendingDocuments unrouted = new PendingDocuments(null);
+  private final Map<String,PendingDocuments> routed = new ConcurrentHashMap<>();
+  private ForestSelector forestSelector;
+  private HostSelector hostSelector;
+  private Forest[] routingForests;
   private List<WriteBatchListener> successListeners = new ArrayList<>();
   private List<WriteFailureListener> failureListeners = new ArrayList<>();
   private AtomicLong batchNumber = new AtomicLong(0);
-  private AtomicLong batchCounter = new AtomicLong(0);
   private AtomicLong itemsSoFar = new AtomicLong(0);
   private HostInfo[] hostInfos;
   private boolean initialized = false;
   private CompletableThreadPoolExecutor threadPool = null;
+  private ThreadCountAdjuster threadCountAdjuster = null;
   private final AtomicBoolean stopped = new AtomicBoolean(false);
   private final AtomicBoolean started = new AtomicBoolean(false);
   private boolean usingTransactions = false;
   private JobTicket jobTicket;
   private Calendar jobStartTime;
   private Calendar jobEndTime;
+  private int maxQueuedDocuments = 0;
+  private long maxQueuedBytes = 0;
+  private long addTimeout = -1;
+  private long batchSizeBytes = 0;
+  private long flushInterval = 0;
+  private ScheduledExecutorService flushTimer = null;
+  private final AtomicLong queuedDocuments = new AtomicLong(0);
+  private final AtomicLong queuedBytes = new AtomicLong(0);
+  private final Object queueSpace = new Object();
+  // the callers of add waiting on queueSpace (changed while holding queueSpace)
+  private volatile int waitingForSpace = 0;
+  private final Map<String,BatchMeters> hostMeters = new ConcurrentHashMap<>();
+  private MetricsRegistry.Counter retries;
+  private MetricsRegistry.Gauge queueDepth;
 
   public WriteBatcherImpl(DataMovementManager moveMgr, ForestConfiguration forestConfig) {
     super(moveMgr);
@@ -243,16 +282,46 @@ public class WriteBatcherImpl
         logger.warn("threadCount should be 1 or greater--setting threadCount to number of hosts ({})", hostInfos.length);
       }
       // create a thread pool where threads are kept alive for up to one minute of inactivity,
-      // max queue size is threadCount * 3, and callers run tasks past the max queue size
-      threadPool = new CompletableThreadPoolExecutor(getThreadCount(), getThreadCount(), 1, TimeUnit.MINUTES,
-        new LinkedBlockingQueue<Runnable>(getThreadCount() * 3));
+      // max queue size is threadCount * 3, and callers run tasks past the max queue size.
+      // When the queued documents are bounded, add() applies the back-pressure, so the task
+      // queue is left unbounded and callers never run tasks.
+      // An adaptive job sizes the queue for its largest thread count.
+      int threadCount = initialThreadCount();
+      int queueThreadCount = isAdaptiveThreadCount() ? getMaxThreadCount() : threadCount;
+      BlockingQueue<Runnable> taskQueue = isQueueBounded() ?
+        new LinkedBlockingQueue<Runnable>() : new LinkedBlockingQueue<Runnable>(queueThreadCount * 3);
+      threadPool = new CompletableThreadPoolExecutor(threadCount, threadCount, 1, TimeUnit.MINUTES,
+        taskQueue);
       threadPool.allowCoreThreadTimeOut(true);
+      threadCountAdjuster = newThreadCountAdjuster(threadPool);
+      retries = getMetricsRegistry().counter("marklogic.dmsdk.write.batch.retries", metricTags());
+
+      if ( flushInterval > 0 ) {
+        // check for documents that have waited too long at half the interval
+        // so no document waits much longer than flushInterval
+        long period = Math.max(1, flushInterval / 2);
+        flushTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+          Thread thread = new Thread(runnable, "WriteBatcher flush timer");
+          thread.setDaemon(true);
+          return thread;
+        });
+        flushTimer.scheduleWithFixedDelay(this::writeWaitingBatches, period, period, TimeUnit.MILLISECONDS);
+      }
 
       initialized = true;
 
       logger.info("threadCount={}", getThreadCount());
+      if ( isAdaptiveThreadCount() ) {
+        logger.info("adaptive threadCount between {} and {}", getMinThreadCount(), getMaxThreadCount());
+      }
       logger.info("batchSize={}", getBatchSize());
       if ( usingTransactions == true ) logger.info("transactionSize={}", transactionSize);
+      if ( maxQueuedDocuments > 0 ) logger.info("maxQueuedDocuments={}", maxQueuedDocuments);
+      if ( maxQueuedBytes > 0 ) logger.info("maxQueuedBytes={}", maxQueuedBytes);
+      if ( batchSizeBytes > 0 ) logger.info("batchSizeBytes={}", batchSizeBytes);
+      if ( flushInterval > 0 ) logger.info("flushInterval={}ms", flushInterval);
+      if ( forestSelector != null ) logger.info("routing documents by forest with {}", forestSelector);
+      if ( hostSelector != null ) logger.info("choosing hosts with {}", hostSelector);
       jobStartTime = Calendar.getInstance();
       started.set(true);
     }
@@ -275,28 +344,101 @@ public class WriteBatcherImpl
     if ( writeOperation.getContent() == null ) throw new IllegalArgumentException("contentHandle must not be null");
     initialize();
     requireNotStopped();
-    queue.add(writeOperation);
+    long bytes = Math.max(0, HandleAccessor.contentLength(writeOperation.getContent()));
+    reserveQueueSpace(bytes);
+    QueuedDocument queued = new QueuedDocument(writeOperation, bytes);
+    PendingDocuments pending;
+    while ( true ) {
+      pending = getPendingDocuments(writeOperation.getUri());
+      pending.queue.add(queued);
+      // withForestConfig retires the queue of a host that left the forest
+      // config and moves its documents, so if the queue was retired, either
+      // the move took this document or this document arrived too late and
+      // must be queued again
+      if ( pending.retired == false || pending.queue.remove(queued) == false ) break;
+    }
     logger.trace("add uri={}", writeOperation.getUri());
-    // if we have queued batchSize, it's time to flush a batch
-    long recordNum = batchCounter.incrementAndGet();
-    boolean timeToWriteBatch = (recordNum % getBatchSize()) == 0;
+    // a retired queue no longer counts or writes its documents
+    if ( pending.retired == true ) return this;
+    // if we have queued batchSize or batchSizeBytes, it's time to write a batch
+    long recordNum = pending.batchCounter.incrementAndGet();
+    long recordBytes = pending.pendingBytes.addAndGet(bytes);
+    // a caller waiting for space may be able to cut a partial batch now
+    // that this document is pending
+    if ( waitingForSpace > 0 ) {
+      synchronized(queueSpace) { queueSpace.notifyAll(); }
+    }
+    boolean timeToWriteBatch = (recordNum > 0 && (recordNum % getBatchSize()) == 0) ||
+      (batchSizeBytes > 0 && recordBytes >= batchSizeBytes);
     if ( timeToWriteBatch ) {
-      BatchWriteSet writeSet = newBatchWriteSet(false);
-      int i=0;
-      for ( ; i < getBatchSize(); i++ ) {
-        DocumentWriteOperation doc = queue.poll();
-        if ( doc != null ) {
-          writeSet.getWriteSet().add(doc);
-        } else {
-          // strange, there should have been a full batch of docs in the queue...
-          break;
+      writeQueuedBatch(pending);
+    }
+    return this;
+  }
+
+  // without a ForestSelector, all documents share one queue and batches go
+  // round-robin to the hosts; otherwise each host has a queue for the
+  // documents whose selected forest is on that host
+  private PendingDocuments getPendingDocuments(String uri) {
+    Forest[] forests = routingForests;
+    if ( forestSelector == null || forests == null || forests.length == 0 ) return unrouted;
+    Forest forest = forestSelector.selectForest(uri, forests);
+    if ( forest == null || forest.getPreferredHost() == null ) return unrouted;
+    // only withForestConfig creates the queue for a host, so a forest from
+    // a config that has since changed can't recreate a retired queue
+    PendingDocuments pending = routed.get(forest.getPreferredHost());
+    return (pending == null) ? unrouted : pending;
+  }
+
+  private Iterable<PendingDocuments> allPendingDocuments() {
+    List<PendingDocuments> all = new ArrayList<>(routed.values());
+    all.add(unrouted);
+    return all;
+  }
+
+  // Writes a batch from the head of the queue, stopping at batchSize
+  // documents or as soon as the batch reaches batchSizeBytes of content.
+  // Since the batch is cut by bytes or time as well as by count, batchCounter
+  // and pendingBytes track the documents not yet taken for a batch rather than
+  // all documents ever added.  The documents are taken before the write set
+  // is created, since creating it counts a batch in flight for its host, and
+  // another thread may have emptied the queue first.
+  private void writeQueuedBatch(PendingDocuments pending) {
+    List<QueuedDocument> batch = new ArrayList<>();
+    long batchBytes = 0;
+    for ( int i=0; i < getBatchSize(); i++ ) {
+      if ( batchSizeBytes > 0 && batchBytes >= batchSizeBytes ) break;
+      QueuedDocument queued = pending.queue.poll();
+      if ( queued == null ) break;
+      batch.add(queued);
+      batchBytes += queued.bytes;
+    }
+    if ( batch.size() == 0 ) return;
+    pending.batchCounter.addAndGet(-batch.size());
+    pending.pendingBytes.addAndGet(-batchBytes);
+    BatchWriteSet writeSet = newBatchWriteSet(false, pending.hostName);
+    for ( QueuedDocument queued : batch ) {
+      writeSet.getWriteSet().add(queued.writeOperation);
+    }
+    writeSet.setQueued(batch.size(), batchBytes);
+    threadPool.submit( new BatchWriter(writeSet) );
+  }
+
+  // run by flushTimer to write partial batches once the oldest queued
+  // document has waited flushInterval
+  private void writeWaitingBatches() {
+    try {
+      long oldestAllowed = System.currentTimeMillis() - flushInterval;
+      for ( PendingDocuments pending : allPendingDocuments() ) {
+        QueuedDocument oldest;
+        while ( isStopped() == false && (oldest = pending.queue.peek()) != null && oldest.queuedAt <= oldestAllowed ) {
+          logger.trace("writing a partial batch after waiting {}ms", flushInterval);
+          writeQueuedBatch(pending);
         }
       }
-      if ( writeSet.getWriteSet().size() > 0 ) {
-        threadPool.submit( new BatchWriter(writeSet) );
-      }
+    } catch (Throwable t) {
+      logger.error("Failed to write a batch for documents waiting longer than the flush interval", t);
     }
-    return this;
   }
 
   @Override
@@ -330,6 +472,102 @@ public class WriteBatcherImpl
     return add(uri, metadataHandle, handle);
   }
 
+  private boolean isQueueBounded() {
+    return maxQueuedDocuments > 0 || maxQueuedBytes > 0;
+  }
+
+  // Accounts for a document being added to the queue.  In bounded mode, waits
+  // until a batch finishes writing if the queue is at its limit.  A document
+  // is always accepted when nothing is queued, so a document larger than
+  // maxQueuedBytes can't wait forever.
+  private void reserveQueueSpace(long bytes) {
+    if ( isQueueBounded() == false ) {
+      queuedDocuments.incrementAndGet();
+      queuedBytes.addAndGet(bytes);
+      return;
+    }
+    long deadline = (addTimeout < 0) ? 0 : System.currentTimeMillis() + addTimeout;
+    while ( true ) {
+      PendingDocuments unbatched = null;
+      synchronized(queueSpace) {
+        waitingForSpace++;
+        try {
+          while ( queuedDocuments.get() > 0 && hasQueueSpace(bytes) == false ) {
+            requireNotStopped();
+            // when every queued document is still waiting to fill a batch, no
+            // write will free space, so write a partial batch; otherwise wait
+            // for a batch in flight so batches keep their full size
+            if ( getPendingDocumentCount() >= queuedDocuments.get() ) {
+              unbatched = getNonEmptyPendingDocuments();
+              if ( unbatched != null ) break;
+            }
+            long wait = 0;
+            if ( addTimeout >= 0 ) {
+              wait = deadline - System.currentTimeMillis();
+              if ( wait <= 0 ) {
+                throw new DataMovementException("Timed out after " + addTimeout +
+                  " ms waiting for space to queue a document (queued documents=" + queuedDocuments.get() +
+                  ", queued bytes=" + queuedBytes.get() + ")", null);
+              }
+            }
+            try {
+              queueSpace.wait(wait);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new DataMovementException("Interrupted while waiting for space to queue a document", e);
+            }
+          }
+        } finally {
+          waitingForSpace--;
+        }
+        if ( unbatched == null ) {
+          queuedDocuments.incrementAndGet();
+          queuedBytes.addAndGet(bytes);
+          return;
+        }
+      }
+      // submitted without holding queueSpace, which the writer threads need
+      // to release the space of the batches they finish
+      writeQueuedBatch(unbatched);
+    }
+  }
+
+  // the documents queued by add but not yet cut into a batch
+  private long getPendingDocumentCount() {
+    long count = 0;
+    for ( PendingDocuments pending : allPendingDocuments() ) {
+      count += pending.batchCounter.get();
+    }
+    return count;
+  }
+
+  private PendingDocuments getNonEmptyPendingDocuments() {
+    for ( PendingDocuments pending : allPendingDocuments() ) {
+      if ( pending.queue.isEmpty() == false ) return pending;
+    }
+    return null;
+  }
+
+  private boolean hasQueueSpace(long bytes) {
+    if ( maxQueuedDocuments > 0 && queuedDocuments.get() >= maxQueuedDocuments ) return false;
+    if ( maxQueuedBytes > 0 && queuedBytes.get() + bytes > maxQueuedBytes ) return false;
+    return true;
+  }
+
+  // called once the documents in a batch have been written (or failed) so
+  // they no longer count against the queue limits
+  private void releaseQueueSpace(BatchWriteSet writeSet) {
+    long docs  = writeSet.getQueuedDocuments();
+    long bytes = writeSet.getQueuedBytes();
+    if ( docs == 0 && bytes == 0 ) return;
+    writeSet.setQueued(0, 0);
+    queuedDocuments.addAndGet(-docs);
+    queuedBytes.addAndGet(-bytes);
+    if ( isQueueBounded() ) {
+      synchronized(queueSpace) { queueSpace.notifyAll(); }
+    }
+  }
+
   private void requireInitialized() {
     if ( initialized == false ) {
       throw new IllegalStateException("This operation must be called after starting this job");
@@ -346,18 +584,48 @@ public class WriteBatcherImpl
     if ( isStopped() == true ) throw new IllegalStateException("This instance has been stopped");
   }
 
-  private BatchWriteSet newBatchWriteSet(boolean forceNewTransaction) {
+  private BatchWriteSet newBatchWriteSet(boolean forceNewTransaction, String hostName) {
     long batchNum = batchNumber.incrementAndGet();
+    if ( hostName != null ) {
+      for ( HostInfo host : hostInfos ) {
+        if ( hostName.equals(host.hostName) ) return newBatchWriteSet(forceNewTransaction, batchNum, host);
+      }
+      // the host has left the forest config, so fall back to round-robin
+    }
     return newBatchWriteSet(forceNewTransaction, batchNum);
   }
 
   private BatchWriteSet newBatchWriteSet(boolean forceNewTransaction, long batchNum) {
-    int hostToUse = (int) (batchNum % hostInfos.length);
-    HostInfo host = hostInfos[hostToUse];
+    HostInfo[] hosts = hostInfos;
+    if ( hostSelector != null ) {
+      HostSelector.HostLoad selected = hostSelector.selectHost(hosts, batchNum);
+      if ( selected instanceof HostInfo ) {
+        return newBatchWriteSet(forceNewTransaction, batchNum, (HostInfo) selected);
+      } else if ( selected != null ) {
+        throw new IllegalStateException("HostSelector must return one of the hosts passed to it");
+      }
+    }
+    int hostToUse = (int) (batchNum % hosts.length);
+    return newBatchWriteSet(forceNewTransaction, batchNum, hosts[hostToUse]);
+  }
+
+  private BatchWriteSet newBatchWriteSet(boolean forceNewTransaction, long batchNum, HostInfo host) {
     DatabaseClient hostClient = host.client;
     BatchWriteSet batchWriteSet = new BatchWriteSet(this, hostClient.newDocumentManager().newWriteSet(),
       hostClient, getTransform(), getTemporalCollection());
     batchWriteSet.setBatchNumber(batchNum);
+    host.inFlightBatches.incrementAndGet();
+    batchWriteSet.onWritten( failure -> {
+      host.batchFinished(batchWriteSet.getWriteNanos(), failure);
+      // the queued bytes are only known for batches cut from the queue, not for retries
+      long bytes = batchWriteSet.getQueuedBytes();
+      hostMeters(host.hostName).batchFinished(batchWriteSet.getWriteNanos(),
+        batchWriteSet.getWriteSet().size(), bytes > 0 ? bytes : -1, failure);
+      releaseQueueSpace(batchWriteSet);
+      if ( threadCountAdjuster != null ) {
+        threadCountAdjuster.batchFinished(batchWriteSet.getWriteNanos(), failure);
+      }
+    });
     if ( usingTransactions ) {
       // before we write, see if we need to open a transaction
       batchWriteSet.onBeforeWrite( () -> {
@@ -474,6 +742,7 @@ public class WriteBatcherImpl
       return;
     }
     if ( batch == null ) throw new IllegalArgumentException("batch must not be null");
+    retries.increment();
     boolean forceNewTransaction = true;
     BatchWriteSet writeSet = newBatchWriteSet(forceNewTransaction, batch.getJobBatchNumber());
     if ( !callFailListeners ) {
@@ -535,26 +804,34 @@ public class WriteBatcherImpl
   private void flush(boolean waitForCompletion) {
     requireInitialized();
     requireNotStopped();
-    // drain any docs left in the queue
-    List<DocumentWriteOperation> docs = new ArrayList<>();
-    long recordInBatch = batchCounter.getAndSet(0);
-    queue.drainTo(docs);
-    logger.info("flushing {} queued docs", docs.size());
-    Iterator<DocumentWriteOperation> iter = docs.iterator();
-    boolean forceNewTransaction = true;
-    for ( int i=0; iter.hasNext(); i++ ) {
-      if ( isStopped() == true ) {
-        logger.warn("Job is now stopped, preventing the flush of {} queued docs", docs.size() - i);
-        if ( waitForCompletion == true ) awaitCompletion();
-        return;
-      }
-      BatchWriteSet writeSet = newBatchWriteSet(forceNewTransaction);
-      int j=0;
-      for ( ; j < getBatchSize() && iter.hasNext(); j++ ) {
-        DocumentWriteOperation doc = iter.next();
-        writeSet.getWriteSet().add(doc);
+    for ( PendingDocuments pending : allPendingDocuments() ) {
+      // drain any docs left in the queue
+      List<QueuedDocument> docs = new ArrayList<>();
+      long recordInBatch = pending.batchCounter.getAndSet(0);
+      pending.pendingBytes.set(0);
+      pending.queue.drainTo(docs);
+      if ( docs.size() == 0 && pending != unrouted ) continue;
+      logger.info("flushing {} queued docs", docs.size());
+      Iterator<QueuedDocument> iter = docs.iterator();
+      boolean forceNewTransaction = true;
+      for ( int i=0; iter.hasNext(); i++ ) {
+        if ( isStopped() == true ) {
+          logger.warn("Job is now stopped, preventing the flush of {} queued docs", docs.size() - i);
+          if ( waitForCompletion == true ) awaitCompletion();
+          return;
+        }
+        BatchWriteSet writeSet = newBatchWriteSet(forceNewTransaction, pending.hostName);
+        long batchBytes = 0;
+        int j=0;
+        for ( ; j < getBatchSize() && iter.hasNext(); j++ ) {
+          if ( batchSizeBytes > 0 && batchBytes >= batchSizeBytes ) break;
+          QueuedDocument queued = iter.next();
+          writeSet.getWriteSet().add(queued.writeOperation);
+          batchBytes += queued.bytes;
+        }
+        writeSet.setQueued(j, batchBytes);
+        threadPool.submit( new BatchWriter(writeSet) );
       }
-      threadPool.submit( new BatchWriter(writeSet) );
     }
 
     if ( waitForCompletion == true ) awaitCompletion();
@@ -646,12 +923,25 @@ public class WriteBatcherImpl
   public void start(JobTicket ticket) {
     jobTicket = ticket;
     initialize();
+    registerQueueDepth(ticket);
+  }
+
+  // documents can be added before the job is started, but the gauge is
+  // tagged with the job id, which is only known once the job is started
+  private synchronized void registerQueueDepth(JobTicket ticket) {
+    if ( queueDepth != null || stopped.get() ) return;
+    BlockingQueue<Runnable> queue = threadPool.getQueue();
+    queueDepth = getMetricsRegistry().gauge("marklogic.dmsdk.write.queue.depth", queue::size, gaugeTags(ticket));
   }
 
   public void stop() {
     jobEndTime = Calendar.getInstance();
     stopped.set(true);
+    if ( flushTimer != null ) flushTimer.shutdownNow();
     if ( threadPool != null ) threadPool.shutdownNow();
+    if ( queueDepth != null ) queueDepth.remove();
+    // wake any callers waiting in add so they see the job is stopped
+    synchronized(queueSpace) { queueSpace.notifyAll(); }
     closeAllListeners();
   }
 
@@ -753,6 +1043,31 @@ public class WriteBatcherImpl
     return this;
   }
 
+  @Override
+  public WriteBatcher withAdaptiveThreadCount(int minThreadCount, int maxThreadCount) {
+    requireNotInitialized();
+    super.withAdaptiveThreadCount(minThreadCount, maxThreadCount);
+    return this;
+  }
+
+  @Override
+  public WriteBatcher onThreadCountChange(ThreadCountChangeListener listener) {
+    super.onThreadCountChange(listener);
+    return this;
+  }
+
+  @Override
+  public WriteBatcher withMetricsRegistry(MetricsRegistry metricsRegistry) {
+    requireNotInitialized();
+    super.withMetricsRegistry(metricsRegistry);
+    return this;
+  }
+
+  private BatchMeters hostMeters(String hostName) {
+    return hostMeters.computeIfAbsent(hostName, name -> new BatchMeters(getMetricsRegistry(),
+      "marklogic.dmsdk.write", "documents", "bytes.sent", metricTags("host", name)));
+  }
+
   public WriteBatcher withTransactionSize(int transactionSize) {
     requireNotInitialized();
     this.transactionSize = transactionSize;
@@ -763,6 +1078,101 @@ public class WriteBatcherImpl
     return transactionSize;
   }
 
+  @Override
+  public WriteBatcher withForestSelector(ForestSelector forestSelector) {
+    requireNotInitialized();
+    this.forestSelector = forestSelector;
+    return this;
+  }
+
+  @Override
+  public ForestSelector getForestSelector() {
+    return forestSelector;
+  }
+
+  @Override
+  public WriteBatcher withHostSelector(HostSelector hostSelector) {
+    requireNotInitialized();
+    this.hostSelector = hostSelector;
+    return this;
+  }
+
+  @Override
+  public HostSelector getHostSelector() {
+    return hostSelector;
+  }
+
+  @Override
+  public WriteBatcher withBatchSizeBytes(long batchSizeBytes) {
+    requireNotInitialized();
+    if ( batchSizeBytes < 0 ) throw new IllegalArgumentException("batchSizeBytes must not be negative");
+    this.batchSizeBytes = batchSizeBytes;
+    return this;
+  }
+
+  @Override
+  public long getBatchSizeBytes() {
+    return batchSizeBytes;
+  }
+
+  @Override
+  public WriteBatcher withFlushInterval(long interval, TimeUnit unit) {
+    requireNotInitialized();
+    if ( unit == null ) throw new IllegalArgumentException("unit must not be null");
+    if ( interval < 0 ) throw new IllegalArgumentException("interval must not be negative");
+    this.flushInterval = unit.toMillis(interval);
+    return this;
+  }
+
+  @Override
+  public long getFlushInterval() {
+    return flushInterval;
+  }
+
+  @Override
+  public WriteBatcher withMaxQueuedDocuments(int maxQueuedDocuments) {
+    requireNotInitialized();
+    if ( maxQueuedDocuments < 0 ) throw new IllegalArgumentException("maxQueuedDocuments must not be negative");
+    this.maxQueuedDocuments = maxQueuedDocuments;
+    return this;
+  }
+
+  @Override
+  public int getMaxQueuedDocuments() {
+    return maxQueuedDocuments;
+  }
+
+  @Override
+  public WriteBatcher withMaxQueuedBytes(long maxQueuedBytes) {
+    requireNotInitialized();
+    if ( maxQueuedBytes < 0 ) throw new IllegalArgumentException("maxQueuedBytes must not be negative");
+    this.maxQueuedBytes = maxQueuedBytes;
+    return this;
+  }
+
+  @Override
+  public long getMaxQueuedBytes() {
+    return maxQueuedBytes;
+  }
+
+  @Override
+  public WriteBatcher withAddTimeout(long timeout, TimeUnit unit) {
+    requireNotInitialized();
+    if ( unit == null ) throw new IllegalArgumentException("unit must not be null");
+    this.addTimeout = (timeout < 0) ? -1 : unit.toMillis(timeout);
+    return this;
+  }
+
+  @Override
+  public long getQueuedDocuments() {
+    return queuedDocuments.get();
+  }
+
+  @Override
+  public long getQueuedBytes() {
+    return queuedBytes.get();
+  }
+
   @Override
   public WriteBatcher withTemporalCollection(String collection) {
     requireNotInitialized();
@@ -845,6 +1255,33 @@ public class WriteBatcherImpl
     }
     this.forestConfig = forestConfig;
     this.hostInfos = newHostInfos;
+    for ( String host : hosts.keySet() ) {
+      routed.computeIfAbsent(host, PendingDocuments::new);
+    }
+    this.routingForests = Stream.of(forests).filter(Forest::isUpdateable).toArray(Forest[]::new);
+    // documents queued for a host that's no longer on the list go round-robin;
+    // the queue is retired before it's drained so an add that races with the
+    // drain queues its document again (see add)
+    for ( PendingDocuments pending : routed.values() ) {
+      if ( hosts.containsKey(pending.hostName) == false ) {
+        pending.retired = true;
+        routed.remove(pending.hostName);
+        List<QueuedDocument> docs = new ArrayList<>();
+        pending.queue.drainTo(docs);
+        long bytes = 0;
+        for ( QueuedDocument doc : docs ) bytes += doc.bytes;
+        pending.batchCounter.addAndGet(-docs.size());
+        pending.pendingBytes.addAndGet(-bytes);
+        unrouted.queue.addAll(docs);
+        unrouted.batchCounter.addAndGet(docs.size());
+        unrouted.pendingBytes.addAndGet(bytes);
+      }
+    }
+    if ( threadPool != null ) {
+      while ( unrouted.batchCounter.get() >= getBatchSize() ) {
+        writeQueuedBatch(unrouted);
+      }
+    }
 
     if ( removedHostInfos.size() > 0 ) {
       DataMovementManagerImpl moveMgrImpl = getMoveMgr();
@@ -868,6 +1305,9 @@ public class WriteBatcherImpl
               if ( throwable instanceof RuntimeException ) throw (RuntimeException) throwable;
               else throw new DataMovementException("Failed to retry batch after failover", throwable);
             });
+            // the queue space held by the old batch is now held by the new one
+            writeSet.setQueued(writerTask.writeSet.getQueuedDocuments(), writerTask.writeSet.getQueuedBytes());
+            writerTask.writeSet.setQueued(0, 0);
             for ( WriteEvent doc : writerTask.writeSet.getBatchOfWriteEvents().getItems() ) {
               writeSet.getWriteSet().add(doc.getTargetUri(), doc.getMetadata(), doc.getContent());
             }
@@ -894,12 +1334,77 @@ public class WriteBatcherImpl
     return forestConfig;
   }
 
-  public static class HostInfo {
+  // the documents that haven't been taken for a batch yet
+  private static class PendingDocuments {
+    private final String hostName;
+    private final LinkedBlockingQueue<QueuedDocument> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong batchCounter = new AtomicLong(0);
+    private final AtomicLong pendingBytes = new AtomicLong(0);
+    // set once the host has left the forest config and the documents have
+    // moved to the round-robin queue
+    private volatile boolean retired = false;
+
+    PendingDocuments(String hostName) {
+      this.hostName = hostName;
+    }
+  }
+
+  private static class QueuedDocument {
+    private final DocumentWriteOperation writeOperation;
+    private final long bytes;
+    private final long queuedAt;
+
+    QueuedDocument(DocumentWriteOperation writeOperation, long bytes) {
+      this.writeOperation = writeOperation;
+      this.bytes          = bytes;
+      this.queuedAt       = System.currentTimeMillis();
+    }
+  }
+
+  public static class HostInfo implements HostSelector.HostLoad {
+    // weight of the newest batch in the moving average latency
+    private static final double LATENCY_WEIGHT = 0.2;
+
     public String hostName;
     public DatabaseClient client;
     public AtomicLong transactionCounter = new AtomicLong(0);
     public ConcurrentLinkedDeque<TransactionInfo> transactionInfos = new ConcurrentLinkedDeque<>();
     public ConcurrentLinkedQueue<TransactionInfo> unfinishedTransactions = new ConcurrentLinkedQueue<>();
+    private AtomicInteger inFlightBatches = new AtomicInteger(0);
+    private AtomicLong finishedBatches = new AtomicLong(0);
+    private volatile double averageLatency = 0;
+    private long measuredBatches = 0;
+
+    private synchronized void batchFinished(long writeNanos, Throwable failure) {
+      inFlightBatches.decrementAndGet();
+      finishedBatches.incrementAndGet();
+      // a failed write may have timed out or been refused at once, so it says
+      // little about how long the host takes to write a batch
+      if ( failure != null ) return;
+      double latency = writeNanos / 1e6;
+      averageLatency = (measuredBatches++ == 0) ?
+        latency : averageLatency + LATENCY_WEIGHT * (latency - averageLatency);
+    }
+
+    @Override
+    public String getHostName() {
+      return hostName;
+    }
+
+    @Override
+    public int getInFlightBatches() {
+      return inFlightBatches.get();
+    }
+
+    @Override
+    public double getAverageLatency() {
+      return averageLatency;
+    }
+
+    @Override
+    public long getFinishedBatches() {
+      return finishedBatches.get();
+    }
 
     private TransactionInfo getTransactionInfoAndDrainPermits() {
       TransactionInfo transactionInfo = transactionInfos.poll();
@@ -1049,6 +1554,7 @@ public class WriteBatcherImpl
 
   public static class BatchWriter implements Runnable {
     private BatchWriteSet writeSet;
+    private boolean writeFinished = false;
 
     public BatchWriter(BatchWriteSet writeSet) {
       if ( writeSet.getWriteSet().size() == 0 ) {
@@ -1059,6 +1565,7 @@ public class WriteBatcherImpl
 
     @Override
     public void run() {
+      long start = System.nanoTime();
       try {
         Runnable onBeforeWrite = writeSet.getOnBeforeWrite();
         if ( onBeforeWrite != null ) {
@@ -1088,6 +1595,7 @@ public class WriteBatcherImpl
             );
           }
           closeAllHandles();
+          written(start, null);
           Runnable onSuccess = writeSet.getOnSuccess();
           if ( onSuccess != null ) {
             onSuccess.run();
@@ -1097,6 +1605,7 @@ public class WriteBatcherImpl
         }
       } catch (Throwable t) {
         logger.trace("failed batch sent to forest on host \"{}\"", writeSet.getClient().getHost());
+        written(start, t);
         Consumer<Throwable> onFailure = writeSet.getOnFailure();
         if ( onFailure != null ) {
           onFailure.accept(t);
@@ -1104,6 +1613,20 @@ public class WriteBatcherImpl
       }
     }
 
+    // runs before the listeners so a listener that adds documents
+    // doesn't wait on queue space held by its own batch; runs only once,
+    // since a failure after the write (such as a failed commit) reaches
+    // the catch block after the write was already reported
+    private void written(long start, Throwable failure) {
+      if ( writeFinished == true ) return;
+      writeFinished = true;
+      writeSet.setWriteNanos(System.nanoTime() - start);
+      Consumer<Throwable> onWritten = writeSet.getOnWritten();
+      if ( onWritten != null ) {
+        onWritten.accept(failure);
+      }
+    }
+
     private void closeAllHandles() throws Throwable {
       Throwable lastThrowable = null;
       for ( DocumentWriteOperation doc : writeSet.getWriteSet() ) {
@@ -15,6 +15,7 @@
 package com.marklogic.client.document;
 
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import com.marklogic.client.FailedRequestException;
 import com.marklogic.client.ForbiddenUserException;
@@ -217,6 +218,20 @@ public interface DocumentManager<R extends AbstractReadHandle, W extends Abstrac
    */
   <T extends R> T read(String docId, T contentHandle)
     throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException;
+  /**
+   * Reads the document content from the database without blocking the calling
+   * thread.  The request is queued on the client's connection pool and, if the
+   * server is temporarily unavailable, retried after a scheduled delay.
+   *
+   * To call readAsync(), an application must authenticate as rest-reader, rest-writer, or rest-admin.
+   *
+   * @param docId	the URI identifier for the document
+   * @param contentHandle	a handle for reading the content of the document
+   * @param <T> the type of content handle to return
+   * @return	a future completed with the content handle populated with the content of the
+   *     document or completed exceptionally with ResourceNotFoundException if the document is not found
+   */
+  <T extends R> CompletableFuture<T> readAsync(String docId, T contentHandle);
   /**
    * Reads the document content from the database as transformed on the server.
    *
@@ -836,6 +851,19 @@ public interface DocumentManager<R extends AbstractReadHandle, W extends Abstrac
    */
   void write(String docId, W contentHandle)
     throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException;
+  /**
+   * Writes the document content to the database without blocking the calling
+   * thread.  If the server is temporarily unavailable, a resendable handle is
+   * sent again after a scheduled delay; a handle that isn't resendable
+   * completes the future with ResourceNotResendableException.
+   *
+   * To call writeAsync(), an application must authenticate as rest-writer or rest-admin.
+   *
+   * @param docId	the URI identifier for the document
+   * @param contentHandle	a handle for writing the content of the document
+   * @return	a future completed when the document has been written
+   */
+  CompletableFuture<Void> writeAsync(String docId, W contentHandle);
   /**
    * Writes the document content to the database as transformed on the server.
    *
@@ -1024,6 +1052,17 @@ public interface DocumentManager<R extends AbstractReadHandle, W extends Abstrac
    */
   void delete(String docId)
     throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException;
+  /**
+   * Deletes the document metadata and content from the database without
+   * blocking the calling thread.
+   *
+   * To call deleteAsync(), an application must authenticate as rest-writer or rest-admin.
+   *
+   * @param docId	the URI identifier for the document
+   * @return	a future completed when the document has been deleted or completed exceptionally
+   *     with ResourceNotFoundException if the document is not found
+   */
+  CompletableFuture<Void> deleteAsync(String docId);
   /**
    * Deletes the document metadata and content from an open database transaction
    *
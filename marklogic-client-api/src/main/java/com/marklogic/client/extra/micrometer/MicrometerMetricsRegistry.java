@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.extra.micrometer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import com.marklogic.client.metrics.MetricsRegistry;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A MetricsRegistry which registers the meters with a Micrometer
+ * MeterRegistry, so the measurements reach whichever monitoring system
+ * Micrometer is configured for.  Timers publish a percentile histogram so
+ * percentiles can be aggregated across jobs and clients.
+ *
+ * Sample Usage:
+ *
+ * <pre>{@code
+ *     MeterRegistry meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+ *     WriteBatcher batcher = dataMovementManager.newWriteBatcher()
+ *         .withMetricsRegistry(new MicrometerMetricsRegistry(meterRegistry));
+ *}</pre>
+ */
+public class MicrometerMetricsRegistry implements MetricsRegistry {
+  private final MeterRegistry registry;
+
+  /**
+   * @param registry the Micrometer registry to receive the meters
+   */
+  public MicrometerMetricsRegistry(MeterRegistry registry) {
+    if ( registry == null ) throw new IllegalArgumentException("registry must not be null");
+    this.registry = registry;
+  }
+
+  /**
+   * @return the Micrometer registry which receives the meters
+   */
+  public MeterRegistry getMeterRegistry() {
+    return registry;
+  }
+
+  @Override
+  public Timer timer(String name, String... tags) {
+    io.micrometer.core.instrument.Timer timer = io.micrometer.core.instrument.Timer.builder(name)
+      .tags(tags)
+      .publishPercentileHistogram()
+      .register(registry);
+    return nanos -> timer.record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public Counter counter(String name, String... tags) {
+    io.micrometer.core.instrument.Counter counter = io.micrometer.core.instrument.Counter.builder(name)
+      .tags(tags)
+      .register(registry);
+    return counter::increment;
+  }
+
+  @Override
+  public Summary summary(String name, String... tags) {
+    DistributionSummary summary = DistributionSummary.builder(name)
+      .tags(tags)
+      .register(registry);
+    return summary::record;
+  }
+
+  @Override
+  public Gauge gauge(String name, DoubleSupplier value, String... tags) {
+    if ( value == null ) throw new IllegalArgumentException("value must not be null");
+    Meter gauge = io.micrometer.core.instrument.Gauge.builder(name, value, DoubleSupplier::getAsDouble)
+      .tags(tags)
+      .strongReference(true)
+      .register(registry);
+    return () -> registry.remove(gauge);
+  }
+}
@@ -35,6 +35,7 @@ import com.marklogic.client.semantics.SPARQLQueryManager;
 import com.marklogic.client.util.RequestLogger;
 import com.marklogic.client.eval.ServerEvaluationCall;
 import com.marklogic.client.extensions.ResourceManager;
+import com.marklogic.client.DatabaseClientFactory.ConnectionConfig;
 import com.marklogic.client.DatabaseClientFactory.HandleFactoryRegistry;
 import com.marklogic.client.admin.ServerConfigurationManager;
 import com.marklogic.client.alerting.RuleManager;
@@ -56,6 +57,7 @@ public class DatabaseClientImpl implements DatabaseClient {
   private HandleFactoryRegistry handleRegistry;
   private SecurityContext       securityContext;
   private ConnectionType        connectionType;
+  private ConnectionConfig      connectionConfig;
 
   public DatabaseClientImpl(RESTServices services, String host, int port, String database,
                             SecurityContext securityContext, ConnectionType connectionType) {
@@ -83,6 +85,13 @@ public class DatabaseClientImpl implements DatabaseClient {
     this.handleRegistry = handleRegistry;
   }
 
+  public ConnectionConfig getConnectionConfig() {
+    return connectionConfig;
+  }
+  public void setConnectionConfig(ConnectionConfig connectionConfig) {
+    this.connectionConfig = connectionConfig;
+  }
+
   @Override
   public Transaction openTransaction() throws ForbiddenUserException, FailedRequestException {
     return services.openTransaction(null, TransactionImpl.DEFAULT_TIMELIMIT);
@@ -20,6 +20,7 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import javax.xml.bind.DatatypeConverter;
 import javax.xml.datatype.Duration;
@@ -216,6 +217,26 @@ abstract class DocumentManagerImpl<R extends AbstractReadHandle, W extends Abstr
     return read(uri, null, contentHandle, null, null);
   }
 
+  @Override
+  public <T extends R> CompletableFuture<T> readAsync(String uri, T contentHandle) {
+    if (uri == null)
+      throw new IllegalArgumentException(
+        "Attempt to call readAsync with null uri");
+
+    if (logger.isInfoEnabled())
+      logger.info("Reading content asynchronously for {}", uri);
+
+    checkContentFormat(contentHandle);
+
+    return services.getDocumentAsync(
+      requestLogger,
+      new DocumentDescriptorImpl(uri, true),
+      null,
+      mergeTransformParameters(getReadTransform(), addTemporalParams(getReadParams(), null, null, null)),
+      contentHandle
+    ).thenApply(wasModified -> wasModified ? contentHandle : null);
+  }
+
   @Override
   public <T extends R> T read(String uri, T contentHandle,
                               ServerTransform transform) throws ResourceNotFoundException,
@@ -688,6 +709,26 @@ abstract class DocumentManagerImpl<R extends AbstractReadHandle, W extends Abstr
     write(uri, null, contentHandle, null, null, null, null);
   }
 
+  @Override
+  public CompletableFuture<Void> writeAsync(String uri, W contentHandle) {
+    if (uri == null)
+      throw new IllegalArgumentException(
+        "Writing document with null identifier");
+
+    if (logger.isInfoEnabled())
+      logger.info("Writing content asynchronously for {}", uri);
+
+    checkContentFormat(contentHandle);
+
+    return services.putDocumentAsync(
+      requestLogger,
+      new DocumentDescriptorImpl(uri, true),
+      null,
+      mergeTransformParameters(getWriteTransform(), addTemporalParams(getWriteParams(), null, null, null)),
+      contentHandle
+    ).thenApply(temporalDesc -> null);
+  }
+
   @Override
   public void write(String uri, W contentHandle, ServerTransform transform)
     throws ResourceNotFoundException, ForbiddenUserException,
@@ -932,6 +973,20 @@ abstract class DocumentManagerImpl<R extends AbstractReadHandle, W extends Abstr
     delete(uri, null, null, null);
   }
 
+  @Override
+  public CompletableFuture<Void> deleteAsync(String uri) {
+    if (uri == null)
+      throw new IllegalArgumentException(
+        "Deleting document with null identifier");
+
+    if (logger.isInfoEnabled())
+      logger.info("Deleting asynchronously {}", uri);
+
+    return services.deleteDocumentAsync(requestLogger, new DocumentDescriptorImpl(uri, true),
+      null, null, new RequestParameters()
+    ).thenApply(temporalDesc -> null);
+  }
+
   @Override
   public void delete(String uri, Transaction transaction)
     throws ResourceNotFoundException, ForbiddenUserException,
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * An HTTP Request interceptor that compresses request bodies with gzip as
+ * they are written to the connection.  Bodies that already have a
+ * Content-Encoding and bodies known to be smaller than the minimum length
+ * are sent as is.
+ *
+ * Responses don't need an interceptor because OkHttp requests gzip responses
+ * and decompresses them while they are read.
+ */
+public class HTTPGzipRequestInterceptor implements Interceptor {
+  static final int MIN_GZIP_LENGTH = 1024;
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    RequestBody body = request.body();
+    if (body == null || request.header("Content-Encoding") != null) {
+      return chain.proceed(request);
+    }
+    long length = body.contentLength();
+    if (length != -1 && length < MIN_GZIP_LENGTH) {
+      return chain.proceed(request);
+    }
+    Request compressedRequest = request.newBuilder()
+      .header("Content-Encoding", "gzip")
+      .method(request.method(), new GzipRequestBody(body))
+      .build();
+    return chain.proceed(compressedRequest);
+  }
+
+  static class GzipRequestBody extends RequestBody {
+    private RequestBody body;
+
+    GzipRequestBody(RequestBody body) {
+      this.body = body;
+    }
+
+    @Override
+    public MediaType contentType() {
+      return body.contentType();
+    }
+
+    // the compressed length isn't known until the body has been written
+    @Override
+    public long contentLength() {
+      return -1;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+      BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+      body.writeTo(gzipSink);
+      gzipSink.close();
+    }
+  }
+}
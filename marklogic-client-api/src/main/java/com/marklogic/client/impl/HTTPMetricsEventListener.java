@@ -0,0 +1,263 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.marklogic.client.metrics.MetricsRegistry;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Times the phases of each HTTP call and records them in a MetricsRegistry,
+ * so a slow request can be pinned on DNS, connecting, the TLS handshake,
+ * writing the request (which includes serializing the handle content),
+ * waiting for the server to respond or reading the response body (which
+ * includes the handle or listener consuming it).  Every meter is tagged
+ * with the host, the REST endpoint (such as "documents", "search",
+ * "internal/uris", "rows" or "resources/{name}") and the HTTP method:
+ *
+ * <ul>
+ *   <li>marklogic.client.http.call.duration (timer) -- the whole call, including retries of authentication</li>
+ *   <li>marklogic.client.http.dns.duration (timer)</li>
+ *   <li>marklogic.client.http.connect.duration (timer) -- including the TLS handshake</li>
+ *   <li>marklogic.client.http.tls.duration (timer)</li>
+ *   <li>marklogic.client.http.request.duration (timer) -- writing the headers and body</li>
+ *   <li>marklogic.client.http.response.headers.duration (timer) -- from the end of the request
+ *     to the response headers, the time to first byte</li>
+ *   <li>marklogic.client.http.response.body.duration (timer) -- reading the response body</li>
+ *   <li>marklogic.client.http.request.bytes and marklogic.client.http.response.bytes (summaries)</li>
+ *   <li>marklogic.client.http.call.failures (counter) -- calls that failed with an IOException</li>
+ * </ul>
+ *
+ * Connections reused from the pool skip the DNS, connect and TLS phases.
+ * A listener is created for each call and only sees the events of its call
+ * in order, so it keeps its timestamps in plain fields.  The meters of each
+ * endpoint are looked up once by the factory.
+ *
+ * OkHttp doesn't signal the end of a call whose response body ends before
+ * the call releases its connection, as for an empty body, so a call is
+ * also timed when it releases its connection after its response body.
+ */
+public class HTTPMetricsEventListener extends EventListener {
+  private final EndpointMeters meters;
+  private long callStart;
+  private long dnsStart;
+  private long connectStart;
+  private long secureConnectStart;
+  private long requestStart;
+  private long requestEnd;
+  private long responseBodyStart;
+  private boolean responseBodyEnded;
+  private boolean callRecorded;
+
+  HTTPMetricsEventListener(EndpointMeters meters) {
+    this.meters = meters;
+  }
+
+  /**
+   * Creates the listener of each call for a client.
+   */
+  public static class Factory implements EventListener.Factory {
+    private final MetricsRegistry registry;
+    private final String host;
+    private final ConcurrentMap<String,EndpointMeters> endpointMeters = new ConcurrentHashMap<>();
+
+    /**
+     * @param registry	the registry to receive the timings
+     * @param host	the host of the client, for the host tag
+     */
+    public Factory(MetricsRegistry registry, String host) {
+      if ( registry == null ) throw new IllegalArgumentException("registry must not be null");
+      this.registry = registry;
+      this.host     = host;
+    }
+
+    @Override
+    public EventListener create(Call call) {
+      Request request = call.request();
+      String endpoint = endpoint(request.url());
+      String method   = request.method();
+      EndpointMeters meters = endpointMeters.computeIfAbsent(method + " " + endpoint,
+        key -> new EndpointMeters(registry, "host", host, "endpoint", endpoint, "method", method));
+      return new HTTPMetricsEventListener(meters);
+    }
+  }
+
+  /**
+   * Names the REST endpoint of a url by the path after the version, such as
+   * "documents" or "search".  Internal endpoints, resource extensions and
+   * configuration keep their second segment ("internal/uris",
+   * "resources/{name}", "config/query"), but names and ids further along the
+   * path are dropped so there are few distinct endpoints.  Paths outside the
+   * REST API (such as data service modules) are used as is.
+   */
+  static String endpoint(HttpUrl url) {
+    List<String> segments = url.pathSegments();
+    if ( segments.size() < 2 || ! ("v1".equals(segments.get(0)) || "LATEST".equals(segments.get(0))) ) {
+      return url.encodedPath();
+    }
+    String endpoint = segments.get(1);
+    boolean keepSecond = "internal".equals(endpoint) || "resources".equals(endpoint) || "config".equals(endpoint);
+    if ( keepSecond && segments.size() > 2 && ! segments.get(2).isEmpty() ) {
+      return endpoint + "/" + segments.get(2);
+    }
+    return endpoint;
+  }
+
+  @Override
+  public void callStart(Call call) {
+    callStart = System.nanoTime();
+  }
+
+  @Override
+  public void dnsStart(Call call, String domainName) {
+    dnsStart = System.nanoTime();
+  }
+
+  @Override
+  public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+    meters.dns.record(System.nanoTime() - dnsStart);
+  }
+
+  @Override
+  public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+    connectStart = System.nanoTime();
+  }
+
+  @Override
+  public void secureConnectStart(Call call) {
+    secureConnectStart = System.nanoTime();
+  }
+
+  @Override
+  public void secureConnectEnd(Call call, Handshake handshake) {
+    meters.tls.record(System.nanoTime() - secureConnectStart);
+  }
+
+  @Override
+  public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+    meters.connect.record(System.nanoTime() - connectStart);
+  }
+
+  @Override
+  public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+      IOException ioe) {
+    meters.connect.record(System.nanoTime() - connectStart);
+  }
+
+  @Override
+  public void requestHeadersStart(Call call) {
+    requestStart = System.nanoTime();
+    // a retry of the request, such as to authenticate, continues the call
+    responseBodyEnded = false;
+  }
+
+  @Override
+  public void requestHeadersEnd(Call call, Request request) {
+    // without a body, the request ends with its headers
+    if ( request.body() == null ) requestEnd();
+  }
+
+  @Override
+  public void requestBodyEnd(Call call, long byteCount) {
+    requestEnd();
+    meters.requestBytes.record(byteCount);
+  }
+
+  private void requestEnd() {
+    requestEnd = System.nanoTime();
+    meters.request.record(requestEnd - requestStart);
+  }
+
+  @Override
+  public void responseHeadersEnd(Call call, Response response) {
+    if ( requestEnd != 0 ) meters.responseHeaders.record(System.nanoTime() - requestEnd);
+  }
+
+  @Override
+  public void responseBodyStart(Call call) {
+    responseBodyStart = System.nanoTime();
+  }
+
+  @Override
+  public void responseBodyEnd(Call call, long byteCount) {
+    meters.responseBody.record(System.nanoTime() - responseBodyStart);
+    meters.responseBytes.record(byteCount);
+    responseBodyEnded = true;
+  }
+
+  @Override
+  public void connectionReleased(Call call, Connection connection) {
+    if ( responseBodyEnded ) callFinished();
+  }
+
+  @Override
+  public void callEnd(Call call) {
+    callFinished();
+  }
+
+  @Override
+  public void callFailed(Call call, IOException ioe) {
+    callFinished();
+    meters.failures.increment();
+  }
+
+  private void callFinished() {
+    if ( callRecorded ) return;
+    callRecorded = true;
+    meters.call.record(System.nanoTime() - callStart);
+  }
+
+  static class EndpointMeters {
+    private final MetricsRegistry.Timer call;
+    private final MetricsRegistry.Timer dns;
+    private final MetricsRegistry.Timer connect;
+    private final MetricsRegistry.Timer tls;
+    private final MetricsRegistry.Timer request;
+    private final MetricsRegistry.Timer responseHeaders;
+    private final MetricsRegistry.Timer responseBody;
+    private final MetricsRegistry.Summary requestBytes;
+    private final MetricsRegistry.Summary responseBytes;
+    private final MetricsRegistry.Counter failures;
+
+    EndpointMeters(MetricsRegistry registry, String... tags) {
+      call            = registry.timer("marklogic.client.http.call.duration", tags);
+      dns             = registry.timer("marklogic.client.http.dns.duration", tags);
+      connect         = registry.timer("marklogic.client.http.connect.duration", tags);
+      tls             = registry.timer("marklogic.client.http.tls.duration", tags);
+      request         = registry.timer("marklogic.client.http.request.duration", tags);
+      responseHeaders = registry.timer("marklogic.client.http.response.headers.duration", tags);
+      responseBody    = registry.timer("marklogic.client.http.response.body.duration", tags);
+      requestBytes    = registry.summary("marklogic.client.http.request.bytes", tags);
+      responseBytes   = registry.summary("marklogic.client.http.response.bytes", tags);
+      failures        = registry.counter("marklogic.client.http.call.failures", tags);
+    }
+  }
+}
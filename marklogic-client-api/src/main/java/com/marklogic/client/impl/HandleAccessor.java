@@ -27,6 +27,8 @@ import java.io.UnsupportedEncodingException;
 
 import com.marklogic.client.MarkLogicIOException;
 import com.marklogic.client.io.BaseHandle;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.io.OutputStreamSender;
 import com.marklogic.client.io.marker.AbstractReadHandle;
 import com.marklogic.client.io.marker.AbstractWriteHandle;
@@ -94,6 +96,38 @@ public class HandleAccessor {
       return false;
     return ((HandleImplementation) handle).isResendable();
   }
+  /**
+   * Estimates the number of bytes the handle will send without consuming its content.
+   * @param handle	the handle with the content
+   * @return	the estimated length or -1 if the length can't be known before sending
+   */
+  static public long contentLength(AbstractWriteHandle handle) {
+    if (handle == null)
+      return 0;
+    if (handle instanceof BytesHandle) {
+      byte[] content = ((BytesHandle) handle).get();
+      return (content == null) ? 0 : content.length;
+    } else if (handle instanceof StringHandle) {
+      String content = ((StringHandle) handle).get();
+      return (content == null) ? 0 : content.length();
+    } else if (!(handle instanceof BaseHandle)) {
+      return -1;
+    }
+    Object content;
+    try {
+      content = sendContent(handle);
+    } catch (IllegalStateException e) {
+      return 0;
+    }
+    if (content instanceof byte[]) {
+      return ((byte[]) content).length;
+    } else if (content instanceof String) {
+      return ((String) content).length();
+    } else if (content instanceof File) {
+      return ((File) content).length();
+    }
+    return -1;
+  }
   static public HandleImplementation as(Object handle) {
     return ((HandleImplementation) handle);
   }
@@ -19,7 +19,10 @@ import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
 import com.marklogic.client.*;
 import com.marklogic.client.DatabaseClientFactory.Authentication;
+import com.marklogic.client.DatabaseClientFactory.ConnectionConfig;
 import com.marklogic.client.DatabaseClientFactory.SSLHostnameVerifier;
+import com.marklogic.client.ExponentialBackoffRetryPolicy;
+import com.marklogic.client.RetryPolicy;
 import com.marklogic.client.bitemporal.TemporalDescriptor;
 import com.marklogic.client.bitemporal.TemporalDocumentManager.ProtectionLevel;
 import com.marklogic.client.document.ContentDescriptor;
@@ -80,8 +83,11 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.ConnectionPool;
 import okhttp3.CookieJar;
+import okhttp3.Dispatcher;
 import okhttp3.Headers;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
@@ -109,7 +115,10 @@ import org.slf4j.LoggerFactory;
 import javax.mail.BodyPart;
 import javax.mail.Header;
 import javax.mail.MessagingException;
+import javax.mail.internet.ContentDisposition;
+import javax.mail.internet.ContentType;
 import javax.mail.internet.MimeMultipart;
+import javax.mail.internet.ParseException;
 import javax.mail.util.ByteArrayDataSource;
 import javax.naming.InvalidNameException;
 import javax.naming.ldap.LdapName;
@@ -139,8 +148,11 @@ import java.security.cert.Certificate;
 import java.security.cert.CertificateParsingException;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -154,9 +166,6 @@ public class OkHttpServices implements RESTServices {
 
   static final private String DOCUMENT_URI_PREFIX = "/documents?uri=";
 
-  static final private int DELAY_FLOOR       =    125;
-  static final private int DELAY_CEILING     =   2000;
-  static final private int DELAY_MULTIPLIER  =     20;
   static final private int DEFAULT_MAX_DELAY = 120000;
   static final private int DEFAULT_MIN_RETRY =      8;
 
@@ -165,13 +174,26 @@ public class OkHttpServices implements RESTServices {
 
   static final private ConnectionPool connectionPool = new ConnectionPool();
 
+  // schedules the retries of asynchronous requests so no thread sleeps while
+  // waiting out the delay; the retried call is enqueued on the client dispatcher
+  static final private ScheduledExecutorService asyncRetryScheduler =
+    Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "marklogic-async-retry");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+  private ConnectionPool dedicatedConnectionPool;
+
   private DatabaseClient databaseClient;
   private String database = null;
   private HttpUrl baseUri;
   private OkHttpClient client;
   private boolean released = false;
 
-  private Random randRetry    = new Random();
+  private RetryPolicy retryPolicy = new ExponentialBackoffRetryPolicy();
+  // identifies the host to the retry policy
+  private String retryHost;
 
   private int maxDelay = DEFAULT_MAX_DELAY;
   private int minRetry = DEFAULT_MIN_RETRY;
@@ -249,6 +271,14 @@ public class OkHttpServices implements RESTServices {
   public void connect(String host, int port, String database, String user, String password,Map<String,String> kerberosOptions,
       Authentication authenType, SSLContext sslContext, X509TrustManager trustManager,
       SSLHostnameVerifier verifier) {
+    connect(host, port, database, user, password, kerberosOptions, authenType, sslContext, trustManager, verifier,
+      (ConnectionConfig) null);
+  }
+
+  @Override
+  public void connect(String host, int port, String database, String user, String password,Map<String,String> kerberosOptions,
+      Authentication authenType, SSLContext sslContext, X509TrustManager trustManager,
+      SSLHostnameVerifier verifier, ConnectionConfig connectionConfig) {
     HostnameVerifier hostnameVerifier = null;
     if (verifier == SSLHostnameVerifier.ANY) {
       hostnameVerifier = new HostnameVerifier() {
@@ -267,12 +297,13 @@ public class OkHttpServices implements RESTServices {
     //  throw new IllegalArgumentException(
     //    "Null SSLContext but non-null SSLHostnameVerifier for client");
     //}
-    connect(host, port, database, user, password, kerberosOptions, authenType, sslContext, trustManager, hostnameVerifier);
+    connect(host, port, database, user, password, kerberosOptions, authenType, sslContext, trustManager, hostnameVerifier,
+      connectionConfig);
   }
 
   private void connect(String host, int port, String database, String user, String password, Map<String,String> kerberosOptions,
                        Authentication authenType, SSLContext sslContext, X509TrustManager trustManager,
-                       HostnameVerifier verifier) {
+                       HostnameVerifier verifier, ConnectionConfig connectionConfig) {
     logger.debug("Connecting to {} at {} as {}", new Object[]{host, port, user});
 
     if (host == null) throw new IllegalArgumentException("No host provided");
@@ -316,16 +347,38 @@ public class OkHttpServices implements RESTServices {
       }
     }
 
+    if (connectionConfig == null) connectionConfig = new ConnectionConfig();
+
+    if (connectionConfig.getRetryPolicy() != null) {
+      retryPolicy = connectionConfig.getRetryPolicy();
+    }
+    retryHost = host + ":" + port;
+
+    // unless configured with a dedicated pool, all clients share a single connection pool
+    if (connectionConfig.isDedicatedConnectionPool()) {
+      dedicatedConnectionPool = new ConnectionPool(connectionConfig.getMaxIdleConnections(),
+        connectionConfig.getKeepAliveDuration(), TimeUnit.MILLISECONDS);
+    }
+
     OkHttpClient.Builder clientBldr = new OkHttpClient.Builder()
       .followRedirects(false)
       .followSslRedirects(false)
-      // all clients share a single connection pool
-      .connectionPool(connectionPool)
+      .connectionPool(dedicatedConnectionPool != null ? dedicatedConnectionPool : connectionPool)
       // cookies are ignored (except when a Transaction is being used)
       .cookieJar(CookieJar.NO_COOKIES)
-      // no timeouts since some of our clients' reads and writes can be massive
-      .readTimeout(0, TimeUnit.SECONDS)
-      .writeTimeout(0, TimeUnit.SECONDS);
+      // by default, no timeouts since some of our clients' reads and writes can be massive
+      .readTimeout(connectionConfig.getReadTimeout(), TimeUnit.MILLISECONDS)
+      .writeTimeout(connectionConfig.getWriteTimeout(), TimeUnit.MILLISECONDS);
+
+    if (connectionConfig.getConnectTimeout() != -1) {
+      clientBldr.connectTimeout(connectionConfig.getConnectTimeout(), TimeUnit.MILLISECONDS);
+    }
+    if (connectionConfig.getMaxRequests() != -1) {
+      Dispatcher dispatcher = new Dispatcher();
+      dispatcher.setMaxRequests(connectionConfig.getMaxRequests());
+      dispatcher.setMaxRequestsPerHost(connectionConfig.getMaxRequestsPerHost());
+      clientBldr.dispatcher(dispatcher);
+    }
 
     if (sslContext != null) {
       if (trustManager == null) {
@@ -337,6 +390,10 @@ public class OkHttpServices implements RESTServices {
 
     if(authenticator != null) clientBldr.authenticator(new CachingAuthenticatorDecorator(authenticator, authCache));
     if(interceptor != null) clientBldr.addInterceptor(interceptor);
+    if(connectionConfig.isRequestCompression()) clientBldr.addInterceptor(new HTTPGzipRequestInterceptor());
+    if(connectionConfig.getMetricsRegistry() != null) {
+      clientBldr.eventListenerFactory(new HTTPMetricsEventListener.Factory(connectionConfig.getMetricsRegistry(), host));
+    }
 
     if ( verifier != null ) {
       clientBldr = clientBldr.hostnameVerifier(verifier);
@@ -432,6 +489,10 @@ public class OkHttpServices implements RESTServices {
       } catch (IOException e) {
         throw new MarkLogicIOException(e);
       } finally {
+        if ( dedicatedConnectionPool != null ) {
+          dedicatedConnectionPool.evictAll();
+          dedicatedConnectionPool = null;
+        }
         client = null;
         logger.debug("Releasing connection");
       }
@@ -448,23 +509,16 @@ public class OkHttpServices implements RESTServices {
     if (checkFirstRequest) setFirstRequest(true);
   }
 
-  private int makeFirstRequest(int retry) {
-    return makeFirstRequest(baseUri, "ping", retry);
+  private void makeFirstRequest() {
+    makeFirstRequest(baseUri, "ping");
   }
 
-  private int makeFirstRequest(HttpUrl requestUri, String path, int retry) {
-    Response response = sendRequestOnce(setupRequest(requestUri, path, null).head());
-    int statusCode = response.code();
-    if (!retryStatus.contains(statusCode)) {
-      response.close();
-      return 0;
-    }
-
-    String retryAfterRaw = response.header("Retry-After");
-    response.close();
+  private void makeFirstRequest(HttpUrl requestUri, String path) {
+    sendFirstRequest(requestUri, path).close();
+  }
 
-    int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-    return Math.max(retryAfter, calculateDelay(randRetry, retry));
+  private Response sendFirstRequest(HttpUrl requestUri, String path) {
+    return sendRequestOnce(setupRequest(requestUri, path, null).head());
   }
 
   private RequestParameters addTemporalProtectionParams(RequestParameters params, String uri, ProtectionLevel level,
@@ -532,6 +586,30 @@ public class OkHttpServices implements RESTServices {
                                            Transaction transaction, Set<Metadata> categories, RequestParameters extraParams)
     throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException
   {
+    Request.Builder requestBldr = makeDeleteDocumentRequest(desc, transaction, categories, extraParams);
+
+    Function<Request.Builder, Response> doDeleteFunction = new Function<Request.Builder, Response>() {
+      public Response apply(Request.Builder funcBuilder) {
+        return sendRequestOnce(funcBuilder.delete().build());
+      }
+    };
+    Response response = sendRequestWithRetry(requestBldr, (transaction == null), doDeleteFunction, null);
+    return receiveDeleteDocument(reqlog, desc, response);
+  }
+
+  @Override
+  public CompletableFuture<TemporalDescriptor> deleteDocumentAsync(RequestLogger reqlog, DocumentDescriptor desc,
+                                                                   Transaction transaction, Set<Metadata> categories,
+                                                                   RequestParameters extraParams)
+  {
+    Request.Builder requestBldr = makeDeleteDocumentRequest(desc, transaction, categories, extraParams);
+
+    return sendRequestAsync(requestBldr, (transaction == null), funcBuilder -> funcBuilder.delete().build(), null)
+      .thenApply(response -> receiveDeleteDocument(reqlog, desc, response));
+  }
+
+  private Request.Builder makeDeleteDocumentRequest(DocumentDescriptor desc, Transaction transaction,
+                                                    Set<Metadata> categories, RequestParameters extraParams) {
     String uri = desc.getUri();
     if (uri == null) {
       throw new IllegalArgumentException(
@@ -546,13 +624,12 @@ public class OkHttpServices implements RESTServices {
     requestBldr = addVersionHeader(desc, requestBldr, "If-Match");
     requestBldr = addTransactionScopedCookies(requestBldr, transaction);
     requestBldr = addTelemetryAgentId(requestBldr);
+    return requestBldr;
+  }
 
-    Function<Request.Builder, Response> doDeleteFunction = new Function<Request.Builder, Response>() {
-      public Response apply(Request.Builder funcBuilder) {
-        return sendRequestOnce(funcBuilder.delete().build());
-      }
-    };
-    Response response = sendRequestWithRetry(requestBldr, (transaction == null), doDeleteFunction, null);
+  private TemporalDescriptor receiveDeleteDocument(RequestLogger reqlog, DocumentDescriptor desc, Response response)
+    throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException
+  {
     int status = response.code();
 
     if (status == STATUS_NOT_FOUND) {
@@ -593,7 +670,7 @@ public class OkHttpServices implements RESTServices {
     TemporalDescriptor temporalDesc = updateTemporalSystemTime(desc, responseHeaders);
 
     response.close();
-    logRequest(reqlog, "deleted %s document", uri);
+    logRequest(reqlog, "deleted %s document", desc.getUri());
     return temporalDesc;
   }
 
@@ -637,9 +714,23 @@ public class OkHttpServices implements RESTServices {
     return false;
   }
 
-  private int getRetryAfterTime(Response response) {
+  /*
+   * Returns the delay requested by the Retry-After header in milliseconds,
+   * which can be zero, or RetryPolicy.NO_RETRY_AFTER if the header is missing
+   * or isn't a number of seconds or an HTTP date.
+   */
+  private long getRetryAfter(Response response) {
     String retryAfterRaw = response.header("Retry-After");
-    return (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
+    if (retryAfterRaw == null) return RetryPolicy.NO_RETRY_AFTER;
+    try {
+      long seconds = Long.parseLong(retryAfterRaw.trim());
+      if (seconds < 0) return RetryPolicy.NO_RETRY_AFTER;
+      return TimeUnit.SECONDS.toMillis(seconds);
+    } catch (NumberFormatException e) {
+      Date retryAt = response.headers().getDate("Retry-After");
+      if (retryAt == null) return RetryPolicy.NO_RETRY_AFTER;
+      return Math.max(0, retryAt.getTime() - System.currentTimeMillis());
+    }
   }
 
   private Response sendRequestOnce(Request.Builder requestBldr) {
@@ -654,6 +745,94 @@ public class OkHttpServices implements RESTServices {
     }
   }
 
+  /*
+   * Tracks the attempts to send one request.  Attempts continue until the
+   * retry period (minRetry attempts and maxDelay milliseconds) has elapsed or
+   * the retry policy refuses to retry.
+   */
+  private class RetryAttempts {
+    private final long startTime = System.currentTimeMillis();
+    private int  retry     = 0;
+    private long nextDelay = 0;
+    private boolean periodElapsed = false;
+
+    boolean hasNext() {
+      return nextDelay >= 0 && periodElapsed == false && isInPeriod(retry);
+    }
+    private boolean isInPeriod(int attempt) {
+      return attempt < minRetry || (System.currentTimeMillis() - startTime) < maxDelay;
+    }
+    void next() {
+      retry++;
+    }
+    int getRetry() {
+      return retry;
+    }
+    long getDelay() {
+      return nextDelay;
+    }
+    void beforeAttempt() {
+      if (nextDelay > 0) {
+        try {
+          Thread.sleep(nextDelay);
+        } catch (InterruptedException e) {
+        }
+      }
+      checkAllowed();
+    }
+    void checkAllowed() {
+      if (!retryPolicy.allowRequest(retryHost)) {
+        checkFirstRequest();
+        throw new FailedRetryException(
+          "Service unavailable and circuit open for "+retryHost+" after "+retry+" retries");
+      }
+    }
+    /*
+     * Pings the server before sending a request that can't be resent.
+     * Returns true if the server is unavailable, in which case the next
+     * attempt waits out the delay chosen by the retry policy.
+     */
+    boolean makeFirstRequest() {
+      Response response = sendFirstRequest(baseUri, "ping");
+      int status = response.code();
+      long retryAfter = getRetryAfter(response);
+      response.close();
+      received(status);
+      if (!retryStatus.contains(status)) return false;
+      delayRetry(retryAfter);
+      return true;
+    }
+    void received(int status) {
+      if (retryStatus.contains(status)) {
+        retryPolicy.requestUnavailable(retryHost);
+      } else {
+        retryPolicy.requestSucceeded(retryHost);
+      }
+    }
+    /*
+     * Asks the retry policy for the delay before the next attempt, unless
+     * the retry period has elapsed, since the policy may spend a retry
+     * budget token on a retry that would never be sent.
+     */
+    void delayRetry(long retryAfter) {
+      if (!isInPeriod(retry + 1)) {
+        periodElapsed = true;
+        return;
+      }
+      nextDelay = retryPolicy.retryDelay(retryHost, retry, retryAfter);
+    }
+    FailedRetryException retryFailure() {
+      if (nextDelay < 0) {
+        return new FailedRetryException(
+          "Service unavailable and retry budget exhausted after "+retry+" retries");
+      }
+      return new FailedRetryException(
+        "Service unavailable and maximum retry period elapsed: "+
+          Math.round((System.currentTimeMillis() - startTime) / 1000)+
+          " seconds after "+retry+" retries");
+    }
+  }
+
   private Response sendRequestWithRetry(Request.Builder requestBldr, Function<Request.Builder, Response> doFunction, Consumer<Boolean> resendableConsumer) {
     return sendRequestWithRetry(requestBldr, true, doFunction, resendableConsumer);
   }
@@ -663,16 +842,16 @@ public class OkHttpServices implements RESTServices {
   ) {
     Response response = null;
     int status = -1;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
+    RetryAttempts attempts = new RetryAttempts();
     /*
      * This loop is for retrying the request if the service is unavailable
      */
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try { Thread.sleep(nextDelay);} catch (InterruptedException e) {}
-      }
+    for (; attempts.hasNext(); attempts.next()) {
+      /*
+       * Wait out the delay chosen by the retry policy, failing immediately
+       * if the policy doesn't allow requests to the host
+       */
+      attempts.beforeAttempt();
 
       /*
        * Execute the function which is passed as an argument
@@ -680,6 +859,7 @@ public class OkHttpServices implements RESTServices {
        */
       response = doFunction.apply(requestBldr);
       status = response.code();
+      attempts.received(status);
       if (!isRetryable || !retryStatus.contains(status)) {
         if (isFirstRequest()) setFirstRequest(false);
         /*
@@ -703,9 +883,9 @@ public class OkHttpServices implements RESTServices {
        */
       if(resendableConsumer != null) resendableConsumer.accept(null);
       /*
-       * Calculate the delay before which we shouldn't retry
+       * Ask the retry policy for the delay before which we shouldn't retry
        */
-      nextDelay = Math.max(getRetryAfterTime(response), calculateDelay(randRetry, retry));
+      attempts.delayRetry(getRetryAfter(response));
     }
     /*
      * If the service is still unavailable after all the retries, we throw a
@@ -713,10 +893,7 @@ public class OkHttpServices implements RESTServices {
      */
     if (retryStatus.contains(status)) {
       checkFirstRequest();
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          Math.round((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw attempts.retryFailure();
     }
     /*
      * Once we break from the retry loop, we just return the Response
@@ -725,12 +902,127 @@ public class OkHttpServices implements RESTServices {
     return response;
   }
 
+  private CompletableFuture<Response> sendRequestAsync(Request.Builder requestBldr, boolean isRetryable,
+                                                       Function<Request.Builder, Request> requestFunction,
+                                                       Runnable resendableCheck) {
+    AsyncRequestCallback callback =
+      new AsyncRequestCallback(requestBldr, isRetryable, requestFunction, resendableCheck);
+    callback.send();
+    return callback.future;
+  }
+
+  /*
+   * Sends a request with OkHttp's enqueue() path.  Instead of sleeping between
+   * attempts, a retry status schedules the next attempt and returns the thread.
+   * The retry period and retry policy are the same as for sendRequestWithRetry().
+   */
+  private class AsyncRequestCallback implements Callback {
+    final CompletableFuture<Response> future = new CompletableFuture<>();
+
+    private final Request.Builder                    requestBldr;
+    private final boolean                            isRetryable;
+    private final Function<Request.Builder, Request> requestFunction;
+    private final Runnable                           resendableCheck;
+    private final RetryAttempts                      attempts = new RetryAttempts();
+
+    AsyncRequestCallback(Request.Builder requestBldr, boolean isRetryable,
+                         Function<Request.Builder, Request> requestFunction, Runnable resendableCheck) {
+      this.requestBldr     = requestBldr;
+      this.isRetryable     = isRetryable;
+      this.requestFunction = requestFunction;
+      this.resendableCheck = resendableCheck;
+    }
+
+    void send() {
+      try {
+        attempts.checkAllowed();
+        getConnection().newCall(requestFunction.apply(requestBldr)).enqueue(this);
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    }
+
+    @Override
+    public void onFailure(Call call, IOException e) {
+      future.completeExceptionally(new MarkLogicIOException(e));
+    }
+
+    @Override
+    public void onResponse(Call call, Response response) {
+      int status = response.code();
+      attempts.received(status);
+      if (!isRetryable || !retryStatus.contains(status)) {
+        future.complete(response);
+        return;
+      }
+      long retryAfter = getRetryAfter(response);
+      response.close();
+
+      attempts.delayRetry(retryAfter);
+      attempts.next();
+      if (!attempts.hasNext()) {
+        future.completeExceptionally(attempts.retryFailure());
+        return;
+      }
+      try {
+        if (resendableCheck != null) resendableCheck.run();
+        asyncRetryScheduler.schedule(this::send, attempts.getDelay(), TimeUnit.MILLISECONDS);
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    }
+  }
+
+
+  // A request with a body that cannot be resent would be consumed by the
+  // digest challenge, so ping first.  Unlike the synchronous path, there is
+  // no thread state to remember that the connection already authenticated.
+  private CompletableFuture<Response> sendFirstRequestAsync(boolean isResendable) {
+    if (!checkFirstRequest || isResendable) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return sendRequestAsync(setupRequest(baseUri, "ping", null), true,
+      funcBuilder -> funcBuilder.head().build(), null)
+      .thenApply(response -> {
+        response.close();
+        return null;
+      });
+  }
+
   private boolean getDocumentImpl(RequestLogger reqlog,
                                   DocumentDescriptor desc, Transaction transaction,
                                   Set<Metadata> categories, RequestParameters extraParams,
                                   String mimetype, AbstractReadHandle handle)
     throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException
   {
+    Request.Builder requestBldr = makeGetDocumentRequest(desc, transaction, categories, extraParams, mimetype, handle);
+
+    Function<Request.Builder, Response> doGetFunction = new Function<Request.Builder, Response>() {
+      public Response apply(Request.Builder funcBuilder) {
+        return sendRequestOnce(funcBuilder.get().build());
+      }
+    };
+    Response response = sendRequestWithRetry(requestBldr, (transaction == null), doGetFunction, null);
+    return receiveDocument(reqlog, desc, transaction, categories, mimetype, handle, response);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> getDocumentAsync(RequestLogger reqlog, DocumentDescriptor desc,
+                                                     Transaction transaction, RequestParameters extraParams,
+                                                     AbstractReadHandle contentHandle)
+  {
+    HandleImplementation contentBase = HandleAccessor.checkHandle(contentHandle, "content");
+    String mimetype = contentBase.getMimetype();
+
+    Request.Builder requestBldr = makeGetDocumentRequest(desc, transaction, null, extraParams, mimetype, contentHandle);
+
+    return sendRequestAsync(requestBldr, (transaction == null), funcBuilder -> funcBuilder.get().build(), null)
+      .thenApply(response -> receiveDocument(reqlog, desc, transaction, null, mimetype, contentHandle, response));
+  }
+
+  private Request.Builder makeGetDocumentRequest(DocumentDescriptor desc, Transaction transaction,
+                                                 Set<Metadata> categories, RequestParameters extraParams,
+                                                 String mimetype, AbstractReadHandle handle) {
     String uri = desc.getUri();
     if (uri == null) {
       throw new IllegalArgumentException(
@@ -755,13 +1047,15 @@ public class OkHttpServices implements RESTServices {
 
     requestBldr = addVersionHeader(desc, requestBldr, "If-None-Match");
 
-    Function<Request.Builder, Response> doGetFunction = new Function<Request.Builder, Response>() {
-      public Response apply(Request.Builder funcBuilder) {
-        return sendRequestOnce(funcBuilder.get().build());
-      }
-    };
-    Response response = sendRequestWithRetry(requestBldr, (transaction == null), doGetFunction, null);
+    return requestBldr;
+  }
 
+  private boolean receiveDocument(RequestLogger reqlog, DocumentDescriptor desc, Transaction transaction,
+                                  Set<Metadata> categories, String mimetype, AbstractReadHandle handle,
+                                  Response response)
+    throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException
+  {
+    String uri = desc.getUri();
     int status = response.code();
     if (status == STATUS_NOT_FOUND) {
       throw new ResourceNotFoundException(
@@ -860,15 +1154,39 @@ public class OkHttpServices implements RESTServices {
       this.iterator = iterator;
       this.hasContent = hasContent;
       this.hasMetadata = hasMetadata;
-      if ( iterator == null ) {
-        setSize(0);
-      } else if ( hasContent && hasMetadata ) {
-        setSize(iterator.getSize() / 2);
+    }
+
+    // the parts are streamed, so the size is only computed on request
+    @Override
+    public long size() {
+      if ( iterator == null ) return 0;
+      if ( hasContent && hasMetadata ) {
+        return iterator.getSize() / 2;
       } else {
-        setSize(iterator.getSize());
+        return iterator.getSize();
       }
     }
 
+    @Override
+    public boolean hasContent() {
+      if ( iterator == null ) return false;
+      return iterator.hasParts();
+    }
+
+    @Override
+    public long getPageSize() {
+      long pageSize = super.getPageSize();
+      if ( pageSize == -1 && iterator != null ) return iterator.getSize();
+      return pageSize;
+    }
+
+    @Override
+    public long getTotalSize() {
+      long totalSize = super.getTotalSize();
+      if ( totalSize == -1 && iterator != null ) return iterator.getSize();
+      return totalSize;
+    }
+
     @Override
     public Iterator<DocumentRecord> iterator() {
       return this;
@@ -936,14 +1254,13 @@ public class OkHttpServices implements RESTServices {
       }
     }
 
-    OkHttpResultIterator iterator = getIteratedResourceImpl(DefaultOkHttpResultIterator.class,
-      reqlog, path, transaction, params, MIMETYPE_MULTIPART_MIXED);
+    Response response = getIteratedResourceResponse(reqlog, path, transaction, params, MIMETYPE_MULTIPART_MIXED);
+    // the page and total size default to the number of parts in the response,
+    // which OkHttpDocumentPage only counts on request
+    OkHttpResultIterator iterator = makeStreamingResults(DefaultOkHttpResultIterator.class,
+      reqlog, "read", "resource", response);
     if ( iterator != null ) {
       if ( iterator.getStart() == -1 ) iterator.setStart(1);
-      if ( iterator.getSize() != -1 ) {
-        if ( iterator.getPageSize() == -1 ) iterator.setPageSize(iterator.getSize());
-        if ( iterator.getTotalSize() == -1 )  iterator.setTotalSize(iterator.getSize());
-      }
     }
     return iterator;
   }
@@ -979,27 +1296,22 @@ public class OkHttpServices implements RESTServices {
         generateSearchRequest(reqlog, querydef, MIMETYPE_MULTIPART_MIXED, transaction, responseTransform, params, null);
       Response response = request.getResponse();
       if ( response == null ) return null;
-      MimeMultipart entity = null;
       if ( searchHandle != null ) {
         updateServerTimestamp(handleBase, response.headers());
         ResponseBody body = response.body();
         if ( body.contentLength() != 0 ) {
-          entity = getEntity(body, MimeMultipart.class);
-          if ( entity != null ) {
-            List<BodyPart> partList = getPartList(entity);
-            if ( entity.getCount() > 0 ) {
-              BodyPart searchResponsePart = entity.getBodyPart(0);
-              handleBase.receiveContent(getEntity(searchResponsePart, handleBase.receiveAs()));
-              partList = partList.subList(1, partList.size());
-            }
-            Closeable closeable = response;
-            return makeResults(OkHttpServiceResultIterator.class, reqlog, "read", "resource", partList, response,
-              closeable);
+          StreamingMultipartReader partReader = makePartReader(body);
+          StreamingMultipartReader.Part searchResponsePart = partReader.nextPart();
+          if ( searchResponsePart != null ) {
+            handleBase.receiveContent(getEntity(searchResponsePart, handleBase.receiveAs()));
           }
+          Closeable closeable = response;
+          return makeResults(OkHttpServiceResultIterator.class, reqlog, "read", "resource", partReader, response,
+            closeable);
         }
       }
-      return makeResults(OkHttpServiceResultIterator.class, reqlog, "read", "resource", response);
-    } catch (MessagingException e) {
+      return makeStreamingResults(OkHttpServiceResultIterator.class, reqlog, "read", "resource", response);
+    } catch (IOException e) {
       throw new MarkLogicIOException(e);
     }
   }
@@ -1198,16 +1510,7 @@ public class OkHttpServices implements RESTServices {
       metadataMimetype = metadataBase.getMimetype();
     }
 
-    Format descFormat = desc.getFormat();
-    String contentMimetype = (descFormat != null && descFormat != Format.UNKNOWN) ? desc.getMimetype() : null;
-    if (contentMimetype == null && contentBase != null) {
-      Format contentFormat = contentBase.getFormat();
-      if (descFormat != null && descFormat != contentFormat) {
-        contentMimetype = descFormat.getDefaultMimetype();
-      } else if (contentFormat != null && contentFormat != Format.UNKNOWN) {
-        contentMimetype = contentBase.getMimetype();
-      }
-    }
+    String contentMimetype = getContentMimetype(desc, contentBase);
 
     if (metadataBase != null && contentBase != null) {
       return putPostDocumentImpl(reqlog, "put", desc, transaction, categories,
@@ -1223,6 +1526,20 @@ public class OkHttpServices implements RESTServices {
     throw new IllegalArgumentException("Either metadataHandle or contentHandle must not be null");
   }
 
+  private String getContentMimetype(DocumentDescriptor desc, HandleImplementation contentBase) {
+    Format descFormat = desc.getFormat();
+    String contentMimetype = (descFormat != null && descFormat != Format.UNKNOWN) ? desc.getMimetype() : null;
+    if (contentMimetype == null && contentBase != null) {
+      Format contentFormat = contentBase.getFormat();
+      if (descFormat != null && descFormat != contentFormat) {
+        contentMimetype = descFormat.getDefaultMimetype();
+      } else if (contentFormat != null && contentFormat != Format.UNKNOWN) {
+        contentMimetype = contentBase.getMimetype();
+      }
+    }
+    return contentMimetype;
+  }
+
   @Override
   public DocumentDescriptorImpl postDocument(RequestLogger reqlog, DocumentUriTemplate template,
                                              Transaction transaction, Set<Metadata> categories, RequestParameters extraParams,
@@ -1284,49 +1601,19 @@ public class OkHttpServices implements RESTServices {
 
     HandleImplementation handleBase = HandleAccessor.as(handle);
 
-    logger.debug("Sending {} document in transaction {}",
-        (uri != null) ? uri : "new", getTransactionId(transaction));
-
-    logRequest(
-      reqlog,
-      "writing %s document from %s transaction with %s mime type and %s metadata categories",
-      (uri != null) ? uri : "new",
-      (transaction != null) ? transaction.getTransactionId() : "no",
-      (mimetype != null) ? mimetype : "no",
-      stringJoin(categories, ", ", "no"));
-
-    Request.Builder requestBldr = makeDocumentResource(
-      makeDocumentParams(
-        uri, categories, transaction, extraParams, isOnContent
-      ));
-
-    requestBldr = requestBldr.header(HEADER_CONTENT_TYPE,
-      (mimetype != null) ? mimetype : MIMETYPE_WILDCARD);
-    requestBldr = addTransactionScopedCookies(requestBldr, transaction);
-    requestBldr = addTelemetryAgentId(requestBldr);
-    if (uri != null) {
-      requestBldr = addVersionHeader(desc, requestBldr, "If-Match");
-    }
+    Request.Builder requestBldr = makePutPostDocumentRequest(reqlog, method, desc, transaction, categories,
+      isOnContent, extraParams, mimetype);
 
     if ("patch".equals(method)) {
-      requestBldr = requestBldr.header("X-HTTP-Method-Override", "PATCH");
       method  = "post";
     }
     boolean isResendable = handleBase.isResendable();
 
     Response response = null;
     int status = -1;
-    Headers responseHeaders = null;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
-        }
-      }
+    RetryAttempts attempts = new RetryAttempts();
+    for (; attempts.hasNext(); attempts.next()) {
+      attempts.beforeAttempt();
 
       Object value = handleBase.sendContent();
       if (value == null) {
@@ -1335,38 +1622,26 @@ public class OkHttpServices implements RESTServices {
       }
 
       if (isFirstRequest() && !isResendable && isStreaming(value)) {
-        nextDelay = makeFirstRequest(retry);
-        if (nextDelay != 0) continue;
+        if (attempts.makeFirstRequest()) continue;
       }
 
-      MediaType mediaType = makeType(requestBldr.build().header(HEADER_CONTENT_TYPE));
-      if (value instanceof OutputStreamSender) {
-        StreamingOutputImpl sentStream =
-          new StreamingOutputImpl((OutputStreamSender) value, reqlog, mediaType);
-        requestBldr =
-          ("put".equals(method)) ?
-            requestBldr.put(sentStream) :
-            requestBldr.post(sentStream);
-      } else {
-        Object sentObj = (reqlog != null) ?
-          reqlog.copyContent(value) : value;
-        requestBldr =
-          ("put".equals(method)) ?
-            requestBldr.put(new ObjectRequestBody(sentObj, mediaType)) :
-            requestBldr.post(new ObjectRequestBody(sentObj, mediaType));
-      }
+      RequestBody requestBody = makeRequestBody(reqlog, requestBldr, value);
+      requestBldr =
+        ("put".equals(method)) ?
+          requestBldr.put(requestBody) :
+          requestBldr.post(requestBody);
       response = sendRequestOnce(requestBldr);
 
       status = response.code();
+      attempts.received(status);
 
-      responseHeaders = response.headers();
       if (transaction != null || !retryStatus.contains(status)) {
         if (isFirstRequest()) setFirstRequest(false);
 
         break;
       }
 
-      String retryAfterRaw = response.header("Retry-After");
+      long retryAfter = getRetryAfter(response);
       response.close();
 
       if (!isResendable) {
@@ -1376,16 +1651,101 @@ public class OkHttpServices implements RESTServices {
             ((uri != null) ? uri : "new document"));
       }
 
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      attempts.delayRetry(retryAfter);
     }
-    if (retryStatus.contains(status)) {
+    // without a response, the server was still unavailable when the first
+    // request check gave up
+    if (response == null || retryStatus.contains(status)) {
       checkFirstRequest();
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          Math.round((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw attempts.retryFailure();
     }
+    return receiveWriteDocument(desc, response);
+  }
+
+  @Override
+  public CompletableFuture<TemporalDescriptor> putDocumentAsync(RequestLogger reqlog, DocumentDescriptor desc,
+                                                                Transaction transaction, RequestParameters extraParams,
+                                                                AbstractWriteHandle contentHandle)
+  {
+    String uri = desc.getUri();
+    if (uri == null) {
+      throw new IllegalArgumentException(
+        "Document write for document identifier without uri");
+    }
+
+    HandleImplementation handleBase = HandleAccessor.checkHandle(contentHandle, "content");
+    boolean isResendable = handleBase.isResendable();
+
+    Request.Builder requestBldr = makePutPostDocumentRequest(reqlog, "put", desc, transaction, null,
+      true, extraParams, getContentMimetype(desc, handleBase));
+
+    Function<Request.Builder, Request> doPutFunction = funcBuilder -> {
+      Object value = handleBase.sendContent();
+      if (value == null) {
+        throw new IllegalArgumentException("Document write with null value for " + uri);
+      }
+      return funcBuilder.put(makeRequestBody(reqlog, funcBuilder, value)).build();
+    };
+    Runnable resendableCheck = isResendable ? null : () -> {
+      throw new ResourceNotResendableException("Cannot retry request for " + uri);
+    };
+
+    return sendFirstRequestAsync(isResendable)
+      .thenCompose(ping -> sendRequestAsync(requestBldr, (transaction == null), doPutFunction, resendableCheck))
+      .thenApply(response -> receiveWriteDocument(desc, response));
+  }
+
+  private Request.Builder makePutPostDocumentRequest(RequestLogger reqlog, String method, DocumentDescriptor desc,
+                                                     Transaction transaction, Set<Metadata> categories,
+                                                     boolean isOnContent, RequestParameters extraParams, String mimetype) {
+    String uri = desc.getUri();
+
+    logger.debug("Sending {} document in transaction {}",
+        (uri != null) ? uri : "new", getTransactionId(transaction));
+
+    logRequest(
+      reqlog,
+      "writing %s document from %s transaction with %s mime type and %s metadata categories",
+      (uri != null) ? uri : "new",
+      (transaction != null) ? transaction.getTransactionId() : "no",
+      (mimetype != null) ? mimetype : "no",
+      stringJoin(categories, ", ", "no"));
+
+    Request.Builder requestBldr = makeDocumentResource(
+      makeDocumentParams(
+        uri, categories, transaction, extraParams, isOnContent
+      ));
+
+    requestBldr = requestBldr.header(HEADER_CONTENT_TYPE,
+      (mimetype != null) ? mimetype : MIMETYPE_WILDCARD);
+    requestBldr = addTransactionScopedCookies(requestBldr, transaction);
+    requestBldr = addTelemetryAgentId(requestBldr);
+    if (uri != null) {
+      requestBldr = addVersionHeader(desc, requestBldr, "If-Match");
+    }
+
+    if ("patch".equals(method)) {
+      requestBldr = requestBldr.header("X-HTTP-Method-Override", "PATCH");
+    }
+    return requestBldr;
+  }
+
+  private RequestBody makeRequestBody(RequestLogger reqlog, Request.Builder requestBldr, Object value) {
+    MediaType mediaType = makeType(requestBldr.build().header(HEADER_CONTENT_TYPE));
+    if (value instanceof OutputStreamSender) {
+      return new StreamingOutputImpl((OutputStreamSender) value, reqlog, mediaType);
+    }
+    Object sentObj = (reqlog != null) ?
+      reqlog.copyContent(value) : value;
+    return new ObjectRequestBody(sentObj, mediaType);
+  }
+
+  private TemporalDescriptor receiveWriteDocument(DocumentDescriptor desc, Response response)
+    throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException
+  {
+    String uri = desc.getUri();
+    int status = response.code();
+    Headers responseHeaders = response.headers();
     if (status == STATUS_NOT_FOUND) {
       throw new ResourceNotFoundException(
         "Could not write non-existent document",
@@ -1415,9 +1775,6 @@ public class OkHttpServices implements RESTServices {
       }
       throw new FailedRequestException("Precondition Failed", failure);
     }
-    if (status == -1) {
-      throw new FailedRequestException("write failed: Unknown Reason", extractErrorFields(response));
-    }
     if (status != STATUS_CREATED && status != STATUS_NO_CONTENT) {
       throw new FailedRequestException("write failed: "
         + getReasonPhrase(response), extractErrorFields(response));
@@ -1478,16 +1835,9 @@ public class OkHttpServices implements RESTServices {
     Response response = null;
     int status = -1;
     Headers responseHeaders = null;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
-        }
-      }
+    RetryAttempts attempts = new RetryAttempts();
+    for (; attempts.hasNext(); attempts.next()) {
+      attempts.beforeAttempt();
 
       MultipartBody.Builder multiPart = new MultipartBody.Builder();
       boolean hasStreamingPart = addParts(multiPart, reqlog,
@@ -1495,13 +1845,13 @@ public class OkHttpServices implements RESTServices {
         new AbstractWriteHandle[] { metadataHandle, contentHandle });
 
       if (isFirstRequest() && hasStreamingPart) {
-        nextDelay = makeFirstRequest(retry);
-        if (nextDelay != 0) continue;
+        if (attempts.makeFirstRequest()) continue;
       }
 
       requestBldr = ("put".equals(method)) ?  requestBldr.put(multiPart.build()) : requestBldr.post(multiPart.build());
       response = sendRequestOnce(requestBldr);
       status = response.code();
+      attempts.received(status);
 
       responseHeaders = response.headers();
       if (transaction != null || !retryStatus.contains(status)) {
@@ -1509,7 +1859,7 @@ public class OkHttpServices implements RESTServices {
 
         break;
       }
-      String retryAfterRaw = response.header("Retry-After");
+      long retryAfter = getRetryAfter(response);
       response.close();
 
       if (hasStreamingPart) {
@@ -1518,15 +1868,13 @@ public class OkHttpServices implements RESTServices {
             ((uri != null) ? uri : "new document"));
       }
 
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      attempts.delayRetry(retryAfter);
     }
-    if (retryStatus.contains(status)) {
+    // without a response, the server was still unavailable when the first
+    // request check gave up
+    if (response == null || retryStatus.contains(status)) {
       checkFirstRequest();
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          Math.round((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw attempts.retryFailure();
     }
     if (status == STATUS_NOT_FOUND) {
       response.close();
@@ -1857,6 +2205,22 @@ public class OkHttpServices implements RESTServices {
     }
   }
 
+  private Format getHeaderFormat(StreamingMultipartReader.Part part) {
+    String contentDisposition = part.getHeader(HEADER_CONTENT_DISPOSITION);
+    String formatRegex = ".* format=(text|binary|xml|json).*";
+    String format = part.getHeader(HEADER_VND_MARKLOGIC_DOCUMENT_FORMAT);
+    String contentType = part.getHeader(HEADER_CONTENT_TYPE);
+    if ( format != null && format.length() > 0 ) {
+      return Format.valueOf(format.toUpperCase());
+    } else if ( contentDisposition != null && contentDisposition.matches(formatRegex) ) {
+      format = contentDisposition.replaceFirst("^.*" + formatRegex + ".*$", "$1");
+      return Format.valueOf(format.toUpperCase());
+    } else if ( contentType != null && contentType.length() > 0 ) {
+      return Format.getFromMimetype(contentType);
+    }
+    return null;
+  }
+
   private String getHeader(Map<String, List<String>> headers, String name) {
     List<String> values = headers.get(name);
     if ( values != null && values.size() > 0 ) {
@@ -1940,6 +2304,26 @@ public class OkHttpServices implements RESTServices {
     }
   }
 
+  // same lookup as BodyPart.getFileName()
+  private String getHeaderUri(StreamingMultipartReader.Part part) {
+    try {
+      String filename = null;
+      String contentDisposition = part.getHeader(HEADER_CONTENT_DISPOSITION);
+      if ( contentDisposition != null ) {
+        filename = new ContentDisposition(contentDisposition).getParameter("filename");
+      }
+      if ( filename == null ) {
+        String contentType = part.getHeader(HEADER_CONTENT_TYPE);
+        if ( contentType != null ) {
+          filename = new ContentType(contentType).getParameter("name");
+        }
+      }
+      return filename;
+    } catch(MessagingException e) {
+      throw new MarkLogicIOException(e);
+    }
+  }
+
   private void updateVersion(DocumentDescriptor descriptor, Headers headers) {
     long version = DocumentDescriptor.UNKNOWN_VERSION;
     String value = headers.get(HEADER_ETAG);
@@ -1969,6 +2353,33 @@ public class OkHttpServices implements RESTServices {
                                                Transaction transaction, String forestName)
     throws ForbiddenUserException, FailedRequestException
   {
+    OkHttpSearchRequest request = makeSearchRequest(reqlog, searchHandle, queryDef, start, len, view,
+      transaction, forestName);
+
+    Response response = request.getResponse();
+    if ( response == null ) return null;
+
+    return receiveSearch(reqlog, searchHandle, request, start, len, response);
+  }
+
+  @Override
+  public <T extends SearchReadHandle> CompletableFuture<T> searchAsync(RequestLogger reqlog, T searchHandle,
+                                                                       QueryDefinition queryDef, long start, long len,
+                                                                       QueryView view, Transaction transaction,
+                                                                       String forestName)
+  {
+    OkHttpSearchRequest request = makeSearchRequest(reqlog, searchHandle, queryDef, start, len, view,
+      transaction, forestName);
+
+    return request.getResponseAsync()
+      .thenApply(response -> (response == null) ? null :
+        receiveSearch(reqlog, searchHandle, request, start, len, response));
+  }
+
+  private <T extends SearchReadHandle> OkHttpSearchRequest makeSearchRequest(RequestLogger reqlog, T searchHandle,
+                                                                             QueryDefinition queryDef, long start, long len,
+                                                                             QueryView view, Transaction transaction,
+                                                                             String forestName) {
     RequestParameters params = new RequestParameters();
 
     if (start > 1) {
@@ -2010,11 +2421,13 @@ public class OkHttpServices implements RESTServices {
 
     String mimetype = searchFormat.getDefaultMimetype();
 
-    OkHttpSearchRequest request = generateSearchRequest(reqlog, queryDef, mimetype, transaction, null, params, forestName);
-
-    Response response = request.getResponse();
-    if ( response == null ) return null;
+    return generateSearchRequest(reqlog, queryDef, mimetype, transaction, null, params, forestName);
+  }
 
+  private <T extends SearchReadHandle> T receiveSearch(RequestLogger reqlog, T searchHandle,
+                                                       OkHttpSearchRequest request, long start, long len,
+                                                       Response response) {
+    HandleImplementation searchBase = HandleAccessor.as(searchHandle);
     Class<?> as = searchBase.receiveAs();
 
 
@@ -2028,7 +2441,7 @@ public class OkHttpServices implements RESTServices {
 
     logRequest( reqlog,
       "searched starting at %s with length %s in %s transaction with %s mime type",
-      start, len, getTransactionId(transaction), mimetype);
+      start, len, getTransactionId(request.transaction), request.mimetype);
 
     return searchHandle;
   }
@@ -2177,16 +2590,9 @@ public class OkHttpServices implements RESTServices {
     Response getResponse() {
       Response response = null;
       int status = -1;
-      long startTime = System.currentTimeMillis();
-      int nextDelay = 0;
-      int retry = 0;
-      for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-        if (nextDelay > 0) {
-          try {
-            Thread.sleep(nextDelay);
-          } catch (InterruptedException e) {
-          }
-        }
+      RetryAttempts attempts = new RetryAttempts();
+      for (; attempts.hasNext(); attempts.next()) {
+        attempts.beforeAttempt();
 
         if (queryDef instanceof StructuredQueryDefinition && ! (queryDef instanceof RawQueryDefinition)) {
           response = doPost(reqlog, requestBldr, structure);
@@ -2206,6 +2612,7 @@ public class OkHttpServices implements RESTServices {
         }
 
         status = response.code();
+        attempts.received(status);
 
         if (transaction != null || !retryStatus.contains(status)) {
           if (isFirstRequest()) setFirstRequest(false);
@@ -2213,20 +2620,42 @@ public class OkHttpServices implements RESTServices {
           break;
         }
 
-        String retryAfterRaw = response.header("Retry-After");
-        int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
+        long retryAfter = getRetryAfter(response);
 
         response.close();
 
-        nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+        attempts.delayRetry(retryAfter);
       }
       if (retryStatus.contains(status)) {
         checkFirstRequest();
-        throw new FailedRetryException(
-          "Service unavailable and maximum retry period elapsed: "+
-            Math.round((System.currentTimeMillis() - startTime) / 1000)+
-            " seconds after "+retry+" retries");
+        throw attempts.retryFailure();
       }
+      return checkResponse(response);
+    }
+
+    CompletableFuture<Response> getResponseAsync() {
+      boolean isResendable = (baseHandle == null) ? true : baseHandle.isResendable();
+      return sendFirstRequestAsync(isResendable)
+        .thenCompose(ping -> sendRequestAsync(requestBldr, (transaction == null), this::makeRequest, null))
+        .thenApply(this::checkResponse);
+    }
+
+    private Request makeRequest(Request.Builder funcBuilder) {
+      if (queryDef instanceof StructuredQueryDefinition && ! (queryDef instanceof RawQueryDefinition)) {
+        return funcBuilder.post(makeRequestBody(reqlog, funcBuilder, structure)).build();
+      } else if (queryDef instanceof CombinedQueryDefinition) {
+        return funcBuilder.post(makeRequestBody(reqlog, funcBuilder, structure)).build();
+      } else if (queryDef instanceof RawQueryDefinition || queryDef instanceof RawCtsQueryDefinition) {
+        return funcBuilder.post(makeRequestBody(reqlog, funcBuilder, baseHandle.sendContent())).build();
+      } else if (queryDef instanceof DeleteQueryDefinition || queryDef instanceof StringQueryDefinition) {
+        return funcBuilder.get().build();
+      }
+      throw new UnsupportedOperationException("Cannot search with "
+        + queryDef.getClass().getName());
+    }
+
+    private Response checkResponse(Response response) {
+      int status = response.code();
       if (status == STATUS_NOT_FOUND) {
         response.close();
         return null;
@@ -2736,16 +3165,9 @@ public class OkHttpServices implements RESTServices {
 
     Response response = null;
     int status = -1;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
-        }
-      }
+    RetryAttempts attempts = new RetryAttempts();
+    for (; attempts.hasNext(); attempts.next()) {
+      attempts.beforeAttempt();
 
       Object nextValue = (handle != null) ? handle.sendContent() : value;
 
@@ -2754,7 +3176,7 @@ public class OkHttpServices implements RESTServices {
         sentValue = new StreamingOutputImpl(
           (OutputStreamSender) nextValue, reqlog, mediaType);
       } else {
-        if (reqlog != null && retry == 0) {
+        if (reqlog != null && attempts.getRetry() == 0) {
           sentValue = new ObjectRequestBody(reqlog.copyContent(nextValue), mediaType);
         } else {
           sentValue = new ObjectRequestBody(nextValue, mediaType);
@@ -2766,8 +3188,7 @@ public class OkHttpServices implements RESTServices {
       boolean isResendable = (handle == null) ? !isStreaming : handle.isResendable();
 
       if (isFirstRequest() && !isResendable && isStreaming) {
-        nextDelay = makeFirstRequest(retry);
-        if (nextDelay != 0) continue;
+        if (attempts.makeFirstRequest()) continue;
       }
 
       if ("put".equals(method)) {
@@ -2800,6 +3221,7 @@ public class OkHttpServices implements RESTServices {
       }
 
       status = response.code();
+      attempts.received(status);
 
       if (!retryStatus.contains(status)) {
         if (isFirstRequest()) setFirstRequest(false);
@@ -2807,7 +3229,7 @@ public class OkHttpServices implements RESTServices {
         break;
       }
 
-      String retryAfterRaw = response.header("Retry-After");
+      long retryAfter = getRetryAfter(response);
       response.close();
 
       if (!isResendable) {
@@ -2816,15 +3238,13 @@ public class OkHttpServices implements RESTServices {
           "Cannot retry request for " + connectPath);
       }
 
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      attempts.delayRetry(retryAfter);
     }
-    if (retryStatus.contains(status)) {
+    // without a response, the server was still unavailable when the first
+    // request check gave up
+    if (response == null || retryStatus.contains(status)) {
       checkFirstRequest();
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          Math.round((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw attempts.retryFailure();
     }
     if (status == STATUS_FORBIDDEN) {
       throw new ForbiddenUserException("User is not allowed to write "
@@ -2915,12 +3335,13 @@ public class OkHttpServices implements RESTServices {
 
   @Override
   public <R extends UrisReadHandle> R uris(RequestLogger reqlog, Transaction transaction,
-                                           QueryDefinition qdef, long start, long pageLength, String forestName, R output)
+                                           QueryDefinition qdef, long start, String afterUri, long pageLength, String forestName, R output)
     throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException
   {
     RequestParameters params = new RequestParameters();
     if ( forestName != null )        params.add("forest-name", forestName);
-    if (start > 1)                   params.add("start",       Long.toString(start));
+    if (afterUri != null)            params.add("after",       afterUri);
+    else if (start > 1)              params.add("start",       Long.toString(start));
     if (pageLength >= 1)             params.add("pageLength",  Long.toString(pageLength));
     if (qdef.getDirectory() != null) params.add("directory",   qdef.getDirectory());
     if (qdef.getCollections() != null ) {
@@ -3042,6 +3463,14 @@ public class OkHttpServices implements RESTServices {
   private <U extends OkHttpResultIterator> U getIteratedResourceImpl(Class<U> clazz, RequestLogger reqlog,
                                                                      String path, Transaction transaction, RequestParameters params, String... mimetypes)
     throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException
+  {
+    Response response = getIteratedResourceResponse(reqlog, path, transaction, params, mimetypes);
+    return makeResults(clazz, reqlog, "read", "resource", response);
+  }
+
+  private Response getIteratedResourceResponse(RequestLogger reqlog, String path, Transaction transaction,
+                                               RequestParameters params, String... mimetypes)
+    throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException
   {
     if ( params == null ) params = new RequestParameters();
     if (transaction != null) params.add("txid", transaction.getTransactionId());
@@ -3062,7 +3491,7 @@ public class OkHttpServices implements RESTServices {
     checkStatus(response, status, "read", "resource", path,
       ResponseStatus.OK_OR_NO_CONTENT);
 
-    return makeResults(clazz, reqlog, "read", "resource", response);
+    return response;
   }
 
   @Override
@@ -3140,16 +3569,9 @@ public class OkHttpServices implements RESTServices {
 
     Response response = null;
     int status = -1;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
-        }
-      }
+    RetryAttempts attempts = new RetryAttempts();
+    for (; attempts.hasNext(); attempts.next()) {
+      attempts.beforeAttempt();
 
       MultipartBody.Builder multiPart = new MultipartBody.Builder();
       boolean hasStreamingPart = addParts(multiPart, reqlog, input);
@@ -3161,6 +3583,7 @@ public class OkHttpServices implements RESTServices {
 
       response = doPut(requestBldr, multiPart, hasStreamingPart);
       status = response.code();
+      attempts.received(status);
 
       if (transaction != null || !retryStatus.contains(status)) {
         if (isFirstRequest()) setFirstRequest(false);
@@ -3168,7 +3591,7 @@ public class OkHttpServices implements RESTServices {
         break;
       }
 
-      String retryAfterRaw = response.header("Retry-After");
+      long retryAfter = getRetryAfter(response);
       response.close();
 
       if (hasStreamingPart) {
@@ -3176,15 +3599,11 @@ public class OkHttpServices implements RESTServices {
           "Cannot retry request for " + path);
       }
 
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      attempts.delayRetry(retryAfter);
     }
     if (retryStatus.contains(status)) {
       checkFirstRequest();
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          Math.round((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw attempts.retryFailure();
     }
 
     checkStatus(response, status, "write", "resource", path,
@@ -3233,19 +3652,9 @@ public class OkHttpServices implements RESTServices {
     HandleImplementation outputBase = HandleAccessor.checkHandle(output,
       "read");
 
-    String inputMimetype = null;
-    if(inputBase != null) {
-      inputMimetype = inputBase.getMimetype();
-      if ( inputMimetype == null &&
-           ( Format.JSON == inputBase.getFormat() ||
-             Format.XML == inputBase.getFormat() ) )
-      {
-        inputMimetype = inputBase.getFormat().getDefaultMimetype();
-      }
-    }
+    String inputMimetype = getInputMimetype(inputBase);
     String outputMimetype = outputBase == null ? null : outputBase.getMimetype();
     boolean isResendable = inputBase == null ? true : inputBase.isResendable();
-    Class as = outputBase == null ? null : outputBase.receiveAs();
 
     Request.Builder requestBldr = makePostWebResource(path, params);
     requestBldr = setupRequest(requestBldr, inputMimetype, outputMimetype);
@@ -3268,6 +3677,62 @@ public class OkHttpServices implements RESTServices {
     };
 
     Response response = sendRequestWithRetry(requestBldr, (transaction == null), doPostFunction, resendableConsumer);
+    return receivePostResource(reqlog, path, output, operation, responseHeaders, response);
+  }
+
+  @Override
+  public <R extends AbstractReadHandle> CompletableFuture<R> postResourceAsync(RequestLogger reqlog,
+                                                                              String path, Transaction transaction,
+                                                                              RequestParameters params,
+                                                                              AbstractWriteHandle input, R output)
+  {
+    if ( params == null ) params = new RequestParameters();
+    if ( transaction != null ) params.add("txid", transaction.getTransactionId());
+
+    HandleImplementation inputBase = HandleAccessor.checkHandle(input,
+      "write");
+    HandleImplementation outputBase = HandleAccessor.checkHandle(output,
+      "read");
+
+    boolean isResendable = inputBase == null ? true : inputBase.isResendable();
+
+    Request.Builder requestBldr = makePostWebResource(path, params);
+    requestBldr = setupRequest(requestBldr, getInputMimetype(inputBase),
+      outputBase == null ? null : outputBase.getMimetype());
+    requestBldr = addTransactionScopedCookies(requestBldr, transaction);
+    requestBldr = addTelemetryAgentId(requestBldr);
+
+    final Object value = inputBase == null ? null : inputBase.sendContent();
+    Runnable resendableCheck = isResendable ? null : () -> {
+      throw new ResourceNotResendableException("Cannot retry request for " + path);
+    };
+    Request.Builder postBldr = requestBldr;
+    return sendFirstRequestAsync(isResendable || !isStreaming(value))
+      .thenCompose(ping -> sendRequestAsync(postBldr, (transaction == null),
+        funcBuilder -> funcBuilder.post(makeRequestBody(reqlog, funcBuilder, value)).build(),
+        resendableCheck))
+      .thenApply(response -> receivePostResource(reqlog, path, output, "apply", null, response));
+  }
+
+  private String getInputMimetype(HandleImplementation inputBase) {
+    if (inputBase == null) return null;
+    String inputMimetype = inputBase.getMimetype();
+    if ( inputMimetype == null &&
+         ( Format.JSON == inputBase.getFormat() ||
+           Format.XML == inputBase.getFormat() ) )
+    {
+      inputMimetype = inputBase.getFormat().getDefaultMimetype();
+    }
+    return inputMimetype;
+  }
+
+  private <R extends AbstractReadHandle> R receivePostResource(RequestLogger reqlog, String path, R output,
+                                                               String operation,
+                                                               Map<String,List<String>> responseHeaders,
+                                                               Response response) {
+    HandleImplementation outputBase = HandleAccessor.as(output);
+    Class as = outputBase == null ? null : outputBase.receiveAs();
+
     int status = response.code();
     checkStatus(response, status, operation, "resource", path,
       ResponseStatus.OK_OR_CREATED_OR_NO_CONTENT);
@@ -3312,16 +3777,9 @@ public class OkHttpServices implements RESTServices {
 
     Response response = null;
     int status = -1;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
-        }
-      }
+    RetryAttempts attempts = new RetryAttempts();
+    for (; attempts.hasNext(); attempts.next()) {
+      attempts.beforeAttempt();
 
       MultipartBody.Builder multiPart = new MultipartBody.Builder();
       boolean hasStreamingPart = addParts(multiPart, reqlog, null, input, requestHeaders);
@@ -3333,6 +3791,7 @@ public class OkHttpServices implements RESTServices {
 
       response = doPost(requestBldr, multiPart, hasStreamingPart);
       status = response.code();
+      attempts.received(status);
 
       if (transaction != null || !retryStatus.contains(status)) {
         if (isFirstRequest()) setFirstRequest(false);
@@ -3340,7 +3799,7 @@ public class OkHttpServices implements RESTServices {
         break;
       }
 
-      String retryAfterRaw = response.header("Retry-After");
+      long retryAfter = getRetryAfter(response);
       response.close();
 
       if (hasStreamingPart) {
@@ -3348,15 +3807,11 @@ public class OkHttpServices implements RESTServices {
           "Cannot retry request for " + path);
       }
 
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      attempts.delayRetry(retryAfter);
     }
     if (retryStatus.contains(status)) {
       checkFirstRequest();
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          Math.round((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw attempts.retryFailure();
     }
 
     checkStatus(response, status, "apply", "resource", path,
@@ -3834,16 +4289,9 @@ public class OkHttpServices implements RESTServices {
     if ( transaction != null ) params.add("txid", transaction.getTransactionId());
     Response response = null;
     int status = -1;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
-        }
-      }
+    RetryAttempts attempts = new RetryAttempts();
+    for (; attempts.hasNext(); attempts.next()) {
+      attempts.beforeAttempt();
 
       MultipartBody.Builder multiPart = new MultipartBody.Builder();
       boolean hasStreamingPart = addParts(multiPart, reqlog, input);
@@ -3858,6 +4306,7 @@ public class OkHttpServices implements RESTServices {
 
       response = doPost(requestBldr, multiPart, hasStreamingPart);
       status = response.code();
+      attempts.received(status);
 
       if (transaction != null || !retryStatus.contains(status)) {
         if (isFirstRequest()) setFirstRequest(false);
@@ -3865,7 +4314,7 @@ public class OkHttpServices implements RESTServices {
         break;
       }
 
-      String retryAfterRaw = response.header("Retry-After");
+      long retryAfter = getRetryAfter(response);
       response.close();
 
       if (hasStreamingPart) {
@@ -3873,15 +4322,11 @@ public class OkHttpServices implements RESTServices {
           "Cannot retry request for " + path);
       }
 
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      attempts.delayRetry(retryAfter);
     }
     if (retryStatus.contains(status)) {
       checkFirstRequest();
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          Math.round((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw attempts.retryFailure();
     }
 
     checkStatus(response, status, "apply", "resource", path,
@@ -3962,7 +4407,7 @@ public class OkHttpServices implements RESTServices {
   private Response doPut(RequestLogger reqlog, Request.Builder requestBldr, Object value) {
     if (value == null) throw new IllegalArgumentException("Resource write with null value");
 
-    if (isFirstRequest() && isStreaming(value)) makeFirstRequest(0);
+    if (isFirstRequest() && isStreaming(value)) makeFirstRequest();
 
     MediaType mediaType = makeType(requestBldr.build().header(HEADER_CONTENT_TYPE));
     if (value instanceof OutputStreamSender) {
@@ -3983,7 +4428,7 @@ public class OkHttpServices implements RESTServices {
 
   private Response doPut(Request.Builder requestBldr,
                          MultipartBody.Builder multiPart, boolean hasStreamingPart) {
-    if (isFirstRequest() && hasStreamingPart) makeFirstRequest(0);
+    if (isFirstRequest() && hasStreamingPart) makeFirstRequest();
 
     requestBldr = requestBldr.put(multiPart.build());
     Response response = sendRequestOnce(requestBldr);
@@ -4003,7 +4448,7 @@ public class OkHttpServices implements RESTServices {
 
   private Response doPost(RequestLogger reqlog, Request.Builder requestBldr, Object value) {
     if (isFirstRequest() && isStreaming(value)) {
-      makeFirstRequest(0);
+      makeFirstRequest();
     }
 
     MediaType mediaType = makeType(requestBldr.build().header(HEADER_CONTENT_TYPE));
@@ -4028,7 +4473,7 @@ public class OkHttpServices implements RESTServices {
 
   private Response doPost(Request.Builder requestBldr,
                           MultipartBody.Builder multiPart, boolean hasStreamingPart) {
-    if (isFirstRequest() && hasStreamingPart) makeFirstRequest(0);
+    if (isFirstRequest() && hasStreamingPart) makeFirstRequest();
 
     Response response = sendRequestOnce(requestBldr.post(multiPart.build()));
 
@@ -4321,18 +4766,45 @@ public class OkHttpServices implements RESTServices {
     return makeResults(clazz, reqlog, operation, entityType, partList, response, closeable);
   }
 
+  private <U extends OkHttpResultIterator> U makeStreamingResults(
+    Class<U> clazz, RequestLogger reqlog,
+    String operation, String entityType, Response response) {
+    if ( response == null ) return null;
+    ResponseBody body = response.body();
+    StreamingMultipartReader partReader = body.contentLength() != 0 ?
+      makePartReader(body) : null;
+
+    Closeable closeable = response;
+    return makeResults(clazz, reqlog, operation, entityType, partReader, response, closeable);
+  }
+
   private <U extends OkHttpResultIterator> U makeResults(
     Class<U> clazz, RequestLogger reqlog,
     String operation, String entityType, List<BodyPart> partList, Response response,
     Closeable closeable) {
+    return makeResults(clazz, reqlog, operation, entityType, List.class, partList, response, closeable);
+  }
+
+  private <U extends OkHttpResultIterator> U makeResults(
+    Class<U> clazz, RequestLogger reqlog,
+    String operation, String entityType, StreamingMultipartReader partReader, Response response,
+    Closeable closeable) {
+    return makeResults(clazz, reqlog, operation, entityType, StreamingMultipartReader.class, partReader, response,
+      closeable);
+  }
+
+  private <U extends OkHttpResultIterator> U makeResults(
+    Class<U> clazz, RequestLogger reqlog,
+    String operation, String entityType, Class<?> partsType, Object parts, Response response,
+    Closeable closeable) {
     logRequest(reqlog, "%s for %s", operation, entityType);
 
     if ( response == null ) return null;
 
     try {
       java.lang.reflect.Constructor<U> constructor =
-        clazz.getConstructor(OkHttpServices.class, RequestLogger.class, List.class, Closeable.class);
-      OkHttpResultIterator result = constructor.newInstance(this, reqlog, partList, closeable);
+        clazz.getConstructor(OkHttpServices.class, RequestLogger.class, partsType, Closeable.class);
+      OkHttpResultIterator result = constructor.newInstance(this, reqlog, parts, closeable);
       Headers headers = response.headers();
       if (headers.get(HEADER_VND_MARKLOGIC_START) != null) {
         result.setStart(Long.parseLong(headers.get(HEADER_VND_MARKLOGIC_START)));
@@ -4386,22 +4858,10 @@ public class OkHttpServices implements RESTServices {
     return (builder != null) ? builder.toString() : null;
   }
 
-  private int calculateDelay(Random rand, int i) {
-    int min   =
-      (i  > 6) ? DELAY_CEILING :
-        (i == 0) ? DELAY_FLOOR   :
-          DELAY_FLOOR + (1 << i) * DELAY_MULTIPLIER;
-    int range =
-      (i >  6) ? DELAY_FLOOR          :
-        (i == 0) ? 2 * DELAY_MULTIPLIER :
-          (i == 6) ? DELAY_CEILING - min  :
-            (1 << i) * DELAY_MULTIPLIER;
-    return min + randRetry.nextInt(range);
-  }
-
   public class OkHttpResult {
     private RequestLogger reqlog;
     private BodyPart part;
+    private StreamingMultipartReader.Part streamedPart;
     private boolean extractedHeaders = false;
     private String uri;
     private RequestParameters headers = new RequestParameters();
@@ -4414,8 +4874,13 @@ public class OkHttpServices implements RESTServices {
       this.part = part;
     }
 
+    public OkHttpResult(RequestLogger reqlog, StreamingMultipartReader.Part streamedPart) {
+      this.reqlog = reqlog;
+      this.streamedPart = streamedPart;
+    }
+
     public <R extends AbstractReadHandle> R getContent(R handle) {
-      if (part == null) throw new IllegalStateException("Content already retrieved");
+      if (part == null && streamedPart == null) throw new IllegalStateException("Content already retrieved");
 
       HandleImplementation handleBase = HandleAccessor.as(handle);
 
@@ -4425,12 +4890,15 @@ public class OkHttpServices implements RESTServices {
       updateLength(handleBase, length);
 
       try {
-        Object contentEntity = getEntity(part, handleBase.receiveAs());
+        Object contentEntity = (part != null) ?
+          getEntity(part, handleBase.receiveAs()) :
+          getEntity(streamedPart, handleBase.receiveAs());
         handleBase.receiveContent((reqlog != null) ? reqlog.copyContent(contentEntity) : contentEntity);
 
         return handle;
       } finally {
         part = null;
+        streamedPart = null;
         reqlog = null;
       }
     }
@@ -4476,7 +4944,21 @@ public class OkHttpServices implements RESTServices {
     }
 
     private void extractHeaders() {
-      if (part == null || extractedHeaders) return;
+      if (extractedHeaders) return;
+      if (streamedPart != null) {
+        for ( Map.Entry<String,List<String>> header : streamedPart.getHeaders().entrySet() ) {
+          for ( String value : header.getValue() ) {
+            headers.put(header.getKey(), value);
+          }
+        }
+        format = getHeaderFormat(streamedPart);
+        mimetype = getHeaderMimetype(streamedPart.getHeader(HEADER_CONTENT_TYPE));
+        length = getHeaderLength(streamedPart.getHeader(HEADER_CONTENT_LENGTH));
+        uri = getHeaderUri(streamedPart);
+        extractedHeaders = true;
+        return;
+      }
+      if (part == null) return;
       try {
         for ( Enumeration<Header> e = part.getAllHeaders(); e.hasMoreElements(); ) {
           Header header = e.nextElement();
@@ -4497,11 +4979,17 @@ public class OkHttpServices implements RESTServices {
     public OkHttpServiceResult(RequestLogger reqlog, BodyPart part) {
       super(reqlog, part);
     }
+    public OkHttpServiceResult(RequestLogger reqlog, StreamingMultipartReader.Part streamedPart) {
+      super(reqlog, streamedPart);
+    }
   }
 
   public class OkHttpResultIterator<T extends OkHttpResult> {
     private RequestLogger reqlog;
     private Iterator<BodyPart> partQueue;
+    private StreamingMultipartReader partReader;
+    private Deque<StreamingMultipartReader.Part> readAheadParts;
+    private long partsReturned = 0;
     private Class<T> clazz;
     private long start = -1;
     private long size = -1;
@@ -4523,6 +5011,25 @@ public class OkHttpServices implements RESTServices {
       this.closeable = closeable;
     }
 
+    /**
+     * Iterates over the parts as they are read from the response instead of
+     * over a fully buffered multipart.  The size is not known until all of the
+     * parts have been read, so getSize() reads ahead (buffering the remaining
+     * parts) if called before the iteration is complete.
+     */
+    public OkHttpResultIterator(RequestLogger reqlog,
+                                StreamingMultipartReader partReader, Class<T> clazz, Closeable closeable) {
+      this.clazz = clazz;
+      this.reqlog = reqlog;
+      if (partReader != null) {
+        this.partReader = partReader;
+        this.readAheadParts = new ArrayDeque<>();
+      } else {
+        this.size = 0;
+      }
+      this.closeable = closeable;
+    }
+
     public long getStart() {
       return start;
     }
@@ -4533,9 +5040,36 @@ public class OkHttpServices implements RESTServices {
     }
 
     public long getSize() {
+      if (size == -1 && partReader != null) {
+        while (readAheadPart()) {
+        }
+      }
       return size;
     }
 
+    boolean hasParts() {
+      if (partReader == null || size != -1) return getSize() > 0;
+      return partsReturned > 0 || hasNext();
+    }
+
+    private boolean readAheadPart() {
+      if (partReader == null || partReader.isFinished()) return false;
+      try {
+        StreamingMultipartReader.Part part = partReader.nextPart();
+        if (part == null) {
+          size = partsReturned + readAheadParts.size();
+          // every part has been detached from the response, so the
+          // connection can go back to the pool
+          closeResponse();
+          return false;
+        }
+        readAheadParts.add(part);
+        return true;
+      } catch (IOException e) {
+        throw new MarkLogicIOException(e);
+      }
+    }
+
     public OkHttpResultIterator<T> setSize(long size) {
       this.size = size;
       return this;
@@ -4561,24 +5095,44 @@ public class OkHttpServices implements RESTServices {
 
 
     public boolean hasNext() {
+      if (readAheadParts != null) {
+        return !readAheadParts.isEmpty() || readAheadPart();
+      }
       if (partQueue == null) return false;
       boolean hasNext = partQueue.hasNext();
       return hasNext;
     }
 
     public T next() {
+      if (readAheadParts != null) {
+        if (!hasNext()) throw new NoSuchElementException("No parts remaining in response");
+        StreamingMultipartReader.Part part = readAheadParts.poll();
+        partsReturned++;
+        try {
+          java.lang.reflect.Constructor<T> constructor =
+            clazz.getConstructor(OkHttpServices.class, RequestLogger.class, StreamingMultipartReader.Part.class);
+          // the results are inner classes of the services that read them
+          return constructor.newInstance(OkHttpServices.this, reqlog, part);
+        } catch (Throwable t) {
+          throw new IllegalStateException("Error instantiating " + clazz.getName(), t);
+        }
+      }
       if (partQueue == null) return null;
 
       try {
         java.lang.reflect.Constructor<T> constructor =
           clazz.getConstructor(OkHttpServices.class, RequestLogger.class, BodyPart.class);
-        return constructor.newInstance(new OkHttpServices(), reqlog, partQueue.next());
+        return constructor.newInstance(OkHttpServices.this, reqlog, partQueue.next());
       } catch (Throwable t) {
         throw new IllegalStateException("Error instantiating " + clazz.getName(), t);
       }
     }
 
     public void remove() {
+      if (readAheadParts != null) {
+        if (!hasNext()) close();
+        return;
+      }
       if (partQueue == null) return;
       partQueue.remove();
       if (!partQueue.hasNext()) close();
@@ -4586,12 +5140,20 @@ public class OkHttpServices implements RESTServices {
 
     public void close() {
       partQueue = null;
+      readAheadParts = null;
+      partReader = null;
       reqlog = null;
+      closeResponse();
+    }
+
+    private void closeResponse() {
       if ( closeable != null ) {
         try {
           closeable.close();
         } catch (IOException e) {
           throw new MarkLogicIOException(e);
+        } finally {
+          closeable = null;
         }
       }
     }
@@ -4605,6 +5167,10 @@ public class OkHttpServices implements RESTServices {
                                        List<BodyPart> partList, Closeable closeable) {
       super(reqlog, partList, OkHttpServiceResult.class, closeable);
     }
+    public OkHttpServiceResultIterator(RequestLogger reqlog,
+                                       StreamingMultipartReader partReader, Closeable closeable) {
+      super(reqlog, partReader, OkHttpServiceResult.class, closeable);
+    }
   }
 
   public class DefaultOkHttpResultIterator
@@ -4615,6 +5181,10 @@ public class OkHttpServices implements RESTServices {
                                        List<BodyPart> partList, Closeable closeable) {
       super(reqlog, partList, OkHttpResult.class, closeable);
     }
+    public DefaultOkHttpResultIterator(RequestLogger reqlog,
+                                       StreamingMultipartReader partReader, Closeable closeable) {
+      super(reqlog, partReader, OkHttpResult.class, closeable);
+    }
   }
 
   public class OkHttpDocumentRecord implements DocumentRecord {
@@ -4864,16 +5434,9 @@ public class OkHttpServices implements RESTServices {
 
     Response response = null;
     int status = -1;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
-        }
-      }
+    RetryAttempts attempts = new RetryAttempts();
+    for (; attempts.hasNext(); attempts.next()) {
+      attempts.beforeAttempt();
 
       if (queryDef instanceof StructuredQueryDefinition) {
         response = sendRequestOnce(requestBldr.post(RequestBody.create(mediaType, structure)));
@@ -4887,6 +5450,7 @@ public class OkHttpServices implements RESTServices {
           + queryDef.getClass().getName());
       }
       status = response.code();
+      attempts.received(status);
 
       if (!retryStatus.contains(status)) {
         if (isFirstRequest()) setFirstRequest(false);
@@ -4894,19 +5458,15 @@ public class OkHttpServices implements RESTServices {
         break;
       }
 
-      String retryAfterRaw = response.header("Retry-After");
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
+      long retryAfter = getRetryAfter(response);
 
       response.close();
 
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      attempts.delayRetry(retryAfter);
     }
     if (retryStatus.contains(status)) {
       checkFirstRequest();
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          Math.round((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw attempts.retryFailure();
     }
     if (status == STATUS_FORBIDDEN) {
       throw new ForbiddenUserException("User is not allowed to match",
@@ -5244,6 +5804,28 @@ public class OkHttpServices implements RESTServices {
     }
   }
 
+  private <T> T getEntity(StreamingMultipartReader.Part part, Class<T> as) {
+    // the part length is not known until the delimiter is reached
+    String contentType = part.getHeader(HEADER_CONTENT_TYPE);
+    return getEntity(ResponseBody.create(MediaType.parse(contentType != null ? contentType : "text/plain"), -1,
+      part.getBody()), as);
+  }
+
+  private StreamingMultipartReader makePartReader(ResponseBody body) {
+    MediaType mediaType = body.contentType();
+    if ( mediaType == null ) {
+      throw new MarkLogicIOException("multipart response without content type");
+    }
+    try {
+      String boundary = new ContentType(mediaType.toString()).getParameter("boundary");
+      return new StreamingMultipartReader(body.source(), boundary);
+    } catch (ParseException e) {
+      throw new MarkLogicIOException(e);
+    } catch (IllegalArgumentException e) {
+      throw new MarkLogicIOException(e.getMessage(), e);
+    }
+  }
+
   private MediaType makeType(String mimetype) {
     if ( mimetype == null ) return null;
     MediaType type = MediaType.parse(mimetype);
@@ -5498,7 +6080,7 @@ public class OkHttpServices implements RESTServices {
       };
 
       Function<Request.Builder, Response> sendRequestFunction = requestBldr -> {
-        if (isFirstRequest() && hasStreamingPart) makeFirstRequest(callBaseUri, "", 0);
+        if (isFirstRequest() && hasStreamingPart) makeFirstRequest(callBaseUri, "");
         Response response = sendRequestOnce(requestBldr);
         if (isFirstRequest()) setFirstRequest(false);
         return response;
@@ -17,6 +17,7 @@ package com.marklogic.client.impl;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import javax.xml.namespace.QName;
 
@@ -175,8 +176,26 @@ public class QueryManagerImpl
     return services.search(requestLogger, searchHandle, querydef, start, pageLen, view, transaction, forestName);
   }
 
+  @Override
+  public <T extends SearchReadHandle> CompletableFuture<T> searchAsync(QueryDefinition querydef, T searchHandle) {
+    return searchAsync(querydef, searchHandle, null);
+  }
+
+  public <T extends SearchReadHandle> CompletableFuture<T> searchAsync(QueryDefinition querydef, T searchHandle, String forestName) {
+    if (searchHandle instanceof SearchHandle) {
+      SearchHandle responseHandle = (SearchHandle) searchHandle;
+      responseHandle.setHandleRegistry(getHandleRegistry());
+      responseHandle.setQueryCriteria(querydef);
+    }
+    return services.searchAsync(requestLogger, searchHandle, querydef, 1, pageLen, view, null, forestName);
+  }
+
   public <T extends UrisReadHandle> T uris(QueryDefinition querydef, T urisHandle, long start, Transaction transaction, String forestName) {
-    return services.uris(requestLogger, transaction, querydef, start, pageLen, forestName, urisHandle);
+    return services.uris(requestLogger, transaction, querydef, start, null, pageLen, forestName, urisHandle);
+  }
+
+  public <T extends UrisReadHandle> T uris(QueryDefinition querydef, T urisHandle, String afterUri, Transaction transaction, String forestName) {
+    return services.uris(requestLogger, transaction, querydef, 1, afterUri, pageLen, forestName, urisHandle);
   }
 
   @Override
@@ -21,6 +21,7 @@ import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 import javax.net.ssl.SSLContext;
@@ -28,6 +29,7 @@ import javax.net.ssl.X509TrustManager;
 
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory.Authentication;
+import com.marklogic.client.DatabaseClientFactory.ConnectionConfig;
 import com.marklogic.client.DatabaseClientFactory.SSLHostnameVerifier;
 import com.marklogic.client.FailedRequestException;
 import com.marklogic.client.ForbiddenUserException;
@@ -126,6 +128,8 @@ public interface RESTServices {
                       SSLContext context, SSLHostnameVerifier verifier);
   public void connect(String host, int port, String database, String user, String password, Map<String,String> kerberosOptions, Authentication type,
       SSLContext context, X509TrustManager trustManager, SSLHostnameVerifier verifier);
+  public void connect(String host, int port, String database, String user, String password, Map<String,String> kerberosOptions, Authentication type,
+      SSLContext context, X509TrustManager trustManager, SSLHostnameVerifier verifier, ConnectionConfig connectionConfig);
   public DatabaseClient getDatabaseClient();
   public void setDatabaseClient(DatabaseClient client);
   public void release();
@@ -133,11 +137,17 @@ public interface RESTServices {
   public TemporalDescriptor deleteDocument(RequestLogger logger, DocumentDescriptor desc, Transaction transaction,
                                            Set<Metadata> categories, RequestParameters extraParams)
     throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException;
+  public CompletableFuture<TemporalDescriptor> deleteDocumentAsync(RequestLogger logger, DocumentDescriptor desc,
+                                                                   Transaction transaction, Set<Metadata> categories,
+                                                                   RequestParameters extraParams);
 
   public boolean getDocument(RequestLogger logger, DocumentDescriptor desc, Transaction transaction,
                              Set<Metadata> categories, RequestParameters extraParams,
                              DocumentMetadataReadHandle metadataHandle, AbstractReadHandle contentHandle)
     throws ResourceNotFoundException, ForbiddenUserException,  FailedRequestException;
+  public CompletableFuture<Boolean> getDocumentAsync(RequestLogger logger, DocumentDescriptor desc,
+                                                     Transaction transaction, RequestParameters extraParams,
+                                                     AbstractReadHandle contentHandle);
 
   public DocumentDescriptor head(RequestLogger logger, String uri, Transaction transaction)
     throws ForbiddenUserException, FailedRequestException;
@@ -164,6 +174,9 @@ public interface RESTServices {
                                         DocumentMetadataWriteHandle metadataHandle, AbstractWriteHandle contentHandle)
     throws ResourceNotFoundException, ResourceNotResendableException,
     ForbiddenUserException, FailedRequestException;
+  public CompletableFuture<TemporalDescriptor> putDocumentAsync(RequestLogger logger, DocumentDescriptor desc,
+                                                                Transaction transaction, RequestParameters extraParams,
+                                                                AbstractWriteHandle contentHandle);
 
   public DocumentDescriptorImpl postDocument(RequestLogger logger, DocumentUriTemplate template,
                                              Transaction transaction, Set<Metadata> categories, RequestParameters extraParams,
@@ -179,6 +192,10 @@ public interface RESTServices {
   public <T extends SearchReadHandle> T search(RequestLogger logger, T searchHandle, QueryDefinition queryDef,
                                                long start, long len, QueryView view, Transaction transaction, String forestName)
     throws ForbiddenUserException, FailedRequestException;
+  public <T extends SearchReadHandle> CompletableFuture<T> searchAsync(RequestLogger logger, T searchHandle,
+                                                                       QueryDefinition queryDef, long start, long len,
+                                                                       QueryView view, Transaction transaction,
+                                                                       String forestName);
 
   public void deleteSearch(RequestLogger logger, DeleteQueryDefinition queryDef, Transaction transaction)
     throws ForbiddenUserException, FailedRequestException;
@@ -231,7 +248,7 @@ public interface RESTServices {
     throws ForbiddenUserException, FailedRequestException;
 
   public <R extends UrisReadHandle> R uris(RequestLogger reqlog, Transaction transaction,
-                                           QueryDefinition qdef, long start, long pageLength, String forestName, R output)
+                                           QueryDefinition qdef, long start, String afterUri, long pageLength, String forestName, R output)
     throws ResourceNotFoundException, ForbiddenUserException, FailedRequestException;
   public <R extends AbstractReadHandle> R getResource(RequestLogger reqlog, String path,
                                                       Transaction transaction, RequestParameters params, R output)
@@ -256,6 +273,9 @@ public interface RESTServices {
     AbstractWriteHandle input, R output)
     throws ResourceNotFoundException, ResourceNotResendableException,
     ResourceNotResendableException, ForbiddenUserException, FailedRequestException;
+  public <R extends AbstractReadHandle> CompletableFuture<R> postResourceAsync(
+    RequestLogger reqlog, String path, Transaction transaction, RequestParameters params,
+    AbstractWriteHandle input, R output);
   public <R extends AbstractReadHandle, W extends AbstractWriteHandle> R postResource(
     RequestLogger reqlog, String path, Transaction transaction, RequestParameters params,
     W[] input, R output)
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -158,6 +159,22 @@ public class RowManagerImpl
 
     return services.postResource(requestLogger, "rows", transaction, params, astHandle, resultsHandle);
   }
+  @Override
+  public <T extends StructureReadHandle> CompletableFuture<T> resultDocAsync(Plan plan, T resultsHandle) {
+    PlanBuilderBaseImpl.RequestPlan requestPlan = checkPlan(plan);
+
+    AbstractWriteHandle astHandle = requestPlan.getHandle();
+
+    if (resultsHandle == null) {
+      throw new IllegalArgumentException("Must specify a handle to read the row result document");
+    }
+
+    RequestParameters params = getParamBindings(requestPlan);
+    addDatatypeStyleParam(params,     getDatatypeStyle());
+    addRowStructureStyleParam(params, getRowStructureStyle());
+
+    return services.postResourceAsync(requestLogger, "rows", null, params, astHandle, resultsHandle);
+  }
 
   @Override
   public RowSet<RowRecord> resultRows(Plan plan) {
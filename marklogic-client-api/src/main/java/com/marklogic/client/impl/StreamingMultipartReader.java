@@ -0,0 +1,259 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+import okio.Source;
+import okio.Timeout;
+
+/**
+ * Reads the parts of a multipart/mixed response one at a time straight off the
+ * response source instead of buffering the whole payload.  The body of each
+ * part is bounded by the next boundary delimiter, so a consumer that reads
+ * each part before advancing only holds one part in memory.
+ *
+ * If a part is not fully read before the reader advances past it, the unread
+ * remainder of that part is copied into memory so the part can still be read
+ * later.  Consumers that care about memory should read (or close) each part
+ * body before asking for the next part.
+ */
+public class StreamingMultipartReader {
+  private final static ByteString DASH_DASH = ByteString.encodeUtf8("--");
+  private final static long       MAX_HEADER_LINE = 64 * 1024;
+
+  private final BufferedSource source;
+  private final ByteString     dashDashBoundary;
+  private final ByteString     crlfDashDashBoundary;
+
+  private Part    currentPart;
+  private int     partCount   = 0;
+  private boolean noMoreParts = false;
+
+  public StreamingMultipartReader(BufferedSource source, String boundary) {
+    if (source == null) throw new IllegalArgumentException("source must not be null");
+    if (boundary == null || boundary.length() == 0) {
+      throw new IllegalArgumentException("multipart response without boundary");
+    }
+    this.source               = source;
+    this.dashDashBoundary     = ByteString.encodeUtf8("--" + boundary);
+    this.crlfDashDashBoundary = ByteString.encodeUtf8("\r\n--" + boundary);
+  }
+
+  /**
+   * Returns the number of parts read so far.
+   * @return the count of parts returned by nextPart()
+   */
+  public int getPartCount() {
+    return partCount;
+  }
+
+  /**
+   * Returns whether the close delimiter has been read.
+   * @return true if no parts remain
+   */
+  public boolean isFinished() {
+    return noMoreParts;
+  }
+
+  /**
+   * Advances to the next part, detaching the previous part from the response
+   * source.
+   * @return the next part or null if the close delimiter has been reached
+   * @throws IOException if the response cannot be read or is malformed
+   */
+  public Part nextPart() throws IOException {
+    if (noMoreParts) return null;
+
+    if (currentPart == null) {
+      if (source.exhausted()) {
+        noMoreParts = true;
+        return null;
+      }
+      if (source.rangeEquals(0, dashDashBoundary)) {
+        source.skip(dashDashBoundary.size());
+      } else {
+        // skip the preamble
+        long delimiterIndex = source.indexOf(crlfDashDashBoundary);
+        if (delimiterIndex == -1) {
+          throw new EOFException("multipart response without start boundary");
+        }
+        source.skip(delimiterIndex + crlfDashDashBoundary.size());
+      }
+    } else {
+      currentPart.detach();
+      source.skip(crlfDashDashBoundary.size());
+      currentPart = null;
+    }
+
+    if (source.rangeEquals(0, DASH_DASH)) {
+      noMoreParts = true;
+      return null;
+    }
+    // skip transport padding and the line break after the boundary
+    readHeaderLine();
+
+    Part part = new Part(readHeaders());
+    currentPart = part;
+    partCount++;
+    return part;
+  }
+
+  private Map<String,List<String>> readHeaders() throws IOException {
+    Map<String,List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    String lastName = null;
+    for (String line = readHeaderLine(); line.length() > 0; line = readHeaderLine()) {
+      char first = line.charAt(0);
+      if ((first == ' ' || first == '\t') && lastName != null) {
+        List<String> values = headers.get(lastName);
+        int last = values.size() - 1;
+        values.set(last, values.get(last) + " " + line.trim());
+        continue;
+      }
+      int colon = line.indexOf(':');
+      if (colon <= 0) {
+        throw new IOException("malformed multipart header: " + line);
+      }
+      lastName = line.substring(0, colon).trim();
+      List<String> values = headers.get(lastName);
+      if (values == null) {
+        values = new ArrayList<>(1);
+        headers.put(lastName, values);
+      }
+      values.add(line.substring(colon + 1).trim());
+    }
+    return headers;
+  }
+
+  // headers are decoded as ISO-8859-1 (same as javax.mail) so that the raw
+  // bytes of non-ASCII header values survive the round trip
+  private String readHeaderLine() throws IOException {
+    long newline = source.indexOf((byte) '\n', 0, MAX_HEADER_LINE);
+    if (newline == -1) {
+      if (source.exhausted()) throw new EOFException("multipart response ended in part headers");
+      throw new IOException("multipart header line longer than " + MAX_HEADER_LINE + " bytes");
+    }
+    long length = (newline > 0 && source.buffer().getByte(newline - 1) == '\r') ?
+      newline - 1 : newline;
+    String line = source.readString(length, StandardCharsets.ISO_8859_1);
+    source.skip(newline + 1 - length);
+    return line;
+  }
+
+  // the number of bytes that can be read from the current part without
+  // crossing the delimiter that ends the part
+  private long currentPartBytesRemaining(long maxResult) throws IOException {
+    source.require(crlfDashDashBoundary.size());
+    Buffer buffer = source.buffer();
+    long delimiterIndex = buffer.indexOf(crlfDashDashBoundary);
+    if (delimiterIndex == -1) {
+      return Math.min(maxResult, buffer.size() - crlfDashDashBoundary.size() + 1);
+    }
+    return Math.min(maxResult, delimiterIndex);
+  }
+
+  /**
+   * One part of the multipart response with its headers already parsed and
+   * its body available as a source bounded by the part delimiter.
+   */
+  public class Part {
+    private final Map<String,List<String>> headers;
+    private final PartSource               partSource = new PartSource();
+    private final BufferedSource           body       = Okio.buffer(partSource);
+
+    Part(Map<String,List<String>> headers) {
+      this.headers = headers;
+    }
+
+    public Map<String,List<String>> getHeaders() {
+      return headers;
+    }
+
+    public String getHeader(String name) {
+      List<String> values = headers.get(name);
+      if (values == null || values.size() == 0) return null;
+      return values.get(0);
+    }
+
+    public BufferedSource getBody() {
+      return body;
+    }
+
+    /**
+     * Copies any unread content of this part into memory so the reader can
+     * advance past the part.
+     * @throws IOException if the response cannot be read
+     */
+    void detach() throws IOException {
+      partSource.detach();
+    }
+
+    private class PartSource implements Source {
+      private Buffer  detached;
+      private boolean closed = false;
+
+      void detach() throws IOException {
+        if (detached != null) return;
+        Buffer remainder = new Buffer();
+        if (closed) {
+          while (readFromResponse(remainder, 8192) != -1) {
+            remainder.clear();
+          }
+        } else {
+          while (readFromResponse(remainder, 8192) != -1) {
+          }
+        }
+        detached = remainder;
+      }
+
+      private long readFromResponse(Buffer sink, long byteCount) throws IOException {
+        long limit = currentPartBytesRemaining(byteCount);
+        if (limit == 0) return -1;
+        return source.read(sink, limit);
+      }
+
+      @Override
+      public long read(Buffer sink, long byteCount) throws IOException {
+        if (closed) throw new IllegalStateException("part body already closed");
+        if (detached != null) return detached.read(sink, byteCount);
+        return readFromResponse(sink, byteCount);
+      }
+
+      @Override
+      public Timeout timeout() {
+        return source.timeout();
+      }
+
+      // closing the body of a part releases any detached content but
+      // leaves the response open for the following parts
+      @Override
+      public void close() {
+        closed = true;
+        if (detached != null) detached.clear();
+      }
+    }
+  }
+}
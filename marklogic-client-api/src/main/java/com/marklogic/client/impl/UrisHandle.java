@@ -18,7 +18,9 @@ package com.marklogic.client.impl;
 import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 
 import org.slf4j.Logger;
@@ -34,12 +36,12 @@ import com.marklogic.client.io.marker.OperationNotSupported;
  * search and on the configuration of this handle.</p>
  */
 public class UrisHandle
-  extends BaseHandle<Reader, OperationNotSupported>
+  extends BaseHandle<InputStream, OperationNotSupported>
   implements UrisReadHandle, Iterable<String>, Closeable
 {
   static final private Logger logger = LoggerFactory.getLogger(UrisHandle.class);
 
-  private Reader reader;
+  private InputStream content;
   private BufferedReader bufferedReader;
 
   public UrisHandle() {
@@ -48,19 +50,32 @@ public class UrisHandle
   }
 
   @Override
-  protected Class<Reader> receiveAs() {
-    return Reader.class;
+  protected Class<InputStream> receiveAs() {
+    return InputStream.class;
   }
 
   @Override
-  protected void receiveContent(Reader content) {
-    this.reader = content;
+  protected void receiveContent(InputStream content) {
+    this.content = content;
+    // the handle can be reused for another response
+    this.bufferedReader = null;
+  }
+
+  /**
+   * Returns the uri list as received from the server (UTF-8 uris separated
+   * by newlines) for callers that keep the bytes instead of iterating.
+   * Use either this stream or {@link #iterator} but not both.
+   *
+   * @return the stream of the uri list
+   */
+  public InputStream getInputStream() {
+    return content;
   }
 
   @Override
   public Iterator<String> iterator() {
     if ( bufferedReader == null ) {
-      bufferedReader = new BufferedReader(reader);
+      bufferedReader = new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8));
     }
     return bufferedReader.lines().iterator();
   }
@@ -71,7 +86,7 @@ public class UrisHandle
     } catch (IOException e) {
     } finally {
       try {
-        if ( reader != null ) reader.close();
+        if ( content != null ) content.close();
       } catch (IOException e) {
       }
     }
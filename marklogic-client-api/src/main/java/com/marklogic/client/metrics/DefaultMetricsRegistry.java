@@ -0,0 +1,454 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.metrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A MetricsRegistry which keeps the measurements in memory and has no
+ * dependencies.  Timers and summaries keep a {@link Histogram} with
+ * buckets that grow exponentially, so percentiles are reported within
+ * 12.5% of the recorded value no matter how far apart the values are,
+ * using a fixed amount of memory per meter.  Recording a value doesn't
+ * lock, so many threads can record at once.
+ *
+ * Sample Usage:
+ *
+ * <pre>{@code
+ *     DefaultMetricsRegistry metrics = new DefaultMetricsRegistry();
+ *     QueryBatcher batcher = dataMovementManager.newQueryBatcher(query)
+ *         .withJobName("export")
+ *         .withMetricsRegistry(metrics)
+ *         .onUrisReady(new ExportListener()...);
+ *     ...
+ *     for ( Map.Entry<DefaultMetricsRegistry.MeterId, DefaultMetricsRegistry.Histogram> entry :
+ *           metrics.getTimers().entrySet() ) {
+ *       System.out.println(entry.getKey() + " p99 ms: " +
+ *         entry.getValue().getValueAtPercentile(0.99) / 1_000_000);
+ *     }
+ *}</pre>
+ *
+ * To scrape the meters, serve the output of {@link #writePrometheus} from
+ * an HTTP endpoint of the application.
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry {
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+  private final ConcurrentMap<MeterId,Histogram> timers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<MeterId,Histogram> summaries = new ConcurrentHashMap<>();
+  private final ConcurrentMap<MeterId,LongAdder> counters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<MeterId,DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+  @Override
+  public Timer timer(String name, String... tags) {
+    Histogram histogram = timers.computeIfAbsent(new MeterId(name, tags), id -> new Histogram());
+    return histogram::record;
+  }
+
+  @Override
+  public Counter counter(String name, String... tags) {
+    LongAdder count = counters.computeIfAbsent(new MeterId(name, tags), id -> new LongAdder());
+    return count::add;
+  }
+
+  @Override
+  public Summary summary(String name, String... tags) {
+    Histogram histogram = summaries.computeIfAbsent(new MeterId(name, tags), id -> new Histogram());
+    return histogram::record;
+  }
+
+  @Override
+  public Gauge gauge(String name, DoubleSupplier value, String... tags) {
+    if ( value == null ) throw new IllegalArgumentException("value must not be null");
+    MeterId id = new MeterId(name, tags);
+    gauges.put(id, value);
+    return () -> gauges.remove(id, value);
+  }
+
+  /**
+   * @param name the name of the timer
+   * @param tags alternating tag keys and values
+   * @return the durations (in nanoseconds) recorded by the timer or null if
+   *         nothing was recorded for the name and tags
+   */
+  public Histogram getTimer(String name, String... tags) {
+    return timers.get(new MeterId(name, tags));
+  }
+
+  /**
+   * @param name the name of the summary
+   * @param tags alternating tag keys and values
+   * @return the amounts recorded by the summary or null if nothing was
+   *         recorded for the name and tags
+   */
+  public Histogram getSummary(String name, String... tags) {
+    return summaries.get(new MeterId(name, tags));
+  }
+
+  /**
+   * @param name the name of the counter
+   * @param tags alternating tag keys and values
+   * @return the count, or 0 if nothing was counted for the name and tags
+   */
+  public long getCount(String name, String... tags) {
+    LongAdder count = counters.get(new MeterId(name, tags));
+    return count == null ? 0 : count.sum();
+  }
+
+  /**
+   * @param name the name of the gauge
+   * @param tags alternating tag keys and values
+   * @return the current value, or NaN if no gauge is registered for the name and tags
+   */
+  public double getGaugeValue(String name, String... tags) {
+    DoubleSupplier value = gauges.get(new MeterId(name, tags));
+    return value == null ? Double.NaN : value.getAsDouble();
+  }
+
+  /**
+   * @return all timers (with durations in nanoseconds) by name and tags
+   */
+  public Map<MeterId,Histogram> getTimers() {
+    return Collections.unmodifiableMap(timers);
+  }
+
+  /**
+   * @return all distribution summaries by name and tags
+   */
+  public Map<MeterId,Histogram> getSummaries() {
+    return Collections.unmodifiableMap(summaries);
+  }
+
+  /**
+   * @return a snapshot of all counts by name and tags
+   */
+  public Map<MeterId,Long> getCounts() {
+    Map<MeterId,Long> counts = new LinkedHashMap<>();
+    counters.forEach((id, count) -> counts.put(id, count.sum()));
+    return counts;
+  }
+
+  /**
+   * @return a snapshot of all gauge values by name and tags
+   */
+  public Map<MeterId,Double> getGaugeValues() {
+    Map<MeterId,Double> values = new LinkedHashMap<>();
+    gauges.forEach((id, value) -> values.put(id, value.getAsDouble()));
+    return values;
+  }
+
+  /**
+   * Writes all meters in the Prometheus text exposition format.  Dots and
+   * other characters not allowed in names become underscores, so the
+   * marklogic.client.http.call.duration timer becomes the
+   * marklogic_client_http_call_duration_seconds summary with the 0.5, 0.9
+   * and 0.99 quantiles.  Timers are reported in seconds, distribution
+   * summaries as summaries, counters with the _total suffix and gauges as
+   * gauges.  Tags become labels.
+   *
+   * @param out the destination for the meters, such as the writer of an HTTP response
+   * @throws IOException if writing to the destination fails
+   */
+  public void writePrometheus(Appendable out) throws IOException {
+    if ( out == null ) throw new IllegalArgumentException("out must not be null");
+    writeHistograms(out, timers, "_seconds", 1e9);
+    writeHistograms(out, summaries, "", 1);
+    for ( Map.Entry<String,List<Map.Entry<MeterId,LongAdder>>> meters : byName(counters).entrySet() ) {
+      String name = meters.getKey() + "_total";
+      out.append("# TYPE ").append(name).append(" counter\n");
+      for ( Map.Entry<MeterId,LongAdder> meter : meters.getValue() ) {
+        writeSample(out, name, meter.getKey(), null, null, meter.getValue().sum());
+      }
+    }
+    for ( Map.Entry<String,List<Map.Entry<MeterId,DoubleSupplier>>> meters : byName(gauges).entrySet() ) {
+      String name = meters.getKey();
+      out.append("# TYPE ").append(name).append(" gauge\n");
+      for ( Map.Entry<MeterId,DoubleSupplier> meter : meters.getValue() ) {
+        writeSample(out, name, meter.getKey(), null, null, meter.getValue().getAsDouble());
+      }
+    }
+  }
+
+  private static void writeHistograms(Appendable out, Map<MeterId,Histogram> histograms, String unit, double divisor)
+    throws IOException
+  {
+    for ( Map.Entry<String,List<Map.Entry<MeterId,Histogram>>> meters : byName(histograms).entrySet() ) {
+      String name = meters.getKey() + unit;
+      out.append("# TYPE ").append(name).append(" summary\n");
+      for ( Map.Entry<MeterId,Histogram> meter : meters.getValue() ) {
+        MeterId id = meter.getKey();
+        Histogram histogram = meter.getValue();
+        for ( double quantile : QUANTILES ) {
+          writeSample(out, name, id, "quantile", String.valueOf(quantile),
+            histogram.getValueAtPercentile(quantile) / divisor);
+        }
+        writeSample(out, name + "_sum", id, null, null, histogram.getTotal() / divisor);
+        writeSample(out, name + "_count", id, null, null, histogram.getCount());
+      }
+    }
+  }
+
+  private static <T> SortedMap<String,List<Map.Entry<MeterId,T>>> byName(Map<MeterId,T> meters) {
+    SortedMap<String,List<Map.Entry<MeterId,T>>> byName = new TreeMap<>();
+    for ( Map.Entry<MeterId,T> meter : meters.entrySet() ) {
+      byName.computeIfAbsent(sanitize(meter.getKey().getName()), name -> new ArrayList<>()).add(meter);
+    }
+    return byName;
+  }
+
+  private static void writeSample(Appendable out, String name, MeterId id, String extraKey, String extraValue,
+    double value) throws IOException
+  {
+    out.append(name);
+    String separator = "{";
+    for ( int i=0; i < id.tags.length; i += 2 ) {
+      writeLabel(out, separator, id.tags[i], id.tags[i + 1]);
+      separator = ",";
+    }
+    if ( extraKey != null ) {
+      writeLabel(out, separator, extraKey, extraValue);
+      separator = ",";
+    }
+    if ( ! "{".equals(separator) ) out.append('}');
+    out.append(' ');
+    if ( Double.isInfinite(value) ) {
+      out.append(value > 0 ? "+Inf" : "-Inf");
+    } else if ( value == Math.rint(value) && Math.abs(value) < 1e15 ) {
+      out.append(Long.toString((long) value));
+    } else {
+      out.append(Double.toString(value));
+    }
+    out.append('\n');
+  }
+
+  private static void writeLabel(Appendable out, String separator, String key, String value) throws IOException {
+    out.append(separator).append(sanitize(key)).append("=\"");
+    String escaped = (value == null) ? "" :
+      value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    out.append(escaped).append('"');
+  }
+
+  static String sanitize(String name) {
+    StringBuilder sanitized = new StringBuilder(name.length() + 1);
+    if ( name.isEmpty() || Character.isDigit(name.charAt(0)) ) sanitized.append('_');
+    for ( int i=0; i < name.length(); i++ ) {
+      char c = name.charAt(i);
+      boolean allowed = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+      sanitized.append(allowed ? c : '_');
+    }
+    return sanitized.toString();
+  }
+
+  /**
+   * Discards all measurements and gauges.
+   */
+  public void clear() {
+    timers.clear();
+    summaries.clear();
+    counters.clear();
+    gauges.clear();
+  }
+
+  /**
+   * Identifies a meter by name and tags.
+   */
+  public static class MeterId {
+    private final String name;
+    private final String[] tags;
+
+    MeterId(String name, String[] tags) {
+      if ( name == null ) throw new IllegalArgumentException("name must not be null");
+      if ( tags == null ) tags = new String[0];
+      if ( tags.length % 2 != 0 ) {
+        throw new IllegalArgumentException("tags must be pairs of keys and values");
+      }
+      this.name = name;
+      this.tags = tags;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the tags as a map from tag key to value, in the order given
+     */
+    public Map<String,String> getTags() {
+      Map<String,String> map = new LinkedHashMap<>();
+      for ( int i=0; i < tags.length; i += 2 ) {
+        map.put(tags[i], tags[i + 1]);
+      }
+      return map;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if ( this == other ) return true;
+      if ( !(other instanceof MeterId) ) return false;
+      MeterId id = (MeterId) other;
+      return name.equals(id.name) && Arrays.equals(tags, id.tags);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * name.hashCode() + Arrays.hashCode(tags);
+    }
+
+    @Override
+    public String toString() {
+      return name + getTags();
+    }
+  }
+
+  /**
+   * The distribution of non-negative values.  Values from 0 to 7 are kept
+   * exactly; larger values are counted in one of eight buckets for each
+   * power of two, so every bucket is at most 12.5% as wide as its values.
+   */
+  public static class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+      if ( value < 0 ) value = 0;
+      buckets.incrementAndGet(bucketOf(value));
+      count.increment();
+      total.add(value);
+      long currentMax = max.get();
+      while ( value > currentMax && ! max.compareAndSet(currentMax, value) ) {
+        currentMax = max.get();
+      }
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {
+      return count.sum();
+    }
+
+    /**
+     * @return the sum of the values recorded
+     */
+    public long getTotal() {
+      return total.sum();
+    }
+
+    /**
+     * @return the largest value recorded
+     */
+    public long getMax() {
+      return max.get();
+    }
+
+    /**
+     * @return the average of the values recorded, or 0 if none were recorded
+     */
+    public double getMean() {
+      long recorded = getCount();
+      return recorded == 0 ? 0 : (double) getTotal() / recorded;
+    }
+
+    /**
+     * Estimates the value below which the percentile of the recorded values
+     * fall.  The estimate is the upper bound of the bucket holding the
+     * value, so it's never below the actual value and at most 12.5% above.
+     *
+     * @param percentile the percentile as a fraction, for example 0.99
+     * @return the estimated value, or 0 if no values were recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+      if ( percentile < 0 || percentile > 1 ) {
+        throw new IllegalArgumentException("percentile must be between 0 and 1");
+      }
+      long[] counts = new long[BUCKETS];
+      long recorded = 0;
+      for ( int i=0; i < BUCKETS; i++ ) {
+        counts[i] = buckets.get(i);
+        recorded += counts[i];
+      }
+      if ( recorded == 0 ) return 0;
+      long rank = Math.max(1, (long) Math.ceil(percentile * recorded));
+      long seen = 0;
+      for ( int i=0; i < BUCKETS; i++ ) {
+        seen += counts[i];
+        if ( seen >= rank ) return Math.min(upperBoundOf(i), getMax());
+      }
+      return getMax();
+    }
+
+    /**
+     * Returns the count of recorded values in each bucket, from the
+     * smallest values to the largest.  Use {@link #getBucketUpperBound} for
+     * the largest value counted in a bucket.
+     *
+     * @return the count for each bucket
+     */
+    public long[] getBucketCounts() {
+      long[] counts = new long[BUCKETS];
+      for ( int i=0; i < BUCKETS; i++ ) {
+        counts[i] = buckets.get(i);
+      }
+      return counts;
+    }
+
+    /**
+     * @param bucket the position of a bucket in {@link #getBucketCounts}
+     * @return the largest value counted in the bucket
+     */
+    public static long getBucketUpperBound(int bucket) {
+      if ( bucket < 0 || bucket >= BUCKETS ) {
+        throw new IllegalArgumentException("bucket must be between 0 and " + (BUCKETS - 1));
+      }
+      return upperBoundOf(bucket);
+    }
+
+    static int bucketOf(long value) {
+      if ( value < SUB_BUCKETS ) return (int) value;
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+      if ( bucket < SUB_BUCKETS ) return bucket;
+      int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+      long subBucket = bucket % SUB_BUCKETS;
+      if ( exponent == 62 && subBucket == SUB_BUCKETS - 1 ) return Long.MAX_VALUE;
+      return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+  }
+}
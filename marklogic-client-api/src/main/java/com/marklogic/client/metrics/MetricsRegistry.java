@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Receives the measurements taken by the Java Client API, such as the
+ * latency of each Data Movement batch, the bytes sent and received, retries
+ * and hosts blacklisted by a job.  Implement this interface to send the
+ * measurements to a monitoring system, or use {@link DefaultMetricsRegistry}
+ * (which has no dependencies) or
+ * {@link com.marklogic.client.extra.micrometer.MicrometerMetricsRegistry}.
+ *
+ * Sample Usage:
+ *
+ * <pre>{@code
+ *     DefaultMetricsRegistry metrics = new DefaultMetricsRegistry();
+ *     WriteBatcher batcher = dataMovementManager.newWriteBatcher()
+ *         .withMetricsRegistry(metrics);
+ *     ...
+ *     DefaultMetricsRegistry.Histogram latency =
+ *         metrics.getHistogram("marklogic.dmsdk.batch.duration", "job", batcher.getJobName(), ...);
+ *}</pre>
+ *
+ * Meters are identified by a name and by tags given as alternating keys and
+ * values.  The same name and tags always identify the same meter, so callers
+ * may either keep the meter returned or ask for it again.  Implementations
+ * must be thread-safe, and recording must be cheap because it happens on the
+ * threads doing the work.
+ */
+public interface MetricsRegistry {
+  /**
+   * A registry that discards every measurement.  Used when no registry is
+   * configured.
+   */
+  MetricsRegistry NONE = new MetricsRegistry() {
+    private final Timer timer = nanos -> {};
+    private final Counter counter = amount -> {};
+    private final Summary summary = amount -> {};
+    private final Gauge gauge = () -> {};
+
+    @Override
+    public Timer timer(String name, String... tags) {
+      return timer;
+    }
+
+    @Override
+    public Counter counter(String name, String... tags) {
+      return counter;
+    }
+
+    @Override
+    public Summary summary(String name, String... tags) {
+      return summary;
+    }
+
+    @Override
+    public Gauge gauge(String name, DoubleSupplier value, String... tags) {
+      return gauge;
+    }
+  };
+
+  /**
+   * Records durations.
+   */
+  interface Timer {
+    /**
+     * @param nanos the duration in nanoseconds
+     */
+    void record(long nanos);
+  }
+
+  /**
+   * Counts events or amounts that only increase.
+   */
+  interface Counter {
+    /**
+     * @param amount the amount to add to the count
+     */
+    void increment(long amount);
+
+    default void increment() {
+      increment(1);
+    }
+  }
+
+  /**
+   * Records the distribution of amounts other than durations, such as the
+   * bytes in each request.
+   */
+  interface Summary {
+    /**
+     * @param amount the amount to record
+     */
+    void record(long amount);
+  }
+
+  /**
+   * A value sampled when read, such as the depth of a queue.
+   */
+  interface Gauge {
+    /**
+     * Stops sampling the value, so the registry doesn't keep the state
+     * of a finished job reachable.
+     */
+    void remove();
+  }
+
+  /**
+   * Returns the timer for the name and tags.
+   *
+   * @param name the name of the timer
+   * @param tags alternating tag keys and values
+   * @return the timer
+   */
+  Timer timer(String name, String... tags);
+
+  /**
+   * Returns the counter for the name and tags.
+   *
+   * @param name the name of the counter
+   * @param tags alternating tag keys and values
+   * @return the counter
+   */
+  Counter counter(String name, String... tags);
+
+  /**
+   * Returns the distribution summary for the name and tags.
+   *
+   * @param name the name of the summary
+   * @param tags alternating tag keys and values
+   * @return the summary
+   */
+  Summary summary(String name, String... tags);
+
+  /**
+   * Registers a gauge that samples the value each time it's read.  If a
+   * gauge is already registered for the name and tags, the registry may
+   * keep sampling the earlier value.
+   *
+   * @param name the name of the gauge
+   * @param value supplies the current value
+   * @param tags alternating tag keys and values
+   * @return the gauge, to be removed when the value no longer applies
+   */
+  Gauge gauge(String name, DoubleSupplier value, String... tags);
+}
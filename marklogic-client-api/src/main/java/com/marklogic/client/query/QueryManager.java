@@ -15,6 +15,8 @@
  */
 package com.marklogic.client.query;
 
+import java.util.concurrent.CompletableFuture;
+
 import javax.xml.namespace.QName;
 
 import com.marklogic.client.Transaction;
@@ -201,6 +203,16 @@ public interface QueryManager {
    * @return	the handle populated with the results from the search
    */
   <T extends SearchReadHandle> T search(QueryDefinition querydef, T searchHandle);
+  /**
+   * Searches documents based on query criteria and, potentially, previously
+   * saved query options without blocking the calling thread.  If the server is
+   * temporarily unavailable, the search is retried after a scheduled delay.
+   * @param querydef	the definition of query criteria and query options
+   * @param searchHandle	a handle for reading the results from the search
+   * @param <T> the type of SearchReadHandle to return
+   * @return	a future completed with the handle populated with the results from the search
+   */
+  <T extends SearchReadHandle> CompletableFuture<T> searchAsync(QueryDefinition querydef, T searchHandle);
   /**
    * Searches documents based on query criteria and, potentially, previously
    * saved query options.
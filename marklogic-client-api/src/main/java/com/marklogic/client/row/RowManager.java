@@ -15,6 +15,8 @@
  */
 package com.marklogic.client.row;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.marklogic.client.Transaction;
 import com.marklogic.client.expression.PlanBuilder;
 import com.marklogic.client.expression.PlanBuilder.Plan;
@@ -177,6 +179,16 @@ public interface RowManager {
      * @return	the JSON or XML handle populated with the set of rows
      */
     <T extends StructureReadHandle> T resultDoc(Plan plan, T handle, Transaction transaction);
+    /**
+     * Constructs and retrieves a set of database rows based on a plan using
+     * a handle to get the set of rows as a single JSON or XML structure
+     * without blocking the calling thread.
+     * @param plan	the definition of a plan for the database rows
+     * @param handle	the JSON or XML handle for the set of rows
+     * @param <T> the type of the row handle
+     * @return	a future completed with the JSON or XML handle populated with the set of rows
+     */
+    <T extends StructureReadHandle> CompletableFuture<T> resultDocAsync(Plan plan, T handle);
     
     /**
      * Constructs and retrieves a set of database rows based on a plan
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+// in the package of UriList since it isn't public
+public class UriListTest {
+  @Test
+  public void testRead() throws IOException {
+    UriList uris = read("/a.json\n/b.json\n/c.json");
+    assertEquals(3, uris.size());
+    assertEquals("/b.json", uris.get(1));
+    assertArrayEquals(new String[] {"/a.json", "/b.json", "/c.json"}, uris.toArray());
+    assertEquals("/a.json\n/b.json\n/c.json", new String(uris.getBytes(), StandardCharsets.UTF_8));
+    try {
+      uris.get(3);
+      fail("expected IndexOutOfBoundsException");
+    } catch (IndexOutOfBoundsException e) {
+    }
+
+    UriList empty = read("");
+    assertEquals(0, empty.size());
+    assertEquals(0, empty.toArray().length);
+    assertEquals(0, empty.getBytes().length);
+  }
+
+  @Test
+  public void testLineEndings() throws IOException {
+    // carriage returns and blank lines aren't uris, and the trailing newlines are dropped
+    UriList uris = read("/a.json\r\n\r\n/b.json\n\n/c.json\r\n\n");
+    assertArrayEquals(new String[] {"/a.json", "/b.json", "/c.json"}, uris.toArray());
+    assertEquals("/a.json\r\n\r\n/b.json\n\n/c.json", new String(uris.getBytes(), StandardCharsets.UTF_8));
+
+    assertArrayEquals(new String[] {"/only.json"}, read("/only.json\n").toArray());
+    assertEquals(0, read("\r\n\n").size());
+  }
+
+  @Test
+  public void testCompareTo() throws IOException {
+    // e-acute, a character outside the BMP and the replacement character: as UTF-16, the
+    // surrogate pair sorts before U+FFFD, but by codepoint it sorts after
+    UriList uris = read("/b\n/é\n/😀\n/ab");
+    assertEquals(0, uris.compareTo(0, bytes("/b")));
+    assertTrue(uris.compareTo(0, bytes("/c")) < 0);
+    assertTrue(uris.compareTo(0, bytes("/a")) > 0);
+    // bytes of multibyte characters compare unsigned
+    assertTrue(uris.compareTo(1, bytes("/z")) > 0);
+    assertTrue(uris.compareTo(2, bytes("/�")) > 0);
+    assertTrue(uris.compareTo(2, bytes("/é")) > 0);
+    // a prefix sorts first
+    assertTrue(uris.compareTo(3, bytes("/abc")) < 0);
+    assertTrue(uris.compareTo(3, bytes("/a")) > 0);
+  }
+
+  @Test
+  public void testHead() throws IOException {
+    UriList uris = read("/a.json\r\n/b.json\n/c.json\n");
+    assertSame(uris, uris.head(3));
+
+    UriList head = uris.head(2);
+    assertEquals(2, head.size());
+    assertArrayEquals(new String[] {"/a.json", "/b.json"}, head.toArray());
+    // the bytes end with the last uri kept so they can be sent as-is
+    assertEquals("/a.json\r\n/b.json", new String(head.getBytes(), StandardCharsets.UTF_8));
+    assertEquals(0, head.compareTo(1, bytes("/b.json")));
+    try {
+      head.get(2);
+      fail("expected IndexOutOfBoundsException");
+    } catch (IndexOutOfBoundsException e) {
+    }
+
+    UriList none = uris.head(0);
+    assertEquals(0, none.size());
+    assertEquals(0, none.getBytes().length);
+    try {
+      uris.head(4);
+      fail("expected IndexOutOfBoundsException");
+    } catch (IndexOutOfBoundsException e) {
+    }
+  }
+
+  @Test
+  public void testReadBuffer() throws IOException {
+    // pages exactly the size of the initial buffer and larger, read a few bytes at a time,
+    // then a small page on the same thread must not see the bytes of the larger pages
+    for ( int length : new int[] {8192, 8191, 8193, 50000} ) {
+      List<String> expected = uris("/buffer/", length);
+      String page = String.join("\n", expected);
+      UriList uris = UriList.read(new ChunkedInputStream(bytes(page), 1000));
+      assertEquals(expected.size(), uris.size());
+      assertEquals(expected, toList(uris));
+      assertEquals(length, uris.getBytes().length);
+
+      UriList small = read("/small.json\n");
+      assertArrayEquals(new String[] {"/small.json"}, small.toArray());
+      assertEquals("/small.json".length(), small.getBytes().length);
+      // the bytes are a copy, so they're unchanged by later reads
+      assertEquals(page, new String(uris.getBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testReadBufferPerThread() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for ( int i = 0; i < 40; i++ ) {
+        int length = 1000 + i * 997;
+        String prefix = "/thread/" + i + "/";
+        results.add(pool.submit(() -> {
+          List<String> expected = uris(prefix, length);
+          UriList uris = UriList.read(new ChunkedInputStream(bytes(String.join("\n", expected)), 300));
+          return expected.equals(toList(uris));
+        }));
+      }
+      for ( Future<Boolean> result : results ) {
+        assertTrue(result.get());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testStreamNotClosed() throws IOException {
+    ChunkedInputStream in = new ChunkedInputStream(bytes("/a.json\n"), 3);
+    assertEquals(1, UriList.read(in).size());
+    assertFalse(in.closed);
+  }
+
+  private static UriList read(String page) throws IOException {
+    return UriList.read(new ByteArrayInputStream(bytes(page)));
+  }
+
+  private static byte[] bytes(String string) {
+    return string.getBytes(StandardCharsets.UTF_8);
+  }
+
+  // ascii uris whose newline-separated bytes add up to exactly length
+  private static List<String> uris(String prefix, int length) {
+    List<String> uris = new ArrayList<>();
+    int total = 0;
+    for ( int i = 0; ; i++ ) {
+      String uri = prefix + i + ".json";
+      // leave room for a last uri longer than the prefix
+      if ( total + uri.length() + 1 + prefix.length() + 1 > length ) break;
+      uris.add(uri);
+      total += uri.length() + 1;
+    }
+    uris.add(prefix + new String(new char[length - total - prefix.length()]).replace('\0', 'x'));
+    return uris;
+  }
+
+  private static List<String> toList(UriList uris) {
+    List<String> list = new ArrayList<>();
+    for ( int i = 0; i < uris.size(); i++ ) list.add(uris.get(i));
+    return list;
+  }
+
+  // returns at most chunk bytes per read, like a socket
+  private static class ChunkedInputStream extends InputStream {
+    private final ByteArrayInputStream in;
+    private final int chunk;
+    private boolean closed = false;
+
+    ChunkedInputStream(byte[] bytes, int chunk) {
+      this.in = new ByteArrayInputStream(bytes);
+      this.chunk = chunk;
+    }
+
+    @Override
+    public int read() {
+      return in.read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      return in.read(buffer, offset, Math.min(length, chunk));
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.DatabaseClientFactory.ConnectionConfig;
+import com.marklogic.client.DatabaseClientFactory.DigestAuthContext;
+import com.marklogic.client.ExponentialBackoffRetryPolicy;
+import com.marklogic.client.FailedRetryException;
+import com.marklogic.client.ResourceNotFoundException;
+import com.marklogic.client.RetryPolicy;
+import com.marklogic.client.document.TextDocumentManager;
+import com.marklogic.client.expression.PlanBuilder;
+import com.marklogic.client.impl.DatabaseClientImpl;
+import com.marklogic.client.impl.OkHttpServices;
+import com.marklogic.client.io.JacksonHandle;
+import com.marklogic.client.io.SearchHandle;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.query.QueryManager;
+import com.marklogic.client.query.StringQueryDefinition;
+import com.marklogic.client.row.RowManager;
+
+public class AsyncRequestTest {
+  @BeforeClass
+  public static void beforeClass() {
+    Common.connect();
+  }
+
+  @Test
+  public void testWriteReadDelete() throws Exception {
+    TextDocumentManager docMgr = Common.client.newTextDocumentManager();
+
+    List<CompletableFuture<Void>> writes = new ArrayList<>();
+    for ( int i = 0; i < 20; i++ ) {
+      writes.add(docMgr.writeAsync("/test/async/doc" + i + ".txt",
+        new StringHandle().with("async document " + i)));
+    }
+    CompletableFuture.allOf(writes.toArray(new CompletableFuture[writes.size()])).get();
+
+    for ( int i = 0; i < 20; i++ ) {
+      StringHandle handle = docMgr.readAsync("/test/async/doc" + i + ".txt", new StringHandle()).get();
+      assertEquals("async document " + i, handle.get());
+    }
+
+    QueryManager queryMgr = Common.client.newQueryManager();
+    StringQueryDefinition query = queryMgr.newStringDefinition();
+    query.setCriteria("async");
+    query.setDirectory("/test/async/");
+    SearchHandle results = queryMgr.searchAsync(query, new SearchHandle()).get();
+    assertTrue("Expected async documents to match", results.getTotalResults() >= 20);
+
+    List<CompletableFuture<Void>> deletes = new ArrayList<>();
+    for ( int i = 0; i < 20; i++ ) {
+      deletes.add(docMgr.deleteAsync("/test/async/doc" + i + ".txt"));
+    }
+    CompletableFuture.allOf(deletes.toArray(new CompletableFuture[deletes.size()])).get();
+
+    try {
+      docMgr.readAsync("/test/async/doc0.txt", new StringHandle()).get();
+      fail("Expected the deleted document to be missing");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof ResourceNotFoundException);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testResultDoc() throws Exception {
+    Map<String,Object>[] litRows = new Map[3];
+    for ( int i = 0; i < litRows.length; i++ ) {
+      Map<String,Object> row = new HashMap<>();
+      row.put("rowNum", i + 1);
+      row.put("city",   "city " + (i + 1));
+      litRows[i] = row;
+    }
+
+    RowManager rowMgr = Common.client.newRowManager();
+    PlanBuilder p = rowMgr.newPlanBuilder();
+    PlanBuilder.Plan plan =
+      p.fromLiterals(litRows)
+        .orderBy(p.col("rowNum"))
+        .where(p.gt(p.col("rowNum"), p.xs.intVal(1)))
+        .select(p.colSeq("rowNum", "city"));
+
+    JsonNode result = rowMgr.resultDocAsync(plan, new JacksonHandle()).get().get();
+    JsonNode columns = result.findValue("columns");
+    assertEquals(2, columns.size());
+    assertEquals("rowNum", columns.get(0).get("name").asText());
+    assertEquals("city",   columns.get(1).get("name").asText());
+    assertEquals("unexpected row count", 2, result.findValue("rows").size());
+  }
+
+  @Test
+  public void testRetryAfterUnavailable() throws Exception {
+    String uri = "/test/async/retry.txt";
+    TextDocumentManager docMgr = Common.client.newTextDocumentManager();
+    docMgr.write(uri, new StringHandle().with("retried document"));
+
+    StubRetryPolicy policy = new StubRetryPolicy(true);
+    AtomicInteger calls = new AtomicInteger(0);
+    DatabaseClient client = newClient(policy, calls, 1);
+    try {
+      AtomicInteger completions = new AtomicInteger(0);
+      CompletableFuture<StringHandle> read = client.newTextDocumentManager()
+        .readAsync(uri, new StringHandle())
+        .whenComplete((handle, throwable) -> completions.incrementAndGet());
+      assertEquals("retried document", read.get().get());
+
+      assertEquals("Expected the first attempt to be answered with 503", 1, policy.unavailable.get());
+      assertEquals("Expected one scheduled retry", 1, policy.retries.get());
+      assertEquals("Expected the retry to be sent", 2, calls.get());
+      assertEquals("Expected the callback to complete once", 1, completions.get());
+    } finally {
+      client.release();
+      docMgr.delete(uri);
+    }
+  }
+
+  @Test
+  public void testCircuitOpen() throws Exception {
+    StubRetryPolicy policy = new StubRetryPolicy(false);
+    AtomicInteger calls = new AtomicInteger(0);
+    DatabaseClient client = newClient(policy, calls, 0);
+    try {
+      client.newTextDocumentManager().readAsync("/test/async/doc0.txt", new StringHandle()).get();
+      fail("Expected the request to fail while the circuit is open");
+    } catch (ExecutionException e) {
+      assertTrue("Unexpected failure " + e.getCause(), e.getCause() instanceof FailedRetryException);
+      assertEquals("Expected the request not to be sent", 0, calls.get());
+    } finally {
+      client.release();
+    }
+  }
+
+  @Test
+  public void testRetryBudgetAfterLastAttempt() throws Exception {
+    ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy()
+      .withBackoff(1, 1)
+      .withRetryBudget(100, 0.1);
+    AtomicInteger calls = new AtomicInteger(0);
+    DatabaseClient client = newClient(policy, calls, Integer.MAX_VALUE);
+    try {
+      // the retry period is the minimum of 8 attempts
+      ((DatabaseClientImpl) client).getServices().setMaxDelay(0);
+      client.newTextDocumentManager().readAsync("/test/async/doc0.txt", new StringHandle()).get();
+      fail("Expected the request to fail after the retry period");
+    } catch (ExecutionException e) {
+      assertTrue("Unexpected failure " + e.getCause(), e.getCause() instanceof FailedRetryException);
+      assertEquals(8, calls.get());
+      // no token is spent after the last attempt, when no retry follows
+      assertEquals(93, policy.getRemainingBudget(), 0);
+    } finally {
+      client.release();
+    }
+  }
+
+  /* Creates a client with the retry policy that answers the first requests
+   * for documents with 503 instead of sending them and counts the requests
+   * for documents, whether or not they're sent.
+   */
+  private static DatabaseClient newClient(RetryPolicy policy, AtomicInteger calls, int unavailableCalls) {
+    DatabaseClient client = DatabaseClientFactory.newClient(
+      Common.HOST, Common.PORT, null, new DigestAuthContext(Common.USER, Common.PASS), Common.CONNECTION_TYPE,
+      new ConnectionConfig().withRetryPolicy(policy));
+    Interceptor unavailable = chain -> {
+      Request request = chain.request();
+      if ( request.url().encodedPath().endsWith("/documents") &&
+           calls.incrementAndGet() <= unavailableCalls ) {
+        return new Response.Builder()
+          .request(request)
+          .protocol(Protocol.HTTP_1_1)
+          .code(503)
+          .message("Service Unavailable")
+          .body(ResponseBody.create(null, ""))
+          .build();
+      }
+      return chain.proceed(request);
+    };
+    OkHttpServices services = (OkHttpServices) ((DatabaseClientImpl) client).getServices();
+    services.setClientImplementation(
+      services.getClientImplementation().newBuilder().addInterceptor(unavailable).build());
+    return client;
+  }
+
+  private static class StubRetryPolicy implements RetryPolicy {
+    private final boolean allowed;
+    final AtomicInteger unavailable = new AtomicInteger(0);
+    final AtomicInteger retries     = new AtomicInteger(0);
+
+    StubRetryPolicy(boolean allowed) {
+      this.allowed = allowed;
+    }
+
+    @Override
+    public boolean allowRequest(String host) {
+      return allowed;
+    }
+    @Override
+    public void requestUnavailable(String host) {
+      unavailable.incrementAndGet();
+    }
+    @Override
+    public void requestSucceeded(String host) {
+    }
+    @Override
+    public long retryDelay(String host, int retry, long retryAfter) {
+      retries.incrementAndGet();
+      return 10;
+    }
+    @Override
+    public Map<String, HostStats> getHostStats() {
+      return Collections.emptyMap();
+    }
+  }
+}
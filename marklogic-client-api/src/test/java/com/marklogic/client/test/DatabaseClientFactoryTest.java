@@ -21,6 +21,7 @@ import static org.custommonkey.xmlunit.XMLAssert.assertXMLEqual;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.OkHttpClient.Builder;
 import org.junit.AfterClass;
@@ -31,8 +32,13 @@ import org.xml.sax.SAXException;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
 import com.marklogic.client.DatabaseClientFactory.ClientConfigurator;
+import com.marklogic.client.DatabaseClientFactory.ConnectionConfig;
 import com.marklogic.client.DatabaseClientFactory.DigestAuthContext;
 import com.marklogic.client.ResourceNotFoundException;
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.datamovement.Forest;
+import com.marklogic.client.datamovement.WriteBatcher;
+import com.marklogic.client.datamovement.impl.DataMovementManagerImpl;
 import com.marklogic.client.document.DocumentDescriptor;
 import com.marklogic.client.document.DocumentPage;
 import com.marklogic.client.document.DocumentPatchBuilder;
@@ -40,9 +46,13 @@ import com.marklogic.client.document.DocumentUriTemplate;
 import com.marklogic.client.document.XMLDocumentManager;
 import com.marklogic.client.eval.ServerEvaluationCall;
 import com.marklogic.client.extra.okhttpclient.OkHttpClientConfigurator;
+import com.marklogic.client.impl.DatabaseClientImpl;
+import com.marklogic.client.impl.HTTPGzipRequestInterceptor;
+import com.marklogic.client.impl.HTTPMetricsEventListener;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.io.marker.DocumentPatchHandle;
+import com.marklogic.client.metrics.DefaultMetricsRegistry;
 import com.marklogic.client.query.MatchDocumentSummary;
 import com.marklogic.client.query.QueryManager;
 import com.marklogic.client.query.StringQueryDefinition;
@@ -180,6 +190,96 @@ public class DatabaseClientFactoryTest {
     }
   }
 
+  @Test
+  public void testConnectionConfig() {
+    ConnectionConfig connectionConfig = new ConnectionConfig()
+      .withConnectionPool(32, 60000)
+      .withReadTimeout(30000)
+      .withWriteTimeout(45000)
+      .withMaxRequests(128, 32)
+      .withRequestCompression(true);
+
+    DatabaseClient client = DatabaseClientFactory.newClient(
+      Common.HOST, Common.PORT, null, new DigestAuthContext(Common.USER, Common.PASS), null, connectionConfig);
+    DatabaseClient otherClient = DatabaseClientFactory.newClient(
+      Common.HOST, Common.PORT, new DigestAuthContext(Common.USER, Common.PASS));
+    try {
+      OkHttpClient okClient = (OkHttpClient) client.getClientImplementation();
+      OkHttpClient otherOkClient = (OkHttpClient) otherClient.getClientImplementation();
+      assertNotSame("Client did not get a dedicated pool", otherOkClient.connectionPool(), okClient.connectionPool());
+      assertEquals(30000, okClient.readTimeoutMillis());
+      assertEquals(45000, okClient.writeTimeoutMillis());
+      assertEquals(0, otherOkClient.readTimeoutMillis());
+      assertEquals(128, okClient.dispatcher().getMaxRequests());
+      assertEquals(32, okClient.dispatcher().getMaxRequestsPerHost());
+      boolean hasGzipInterceptor = false;
+      for (Interceptor interceptor : okClient.interceptors()) {
+        if (interceptor instanceof HTTPGzipRequestInterceptor) hasGzipInterceptor = true;
+      }
+      assertTrue("Client does not compress requests", hasGzipInterceptor);
+    } finally {
+      client.release();
+      otherClient.release();
+    }
+  }
+
+  @Test
+  public void testMetricsRegistry() {
+    DefaultMetricsRegistry metrics = new DefaultMetricsRegistry();
+    // a pool of its own, so the first call has to connect
+    ConnectionConfig connectionConfig = new ConnectionConfig()
+      .withConnectionPool(4, 60000)
+      .withMetricsRegistry(metrics);
+
+    DatabaseClient client = DatabaseClientFactory.newClient(
+      Common.HOST, Common.PORT, null, new DigestAuthContext(Common.USER, Common.PASS), null, connectionConfig);
+    try {
+      OkHttpClient okClient = (OkHttpClient) client.getClientImplementation();
+      assertTrue("Client does not time calls",
+        okClient.eventListenerFactory() instanceof HTTPMetricsEventListener.Factory);
+
+      String uri = "/DatabaseClientFactoryTest/metrics.txt";
+      client.newTextDocumentManager().write(uri, new StringHandle("metrics"));
+      assertEquals("metrics", client.newTextDocumentManager().read(uri, new StringHandle()).get());
+      client.newTextDocumentManager().delete(uri);
+
+      String[] putTags = {"host", Common.HOST, "endpoint", "documents", "method", "PUT"};
+      String[] getTags = {"host", Common.HOST, "endpoint", "documents", "method", "GET"};
+      assertEquals(1, metrics.getTimer("marklogic.client.http.call.duration", putTags).getCount());
+      assertEquals(1, metrics.getTimer("marklogic.client.http.call.duration", getTags).getCount());
+      assertEquals(1, metrics.getTimer("marklogic.client.http.connect.duration", putTags).getCount());
+      assertEquals(1, metrics.getTimer("marklogic.client.http.response.headers.duration", getTags).getCount());
+      assertTrue(metrics.getSummary("marklogic.client.http.response.bytes", getTags).getTotal() > 0);
+      // the read reuses the connection of the write from the pool
+      assertEquals(0, metrics.getTimer("marklogic.client.http.connect.duration", getTags).getCount());
+
+      // forest clients are created with the connection config of the primary client
+      DataMovementManager moveMgr = client.newDataMovementManager();
+      Forest forest = moveMgr.readForestConfig().listForests()[0];
+      DatabaseClient forestClient = ((DataMovementManagerImpl) moveMgr).getForestClient(forest);
+      assertSame(connectionConfig, ((DatabaseClientImpl) forestClient).getConnectionConfig());
+      assertTrue("Forest client does not time calls",
+        ((OkHttpClient) forestClient.getClientImplementation()).eventListenerFactory()
+          instanceof HTTPMetricsEventListener.Factory);
+
+      WriteBatcher batcher = moveMgr.newWriteBatcher();
+      moveMgr.startJob(batcher);
+      batcher.add(uri, new StringHandle("metrics"));
+      batcher.flushAndWait();
+      moveMgr.stopJob(batcher);
+      client.newTextDocumentManager().delete(uri);
+      long writes = 0;
+      for ( String host : batcher.getForestConfig().getPreferredHosts() ) {
+        DefaultMetricsRegistry.Histogram written = metrics.getTimer("marklogic.client.http.call.duration",
+          "host", host, "endpoint", "documents", "method", "POST");
+        if ( written != null ) writes += written.getCount();
+      }
+      assertEquals("Forest clients did not time the batch", 1, writes);
+    } finally {
+      client.release();
+    }
+  }
+
   static class ConfiguratorImpl implements OkHttpClientConfigurator {
     public boolean isConfigured = false;
     @Override
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.marklogic.client.metrics.DefaultMetricsRegistry;
+import com.marklogic.client.metrics.MetricsRegistry;
+
+public class DefaultMetricsRegistryTest {
+  @Test
+  public void testMeters() {
+    DefaultMetricsRegistry metrics = new DefaultMetricsRegistry();
+    metrics.counter("docs", "job", "a").increment(5);
+    metrics.counter("docs", "job", "a").increment();
+    metrics.counter("docs", "job", "b").increment();
+    assertEquals(6, metrics.getCount("docs", "job", "a"));
+    assertEquals(1, metrics.getCount("docs", "job", "b"));
+    assertEquals(0, metrics.getCount("docs", "job", "c"));
+
+    MetricsRegistry.Timer timer = metrics.timer("latency", "host", "h1");
+    timer.record(1000);
+    timer.record(3000);
+    DefaultMetricsRegistry.Histogram latency = metrics.getTimer("latency", "host", "h1");
+    assertEquals(2, latency.getCount());
+    assertEquals(4000, latency.getTotal());
+    assertEquals(3000, latency.getMax());
+    assertEquals(2000, latency.getMean(), 0);
+    assertNull(metrics.getTimer("latency", "host", "h2"));
+
+    AtomicInteger depth = new AtomicInteger(3);
+    MetricsRegistry.Gauge gauge = metrics.gauge("depth", depth::get, "job", "a");
+    assertEquals(3, metrics.getGaugeValue("depth", "job", "a"), 0);
+    depth.set(7);
+    assertEquals(7, metrics.getGaugeValue("depth", "job", "a"), 0);
+    gauge.remove();
+    assertTrue(Double.isNaN(metrics.getGaugeValue("depth", "job", "a")));
+  }
+
+  @Test
+  public void testPercentiles() {
+    DefaultMetricsRegistry.Histogram histogram = new DefaultMetricsRegistry.Histogram();
+    Random random = new Random(7);
+    long[] values = new long[10000];
+    for ( int i=0; i < values.length; i++ ) {
+      // spread the values over many powers of two
+      values[i] = (long) Math.exp(random.nextDouble() * 30);
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+    for ( double percentile : new double[] {0.5, 0.9, 0.99, 0.999} ) {
+      long actual = values[(int) Math.ceil(percentile * values.length) - 1];
+      long estimate = histogram.getValueAtPercentile(percentile);
+      assertTrue("estimate " + estimate + " below " + actual, estimate >= actual);
+      assertTrue("estimate " + estimate + " too far above " + actual, estimate <= actual + actual / 8);
+    }
+    assertEquals(values[values.length - 1], histogram.getValueAtPercentile(1));
+
+    DefaultMetricsRegistry.Histogram small = new DefaultMetricsRegistry.Histogram();
+    for ( long value = 0; value < 8; value++ ) small.record(value);
+    assertEquals(3, small.getValueAtPercentile(0.5));
+    assertEquals(0, new DefaultMetricsRegistry.Histogram().getValueAtPercentile(0.5));
+  }
+
+  @Test
+  public void testWritePrometheus() throws IOException {
+    DefaultMetricsRegistry metrics = new DefaultMetricsRegistry();
+    metrics.timer("marklogic.client.http.call.duration", "endpoint", "search").record(2_000_000);
+    metrics.summary("bytes", "endpoint", "say \"hi\"").record(512);
+    metrics.counter("docs", "job", "a").increment(3);
+    metrics.gauge("queue.depth", () -> 4);
+
+    StringBuilder out = new StringBuilder();
+    metrics.writePrometheus(out);
+    String text = out.toString();
+    assertTrue(text, text.contains("# TYPE marklogic_client_http_call_duration_seconds summary\n"));
+    assertTrue(text, text.contains(
+      "marklogic_client_http_call_duration_seconds{endpoint=\"search\",quantile=\"0.5\"} 0.002"));
+    assertTrue(text, text.contains("marklogic_client_http_call_duration_seconds_sum{endpoint=\"search\"} 0.002\n"));
+    assertTrue(text, text.contains("marklogic_client_http_call_duration_seconds_count{endpoint=\"search\"} 1\n"));
+    assertTrue(text, text.contains("bytes_sum{endpoint=\"say \\\"hi\\\"\"} 512\n"));
+    assertTrue(text, text.contains("# TYPE docs_total counter\ndocs_total{job=\"a\"} 3\n"));
+    assertTrue(text, text.contains("# TYPE queue_depth gauge\nqueue_depth 4\n"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOddTags() {
+    new DefaultMetricsRegistry().counter("docs", "job");
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.marklogic.client.impl.HTTPMetricsEventListener;
+import com.marklogic.client.metrics.DefaultMetricsRegistry;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+public class HTTPMetricsEventListenerTest {
+  private final OkHttpClient client = new OkHttpClient();
+
+  @Test
+  public void testPhases() {
+    DefaultMetricsRegistry metrics = new DefaultMetricsRegistry();
+    HTTPMetricsEventListener.Factory factory = new HTTPMetricsEventListener.Factory(metrics, "h1");
+
+    Request request = new Request.Builder()
+      .url("http://h1:8000/v1/documents?uri=/a.json")
+      .put(RequestBody.create(MediaType.parse("application/json"), "{}"))
+      .build();
+    Call call = client.newCall(request);
+    EventListener listener = factory.create(call);
+    listener.callStart(call);
+    listener.requestHeadersStart(call);
+    listener.requestHeadersEnd(call, request);
+    listener.requestBodyStart(call);
+    listener.requestBodyEnd(call, 2);
+    listener.responseHeadersStart(call);
+    listener.responseHeadersEnd(call, null);
+    listener.responseBodyStart(call);
+    listener.responseBodyEnd(call, 0);
+    listener.callEnd(call);
+
+    String[] tags = {"host", "h1", "endpoint", "documents", "method", "PUT"};
+    assertEquals(1, metrics.getTimer("marklogic.client.http.call.duration", tags).getCount());
+    assertEquals(1, metrics.getTimer("marklogic.client.http.request.duration", tags).getCount());
+    assertEquals(1, metrics.getTimer("marklogic.client.http.response.headers.duration", tags).getCount());
+    assertEquals(1, metrics.getTimer("marklogic.client.http.response.body.duration", tags).getCount());
+    assertEquals(2, metrics.getSummary("marklogic.client.http.request.bytes", tags).getTotal());
+    // the events above don't include connecting, as for a connection reused from the pool
+    assertEquals(0, metrics.getTimer("marklogic.client.http.connect.duration", tags).getCount());
+    assertEquals(0, metrics.getCount("marklogic.client.http.call.failures", tags));
+
+    Call failed = client.newCall(request);
+    listener = factory.create(failed);
+    listener.callStart(failed);
+    listener.callFailed(failed, new IOException("test"));
+    assertEquals(2, metrics.getTimer("marklogic.client.http.call.duration", tags).getCount());
+    assertEquals(1, metrics.getCount("marklogic.client.http.call.failures", tags));
+  }
+
+  @Test
+  public void testEmptyResponseBody() {
+    DefaultMetricsRegistry metrics = new DefaultMetricsRegistry();
+    HTTPMetricsEventListener.Factory factory = new HTTPMetricsEventListener.Factory(metrics, "h1");
+
+    Request request = new Request.Builder()
+      .url("http://h1:8000/v1/documents?uri=/a.json")
+      .delete()
+      .build();
+    Call call = client.newCall(request);
+    EventListener listener = factory.create(call);
+    // OkHttp ends an empty response body before the call releases its
+    // connection and then doesn't signal the end of the call
+    listener.callStart(call);
+    listener.requestHeadersStart(call);
+    listener.requestHeadersEnd(call, request);
+    listener.responseHeadersStart(call);
+    listener.responseHeadersEnd(call, null);
+    listener.responseBodyEnd(call, 0);
+    listener.connectionReleased(call, null);
+
+    String[] tags = {"host", "h1", "endpoint", "documents", "method", "DELETE"};
+    assertEquals(1, metrics.getTimer("marklogic.client.http.call.duration", tags).getCount());
+    // a call is only timed once
+    listener.callEnd(call);
+    assertEquals(1, metrics.getTimer("marklogic.client.http.call.duration", tags).getCount());
+  }
+
+  @Test
+  public void testEndpoints() {
+    DefaultMetricsRegistry metrics = new DefaultMetricsRegistry();
+    HTTPMetricsEventListener.Factory factory = new HTTPMetricsEventListener.Factory(metrics, "h1");
+    String[][] endpoints = {
+      {"/v1/search?q=a",                      "search"},
+      {"/v1/internal/uris?forest-name=f1",    "internal/uris"},
+      {"/v1/internal/forestinfo",             "internal/forestinfo"},
+      {"/v1/rows?column-types=header",        "rows"},
+      {"/v1/resources/myext?rs:a=1",          "resources/myext"},
+      {"/v1/config/query/opts",               "config/query"},
+      {"/v1/graphs/things",                   "graphs"},
+      {"/LATEST/documents",                   "documents"},
+      {"/ds/inventory/getItems.sjs",          "/ds/inventory/getItems.sjs"}
+    };
+    for ( String[] endpoint : endpoints ) {
+      Call call = client.newCall(new Request.Builder().url("http://h1:8000" + endpoint[0]).build());
+      EventListener listener = factory.create(call);
+      listener.callStart(call);
+      listener.callEnd(call);
+      assertNotNull(endpoint[0],
+        metrics.getTimer("marklogic.client.http.call.duration", "host", "h1", "endpoint", endpoint[1], "method", "GET"));
+    }
+    assertNull(metrics.getTimer("marklogic.client.http.call.duration",
+      "host", "h1", "endpoint", "resources", "method", "GET"));
+  }
+}
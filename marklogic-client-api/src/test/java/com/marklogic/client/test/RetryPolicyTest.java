@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.marklogic.client.ExponentialBackoffRetryPolicy;
+import com.marklogic.client.RetryPolicy;
+
+public class RetryPolicyTest {
+  @Test
+  public void testBackoff() {
+    ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy().withBackoff(100, 800);
+    String host = "backoff-test:8000";
+    for ( int retry = 0; retry < 10; retry++ ) {
+      long backoff = Math.min(800, 100 << retry);
+      long delay = policy.retryDelay(host, retry, RetryPolicy.NO_RETRY_AFTER);
+      assertTrue("delay "+delay+" below range for retry "+retry, delay >= backoff / 2);
+      assertTrue("delay "+delay+" above range for retry "+retry, delay <= backoff);
+    }
+    // a delay requested by the server replaces the backoff, even a delay of 0
+    assertEquals(5000, policy.retryDelay(host, 0, 5000));
+    assertEquals(0, policy.retryDelay(host, 5, 0));
+    assertEquals(12, policy.getHostStats().get(host).getRetries());
+  }
+
+  @Test
+  public void testDefaultSchedule() {
+    ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy();
+    String host = "default-test:8000";
+    long[][] ranges = {{125, 165}, {165, 205}, {205, 285}, {285, 445}, {445, 765}, {765, 1405}, {1405, 2000},
+      {2000, 2125}, {2000, 2125}};
+    for ( int retry = 0; retry < ranges.length; retry++ ) {
+      long delay = policy.retryDelay(host, retry, RetryPolicy.NO_RETRY_AFTER);
+      assertTrue("delay "+delay+" below range for retry "+retry, delay >= ranges[retry][0]);
+      assertTrue("delay "+delay+" above range for retry "+retry, delay < ranges[retry][1]);
+    }
+    assertEquals(0, policy.getBaseDelay());
+  }
+
+  @Test
+  public void testHostStatsPerPolicy() {
+    String host = "stats-test:8000";
+    ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy();
+    policy.allowRequest(host);
+    policy.retryDelay(host, 0, RetryPolicy.NO_RETRY_AFTER);
+    assertEquals(1, policy.getHostStats().get(host).getAttempts());
+    assertEquals(1, policy.getHostStats().get(host).getRetries());
+    assertNull(new ExponentialBackoffRetryPolicy().getHostStats().get(host));
+  }
+
+  @Test
+  public void testRetryBudget() {
+    ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy().withRetryBudget(2, 0.5);
+    String host = "budget-test:8000";
+    assertTrue(policy.retryDelay(host, 0, RetryPolicy.NO_RETRY_AFTER) >= 0);
+    assertTrue(policy.retryDelay(host, 1, RetryPolicy.NO_RETRY_AFTER) >= 0);
+    assertEquals(-1, policy.retryDelay(host, 2, RetryPolicy.NO_RETRY_AFTER));
+
+    policy.requestSucceeded(host);
+    policy.requestSucceeded(host);
+    assertTrue(policy.retryDelay(host, 0, RetryPolicy.NO_RETRY_AFTER) >= 0);
+    assertEquals(-1, policy.retryDelay(host, 1, RetryPolicy.NO_RETRY_AFTER));
+    assertEquals(2, policy.getHostStats().get(host).getBudgetExhausted());
+  }
+
+  @Test
+  public void testCircuitBreaker() throws InterruptedException {
+    ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy().withCircuitBreaker(3, 50);
+    String host = "circuit-test:8000";
+    for ( int i = 0; i < 3; i++ ) {
+      assertTrue(policy.allowRequest(host));
+      policy.requestUnavailable(host);
+    }
+    RetryPolicy.HostStats stats = policy.getHostStats().get(host);
+    assertEquals(RetryPolicy.CircuitState.OPEN, stats.getCircuitState());
+    assertFalse(policy.allowRequest(host));
+    assertEquals(1, stats.getRejected());
+
+    // another host isn't affected
+    assertTrue(policy.allowRequest("circuit-test-other:8000"));
+
+    Thread.sleep(60);
+    assertTrue(policy.allowRequest(host));
+    assertEquals(RetryPolicy.CircuitState.HALF_OPEN, stats.getCircuitState());
+    assertFalse(policy.allowRequest(host));
+    policy.requestSucceeded(host);
+    assertEquals(RetryPolicy.CircuitState.CLOSED, stats.getCircuitState());
+    assertTrue(policy.allowRequest(host));
+    assertEquals(5, stats.getAttempts());
+  }
+}
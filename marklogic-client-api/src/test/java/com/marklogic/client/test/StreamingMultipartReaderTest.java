@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.marklogic.client.impl.StreamingMultipartReader;
+
+import okio.Buffer;
+
+public class StreamingMultipartReaderTest {
+  static final String BOUNDARY = "ML_BOUNDARY_1234";
+
+  private static String part(String uri, String contentType, String content) {
+    return "--" + BOUNDARY + "\r\n" +
+      "Content-Type: " + contentType + "\r\n" +
+      "Content-Disposition: attachment; filename=\"" + uri + "\"; category=content; format=json\r\n" +
+      "Content-Length: " + content.length() + "\r\n" +
+      "\r\n" +
+      content + "\r\n";
+  }
+
+  private static StreamingMultipartReader makeReader(String... parts) {
+    StringBuilder body = new StringBuilder();
+    for ( String part : parts ) {
+      body.append(part);
+    }
+    body.append("--").append(BOUNDARY).append("--\r\n");
+    return new StreamingMultipartReader(new Buffer().writeUtf8(body.toString()), BOUNDARY);
+  }
+
+  @Test
+  public void testReadParts() throws IOException {
+    StreamingMultipartReader reader = makeReader(
+      part("/a.json", "application/json", "{\"a\":1}"),
+      part("/b.json", "application/json", "{\"b\":\"--" + BOUNDARY + "x\"}")
+    );
+
+    StreamingMultipartReader.Part first = reader.nextPart();
+    assertEquals("application/json", first.getHeader("content-type"));
+    assertTrue(first.getHeader("Content-Disposition").contains("filename=\"/a.json\""));
+    assertEquals("{\"a\":1}", first.getBody().readUtf8());
+
+    StreamingMultipartReader.Part second = reader.nextPart();
+    assertEquals("{\"b\":\"--" + BOUNDARY + "x\"}", second.getBody().readUtf8());
+
+    assertNull(reader.nextPart());
+    assertTrue(reader.isFinished());
+    assertEquals(2, reader.getPartCount());
+  }
+
+  @Test
+  public void testUnreadPartIsDetached() throws IOException {
+    StreamingMultipartReader reader = makeReader(
+      part("/a.json", "application/json", "{\"a\":1}"),
+      part("/b.json", "application/json", "{\"b\":2}")
+    );
+
+    StreamingMultipartReader.Part first  = reader.nextPart();
+    StreamingMultipartReader.Part second = reader.nextPart();
+    assertNull(reader.nextPart());
+
+    // both parts remain readable after the reader moved past them
+    assertEquals("{\"b\":2}", second.getBody().readUtf8());
+    assertEquals("{\"a\":1}", first.getBody().readUtf8());
+  }
+
+  @Test
+  public void testEmptyBody() throws IOException {
+    StreamingMultipartReader reader = new StreamingMultipartReader(new Buffer(), BOUNDARY);
+    assertNull(reader.nextPart());
+    assertEquals(0, reader.getPartCount());
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test.datamovement;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.marklogic.client.datamovement.*;
+import org.junit.Test;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.DocumentMetadataHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.query.StructuredQueryDefinition;
+import com.marklogic.client.query.StructuredQueryBuilder;
+
+import com.marklogic.client.test.Common;
+
+public class ExportToChannelListenerTest {
+  private static DatabaseClient client = Common.connect();
+  private static DataMovementManager moveMgr = client.newDataMovementManager();
+  private static String collection = "ExportToChannelListenerTest_" +
+    new Random().nextInt(10000);
+
+  @Test
+  public void testBinaryExport() throws Exception {
+    byte[] contents = new byte[10000];
+    new Random().nextBytes(contents);
+    DocumentMetadataHandle meta = new DocumentMetadataHandle()
+      .withCollections(collection);
+    WriteBatcher batcher = moveMgr.newWriteBatcher();
+    moveMgr.startJob(batcher);
+    for ( int i=0; i < 20; i++ ) {
+      batcher.add("/" + collection + "/doc" + i + ".bin", meta, new BytesHandle(contents).withFormat(Format.BINARY));
+    }
+    batcher.flushAndWait();
+
+    StructuredQueryDefinition query = new StructuredQueryBuilder().collection(collection);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    AtomicInteger failures = new AtomicInteger(0);
+    ExportToChannelListener exportListener = new ExportToChannelListener(out);
+    exportListener.onFailure((batch, throwable) -> {
+      throwable.printStackTrace();
+      failures.incrementAndGet();
+    });
+    QueryBatcher queryJob =
+      moveMgr.newQueryBatcher(query)
+        .withThreadCount(2)
+        .withBatchSize(5)
+        .onUrisReady(exportListener)
+        .onQueryFailure( throwable -> throwable.printStackTrace() );
+    moveMgr.startJob( queryJob );
+    boolean finished = queryJob.awaitCompletion(3, TimeUnit.MINUTES);
+    if ( finished == false ) {
+      throw new IllegalStateException("ERROR: Job did not finish within three minutes");
+    }
+    moveMgr.stopJob( queryJob );
+
+    // the binary contents are written unchanged
+    assertEquals(0, failures.get());
+    assertEquals(20 * contents.length, out.size());
+  }
+
+  @Test
+  public void testFileChannelExport() throws Exception {
+    String channelCollection = collection + "_file";
+    DocumentMetadataHandle meta = new DocumentMetadataHandle()
+      .withCollections(channelCollection);
+    // each document starts with its uri and a newline so it can be found in the output
+    Map<String,byte[]> expected = new HashMap<>();
+    Random random = new Random();
+    WriteBatcher batcher = moveMgr.newWriteBatcher();
+    moveMgr.startJob(batcher);
+    // one binary document is larger than a single transferFrom call copies
+    int[] binarySizes = new int[] {0, 1, 100, 8192, 65537, 1536 * 1024};
+    for ( int i=0; i < binarySizes.length; i++ ) {
+      String uri = "/" + channelCollection + "/doc" + i + ".bin";
+      byte[] body = new byte[binarySizes[i]];
+      random.nextBytes(body);
+      byte[] contents = withHeader(uri, body);
+      expected.put(uri, contents);
+      batcher.add(uri, meta, new BytesHandle(contents).withFormat(Format.BINARY));
+    }
+    for ( int i=0; i < 4; i++ ) {
+      String uri = "/" + channelCollection + "/doc" + i + ".txt";
+      byte[] contents = withHeader(uri, ("caf\u00e9 \ud83d\ude00 " + i).getBytes(StandardCharsets.UTF_8));
+      expected.put(uri, contents);
+      batcher.add(uri, meta, new BytesHandle(contents).withFormat(Format.TEXT));
+    }
+    batcher.flushAndWait();
+
+    StructuredQueryDefinition query = new StructuredQueryBuilder().collection(channelCollection);
+    Path outputFile = Files.createTempFile("ExportToChannelListenerTest", ".out");
+    AtomicInteger failures = new AtomicInteger(0);
+    try ( FileChannel channel = FileChannel.open(outputFile, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING) )
+    {
+      ExportToChannelListener exportListener = new ExportToChannelListener(channel)
+        .withRecordPrefix("[")
+        .withRecordSuffix("]\n");
+      exportListener.onFailure((batch, throwable) -> {
+        throwable.printStackTrace();
+        failures.incrementAndGet();
+      });
+      QueryBatcher queryJob =
+        moveMgr.newQueryBatcher(query)
+          .withThreadCount(2)
+          .withBatchSize(3)
+          .onUrisReady(exportListener)
+          .onQueryFailure( throwable -> throwable.printStackTrace() );
+      moveMgr.startJob( queryJob );
+      boolean finished = queryJob.awaitCompletion(3, TimeUnit.MINUTES);
+      if ( finished == false ) {
+        throw new IllegalStateException("ERROR: Job did not finish within three minutes");
+      }
+      moveMgr.stopJob( queryJob );
+    }
+    assertEquals(0, failures.get());
+
+    // each record is the prefix, the exact bytes of one document and the suffix
+    byte[] output = Files.readAllBytes(outputFile);
+    Map<String,byte[]> remaining = new HashMap<>(expected);
+    int position = 0;
+    while ( position < output.length ) {
+      assertEquals('[', output[position++]);
+      int newline = position;
+      while ( output[newline] != '\n' ) newline++;
+      String uri = new String(output, position, newline - position, StandardCharsets.UTF_8);
+      byte[] contents = remaining.remove(uri);
+      assertNotNull("unexpected or repeated document " + uri, contents);
+      assertArrayEquals(uri, contents, Arrays.copyOfRange(output, position, position + contents.length));
+      position += contents.length;
+      assertEquals(']', output[position++]);
+      assertEquals('\n', output[position++]);
+    }
+    assertEquals(0, remaining.size());
+    Files.delete(outputFile);
+  }
+
+  private static byte[] withHeader(String uri, byte[] body) {
+    byte[] header = (uri + "\n").getBytes(StandardCharsets.UTF_8);
+    byte[] contents = Arrays.copyOf(header, header.length + body.length);
+    System.arraycopy(body, 0, contents, header.length, body.length);
+    return contents;
+  }
+}
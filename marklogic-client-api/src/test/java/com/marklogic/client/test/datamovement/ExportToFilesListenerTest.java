@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test.datamovement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import com.marklogic.client.datamovement.*;
+import org.junit.Test;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.io.DocumentMetadataHandle;
+import com.marklogic.client.query.StructuredQueryDefinition;
+import com.marklogic.client.query.StructuredQueryBuilder;
+
+import com.marklogic.client.test.Common;
+
+public class ExportToFilesListenerTest {
+  private static DatabaseClient client = Common.connect();
+  private static DataMovementManager moveMgr = client.newDataMovementManager();
+  private static String collection = "ExportToFilesListenerTest_" +
+    new Random().nextInt(10000);
+  private static String docContents = "doc contents";
+
+  @Test
+  public void testShardedGzipExport() throws Exception {
+    Path outputDir = Files.createTempDirectory("ExportToFilesListenerTest");
+    DocumentMetadataHandle meta = new DocumentMetadataHandle()
+      .withCollections(collection);
+    WriteBatcher batcher = moveMgr.newWriteBatcher();
+    moveMgr.startJob(batcher);
+    for ( int i=0; i < 100; i++ ) {
+      batcher.addAs("/" + collection + "/doc" + i + ".txt", meta, docContents + " " + i);
+    }
+    batcher.flushAndWait();
+
+    StructuredQueryDefinition query = new StructuredQueryBuilder().collection(collection);
+    ExportToFilesListener exportListener = new ExportToFilesListener(outputDir)
+      .withRecordSuffix("\n")
+      .withMaxRecordsPerFile(30)
+      .withGzip();
+    QueryBatcher queryJob =
+      moveMgr.newQueryBatcher(query)
+        .withThreadCount(3)
+        .withBatchSize(10)
+        .onUrisReady(exportListener)
+        .onQueryFailure( throwable -> throwable.printStackTrace() );
+    moveMgr.startJob( queryJob );
+    boolean finished = queryJob.awaitCompletion(3, TimeUnit.MINUTES);
+    if ( finished == false ) {
+      throw new IllegalStateException("ERROR: Job did not finish within three minutes");
+    }
+    // stopJob closes the listener, which closes the files
+    moveMgr.stopJob( queryJob );
+
+    Set<String> lines = new HashSet<>();
+    for ( Path file : exportListener.getFiles() ) {
+      assertTrue( file.getFileName().toString().endsWith(".txt.gz") );
+      int fileLines = 0;
+      // GZIPInputStream checks the trailer at the end, so a file that wasn't
+      // closed fails here with an EOFException
+      try ( InputStream in = new GZIPInputStream(Files.newInputStream(file));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)) ) {
+        String line;
+        while ( (line = reader.readLine()) != null ) {
+          lines.add(line);
+          fileLines++;
+        }
+        assertEquals( "The gzip stream should end with the file", -1, in.read() );
+      } catch (EOFException e) {
+        fail( "Export file " + file + " isn't a complete gzip stream" );
+      }
+      assertTrue( "Each file should have at most 30 lines", fileLines <= 30 );
+      Files.delete(file);
+    }
+    assertEquals( "There should be 100 distinct lines in the output files", 100, lines.size() );
+    Files.delete(outputDir);
+  }
+}
@@ -22,7 +22,14 @@ import java.io.FileReader;
 import java.io.File;
 import java.io.FileWriter;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.Random;
 
 import com.marklogic.client.datamovement.*;
@@ -115,4 +122,90 @@ public class ExportToWriterListenerTest {
     }
     if(outputFile.exists()) outputFile.delete();
   }
+
+  @Test
+  public void testExportToWriterInBatchOrder() throws Exception {
+    File outputFile = Files.createTempFile("ExportToWriterListenerTest", "txt").toFile();
+    String orderedCollection = collection + "_ordered";
+    DocumentMetadataHandle meta = new DocumentMetadataHandle()
+      .withCollections(orderedCollection);
+    WriteBatcher batcher = moveMgr.newWriteBatcher();
+    moveMgr.startJob(batcher);
+    List<String> input = new ArrayList<>();
+    for ( int i=0; i < 100; i++ ) {
+      String uri = "/" + orderedCollection + "/doc" + i + ".txt";
+      batcher.addAs(uri, meta, docContents);
+      input.add(uri);
+    }
+    batcher.flushAndWait();
+
+    // the job batch number of each uri
+    Map<String,Long> uriBatches = new ConcurrentHashMap<>();
+    // the last batch passed to the export listener, which lets the batch after it in
+    Object arrivalLock = new Object();
+    AtomicLong arrived = new AtomicLong(0);
+    try (FileWriter writer = new FileWriter(outputFile)) {
+      ExportToWriterListener exportListener = new ExportToWriterListener(writer)
+        .withBatchOrderPreserved()
+        .withRecordSuffix("\n")
+        .onGenerateOutput(record -> {
+          long batchNumber = uriBatches.get(record.getUri());
+          // the batch has taken its turn, so the next batch can arrive and render alongside it
+          synchronized(arrivalLock) {
+            if ( arrived.get() < batchNumber ) {
+              arrived.set(batchNumber);
+              arrivalLock.notifyAll();
+            }
+          }
+          // the odd batches render slowly, so the even batches after them finish rendering first
+          if ( batchNumber % 2 == 1 ) {
+            try { Thread.sleep(20); } catch (InterruptedException e) {}
+          }
+          return record.getUri();
+        });
+
+      // the uris come from an Iterator so the batches are numbered without gaps
+      QueryBatcher queryJob =
+        moveMgr.newQueryBatcher(input.iterator())
+          .withThreadCount(5)
+          .withBatchSize(10)
+          .onUrisReady(batch -> {
+            for ( String uri : batch.getItems() ) uriBatches.put(uri, batch.getJobBatchNumber());
+            // pass the batches to the export listener in job batch order
+            try {
+              synchronized(arrivalLock) {
+                while ( arrived.get() != batch.getJobBatchNumber() - 1 ) arrivalLock.wait();
+              }
+            } catch (InterruptedException e) {
+              throw new IllegalStateException("Interrupted waiting to export batch " + batch.getJobBatchNumber(), e);
+            }
+            exportListener.processEvent(batch);
+          })
+          .onQueryFailure( throwable -> throwable.printStackTrace() );
+      moveMgr.startJob( queryJob );
+      boolean finished = queryJob.awaitCompletion(3, TimeUnit.MINUTES);
+      if ( finished == false ) {
+        throw new IllegalStateException("ERROR: Job did not finish within three minutes");
+      }
+    }
+
+    // each uri is written once, and the batches are written in job batch order
+    try (FileReader fileReader = new FileReader(outputFile); BufferedReader reader = new BufferedReader(fileReader)) {
+      Set<String> uris = new HashSet<>();
+      List<Long> batchNumbers = new ArrayList<>();
+      String line;
+      while ( (line = reader.readLine()) != null ) {
+        uris.add(line);
+        long batchNumber = uriBatches.get(line);
+        if ( batchNumbers.isEmpty() || batchNumbers.get(batchNumbers.size() - 1) != batchNumber ) {
+          batchNumbers.add(batchNumber);
+        }
+      }
+      assertEquals( "There should be 100 distinct uris in the output file", 100, uris.size() );
+      List<Long> expected = new ArrayList<>();
+      for ( long batchNumber = 1; batchNumber <= 10; batchNumber++ ) expected.add(batchNumber);
+      assertEquals( "The batches should be written in job batch order", expected, batchNumbers );
+    }
+    if(outputFile.exists()) outputFile.delete();
+  }
 }
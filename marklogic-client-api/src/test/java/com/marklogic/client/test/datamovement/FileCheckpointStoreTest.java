@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test.datamovement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.marklogic.client.datamovement.FileCheckpointStore;
+import com.marklogic.client.datamovement.QueryCheckpoint;
+import com.marklogic.client.datamovement.QueryCheckpoint.ForestProgress;
+
+public class FileCheckpointStoreTest {
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    Path dir = Files.createTempDirectory("checkpoint-test");
+    FileCheckpointStore store = new FileCheckpointStore(dir.resolve("checkpoint.json"));
+    assertNull(store.load());
+
+    store.save(new QueryCheckpoint(12345, Arrays.asList(
+      new ForestProgress("101", "forest-1", 3, 300, "/docs/299.json", false),
+      new ForestProgress("102", "forest-2", 5, 420, null, true))));
+    // saving again replaces the checkpoint
+    store.save(new QueryCheckpoint(12345, Arrays.asList(
+      new ForestProgress("101", "forest-1", 4, 400, "/docs/399.json", false),
+      new ForestProgress("102", "forest-2", 5, 420, null, true))));
+
+    QueryCheckpoint checkpoint = store.load();
+    assertEquals(12345, checkpoint.getServerTimestamp());
+    assertEquals(9, checkpoint.getBatchesProcessed());
+    assertEquals(820, checkpoint.getResultsProcessed());
+    ForestProgress forest1 = checkpoint.getForests().get("101");
+    assertEquals("forest-1", forest1.getForestName());
+    assertEquals(4, forest1.getBatchesProcessed());
+    assertEquals(400, forest1.getResultsProcessed());
+    assertEquals("/docs/399.json", forest1.getLastUri());
+    assertFalse(forest1.isDone());
+    ForestProgress forest2 = checkpoint.getForests().get("102");
+    assertNull(forest2.getLastUri());
+    assertTrue(forest2.isDone());
+    // no temporary files are left behind
+    assertEquals(1, Files.list(dir).count());
+  }
+}
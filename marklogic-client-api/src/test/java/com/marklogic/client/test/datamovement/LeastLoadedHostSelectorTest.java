@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test.datamovement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.marklogic.client.datamovement.HostSelector;
+import com.marklogic.client.datamovement.HostSelector.HostLoad;
+import com.marklogic.client.datamovement.LeastLoadedHostSelector;
+
+public class LeastLoadedHostSelectorTest {
+  @Test
+  public void testSelectHost() {
+    HostSelector selector = new LeastLoadedHostSelector();
+    assertNull(selector.selectHost(new HostLoad[0], 1));
+
+    HostLoad only = new TestHostLoad("only", 10, 100);
+    assertSame(only, selector.selectHost(new HostLoad[] {only}, 1));
+
+    // with two hosts, both are always compared so the idle fast host always wins
+    HostLoad busy = new TestHostLoad("busy", 4, 50);
+    HostLoad idle = new TestHostLoad("idle", 0, 20);
+    for ( int i = 0; i < 100; i++ ) {
+      assertSame(idle, selector.selectHost(new HostLoad[] {busy, idle}, i));
+    }
+
+    // with more hosts, the slowest host is never chosen since it loses every comparison
+    HostLoad slow = new TestHostLoad("slow", 8, 500);
+    HostLoad[] hosts = new HostLoad[] {slow, busy, idle};
+    int slowCount = 0;
+    for ( int i = 0; i < 1000; i++ ) {
+      if ( selector.selectHost(hosts, i) == slow ) slowCount++;
+    }
+    assertEquals(0, slowCount);
+  }
+
+  @Test
+  public void testUnmeasuredHosts() {
+    HostSelector selector = new LeastLoadedHostSelector();
+
+    // a host with no latency yet must not win every comparison
+    HostLoad unmeasured = new TestHostLoad("unmeasured", 6, 0);
+    HostLoad measured   = new TestHostLoad("measured", 1, 50);
+    for ( int i = 0; i < 100; i++ ) {
+      assertSame(measured, selector.selectHost(new HostLoad[] {unmeasured, measured}, i));
+    }
+
+    // but while it has fewer batches in flight it is sent batches to be measured
+    HostLoad fresh = new TestHostLoad("fresh", 0, 0);
+    for ( int i = 0; i < 100; i++ ) {
+      assertSame(fresh, selector.selectHost(new HostLoad[] {measured, fresh}, i));
+    }
+
+    // between unmeasured hosts, the one with fewer batches in flight wins
+    for ( int i = 0; i < 100; i++ ) {
+      assertSame(fresh, selector.selectHost(new HostLoad[] {unmeasured, fresh}, i));
+    }
+  }
+
+  private static class TestHostLoad implements HostLoad {
+    private String hostName;
+    private int inFlightBatches;
+    private double averageLatency;
+
+    TestHostLoad(String hostName, int inFlightBatches, double averageLatency) {
+      this.hostName = hostName;
+      this.inFlightBatches = inFlightBatches;
+      this.averageLatency = averageLatency;
+    }
+
+    @Override
+    public String getHostName() {
+      return hostName;
+    }
+
+    @Override
+    public int getInFlightBatches() {
+      return inFlightBatches;
+    }
+
+    @Override
+    public double getAverageLatency() {
+      return averageLatency;
+    }
+
+    @Override
+    public long getFinishedBatches() {
+      return (averageLatency > 0) ? 1 : 0;
+    }
+  }
+}
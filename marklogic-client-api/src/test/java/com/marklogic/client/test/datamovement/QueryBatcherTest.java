@@ -18,9 +18,13 @@ package com.marklogic.client.test.datamovement;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
 import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -36,6 +40,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.Set;
 
@@ -80,6 +85,7 @@ import com.marklogic.client.datamovement.QueryFailureListener;
 import com.marklogic.client.datamovement.WriteBatcher;
 import com.marklogic.client.impl.DatabaseClientImpl;
 import com.marklogic.client.impl.GenericDocumentImpl;
+import com.marklogic.client.metrics.DefaultMetricsRegistry;
 import com.marklogic.client.datamovement.impl.QueryBatchImpl;
 
 import com.marklogic.client.test.Common;
@@ -146,6 +152,24 @@ public class QueryBatcherTest {
     queryOptionsMgr.writeOptions("employees", options);
   }
 
+  // writes count docs to their own collection (and the collection deleted after
+  // the tests) so a test can size the data for the feature it exercises
+  private static List<String> writeDocs(String docsCollection, int count) {
+    WriteBatcher writeBatcher = moveMgr.newWriteBatcher().withBatchSize(100);
+    DocumentMetadataHandle meta = new DocumentMetadataHandle()
+      .withCollections(collection, docsCollection);
+    List<String> uris = new ArrayList<>();
+    moveMgr.startJob(writeBatcher);
+    for ( int i = 0; i < count; i++ ) {
+      String uri = "/" + docsCollection + "/" + i + ".json";
+      writeBatcher.addAs(uri, meta, new StringHandle("{\"n\":" + i + "}").withFormat(JSON));
+      uris.add(uri);
+    }
+    writeBatcher.flushAndWait();
+    moveMgr.stopJob(writeBatcher);
+    return uris;
+  }
+
   @Test
   public void testStructuredQuery() throws Exception {
     StructuredQueryDefinition query = new StructuredQueryBuilder().collection(qhbTestCollection);
@@ -800,4 +824,429 @@ public class QueryBatcherTest {
     assertTrue(successCount.get() < 200);
     assertTrue(batchCount.get() == moveMgr.getJobReport(queryTicket.get()).getSuccessBatchesCount());
   }
+
+  @Test
+  public void testCursorPaging() throws Exception {
+    // deleting each page as it's processed moves the following matches up, so paging
+    // by start position skips the matches that move onto pages already retrieved
+    String startCollection = qhbTestCollection + "_start";
+    List<String> startInput = writeDocs(startCollection, 200);
+    Set<String> startUris = deleteWhilePaging(startCollection, false);
+    assertTrue("expected skipped uris but got " + startUris.size(), startUris.size() < startInput.size());
+
+    // paging after the last uri of the previous page isn't affected by the deletes
+    String cursorCollection = qhbTestCollection + "_cursor";
+    List<String> cursorInput = writeDocs(cursorCollection, 200);
+    Set<String> cursorUris = deleteWhilePaging(cursorCollection, true);
+    assertEquals(new HashSet<>(cursorInput), cursorUris);
+    QueryManager queryMgr = client.newQueryManager();
+    assertEquals(0, queryMgr.search(new StructuredQueryBuilder().collection(cursorCollection),
+      new SearchHandle()).getTotalResults());
+  }
+
+  private Set<String> deleteWhilePaging(String pagedCollection, boolean cursorPaging) {
+    Set<String> uris = Collections.synchronizedSet(new HashSet<>());
+    AtomicInteger failures = new AtomicInteger(0);
+    QueryBatcher batcher =
+      moveMgr.newQueryBatcher(new StructuredQueryBuilder().collection(pagedCollection))
+      .withBatchSize(10)
+      // with one thread, each page is deleted before the next page of its forest is requested
+      .withThreadCount(1)
+      .onUrisReady(batch -> {
+        uris.addAll(Arrays.asList(batch.getItems()));
+        assertTrue(batch.getRetrievalTime() >= 0);
+      })
+      .onUrisReady(new DeleteListener())
+      .onQueryFailure(throwable -> {
+        throwable.printStackTrace();
+        failures.incrementAndGet();
+      });
+    if ( cursorPaging ) batcher.withCursorPaging();
+    assertEquals(cursorPaging, batcher.isCursorPaging());
+    moveMgr.startJob(batcher);
+    batcher.awaitCompletion();
+    moveMgr.stopJob(batcher);
+
+    assertEquals(0, failures.get());
+    return uris;
+  }
+
+  @Test
+  public void testSplitsPerForest() throws Exception {
+    // enough matches that each forest has several batches to split into ranges
+    String splitCollection = qhbTestCollection + "_split";
+    List<String> input = writeDocs(splitCollection, 300);
+    List<String> uris = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger failures = new AtomicInteger(0);
+    ForestPageOrder pageOrder = new ForestPageOrder();
+    QueryBatcher batcher =
+      moveMgr.newQueryBatcher(new StructuredQueryBuilder().collection(splitCollection))
+      .withBatchSize(10)
+      .withSplitsPerForest(4)
+      .onUrisReady(batch -> uris.addAll(Arrays.asList(batch.getItems())))
+      .onUrisReady(pageOrder)
+      .onQueryFailure(throwable -> {
+        throwable.printStackTrace();
+        failures.incrementAndGet();
+      });
+    assertEquals(4, batcher.getSplitsPerForest());
+    moveMgr.startJob(batcher);
+    batcher.awaitCompletion();
+    moveMgr.stopJob(batcher);
+
+    assertEquals(0, failures.get());
+    // the ranges don't overlap or leave gaps
+    assertEquals(input.size(), uris.size());
+    assertEquals(new HashSet<>(input), new HashSet<>(uris));
+    // the batches of a forest are numbered as they're requested, so the first pages of
+    // the later ranges are numbered before the following pages of the earlier ranges
+    assertTrue("expected pages of concurrent ranges", pageOrder.getOutOfOrderPages() > 0);
+  }
+
+  // records the first and last uri of each page of each forest, since a forest
+  // paged as one range returns its pages in uri order by forest batch number
+  private static class ForestPageOrder implements QueryBatchListener {
+    private final Map<String,Map<Long,String[]>> pages = new ConcurrentHashMap<>();
+
+    @Override
+    public void processEvent(QueryBatch batch) {
+      String[] items = batch.getItems();
+      if ( items.length == 0 ) return;
+      pages.computeIfAbsent(batch.getForest().getForestName(), forestName -> new ConcurrentHashMap<>())
+        .put(batch.getForestBatchNumber(), new String[] {items[0], items[items.length - 1]});
+    }
+
+    // the pages that start before the end of the page numbered before them
+    int getOutOfOrderPages() {
+      int outOfOrder = 0;
+      for ( Map<Long,String[]> forestPages : pages.values() ) {
+        List<Long> batchNumbers = new ArrayList<>(forestPages.keySet());
+        Collections.sort(batchNumbers);
+        String[] previous = null;
+        for ( Long batchNumber : batchNumbers ) {
+          String[] page = forestPages.get(batchNumber);
+          if ( previous != null && page[0].compareTo(previous[1]) < 0 ) outOfOrder++;
+          previous = page;
+        }
+      }
+      return outOfOrder;
+    }
+  }
+
+  @Test
+  public void testPrefetchDepth() throws Exception {
+    String prefetchCollection = qhbTestCollection + "_prefetch";
+    List<String> input = writeDocs(prefetchCollection, 100);
+    List<String> uris = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger failures = new AtomicInteger(0);
+    AtomicInteger urisAtCompletion = new AtomicInteger(-1);
+    // when each page of a forest was requested and when its listener finished
+    Map<String,Long> requested = new ConcurrentHashMap<>();
+    Map<String,Long> processed = new ConcurrentHashMap<>();
+    QueryBatcher batcher =
+      moveMgr.newQueryBatcher(new StructuredQueryBuilder().collection(prefetchCollection))
+      .withBatchSize(10)
+      .withThreadCount(1)
+      .withPrefetchDepth(2)
+      .onUrisReady(batch -> {
+        String page = batch.getForest().getForestName() + "#" + batch.getForestBatchNumber();
+        requested.put(page, batch.getTimestamp().getTimeInMillis());
+        try { Thread.sleep(50); } catch (InterruptedException e) {}
+        uris.addAll(Arrays.asList(batch.getItems()));
+        processed.put(page, System.currentTimeMillis());
+      })
+      .onJobCompletion(job -> urisAtCompletion.set(uris.size()))
+      .onQueryFailure(throwable -> {
+        throwable.printStackTrace();
+        failures.incrementAndGet();
+      });
+    assertEquals(2, batcher.getPrefetchDepth());
+    moveMgr.startJob(batcher);
+    batcher.awaitCompletion();
+    moveMgr.stopJob(batcher);
+
+    assertEquals(0, failures.get());
+    assertEquals(input.size(), uris.size());
+    assertEquals(new HashSet<>(input), new HashSet<>(uris));
+    // the job completes after the listeners process the last batch
+    assertEquals(input.size(), urisAtCompletion.get());
+    // with one thread and no prefetch, the next page of a forest is only requested
+    // after the listener for the previous page returns
+    int requestedEarly = 0;
+    for ( Map.Entry<String,Long> entry : processed.entrySet() ) {
+      String[] page = entry.getKey().split("#");
+      Long nextRequested = requested.get(page[0] + "#" + (Long.parseLong(page[1]) + 1));
+      if ( nextRequested != null && nextRequested < entry.getValue() ) requestedEarly++;
+    }
+    assertTrue("expected pages requested while the listener was busy", requestedEarly > 0);
+  }
+
+  @Test
+  public void testResumeFromCheckpoint() throws Exception {
+    resumeFromCheckpoint(false);
+    resumeFromCheckpoint(true);
+  }
+
+  private void resumeFromCheckpoint(boolean cursorPaging) throws Exception {
+    String resumeCollection = qhbTestCollection + (cursorPaging ? "_resume_cursor" : "_resume");
+    List<String> input = writeDocs(resumeCollection, 200);
+    Path dir = Files.createTempDirectory("resume-test");
+    FileCheckpointStore store = new FileCheckpointStore(dir.resolve("checkpoint.json"));
+
+    // the uris of each batch the first run passed to the listener, by forest and batch number
+    Map<String,Map<Long,List<String>>> firstRun = new ConcurrentHashMap<>();
+    AtomicInteger failures = new AtomicInteger(0);
+    AtomicReference<String> heldForest = new AtomicReference<>(null);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicReference<QueryCheckpoint> gapCheckpoint = new AtomicReference<>(null);
+    QueryBatcher first = moveMgr.newQueryBatcher(new StructuredQueryBuilder().collection(resumeCollection))
+      .withBatchSize(10)
+      // two listener threads: one holds a batch while the other processes the batches after it
+      .withThreadCount(2)
+      .withPrefetchDepth(2)
+      .withCheckpointStore(store)
+      .onQueryFailure(throwable -> {
+        throwable.printStackTrace();
+        failures.incrementAndGet();
+      });
+    first.onUrisReady(batch -> {
+      String forestId = batch.getForest().getForestId();
+      firstRun.computeIfAbsent(forestId, id -> new ConcurrentHashMap<>())
+        .put(batch.getForestBatchNumber(), Arrays.asList(batch.getItems()));
+      if ( batch.getForestBatchNumber() == 2 && heldForest.compareAndSet(null, forestId) ) {
+        // hold the second batch of one forest until its third batch is processed
+        try {
+          release.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+        }
+      } else if ( batch.getForestBatchNumber() == 4 && forestId.equals(heldForest.get()) ) {
+        // the other listener thread only takes this batch after processing the third
+        gapCheckpoint.set(first.getCheckpoint());
+        moveMgr.stopJob(first);
+        release.countDown();
+      }
+    });
+    if ( cursorPaging ) first.withCursorPaging();
+    moveMgr.startJob(first);
+    first.awaitCompletion();
+    moveMgr.stopJob(first);
+    assertEquals(0, failures.get());
+    assertNotNull("expected the job to reach the fourth batch of a forest", gapCheckpoint.get());
+    assertNotNull(store.load());
+
+    // the third batch was processed but the second wasn't, so only the first counts
+    QueryCheckpoint checkpoint = gapCheckpoint.get();
+    assertEquals(1, checkpoint.getForests().get(heldForest.get()).getBatchesProcessed());
+    List<String> counted = new ArrayList<>();
+    for ( QueryCheckpoint.ForestProgress progress : checkpoint.getForests().values() ) {
+      Map<Long,List<String>> batches = firstRun.getOrDefault(progress.getForestId(), new HashMap<>());
+      for ( long batchNumber = 1; batchNumber <= progress.getBatchesProcessed(); batchNumber++ ) {
+        assertTrue("batch " + batchNumber + " wasn't processed", batches.containsKey(batchNumber));
+        counted.addAll(batches.get(batchNumber));
+      }
+    }
+    assertEquals(counted.size(), checkpoint.getResultsProcessed());
+
+    List<String> secondRun = Collections.synchronizedList(new ArrayList<>());
+    QueryBatcher second = moveMgr.newQueryBatcher(new StructuredQueryBuilder().collection(resumeCollection))
+      .withBatchSize(10)
+      .withThreadCount(2)
+      .resumeFrom(checkpoint)
+      .onUrisReady(batch -> secondRun.addAll(Arrays.asList(batch.getItems())))
+      .onQueryFailure(throwable -> {
+        throwable.printStackTrace();
+        failures.incrementAndGet();
+      });
+    if ( cursorPaging ) second.withCursorPaging();
+    moveMgr.startJob(second);
+    second.awaitCompletion();
+    moveMgr.stopJob(second);
+    assertEquals(0, failures.get());
+
+    // every uri is processed exactly once by the counted batches and the resumed run
+    List<String> all = new ArrayList<>(counted);
+    all.addAll(secondRun);
+    assertEquals(input.size(), all.size());
+    assertEquals(new HashSet<>(input), new HashSet<>(all));
+  }
+
+  @Test
+  public void testIteratorQueueDepth() throws Exception {
+    List<String> input = new ArrayList<>();
+    for ( int i = 0; i < 1000; i++ ) input.add("/iterator-queue/" + i + ".txt");
+    Set<String> uris = Collections.synchronizedSet(new HashSet<>());
+    AtomicInteger failures = new AtomicInteger(0);
+    AtomicInteger urisAtCompletion = new AtomicInteger(-1);
+    QueryBatcher batcher = moveMgr.newQueryBatcher(input.iterator())
+      .withBatchSize(7)
+      .withThreadCount(3)
+      .withIteratorQueueDepth(2)
+      .onUrisReady(batch -> uris.addAll(Arrays.asList(batch.getItems())))
+      .onJobCompletion(job -> urisAtCompletion.set(uris.size()))
+      .onQueryFailure(throwable -> {
+        throwable.printStackTrace();
+        failures.incrementAndGet();
+      });
+    assertEquals(2, batcher.getIteratorQueueDepth());
+    moveMgr.startJob(batcher);
+    batcher.awaitCompletion();
+    moveMgr.stopJob(batcher);
+
+    assertEquals(0, failures.get());
+    assertEquals(new HashSet<>(input), uris);
+    // the job completes after every batch is processed
+    assertEquals(1000, urisAtCompletion.get());
+    assertTrue(batcher.getIteratorWaitTime() >= 0);
+    assertTrue(batcher.getListenerWaitTime() >= 0);
+  }
+
+  @Test
+  public void testCountFirst() throws Exception {
+    String countCollection = qhbTestCollection + "_count";
+    List<String> input = writeDocs(countCollection, 300);
+    List<String> uris = Collections.synchronizedList(new ArrayList<>());
+    Map<String,AtomicInteger> forestUris = new ConcurrentHashMap<>();
+    AtomicReference<String> firstForest = new AtomicReference<>(null);
+    AtomicInteger failures = new AtomicInteger(0);
+    QueryBatcher batcher =
+      moveMgr.newQueryBatcher(new StructuredQueryBuilder().collection(countCollection))
+      .withBatchSize(10)
+      // with one thread, the forests are paged in the order they're started
+      .withThreadCount(1)
+      .withCountFirst()
+      .onUrisReady(batch -> {
+        String forestName = batch.getForest().getForestName();
+        firstForest.compareAndSet(null, forestName);
+        forestUris.computeIfAbsent(forestName, name -> new AtomicInteger(0)).addAndGet(batch.getItems().length);
+        uris.addAll(Arrays.asList(batch.getItems()));
+      })
+      .onQueryFailure(throwable -> {
+        throwable.printStackTrace();
+        failures.incrementAndGet();
+      });
+    assertTrue(batcher.isCountFirst());
+    assertEquals(-1, batcher.getEstimatedTotalResults());
+    moveMgr.startJob(batcher);
+    batcher.awaitCompletion();
+    moveMgr.stopJob(batcher);
+
+    assertEquals(0, failures.get());
+    assertEquals(input.size(), uris.size());
+    // the collection query is resolved from the indexes, so the estimates are exact
+    assertEquals(input.size(), batcher.getEstimatedTotalResults());
+    Map<Forest,Long> estimates = batcher.getForestEstimates();
+    assertEquals(batcher.getForestConfig().listForests().length, estimates.size());
+    long largestEstimate = 0;
+    long firstForestEstimate = -1;
+    for ( Map.Entry<Forest,Long> estimate : estimates.entrySet() ) {
+      String forestName = estimate.getKey().getForestName();
+      AtomicInteger retrieved = forestUris.get(forestName);
+      assertEquals(forestName, estimate.getValue().longValue(), (retrieved == null) ? 0 : retrieved.get());
+      largestEstimate = Math.max(largestEstimate, estimate.getValue());
+      if ( forestName.equals(firstForest.get()) ) firstForestEstimate = estimate.getValue();
+    }
+    // the largest forest is started first
+    assertEquals(largestEstimate, firstForestEstimate);
+  }
+
+  @Test
+  public void testWorkStealing() throws Exception {
+    // enough matches that each forest has more than two batches left to steal from
+    String stealCollection = qhbTestCollection + "_steal";
+    List<String> input = writeDocs(stealCollection, 400);
+    Set<String> uris = Collections.synchronizedSet(new HashSet<>());
+    AtomicInteger results = new AtomicInteger(0);
+    AtomicInteger failures = new AtomicInteger(0);
+    ForestPageOrder pageOrder = new ForestPageOrder();
+    QueryBatcher batcher =
+      moveMgr.newQueryBatcher(new StructuredQueryBuilder().collection(stealCollection))
+      .withBatchSize(10)
+      .withWorkStealing()
+      .onUrisReady(batch -> {
+        uris.addAll(Arrays.asList(batch.getItems()));
+        results.addAndGet(batch.getItems().length);
+      })
+      .onUrisReady(pageOrder)
+      .onQueryFailure(throwable -> {
+        throwable.printStackTrace();
+        failures.incrementAndGet();
+      });
+    // many more threads than forests, so threads are left idle to steal
+    batcher.withThreadCount(batcher.getForestConfig().listForests().length * 4);
+    assertTrue(batcher.isWorkStealing());
+    moveMgr.startJob(batcher);
+    batcher.awaitCompletion();
+    moveMgr.stopJob(batcher);
+
+    assertEquals(0, failures.get());
+    // the stolen ranges don't overlap, so each uri is retrieved once
+    assertEquals(input.size(), results.get());
+    assertEquals(new HashSet<>(input), uris);
+    // the pages of a stolen range are numbered between the pages of the range it was
+    // taken from, which can't happen when each forest is paged as one range
+    assertTrue("expected pages of stolen ranges", pageOrder.getOutOfOrderPages() > 0);
+    assertNull(batcher.getCheckpoint());
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    String metricsCollection = qhbTestCollection + "_metrics";
+    List<String> input = writeDocs(metricsCollection, 200);
+    DefaultMetricsRegistry metrics = new DefaultMetricsRegistry();
+    AtomicInteger batches = new AtomicInteger(0);
+    AtomicInteger failures = new AtomicInteger(0);
+    QueryBatcher batcher =
+      moveMgr.newQueryBatcher(new StructuredQueryBuilder().collection(metricsCollection))
+      .withJobName("testMetrics")
+      .withBatchSize(10)
+      .withConsistentSnapshot()
+      .withMetricsRegistry(metrics)
+      .onUrisReady(batch -> batches.incrementAndGet())
+      .onUrisReady(new DeleteListener())
+      .onQueryFailure(throwable -> {
+        throwable.printStackTrace();
+        failures.incrementAndGet();
+      });
+    JobTicket ticket = moveMgr.startJob(batcher);
+    batcher.awaitCompletion();
+    // the queue depth gauge is tagged with the job id as well as the name
+    assertEquals(0, metrics.getGaugeValue("marklogic.dmsdk.query.queue.depth",
+      "job", "testMetrics", "jobId", ticket.getJobId()), 0);
+    moveMgr.stopJob(batcher);
+    assertEquals(0, failures.get());
+
+    long uris = 0;
+    long queryBatches = 0;
+    long bytes = 0;
+    for ( Forest forest : batcher.getForestConfig().listForests() ) {
+      String[] tags = {"job", "testMetrics", "host", forest.getPreferredHost(), "forest", forest.getForestName()};
+      uris += metrics.getCount("marklogic.dmsdk.query.uris", tags);
+      DefaultMetricsRegistry.Histogram latency = metrics.getTimer("marklogic.dmsdk.query.batch.duration", tags);
+      if ( latency != null ) queryBatches += latency.getCount();
+      DefaultMetricsRegistry.Histogram received = metrics.getSummary("marklogic.dmsdk.query.bytes.received", tags);
+      if ( received != null ) bytes += received.getTotal();
+      assertEquals(0, metrics.getCount("marklogic.dmsdk.query.batch.failures", tags));
+    }
+    assertEquals(input.size(), uris);
+    // each forest can end with an empty page, which isn't passed to the listeners
+    assertTrue(queryBatches >= batches.get());
+    assertTrue(bytes > 0);
+
+    // the stock listeners record their batches by job and host
+    long deleted = 0;
+    long deleteBatches = 0;
+    for ( String host : batcher.getForestConfig().getPreferredHosts() ) {
+      deleted += metrics.getCount("marklogic.dmsdk.delete.documents", "job", "testMetrics", "host", host);
+      DefaultMetricsRegistry.Histogram latency =
+        metrics.getTimer("marklogic.dmsdk.delete.batch.duration", "job", "testMetrics", "host", host);
+      if ( latency != null ) deleteBatches += latency.getCount();
+      assertEquals(0, metrics.getCount("marklogic.dmsdk.delete.batch.failures", "job", "testMetrics", "host", host));
+    }
+    assertEquals(input.size(), deleted);
+    assertEquals(batches.get(), deleteBatches);
+    assertEquals(0, metrics.getCount("marklogic.dmsdk.query.batch.retries", "job", "testMetrics"));
+    // the queue depth gauge is removed when the job stops
+    assertTrue(Double.isNaN(metrics.getGaugeValue("marklogic.dmsdk.query.queue.depth",
+      "job", "testMetrics", "jobId", ticket.getJobId())));
+  }
 }
@@ -28,14 +28,17 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.stream.Stream;
@@ -66,19 +69,26 @@ import com.marklogic.client.query.StructuredQueryDefinition;
 import com.marklogic.client.query.QueryManager;
 import com.marklogic.client.query.StructuredQueryBuilder;
 import com.marklogic.client.datamovement.BatchFailureListener;
+import com.marklogic.client.datamovement.DataMovementException;
 import com.marklogic.client.datamovement.DataMovementManager;
 import com.marklogic.client.datamovement.FilteredForestConfiguration;
+import com.marklogic.client.datamovement.Forest;
 import com.marklogic.client.datamovement.ForestConfiguration;
+import com.marklogic.client.datamovement.ForestSelector;
 import com.marklogic.client.datamovement.HostAvailabilityListener;
 import com.marklogic.client.datamovement.JobReport;
 import com.marklogic.client.datamovement.JobTicket;
 import com.marklogic.client.datamovement.NoResponseListener;
 import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.datamovement.ThreadCountChangeEvent;
 import com.marklogic.client.datamovement.WriteBatch;
 import com.marklogic.client.datamovement.WriteBatchListener;
 import com.marklogic.client.datamovement.WriteEvent;
 import com.marklogic.client.datamovement.WriteFailureListener;
 import com.marklogic.client.datamovement.WriteBatcher;
+import com.marklogic.client.datamovement.impl.BatchWriteSet;
+import com.marklogic.client.datamovement.impl.WriteBatcherImpl;
+import com.marklogic.client.metrics.DefaultMetricsRegistry;
 
 import com.marklogic.client.test.Common;
 
@@ -1063,4 +1073,248 @@ public class WriteBatcherTest {
     moveMgr.startJob(batcher);
     moveMgr.stopJob(batcher);
   }
+
+  @Test
+  public void testMaxQueuedDocuments() throws Exception {
+    String collection = whbTestCollection + ".testMaxQueuedDocuments";
+    DocumentMetadataHandle meta = new DocumentMetadataHandle().withCollections(collection);
+    AtomicInteger successCount = new AtomicInteger(0);
+    long maxQueued = 0;
+    WriteBatcher batcher = moveMgr.newWriteBatcher()
+      .withBatchSize(2)
+      .withThreadCount(2)
+      .withMaxQueuedDocuments(6)
+      .withMaxQueuedBytes(1000)
+      .onBatchSuccess(batch -> successCount.addAndGet(batch.getItems().length))
+      .onBatchFailure((batch, throwable) -> throwable.printStackTrace());
+    moveMgr.startJob(batcher);
+    for ( int i = 0; i < 50; i++ ) {
+      batcher.add("/WriteBatcherTest/maxQueued/doc" + i + ".txt", meta, new StringHandle("document " + i));
+      maxQueued = Math.max(maxQueued, batcher.getQueuedDocuments());
+      assertTrue(batcher.getQueuedBytes() <= 1000);
+    }
+    batcher.flushAndWait();
+    moveMgr.stopJob(batcher);
+
+    assertTrue("Expected no more than 6 queued documents but saw " + maxQueued, maxQueued <= 6);
+    assertEquals(50, successCount.get());
+    assertEquals(0, batcher.getQueuedDocuments());
+    assertEquals(0, batcher.getQueuedBytes());
+  }
+
+  @Test
+  public void testMaxQueuedBelowBatchSize() throws Exception {
+    String collection = whbTestCollection + ".testMaxQueuedBelowBatchSize";
+    DocumentMetadataHandle meta = new DocumentMetadataHandle().withCollections(collection);
+    AtomicInteger successCount = new AtomicInteger(0);
+    // the queue limit is below the batch size, so batches are never filled
+    // and add must write partial batches rather than wait for space
+    WriteBatcher batcher = moveMgr.newWriteBatcher()
+      .withBatchSize(10)
+      .withThreadCount(2)
+      .withMaxQueuedDocuments(3)
+      .withAddTimeout(30, TimeUnit.SECONDS)
+      .onBatchSuccess(batch -> successCount.addAndGet(batch.getItems().length))
+      .onBatchFailure((batch, throwable) -> throwable.printStackTrace());
+    moveMgr.startJob(batcher);
+    for ( int i = 0; i < 20; i++ ) {
+      batcher.add("/WriteBatcherTest/maxQueuedBelowBatchSize/doc" + i + ".txt", meta, new StringHandle("document " + i));
+      assertTrue(batcher.getQueuedDocuments() <= 3);
+    }
+    batcher.flushAndWait();
+    moveMgr.stopJob(batcher);
+
+    assertEquals(20, successCount.get());
+    assertEquals(0, batcher.getQueuedDocuments());
+  }
+
+  @Test
+  public void testMaxQueuedKeepsFullBatches() throws Exception {
+    String collection = whbTestCollection + ".testMaxQueuedKeepsFullBatches";
+    DocumentMetadataHandle meta = new DocumentMetadataHandle().withCollections(collection);
+    List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    // the limit isn't a multiple of the batch size, but whenever it's reached
+    // a full batch is in flight, so add waits for it instead of cutting short batches
+    WriteBatcher batcher = moveMgr.newWriteBatcher()
+      .withBatchSize(4)
+      .withThreadCount(2)
+      .withMaxQueuedDocuments(10)
+      .withAddTimeout(30, TimeUnit.SECONDS)
+      .onBatchSuccess(batch -> batchSizes.add(batch.getItems().length))
+      .onBatchFailure((batch, throwable) -> throwable.printStackTrace());
+    moveMgr.startJob(batcher);
+    for ( int i = 0; i < 40; i++ ) {
+      batcher.add("/WriteBatcherTest/maxQueuedFullBatches/doc" + i + ".txt", meta, new StringHandle("document " + i));
+      assertTrue(batcher.getQueuedDocuments() <= 10);
+    }
+    batcher.flushAndWait();
+    moveMgr.stopJob(batcher);
+
+    assertEquals(10, batchSizes.size());
+    for ( int batchSize : batchSizes ) {
+      assertEquals("Expected only full batches", 4, batchSize);
+    }
+    assertEquals(0, batcher.getQueuedDocuments());
+  }
+
+  @Test
+  public void testBatchSizeBytesAndFlushInterval() throws Exception {
+    String collection = whbTestCollection + ".testBatchSizeBytes";
+    DocumentMetadataHandle meta = new DocumentMetadataHandle().withCollections(collection);
+    Set<Integer> batchSizes = Collections.synchronizedSet(new HashSet<>());
+    AtomicInteger successCount = new AtomicInteger(0);
+    WriteBatcher batcher = moveMgr.newWriteBatcher()
+      .withBatchSize(100)
+      .withBatchSizeBytes(100)
+      .withFlushInterval(200, TimeUnit.MILLISECONDS)
+      .onBatchSuccess(batch -> {
+        batchSizes.add(batch.getItems().length);
+        successCount.addAndGet(batch.getItems().length);
+      })
+      .onBatchFailure((batch, throwable) -> throwable.printStackTrace());
+    moveMgr.startJob(batcher);
+    // 25 ten-byte documents make two full batches of 10 and leave 5 waiting
+    for ( int i = 0; i < 25; i++ ) {
+      batcher.add("/WriteBatcherTest/batchSizeBytes/doc" + i + ".txt", meta, new StringHandle("document" + (i % 10) + "!"));
+    }
+    // the waiting documents are written by the flush interval without calling flush
+    long start = System.currentTimeMillis();
+    while ( successCount.get() < 25 && System.currentTimeMillis() - start < 10000 ) {
+      Thread.sleep(50);
+    }
+    moveMgr.stopJob(batcher);
+
+    assertEquals(25, successCount.get());
+    assertTrue("Expected batches of 10 and 5 documents but saw " + batchSizes,
+      batchSizes.contains(10) && batchSizes.contains(5));
+  }
+
+  @Test
+  public void testForestSelector() throws Exception {
+    String collection = whbTestCollection + ".testForestSelector";
+    DocumentMetadataHandle meta = new DocumentMetadataHandle().withCollections(collection);
+    ForestSelector selector = (uri, forests) -> forests[Math.abs(uri.hashCode()) % forests.length];
+    Forest[] forests = Stream.of(moveMgr.readForestConfig().listForests())
+      .filter(Forest::isUpdateable).toArray(Forest[]::new);
+    Set<String> misrouted = Collections.synchronizedSet(new HashSet<>());
+    AtomicInteger successCount = new AtomicInteger(0);
+    WriteBatcher batcher = moveMgr.newWriteBatcher()
+      .withBatchSize(10)
+      .withForestSelector(selector)
+      .onBatchSuccess(batch -> {
+        successCount.addAndGet(batch.getItems().length);
+        for ( WriteEvent event : batch.getItems() ) {
+          String expectedHost = selector.selectForest(event.getTargetUri(), forests).getPreferredHost();
+          if ( ! expectedHost.equals(batch.getClient().getHost()) ) misrouted.add(event.getTargetUri());
+        }
+      })
+      .onBatchFailure((batch, throwable) -> throwable.printStackTrace());
+    assertEquals(selector, batcher.getForestSelector());
+    moveMgr.startJob(batcher);
+    for ( int i = 0; i < 100; i++ ) {
+      batcher.add("/WriteBatcherTest/forestSelector/doc" + i + ".txt", meta, new StringHandle("document " + i));
+    }
+    batcher.flushAndWait();
+    moveMgr.stopJob(batcher);
+
+    assertEquals(100, successCount.get());
+    assertTrue("Documents sent to the wrong host: " + misrouted, misrouted.isEmpty());
+  }
+
+  @Test
+  public void testAdaptiveThreadCount() throws Exception {
+    String collection = whbTestCollection + ".testAdaptiveThreadCount";
+    DocumentMetadataHandle meta = new DocumentMetadataHandle().withCollections(collection);
+    AtomicInteger successCount = new AtomicInteger(0);
+    List<ThreadCountChangeEvent> events = Collections.synchronizedList(new ArrayList<>());
+    WriteBatcher batcher = moveMgr.newWriteBatcher()
+      .withBatchSize(5)
+      .withThreadCount(1)
+      .withAdaptiveThreadCount(1, 4)
+      .onThreadCountChange(event -> events.add(event))
+      .onBatchSuccess(batch -> successCount.addAndGet(batch.getItems().length))
+      .onBatchFailure((batch, throwable) -> throwable.printStackTrace());
+    assertEquals(1, batcher.getMinThreadCount());
+    assertEquals(4, batcher.getMaxThreadCount());
+    moveMgr.startJob(batcher);
+    for ( int i = 0; i < 500; i++ ) {
+      batcher.add("/WriteBatcherTest/adaptive/doc" + i + ".txt", meta, new StringHandle("document " + i));
+    }
+    batcher.flushAndWait();
+    moveMgr.stopJob(batcher);
+
+    assertEquals(500, successCount.get());
+    assertFalse("Expected the thread count to change", events.isEmpty());
+    for ( ThreadCountChangeEvent event : events ) {
+      assertTrue(event.getThreadCount() >= 1 && event.getThreadCount() <= 4);
+      assertTrue(event.getPreviousThreadCount() != event.getThreadCount());
+    }
+    assertEquals(events.get(events.size() - 1).getThreadCount(), batcher.getThreadCount());
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    String collection = whbTestCollection + ".testMetrics";
+    DocumentMetadataHandle meta = new DocumentMetadataHandle().withCollections(collection);
+    DefaultMetricsRegistry metrics = new DefaultMetricsRegistry();
+    WriteBatcher batcher = moveMgr.newWriteBatcher()
+      .withJobName("testMetrics")
+      .withBatchSize(10)
+      .withMetricsRegistry(metrics);
+    JobTicket ticket = moveMgr.startJob(batcher);
+    for ( int i = 0; i < 95; i++ ) {
+      batcher.add("/WriteBatcherTest/metrics/doc" + i + ".txt", meta, new StringHandle("0123456789"));
+    }
+    batcher.flushAndWait();
+    // the queue depth gauge is tagged with the job id as well as the name
+    assertEquals(0, metrics.getGaugeValue("marklogic.dmsdk.write.queue.depth",
+      "job", "testMetrics", "jobId", ticket.getJobId()), 0);
+    moveMgr.stopJob(batcher);
+
+    long documents = 0;
+    long batches = 0;
+    long bytes = 0;
+    for ( String host : batcher.getForestConfig().getPreferredHosts() ) {
+      documents += metrics.getCount("marklogic.dmsdk.write.documents", "job", "testMetrics", "host", host);
+      DefaultMetricsRegistry.Histogram latency =
+        metrics.getTimer("marklogic.dmsdk.write.batch.duration", "job", "testMetrics", "host", host);
+      if ( latency != null ) batches += latency.getCount();
+      DefaultMetricsRegistry.Histogram sent =
+        metrics.getSummary("marklogic.dmsdk.write.bytes.sent", "job", "testMetrics", "host", host);
+      if ( sent != null ) bytes += sent.getTotal();
+    }
+    assertEquals(95, documents);
+    assertEquals(10, batches);
+    assertEquals(950, bytes);
+    assertEquals(0, metrics.getCount("marklogic.dmsdk.write.batch.retries", "job", "testMetrics"));
+    // the queue depth gauge is removed when the job stops
+    assertTrue(Double.isNaN(metrics.getGaugeValue("marklogic.dmsdk.write.queue.depth",
+      "job", "testMetrics", "jobId", ticket.getJobId())));
+  }
+
+  @Test
+  public void testWrittenOnceWhenCommitFails() {
+    String uri = "/WriteBatcherTest/commitFails.txt";
+    DocumentWriteSet docs = client.newDocumentManager().newWriteSet();
+    docs.add(uri, new StringHandle("commit fails").withFormat(Format.TEXT));
+    BatchWriteSet writeSet = new BatchWriteSet(moveMgr.newWriteBatcher(), docs, client, null, null);
+    writeSet.setBatchNumber(1);
+    List<Throwable> written = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger failures = new AtomicInteger(0);
+    writeSet.onWritten(failure -> written.add(failure));
+    // the write succeeds, then the commit run by onSuccess fails
+    writeSet.onSuccess(() -> {
+      throw new DataMovementException("commit failed", null);
+    });
+    writeSet.onFailure(throwable -> failures.incrementAndGet());
+    try {
+      new WriteBatcherImpl.BatchWriter(writeSet).run();
+    } finally {
+      client.newDocumentManager().delete(uri);
+    }
+    // the host accounting, meters and queue space only see the write once
+    assertEquals(1, written.size());
+    assertEquals(null, written.get(0));
+    assertEquals(1, failures.get());
+  }
 }